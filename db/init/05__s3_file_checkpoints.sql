@@ -0,0 +1,6 @@
+-- Resume point for interrupted file ingestion.
+-- checkpoint_offset is the byte offset just past the last committed line,
+-- checkpoint_line the number of lines consumed up to that offset.
+ALTER TABLE s3_files ADD COLUMN IF NOT EXISTS checkpoint_offset BIGINT;
+ALTER TABLE s3_files ADD COLUMN IF NOT EXISTS checkpoint_line   INTEGER;
+ALTER TABLE s3_files ADD COLUMN IF NOT EXISTS checkpointed_at   TIMESTAMP;
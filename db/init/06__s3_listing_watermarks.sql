@@ -0,0 +1,11 @@
+-- Incremental listing position per bucket and prefix.
+-- last_key is the highest key below which every listed file has been ingested,
+-- so the next run can pass it to ListObjectsV2 as StartAfter.
+CREATE TABLE IF NOT EXISTS s3_listing_watermarks (
+    id              SERIAL PRIMARY KEY,
+    bucket          TEXT NOT NULL,
+    prefix          TEXT NOT NULL,
+    last_key        TEXT NOT NULL,
+    updated_at      TIMESTAMP,
+    UNIQUE (bucket, prefix)
+);
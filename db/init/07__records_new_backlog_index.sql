@@ -0,0 +1,4 @@
+-- Backlog reads and claims only ever look at status = 'new' rows in id order.
+-- A partial index keeps that lookup proportional to the backlog, not the table,
+-- and lets keyset pages (id > last id) start right where the previous one ended.
+CREATE INDEX IF NOT EXISTS idx_records_new_backlog ON records (id) WHERE status = 'new';
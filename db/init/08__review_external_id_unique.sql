@@ -0,0 +1,5 @@
+-- Every normalized record looks its review up by the provider's review id.
+-- Without an index that is a sequential scan of the largest table; the unique
+-- index makes it an index probe and stops the same review being stored twice.
+-- Creating it fails if duplicates already exist; delete the extra rows first.
+CREATE UNIQUE INDEX IF NOT EXISTS uq_review_external_id ON review (review_external_id);
@@ -0,0 +1,12 @@
+-- Optional compact storage for staged JSONL lines (ingest.records.compression: zstd).
+-- A compressed row keeps raw_data NULL and holds the zstd frame in raw_data_zstd,
+-- compressed against the shared dictionary named by raw_data_dict_id (NULL: none).
+CREATE TABLE IF NOT EXISTS raw_data_dictionaries (
+    id              SERIAL PRIMARY KEY,
+    dictionary      BYTEA NOT NULL,
+    sample_count    INTEGER,
+    created_at      TIMESTAMP
+);
+
+ALTER TABLE records ADD COLUMN IF NOT EXISTS raw_data_zstd BYTEA;
+ALTER TABLE records ADD COLUMN IF NOT EXISTS raw_data_dict_id INTEGER REFERENCES raw_data_dictionaries (id);
@@ -0,0 +1,4 @@
+-- Claims that outlive their lease (the worker died before finishing the page) are
+-- taken over by started_at. Only 'processing' rows are indexed, so the lookup stays
+-- proportional to the records in flight.
+CREATE INDEX IF NOT EXISTS idx_records_processing_claims ON records (started_at) WHERE status = 'processing';
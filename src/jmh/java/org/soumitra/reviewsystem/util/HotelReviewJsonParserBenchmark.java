@@ -0,0 +1,80 @@
+package org.soumitra.reviewsystem.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of turning one JSONL line into the review DTOs, over a corpus of synthetic
+ * lines (see SyntheticReviewGenerator) that cycles so no single line stays hot in cache.
+ *
+ * parse is the path ingestion takes; parseTree is the JsonNode-based path kept behind
+ * ingest.parser.streaming=false, measured alongside it for comparison. Run with
+ *
+ *   mvn -Pjmh test-compile exec:exec
+ *
+ * which adds -prof gc for allocation rates; see README for narrowing the parameters.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HotelReviewJsonParserBenchmark {
+
+    @Param({"1", "3", "8"})
+    public int providers;
+
+    @Param({"5", "12"})
+    public int gradeCategories;
+
+    @Param({"50", "500", "4000"})
+    public int commentLength;
+
+    @Param({"1024"})
+    public int corpusSize;
+
+    private HotelReviewJsonParser parser;
+    private String[] corpus;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        parser = new HotelReviewJsonParser();
+        List<String> lines = new SyntheticReviewGenerator(42)
+            .withProviders(providers)
+            .withGradeCategories(gradeCategories)
+            .withCommentLength(commentLength)
+            .lines(corpusSize);
+        corpus = lines.toArray(new String[0]);
+    }
+
+    @Benchmark
+    public HotelReviewJsonParser.HotelReviewParseResult parse() throws Exception {
+        return parser.parseHotelReview(nextLine());
+    }
+
+    @Benchmark
+    public HotelReviewJsonParser.HotelReviewParseResult parseTree() throws Exception {
+        return parser.parseHotelReviewTree(nextLine());
+    }
+
+    private String nextLine() {
+        String line = corpus[next];
+        next = next + 1 == corpus.length ? 0 : next + 1;
+        return line;
+    }
+}
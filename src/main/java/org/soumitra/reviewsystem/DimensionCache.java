@@ -0,0 +1,149 @@
+package org.soumitra.reviewsystem;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.soumitra.reviewsystem.dao.HotelRepositoryCustom.HotelKey;
+import org.soumitra.reviewsystem.dao.ProviderRepository;
+import org.soumitra.reviewsystem.dao.RatingCategoryRepository;
+import org.soumitra.reviewsystem.dao.ReviewerRepositoryCustom.ReviewerKey;
+import org.soumitra.reviewsystem.model.Hotel;
+import org.soumitra.reviewsystem.model.Provider;
+import org.soumitra.reviewsystem.model.RatingCategory;
+import org.soumitra.reviewsystem.model.Reviewer;
+
+/**
+ * Bounded in-process caches for the dimension rows every review points at, keyed by their
+ * natural keys. Each cache evicts by size and by age, so rows changed or deleted in the
+ * database are picked up again after ingest.dimension-cache.ttl-minutes.
+ *
+ * A miss runs the loader once per key even with many workers asking at the same time;
+ * a loader that returns null is not cached. The bulk variants hand all of a page's misses
+ * to one loader call, and keys it does not return are not cached either.
+ */
+public class DimensionCache {
+
+    private final Cache<Short, Provider> providers;
+    private final Cache<HotelKey, Hotel> hotels;
+    private final Cache<ReviewerKey, Reviewer> reviewers;
+    private final Cache<String, RatingCategory> ratingCategories;
+
+    public DimensionCache(long maximumSize, Duration timeToLive) {
+        this.providers = newCache(maximumSize, timeToLive);
+        this.hotels = newCache(maximumSize, timeToLive);
+        this.reviewers = newCache(maximumSize, timeToLive);
+        this.ratingCategories = newCache(maximumSize, timeToLive);
+    }
+
+    private static <K, V> Cache<K, V> newCache(long maximumSize, Duration timeToLive) {
+        return Caffeine.newBuilder()
+            .maximumSize(maximumSize)
+            .expireAfterWrite(timeToLive)
+            .recordStats()
+            .build();
+    }
+
+    public Provider provider(Short externalId, Supplier<Provider> loader) {
+        return externalId == null ? loader.get() : providers.get(externalId, key -> loader.get());
+    }
+
+    public Hotel hotel(Integer externalId, Provider provider, Supplier<Hotel> loader) {
+        return hotels.get(HotelKey.of(externalId, provider.getProviderId()), key -> loader.get());
+    }
+
+    public Reviewer reviewer(String displayName, Integer countryId, Provider provider, Supplier<Reviewer> loader) {
+        return reviewers.get(ReviewerKey.of(displayName, countryId, provider.getProviderId()), key -> loader.get());
+    }
+
+    public RatingCategory ratingCategory(String categoryName, Supplier<RatingCategory> loader) {
+        return ratingCategories.get(categoryName, key -> loader.get());
+    }
+
+    public Map<Short, Provider> providers(Collection<Short> externalIds, Function<Set<Short>, Map<Short, Provider>> loader) {
+        return getAll(providers, externalIds, loader);
+    }
+
+    public Map<HotelKey, Hotel> hotels(Collection<HotelKey> keys, Function<Set<HotelKey>, Map<HotelKey, Hotel>> loader) {
+        return getAll(hotels, keys, loader);
+    }
+
+    public Map<ReviewerKey, Reviewer> reviewers(Collection<ReviewerKey> keys,
+                                                Function<Set<ReviewerKey>, Map<ReviewerKey, Reviewer>> loader) {
+        return getAll(reviewers, keys, loader);
+    }
+
+    public Map<String, RatingCategory> ratingCategories(Collection<String> categoryNames,
+                                                        Function<Set<String>, Map<String, RatingCategory>> loader) {
+        return getAll(ratingCategories, categoryNames, loader);
+    }
+
+    private static <K, V> Map<K, V> getAll(Cache<K, V> cache, Collection<K> keys, Function<Set<K>, Map<K, V>> loader) {
+        return cache.getAll(keys, missing -> loader.apply(new LinkedHashSet<>(missing)));
+    }
+
+    /**
+     * Preload the small, near-static dimensions. Hotels and reviewers are far too many
+     * to load up front and fill in as they are seen.
+     *
+     * @return number of rows loaded
+     */
+    public int warmUp(ProviderRepository providerRepo, RatingCategoryRepository ratingCategoryRepo) {
+        int loaded = 0;
+        for (Provider provider : providerRepo.findAll()) {
+            if (provider.getExternalId() != null) {
+                providers.put(provider.getExternalId(), provider);
+                loaded++;
+            }
+        }
+        for (RatingCategory category : ratingCategoryRepo.findAll()) {
+            if (category.getCategoryName() != null) {
+                ratingCategories.put(category.getCategoryName(), category);
+                loaded++;
+            }
+        }
+        return loaded;
+    }
+
+    public void invalidateAll() {
+        providers.invalidateAll();
+        hotels.invalidateAll();
+        reviewers.invalidateAll();
+        ratingCategories.invalidateAll();
+    }
+
+    /**
+     * Hit/miss counters per dimension, cumulative since the cache was created
+     */
+    public Map<String, CacheStats> stats() {
+        Map<String, CacheStats> stats = new LinkedHashMap<>();
+        stats.put("provider", providers.stats());
+        stats.put("hotel", hotels.stats());
+        stats.put("reviewer", reviewers.stats());
+        stats.put("ratingCategory", ratingCategories.stats());
+        return stats;
+    }
+
+    /**
+     * Hits, misses and hit rate of every dimension, for the end-of-job summary
+     */
+    public String describeStats() {
+        StringBuilder description = new StringBuilder();
+        stats().forEach((name, stats) -> description
+            .append(description.length() > 0 ? ", " : "")
+            .append(name).append(": ")
+            .append(stats.hitCount()).append(" hits / ")
+            .append(stats.missCount()).append(" misses (")
+            .append(String.format("%.1f", stats.hitRate() * 100)).append("%)"));
+        return description.toString();
+    }
+}
@@ -0,0 +1,168 @@
+package org.soumitra.reviewsystem;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+import software.amazon.awssdk.services.s3.S3Client;
+
+/**
+ * Micrometer meters for the ingestion pipeline, exported through Actuator
+ * (/actuator/prometheus). Everything a job records is tagged with its mode (STAGED, COPY
+ * or DIRECT for S3 ingest, PROCESS for record processing) but not its job id, so the number
+ * of series stays fixed however many jobs run; a job's own counts are in its JobProgress:
+ *
+ *   ingest.s3.requests      timer, operation=list|get|head; a get is timed to the response headers
+ *   ingest.staging.insert   timer, one page (or one COPY) written to records
+ *   ingest.parse            timer, one JSONL line parsed into DTOs
+ *   ingest.upsert           timer, type=provider|hotel|reviewer|rating_category|review_lookup|review|stay_info|ratings
+ *   ingest.records          counter, outcome=ok|failed|skipped (review already stored) and provider
+ *
+ * plus the untagged ingest.records.backlog gauge, the number of records still 'new'.
+ * Connection pool usage comes from Actuator's own hikaricp.connections.* meters.
+ */
+public class IngestMetrics {
+
+    private static final Logger log = LoggerFactory.getLogger(IngestMetrics.class);
+
+    public static final String MODE_PROCESS = "PROCESS";
+
+    private static final String UNKNOWN_PROVIDER = "unknown";
+
+    private final MeterRegistry registry;
+
+    public IngestMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    /**
+     * Meters that are created but go nowhere, for jobs built without a registry
+     */
+    public static IngestMetrics disabled() {
+        return new IngestMetrics(new CompositeMeterRegistry());
+    }
+
+    /**
+     * The meters a job of this mode records into, shared with every other job of the mode
+     */
+    public Job forMode(String mode) {
+        return new Job(registry, Tags.of("mode", mode));
+    }
+
+    /**
+     * Report the records backlog, counted at most once per refresh interval however often it is scraped
+     */
+    public void registerBacklogGauge(LongSupplier countNewRecords, Duration refreshInterval) {
+        CachedCount backlog = new CachedCount(countNewRecords, refreshInterval.toNanos());
+        Gauge.builder("ingest.records.backlog", backlog, CachedCount::get)
+            .description("Records staged and not yet processed")
+            .baseUnit("records")
+            .register(registry);
+    }
+
+    /**
+     * The meters of one job run, looked up once for the run
+     */
+    public static class Job {
+        private final MeterRegistry registry;
+        private final Tags tags;
+        private final Timer stagingInsert;
+        private final Timer parse;
+        // Meters are looked up once per job, not once per record
+        private final Map<String, Timer> upserts = new ConcurrentHashMap<>();
+        private final Map<String, Counter> records = new ConcurrentHashMap<>();
+
+        private Job(MeterRegistry registry, Tags tags) {
+            this.registry = registry;
+            this.tags = tags;
+            this.stagingInsert = Timer.builder("ingest.staging.insert").tags(tags).register(registry);
+            this.parse = Timer.builder("ingest.parse").tags(tags).register(registry);
+        }
+
+        /**
+         * The client with its list, get and head requests timed
+         */
+        public S3Client s3Client(S3Client s3Client) {
+            return new MeteredS3Client(s3Client, operation ->
+                Timer.builder("ingest.s3.requests").tags(tags).tag("operation", operation).register(registry));
+        }
+
+        public <T> T stagingInsert(Supplier<T> insert) {
+            return stagingInsert.record(insert);
+        }
+
+        public <T> T parse(Callable<T> parsing) throws Exception {
+            return parse.recordCallable(parsing);
+        }
+
+        public <T> T upsert(String type, Supplier<T> upsert) {
+            return upsertTimer(type).record(upsert);
+        }
+
+        private Timer upsertTimer(String type) {
+            return upserts.computeIfAbsent(type, key ->
+                Timer.builder("ingest.upsert").tags(tags).tag("type", key).register(registry));
+        }
+
+        public void recordOk(String provider) {
+            records("ok", provider).increment();
+        }
+
+        public void recordFailed(String provider) {
+            records("failed", provider).increment();
+        }
+
+        public void recordSkipped(String provider) {
+            records("skipped", provider).increment();
+        }
+
+        private Counter records(String outcome, String provider) {
+            String providerTag = provider != null ? provider : UNKNOWN_PROVIDER;
+            return records.computeIfAbsent(outcome + '|' + providerTag, key -> Counter.builder("ingest.records")
+                .tags(tags)
+                .tag("outcome", outcome)
+                .tag("provider", providerTag)
+                .register(registry));
+        }
+    }
+
+    private static class CachedCount {
+        private final LongSupplier count;
+        private final long refreshNanos;
+        private long value;
+        private long countedAt;
+        private boolean counted;
+
+        private CachedCount(LongSupplier count, long refreshNanos) {
+            this.count = count;
+            this.refreshNanos = refreshNanos;
+        }
+
+        private synchronized double get() {
+            long now = System.nanoTime();
+            if (!counted || now - countedAt >= refreshNanos) {
+                try {
+                    value = count.getAsLong();
+                } catch (RuntimeException e) {
+                    // Keep reporting the last count while the database is unreachable
+                    log.warn("Could not count the records backlog: {}", e.getMessage());
+                }
+                countedAt = now;
+                counted = true;
+            }
+            return value;
+        }
+    }
+}
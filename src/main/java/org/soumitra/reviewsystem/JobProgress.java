@@ -0,0 +1,173 @@
+package org.soumitra.reviewsystem;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Live counters of one running job, bumped by its worker threads without locking and read
+ * by whoever wants a snapshot (the progress stream). Nothing here touches the database.
+ *
+ * Files are counted by S3 ingest, records by both kinds of job. The ETA comes from the
+ * average rate so far: for an ingest once the listing is complete, for record processing
+ * against the backlog counted when the job started.
+ */
+public class JobProgress {
+
+    public enum State { RUNNING, SUCCESS, FAILED }
+
+    private final Integer jobId;
+    private final String type;
+    private final LongSupplier nanoClock;
+    private final long startedAt;
+
+    private final LongAdder filesListed = new LongAdder();
+    private final LongAdder filesDone = new LongAdder();
+    private final LongAdder filesFailed = new LongAdder();
+    private final LongAdder filesSkipped = new LongAdder();
+    private final LongAdder recordsDone = new LongAdder();
+    private final LongAdder recordsFailed = new LongAdder();
+
+    private volatile boolean listingComplete;
+    private volatile long recordsTotal = -1;
+    private volatile State state = State.RUNNING;
+    private volatile long finishedAt;
+
+    public JobProgress(Integer jobId, String type) {
+        this(jobId, type, System::nanoTime);
+    }
+
+    JobProgress(Integer jobId, String type, LongSupplier nanoClock) {
+        this.jobId = jobId;
+        this.type = type;
+        this.nanoClock = nanoClock;
+        this.startedAt = nanoClock.getAsLong();
+    }
+
+    public Integer getJobId() { return jobId; }
+    public String getType() { return type; }
+    public State getState() { return state; }
+
+    public void fileListed() { filesListed.increment(); }
+    public void fileSkipped() { filesSkipped.increment(); }
+
+    public void fileFinished(boolean success) {
+        (success ? filesDone : filesFailed).increment();
+    }
+
+    /**
+     * Every file of the job has been listed, so filesListed is the total
+     */
+    public void listingComplete() { listingComplete = true; }
+
+    public void recordsDone(long count) { recordsDone.add(count); }
+    public void recordsFailed(long count) { recordsFailed.add(count); }
+
+    /**
+     * Records the job is expected to get through, when known up front
+     */
+    public void setRecordsTotal(long recordsTotal) { this.recordsTotal = recordsTotal; }
+
+    public void finish(boolean success) {
+        finishedAt = nanoClock.getAsLong();
+        state = success ? State.SUCCESS : State.FAILED;
+    }
+
+    public boolean isFinished() { return state != State.RUNNING; }
+
+    /**
+     * Nanos since the job finished, or 0 while it runs
+     */
+    long finishedFor() {
+        return isFinished() ? nanoClock.getAsLong() - finishedAt : 0;
+    }
+
+    public Snapshot snapshot() {
+        State current = state;
+        long end = current == State.RUNNING ? nanoClock.getAsLong() : finishedAt;
+        double elapsedSeconds = Math.max(end - startedAt, 0) / (double) TimeUnit.SECONDS.toNanos(1);
+
+        long listed = filesListed.sum();
+        long done = filesDone.sum();
+        long failed = filesFailed.sum();
+        long skipped = filesSkipped.sum();
+        long records = recordsDone.sum();
+        long recordErrors = recordsFailed.sum();
+        long total = recordsTotal;
+
+        double recordsPerSecond = elapsedSeconds > 0 ? (records + recordErrors) / elapsedSeconds : 0;
+        double errorRate = records + recordErrors > 0 ? recordErrors / (double) (records + recordErrors) : 0;
+
+        Long etaSeconds = null;
+        if (current != State.RUNNING) {
+            etaSeconds = 0L;
+        } else if (total >= 0 && recordsPerSecond > 0) {
+            etaSeconds = (long) Math.ceil(Math.max(total - records - recordErrors, 0) / recordsPerSecond);
+        } else if (listingComplete && done + failed > 0) {
+            long remaining = Math.max(listed - skipped - done - failed, 0);
+            etaSeconds = (long) Math.ceil(remaining * elapsedSeconds / (done + failed));
+        }
+
+        return new Snapshot(jobId, type, current, listed, listingComplete ? listed : null, done, failed, skipped,
+            records, recordErrors, total >= 0 ? total : null, (long) elapsedSeconds, recordsPerSecond, errorRate, etaSeconds);
+    }
+
+    /**
+     * Progress at one point in time, as sent to clients
+     */
+    public static class Snapshot {
+        private final Integer jobId;
+        private final String type;
+        private final State state;
+        private final long filesListed;
+        private final Long filesTotal;
+        private final long filesDone;
+        private final long filesFailed;
+        private final long filesSkipped;
+        private final long recordsDone;
+        private final long recordsFailed;
+        private final Long recordsTotal;
+        private final long elapsedSeconds;
+        private final double recordsPerSecond;
+        private final double errorRate;
+        private final Long etaSeconds;
+
+        Snapshot(Integer jobId, String type, State state, long filesListed, Long filesTotal, long filesDone,
+                 long filesFailed, long filesSkipped, long recordsDone, long recordsFailed, Long recordsTotal,
+                 long elapsedSeconds, double recordsPerSecond, double errorRate, Long etaSeconds) {
+            this.jobId = jobId;
+            this.type = type;
+            this.state = state;
+            this.filesListed = filesListed;
+            this.filesTotal = filesTotal;
+            this.filesDone = filesDone;
+            this.filesFailed = filesFailed;
+            this.filesSkipped = filesSkipped;
+            this.recordsDone = recordsDone;
+            this.recordsFailed = recordsFailed;
+            this.recordsTotal = recordsTotal;
+            this.elapsedSeconds = elapsedSeconds;
+            this.recordsPerSecond = recordsPerSecond;
+            this.errorRate = errorRate;
+            this.etaSeconds = etaSeconds;
+        }
+
+        public Integer getJobId() { return jobId; }
+        public String getType() { return type; }
+        public State getState() { return state; }
+        public long getFilesListed() { return filesListed; }
+        // Null until the listing is complete
+        public Long getFilesTotal() { return filesTotal; }
+        public long getFilesDone() { return filesDone; }
+        public long getFilesFailed() { return filesFailed; }
+        public long getFilesSkipped() { return filesSkipped; }
+        public long getRecordsDone() { return recordsDone; }
+        public long getRecordsFailed() { return recordsFailed; }
+        public Long getRecordsTotal() { return recordsTotal; }
+        public long getElapsedSeconds() { return elapsedSeconds; }
+        public double getRecordsPerSecond() { return recordsPerSecond; }
+        public double getErrorRate() { return errorRate; }
+        // Null while there is not enough to go on
+        public Long getEtaSeconds() { return etaSeconds; }
+    }
+}
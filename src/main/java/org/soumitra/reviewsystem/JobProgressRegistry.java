@@ -0,0 +1,28 @@
+package org.soumitra.reviewsystem;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The JobProgress of each job running in this instance, and of jobs that finished in the
+ * last few minutes so a client that connects late still sees how they ended
+ */
+public class JobProgressRegistry {
+
+    private static final Duration KEEP_FINISHED = Duration.ofMinutes(10);
+
+    private final Map<Integer, JobProgress> jobs = new ConcurrentHashMap<>();
+
+    public JobProgress start(Integer jobId, String type) {
+        jobs.values().removeIf(progress -> progress.finishedFor() > KEEP_FINISHED.toNanos());
+        JobProgress progress = new JobProgress(jobId, type);
+        jobs.put(jobId, progress);
+        return progress;
+    }
+
+    public Optional<JobProgress> find(Integer jobId) {
+        return Optional.ofNullable(jobs.get(jobId));
+    }
+}
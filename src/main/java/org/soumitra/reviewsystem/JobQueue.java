@@ -0,0 +1,171 @@
+package org.soumitra.reviewsystem;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.soumitra.reviewsystem.dao.JobRunRepository;
+
+/**
+ * Runs jobs submitted over the API in the background, at most concurrency at a time, with
+ * up to capacity more waiting. A submission gets its job_runs row straight away, as
+ * 'pending'; the row moves to 'running' when a worker picks the job up, and the job itself
+ * finishes it as 'success' or 'failed'.
+ *
+ * A submission with the same key as a job that is still pending or running is not queued
+ * again; it gets that job's id and the settings that job was submitted with. Keys are only
+ * known to this instance.
+ */
+public class JobQueue implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(JobQueue.class);
+
+    private final JobRunRepository jobRepo;
+    private final ThreadPoolExecutor executor;
+    // Coalescing key -> the pending or running job
+    private final Map<String, Submission> activeJobs = new ConcurrentHashMap<>();
+
+    public JobQueue(JobRunRepository jobRepo, int concurrency, int capacity) {
+        this.jobRepo = jobRepo;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(concurrency, concurrency, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(Math.max(capacity, 1)),
+            runnable -> new Thread(runnable, "job-queue-" + threadCount.incrementAndGet()));
+        // Every submission then waits in the queue, so its free capacity says whether one more fits
+        executor.prestartAllCoreThreads();
+    }
+
+    /**
+     * Queue a job, or join the pending or running job with the same key (null never coalesces).
+     * The job gets the id of its job_runs row. Throws RejectedExecutionException when the
+     * queue is full, without creating a job run.
+     */
+    public Submission submit(String key, String notes, IntConsumer job) {
+        return submit(key, notes, Map.of(), job);
+    }
+
+    /**
+     * Queue a job along with the settings it runs with, which a coalesced submission gets back
+     * in place of its own
+     */
+    public synchronized Submission submit(String key, String notes, Map<String, Object> settings, IntConsumer job) {
+        Submission active = key != null ? activeJobs.get(key) : null;
+        if (active != null) {
+            return new Submission(active.getJobId(), true, active.getSettings());
+        }
+        if (executor.isShutdown() || executor.getQueue().remainingCapacity() == 0) {
+            throw new RejectedExecutionException("Job queue is full (" + executor.getQueue().size() + " jobs waiting)");
+        }
+
+        Integer jobId = jobRepo.insertJob(LocalDateTime.now(), "API", "pending", notes);
+        Submission submission = new Submission(jobId, false, settings);
+        if (key != null) {
+            activeJobs.put(key, submission);
+        }
+        try {
+            executor.execute(new QueuedJob(jobId, key, job));
+        } catch (RejectedExecutionException e) {
+            finish(jobId, key, "failed");
+            throw e;
+        }
+        return submission;
+    }
+
+    public int getWaiting() {
+        return executor.getQueue().size();
+    }
+
+    public int getRunning() {
+        return executor.getActiveCount();
+    }
+
+    /**
+     * Stop taking jobs and interrupt the running ones; jobs still waiting are marked failed
+     */
+    @Override
+    public void close() {
+        List<Runnable> waiting = executor.shutdownNow();
+        for (Runnable queued : waiting) {
+            QueuedJob job = (QueuedJob) queued;
+            finish(job.jobId, job.key, "failed");
+        }
+        if (!waiting.isEmpty()) {
+            log.info("{} queued jobs were marked failed on shutdown", waiting.size());
+        }
+    }
+
+    private void finish(Integer jobId, String key, String status) {
+        if (key != null) {
+            activeJobs.computeIfPresent(key, (activeKey, active) -> jobId.equals(active.getJobId()) ? null : active);
+        }
+        if (status != null) {
+            jobRepo.updateJobStatus(jobId, LocalDateTime.now(), status);
+        }
+    }
+
+    private class QueuedJob implements Runnable {
+        private final Integer jobId;
+        private final String key;
+        private final IntConsumer job;
+
+        private QueuedJob(Integer jobId, String key, IntConsumer job) {
+            this.jobId = jobId;
+            this.key = key;
+            this.job = job;
+        }
+
+        @Override
+        public void run() {
+            String failedStatus = null;
+            try {
+                if (jobRepo.startPendingJob(jobId) == 0) {
+                    log.info("Job {} is no longer pending, not starting it", jobId);
+                    return;
+                }
+                log.info("Starting queued job {}", jobId);
+                job.accept(jobId);
+            } catch (RuntimeException e) {
+                // The job marks itself failed when it gets that far; this covers failures before that
+                log.error("Queued job {} failed: {}", jobId, e.getMessage());
+                failedStatus = "failed";
+            } catch (Error e) {
+                // An OutOfMemoryError or StackOverflowError never reaches the job's own handling;
+                // mark the run failed so it does not show as running forever, then let it propagate
+                log.error("Queued job {} failed: {}", jobId, e.toString());
+                failedStatus = "failed";
+                throw e;
+            } finally {
+                finish(jobId, key, failedStatus);
+            }
+        }
+    }
+
+    /**
+     * The job a submission was queued as, or joined
+     */
+    public static class Submission {
+        private final Integer jobId;
+        private final boolean coalesced;
+        private final Map<String, Object> settings;
+
+        public Submission(Integer jobId, boolean coalesced, Map<String, Object> settings) {
+            this.jobId = jobId;
+            this.coalesced = coalesced;
+            this.settings = Map.copyOf(settings);
+        }
+
+        public Integer getJobId() { return jobId; }
+        public boolean isCoalesced() { return coalesced; }
+        /** The settings of the job that runs, which for a coalesced submission are not its own */
+        public Map<String, Object> getSettings() { return settings; }
+    }
+}
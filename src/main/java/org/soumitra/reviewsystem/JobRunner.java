@@ -2,43 +2,187 @@ package org.soumitra.reviewsystem;
 
 import java.time.Instant;
 import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
 
 // Repository interfaces
 import org.soumitra.reviewsystem.dao.JobRunRepository;
 import org.soumitra.reviewsystem.dao.S3FileRepository;
 import org.soumitra.reviewsystem.dao.RecordRepository;
+import org.soumitra.reviewsystem.dao.RecordErrorRepository;
+import org.soumitra.reviewsystem.model.Record;
+import org.soumitra.reviewsystem.dao.S3ListingWatermarkRepository;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 // AWS SDK imports
 import software.amazon.awssdk.services.s3.S3Client;
 import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
 import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
+import software.amazon.awssdk.services.s3.model.CommonPrefix;
 import software.amazon.awssdk.services.s3.model.S3Object;
 
 
 public class JobRunner {
 
+    private static final Logger log = LoggerFactory.getLogger(JobRunner.class);
+
+    private static final RecordEventLog events = RecordEventLog.forStage("staging");
+
     private final JobRunRepository jobRepo;
     private final S3FileRepository fileRepo;
     private final RecordRepository recordRepo;
     private final S3Client s3Client;
 
     private final int pageSize;
+    private final int concurrency;
+    private final IngestMode mode;
+    private RangedDownload rangedDownload;
+    private ReviewNormalizer normalizer;
+    private RecordErrorRepository recordErrorRepo;
+    private S3ListingWatermarkRepository watermarkRepo;
+    private int listingParallelism = 1;
+    private IngestMetrics metrics = IngestMetrics.disabled();
+    private JobProgressRegistry progressRegistry;
+
+    /**
+     * How a file's lines are written to the records staging table
+     */
+    public enum IngestMode {
+        /** Page-sized batched INSERTs with periodic checkpoints */
+        STAGED,
+        /** One PostgreSQL COPY per file; falls back to STAGED on other databases */
+        COPY,
+        /** Normalize lines straight into the review tables; only failed lines are staged */
+        DIRECT
+    }
+
+    // How often a DIRECT file's position is persisted while it is being read (a STAGED file
+    // checkpoints every page); when it cannot be, the file gets a heartbeat instead so it
+    // does not look abandoned
+    private static final long CHECKPOINT_INTERVAL_MS = 10_000L;
 
     public JobRunner(JobRunRepository jobRepo, S3FileRepository fileRepo, 
         RecordRepository recordRepo, 
         S3Client s3Client, int batchSize) {
+        this(jobRepo, fileRepo, recordRepo, s3Client, batchSize, 1);
+    }
+
+    public JobRunner(JobRunRepository jobRepo, S3FileRepository fileRepo, 
+        RecordRepository recordRepo, 
+        S3Client s3Client, int batchSize, int concurrency) {
+        this(jobRepo, fileRepo, recordRepo, s3Client, batchSize, concurrency, IngestMode.STAGED);
+    }
+
+    public JobRunner(JobRunRepository jobRepo, S3FileRepository fileRepo, 
+        RecordRepository recordRepo, 
+        S3Client s3Client, int batchSize, int concurrency, IngestMode mode) {
         this.jobRepo = jobRepo;
         this.fileRepo = fileRepo;
         this.recordRepo = recordRepo;
         this.s3Client = s3Client;
         this.pageSize = batchSize > 0 ? batchSize : 10;
+        this.concurrency = concurrency > 0 ? concurrency : 1;
+        this.mode = mode != null ? mode : IngestMode.STAGED;
+    }
+
+    /**
+     * Fetch objects at or above the download's size threshold as parallel byte ranges
+     */
+    public void setRangedDownload(RangedDownload rangedDownload) {
+        this.rangedDownload = rangedDownload;
+    }
+
+    /**
+     * Needed by IngestMode.DIRECT: lines are normalized as they are read, and the ones
+     * that fail are kept as failed records with their error
+     */
+    public void setNormalizer(ReviewNormalizer normalizer, RecordErrorRepository recordErrorRepo) {
+        this.normalizer = normalizer;
+        this.recordErrorRepo = recordErrorRepo;
+    }
+
+    /**
+     * Resume listing each prefix after its stored watermark and advance the watermarks
+     * once the job succeeds. Only safe for prefixes whose new keys always sort after the
+     * old ones, such as date-partitioned exports; null turns it off.
+     */
+    public void setListingWatermarks(S3ListingWatermarkRepository watermarkRepo) {
+        this.watermarkRepo = watermarkRepo;
+    }
+
+    /**
+     * List the top-level sub-prefixes ("dt=2024-06-01/" style partitions) of the job's prefix
+     * on this many threads; 1 lists the prefix as a single sequence
+     */
+    public void setListingParallelism(int listingParallelism) {
+        this.listingParallelism = listingParallelism > 0 ? listingParallelism : 1;
+    }
+
+    /**
+     * Where the job's S3, staging and (in DIRECT mode) normalization timings and record counts go
+     */
+    public void setMetrics(IngestMetrics metrics) {
+        this.metrics = metrics != null ? metrics : IngestMetrics.disabled();
+    }
+
+    /**
+     * Publish the job's live file and record counts there; null keeps them to the job
+     */
+    public void setProgressRegistry(JobProgressRegistry progressRegistry) {
+        this.progressRegistry = progressRegistry;
     }
 
     public void runJob(String s3Uri) {
+        if (mode == IngestMode.DIRECT && normalizer == null) {
+            throw new IllegalStateException("DIRECT ingest mode needs a ReviewNormalizer");
+        }
+
         // Create a new job run
-        Integer jobId = jobRepo.insertJob(LocalDateTime.now(), "MANUAL", "running", "Processing S3 files");
+        runJob(jobRepo.insertJob(LocalDateTime.now(), "MANUAL", "running", "Processing S3 files"), s3Uri);
+    }
+
+    /**
+     * Run under a job run that already exists and is running, such as one started by JobQueue
+     */
+    public void runJob(Integer jobId, String s3Uri) {
+        if (mode == IngestMode.DIRECT && normalizer == null) {
+            throw new IllegalStateException("DIRECT ingest mode needs a ReviewNormalizer");
+        }
+        IngestMetrics.Job jobMetrics = metrics.forMode(mode.name());
+        S3Client s3 = jobMetrics.s3Client(s3Client);
+        JobProgress progress = progressRegistry != null
+            ? progressRegistry.start(jobId, "S3_INGEST") : new JobProgress(jobId, "S3_INGEST");
+
+        ExecutorService workers = concurrency > 1 ? newWorkerPool(concurrency) : null;
+        ExecutorService listers = null;
+        // A COPY holds its connection until the file is done, so its heartbeats go out from here
+        ScheduledExecutorService heartbeats = mode == IngestMode.COPY
+            ? Executors.newSingleThreadScheduledExecutor(daemonThreads("file-heartbeat-")) : null;
 
         try {
             // Get the last successful job run to determine the cutoff time
@@ -46,43 +190,213 @@ public class JobRunner {
                 .map(jobRun -> jobRun.getScheduledAt())
                 .orElse(LocalDateTime.MIN); // If no successful job, process all files
 
-            System.out.println("Last successful job run time: " + lastSuccessfulJobTime);
+            log.info("Job {}: last successful job run time {}", jobId, lastSuccessfulJobTime);
+
+            boolean useCopy = mode == IngestMode.COPY && recordRepo.isCopySupported();
+            if (mode == IngestMode.COPY && !useCopy) {
+                log.info("COPY is not supported by this datasource, using batched inserts");
+            }
+            if (mode == IngestMode.DIRECT) {
+                normalizer.setMetrics(jobMetrics);
+                normalizer.warmUpDimensionCache();
+            }
+
+            String[] parsed = S3FileLister.parseUri(s3Uri);
+            String bucket = parsed[0];
+            String prefix = parsed[1];
 
-            List<S3FileRef> filesToProcess = S3FileLister.listAllFilesInBucket(s3Uri, s3Client, lastSuccessfulJobTime);
+            // Files stream in page by page; the full listing is never held in memory
+            Iterator<S3FileRef> listing;
+            if (listingParallelism > 1) {
+                listers = newThreadPool(listingParallelism, "s3-lister-");
+                listing = S3FileLister.streamPartitions(s3, bucket, prefix, lastSuccessfulJobTime,
+                    this::findStartAfter, listers);
+            } else {
+                listing = S3FileLister.streamFiles(s3, bucket, prefix, null,
+                    findStartAfter(bucket, prefix), lastSuccessfulJobTime);
+            }
 
-            int totalFilesProcessed = 0;
-            int totalRecordsProcessed = 0;
-            int totalFilesSkipped = 0;
+            JobTotals totals = new JobTotals(bucket, prefix, listingParallelism > 1);
+            Deque<PendingFile> pending = new ArrayDeque<>();
 
-            for (S3FileRef file : filesToProcess) {
-                // Check if file has already been successfully processed
-                if (fileRepo.isFileSuccessfullyProcessed(file.getKey())) {
-                    System.out.println("Skipping already processed file: " + file.getKey());
-                    totalFilesSkipped++;
-                    continue;
+            while (listing.hasNext()) {
+                // Listed files whose status is resolved with a single lookup
+                List<S3FileRef> chunk = new ArrayList<>(S3FileRepository.STATUS_LOOKUP_CHUNK);
+                while (chunk.size() < S3FileRepository.STATUS_LOOKUP_CHUNK && listing.hasNext()) {
+                    chunk.add(listing.next());
                 }
 
-                // Check if file is currently being processed
-                if (fileRepo.isFileBeingProcessed(file.getKey())) {
-                    System.out.println("File is currently being processed, skipping: " + file.getKey());
-                    totalFilesSkipped++;
-                    continue;
+                // One query tells us which of these files are done or in flight
+                List<String> keys = new ArrayList<>(chunk.size());
+                for (S3FileRef file : chunk) {
+                    keys.add(file.getKey());
                 }
+                Map<String, String> statuses = fileRepo.findStatusesByS3Keys(keys);
+
+                for (S3FileRef file : chunk) {
+                    String status = statuses.get(file.getKey());
+                    progress.fileListed();
+
+                    // Check if file has already been successfully processed
+                    if ("success".equals(status)) {
+                        log.info("Skipping already processed file: {}", file.getKey());
+                        progress.fileSkipped();
+                        pending.add(new PendingFile(file, CompletableFuture.completedFuture(FileResult.ALREADY_DONE)));
+                    } else if (workers == null) {
+                        pending.add(new PendingFile(file, CompletableFuture.completedFuture(processFile(jobId, file, useCopy, heartbeats, s3, jobMetrics, progress))));
+                    } else {
+                        pending.add(new PendingFile(file, workers.submit(() -> processFile(jobId, file, useCopy, heartbeats, s3, jobMetrics, progress))));
+                    }
 
-                Integer fileId = fileRepo.insertOrUpdateFile(jobId, file.getBucket(), file.getKey(), "processing", null, true);
+                    // Fold finished results in listing order so neither the futures nor the watermark lag behind
+                    drainCompleted(pending, totals, pending.size() > concurrency * 4);
+                }
+            }
+            progress.listingComplete();
 
-                int line = 0;
-                boolean fileSuccess = true;
-                int fileRecordCount = 0;
-                String fileErrorMsg = null;
+            // All files are awaited before any worker failure is rethrown
+            while (!pending.isEmpty()) {
+                drainCompleted(pending, totals, true);
+            }
+            if (totals.workerFailure != null) {
+                throw totals.workerFailure;
+            }
 
-                try {
-                    System.out.println("Processing file: " + file.getKey());
-                    while (true) {
-                        List<String> lines = JsonlPaginator.readJsonLines(file.getBucket(), file.getKey(), line, pageSize, s3Client);
+            log.info("Job {}: {} files processed, {} files skipped, {} records processed",
+                jobId, totals.filesProcessed, totals.filesSkipped, totals.recordsProcessed);
+            if (mode == IngestMode.DIRECT && normalizer.getDimensionCache() != null) {
+                log.info("Dimension cache: {}", normalizer.getDimensionCache().describeStats());
+            }
+
+            if (watermarkRepo != null) {
+                for (Map.Entry<String, String> watermark : totals.watermarks().entrySet()) {
+                    log.info("Listing watermark for {}/{}: {}", bucket, watermark.getKey(), watermark.getValue());
+                    watermarkRepo.advance(bucket, watermark.getKey(), watermark.getValue());
+                }
+            }
+
+            // Update job status
+            jobRepo.updateJobStatus(jobId, LocalDateTime.now(), "success");
+            progress.finish(true);
+        } catch (Exception e) {
+            log.error("Error processing job {}: {}", jobId, e.getMessage());
+            jobRepo.updateJobStatus(jobId, LocalDateTime.now(), "failed");
+            progress.finish(false);
+            throw e;
+        } finally {
+            if (workers != null) {
+                workers.shutdownNow();
+            }
+            if (listers != null) {
+                listers.shutdownNow();
+            }
+            if (heartbeats != null) {
+                heartbeats.shutdownNow();
+            }
+        }
+    }
+
+    private String findStartAfter(String bucket, String prefix) {
+        return watermarkRepo != null ? watermarkRepo.findStartAfter(bucket, prefix) : null;
+    }
+
+    /**
+     * Take results off the head of the queue while they are ready, or wait for the head when block is set
+     */
+    private static void drainCompleted(Deque<PendingFile> pending, JobTotals totals, boolean block) {
+        while (!pending.isEmpty() && (block || pending.peekFirst().result.isDone())) {
+            PendingFile head = pending.pollFirst();
+            try {
+                totals.add(head.file, head.result.get());
+            } catch (ExecutionException ex) {
+                totals.fail(head.file, ex.getCause());
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while waiting for file workers", ex);
+            }
+            block = false;
+        }
+    }
 
-                        if (lines.isEmpty()) break;
+    /**
+     * Claim a single file and stage all of its lines. Runs on a worker thread when concurrency > 1,
+     * so it only touches its own locals and the (thread-safe) repositories and S3 client.
+     */
+    private FileResult processFile(Integer jobId, S3FileRef file, boolean useCopy, ScheduledExecutorService heartbeats,
+                                   S3Client s3, IngestMetrics.Job jobMetrics, JobProgress progress) {
+        // A 'processing' file is only claimed once its runner has gone quiet; see S3FileRepository.claimFile
+        Integer fileId = fileRepo.insertOrUpdateFile(jobId, file.getBucket(), file.getKey(), "processing", null, true);
+        if (fileId == null) {
+            log.info("File is done or being processed by another runner, skipping: {}", file.getKey());
+            progress.fileSkipped();
+            return FileResult.SKIPPED;
+        }
+
+        // Pick up where an interrupted or failed run left off, if it checkpointed
+        FileCheckpoint checkpoint = findCheckpoint(file.getKey());
+
+        boolean fileSuccess = true;
+        int fileRecordCount = checkpoint.recordCount;
+        int fileFailedLines = 0;
+        String fileErrorMsg = null;
+
+        RangedDownload download = rangedDownload != null && rangedDownload.appliesTo(file.getSize()) ? rangedDownload : null;
+
+        try (JsonlPaginator.JsonlLineReader reader = JsonlPaginator.openJsonLines(
+                file.getBucket(), file.getKey(), s3, checkpoint.byteOffset, checkpoint.line, download)) {
+            if (checkpoint.byteOffset > 0) {
+                log.info("Resuming file {} at line {} (byte {})", file.getKey(), checkpoint.line, checkpoint.byteOffset);
+            } else {
+                log.info("Processing file: {}", file.getKey());
+            }
 
+            if (useCopy) {
+                // The COPY is all-or-nothing, so there is no partial position worth checkpointing,
+                // but a long one must still show it is alive
+                ScheduledFuture<?> heartbeat = heartbeats.scheduleAtFixedRate(() -> heartbeat(fileId, file),
+                    CHECKPOINT_INTERVAL_MS, CHECKPOINT_INTERVAL_MS, TimeUnit.MILLISECONDS);
+                long copied;
+                try {
+                    copied = jobMetrics.stagingInsert(() -> recordRepo.copyNewRecords(fileId, jobId, reader));
+                } finally {
+                    heartbeat.cancel(false);
+                }
+                fileRecordCount += (int) copied;
+                progress.recordsDone(copied);
+                return new FileResult(true, true, fileRecordCount);
+            }
+
+            long lastCheckpointAt = System.currentTimeMillis();
+            while (true) {
+                int line = reader.getLinesRead();
+                List<String> lines = reader.nextPage(pageSize);
+
+                if (lines.isEmpty()) break;
+
+                int stagedBefore = fileRecordCount;
+                boolean checkpointDue = System.currentTimeMillis() - lastCheckpointAt >= CHECKPOINT_INTERVAL_MS;
+                boolean checkpointed = false;
+
+                if (mode == IngestMode.DIRECT) {
+                    int failed = normalizePage(fileId, jobId, lines);
+                    fileRecordCount += lines.size() - failed;
+                    fileFailedLines += failed;
+                } else {
+                    // Every page commits with its checkpoint, so a resume never re-stages committed
+                    // lines. Only a contiguous committed prefix is checkpointed, so once a line has
+                    // failed the position stays put and a retry revisits it.
+                    RecordRepository.FileCheckpoint pageCheckpoint = fileSuccess
+                        ? new RecordRepository.FileCheckpoint(reader.getByteOffset(), reader.getLinesRead(), fileRecordCount + lines.size())
+                        : null;
+                    try {
+                        fileRecordCount += jobMetrics.stagingInsert(() -> pageCheckpoint != null
+                            ? recordRepo.logNewRecords(fileId, jobId, lines, pageCheckpoint)
+                            : recordRepo.logNewRecords(fileId, jobId, lines));
+                        checkpointed = pageCheckpoint != null;
+                    } catch (Exception batchEx) {
+                        // The page was rolled back; stage it line by line so one bad line does not drop the rest
+                        log.warn("Batch insert failed for {} at line {}, retrying line by line: {}",
+                            file.getKey(), line, batchEx.getMessage());
                         for (int i = 0; i < lines.size(); i++) {
                             String jsonLine = lines.get(i);
                             int lineNumber = line + i; // 0-based line indexing
@@ -95,31 +409,181 @@ public class JobRunner {
                                 //recordRepo.logRecord(fileId, lineNumber, "FAILED", recEx.getMessage());
                             }
                         }
+                        if (fileSuccess) {
+                            // Each line committed on its own; move the position past them straight away
+                            fileRepo.updateFileCheckpoint(fileId, reader.getByteOffset(), reader.getLinesRead(), fileRecordCount);
+                            checkpointed = true;
+                        }
+                    }
+                }
 
-                        line += lines.size();
+                progress.recordsDone(fileRecordCount - stagedBefore);
+                progress.recordsFailed(lines.size() - (fileRecordCount - stagedBefore));
+                log.info("{}: lines {} to {} done, {} records so far", file.getKey(), line, line + lines.size() - 1, fileRecordCount);
+
+                if (checkpointDue && !checkpointed) {
+                    if (mode == IngestMode.DIRECT && fileSuccess) {
+                        // Normalized rows are upserts, so the lines a resume repeats do no harm;
+                        // only their failed records can be kept twice
+                        fileRepo.updateFileCheckpoint(fileId, reader.getByteOffset(), reader.getLinesRead(), fileRecordCount);
+                    } else {
+                        fileRepo.heartbeatFile(fileId);
                     }
-                } catch (Exception fileEx) {
-                    fileSuccess = false;
-                    fileErrorMsg = fileEx.getMessage();
-                    System.err.println("Error processing file " + file.getKey() + ": " + fileErrorMsg);
-                } finally {
-                    fileRepo.updateFileStatus(fileId, fileSuccess ? "success" : "failed", fileErrorMsg, fileRecordCount, false);
                 }
+                if (checkpointDue || checkpointed) {
+                    lastCheckpointAt = System.currentTimeMillis();
+                }
+            }
+        } catch (Exception fileEx) {
+            fileSuccess = false;
+            fileErrorMsg = fileEx.getMessage();
+            log.error("Error processing file {}: {}", file.getKey(), fileErrorMsg);
+        } finally {
+            if (fileSuccess && fileFailedLines > 0) {
+                fileErrorMsg = fileFailedLines + " lines failed normalization and were kept as failed records";
+            }
+            fileRepo.updateFileStatus(fileId, fileSuccess ? "success" : "failed", fileErrorMsg, fileRecordCount, false);
+            progress.fileFinished(fileSuccess);
+        }
+
+        return new FileResult(true, fileSuccess, fileRecordCount);
+    }
 
-                totalFilesProcessed++;
-                totalRecordsProcessed += fileRecordCount;
+    /**
+     * Runs on the heartbeat thread, outside the COPY's transaction, so it commits on its own connection
+     */
+    private void heartbeat(Integer fileId, S3FileRef file) {
+        try {
+            fileRepo.heartbeatFile(fileId);
+        } catch (RuntimeException e) {
+            // Keep the schedule going; the next beat may get through
+            log.warn("Heartbeat for file {} failed: {}", file.getKey(), e.getMessage());
+        }
+    }
+
+    /**
+     * Normalize a page in DIRECT mode and keep each line that failed, with its error.
+     * Returns the number of failed lines; throws if a failure could not be recorded.
+     */
+    private int normalizePage(Integer fileId, Integer jobId, List<String> lines) {
+        List<ReviewNormalizer.LineFailure> failures = normalizer.normalizeAll(lines);
+        for (ReviewNormalizer.LineFailure failure : failures) {
+            Record failed = recordRepo.logFailedRecord(fileId, jobId, lines.get(failure.getIndex()));
+            recordErrorRepo.logRecordError(failed, failure.getError().getMessage(),
+                ReviewNormalizer.getStackTrace(failure.getError()));
+        }
+        return failures.size();
+    }
+
+    /**
+     * Fixed-size pool for per-file tasks. The queue is bounded and the submitting thread runs
+     * a task itself when it is full, so a huge listing never piles up as queued work.
+     */
+    private static ExecutorService newWorkerPool(int threads) {
+        return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(threads * 2),
+            daemonThreads("ingest-worker-"),
+            new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    private static ExecutorService newThreadPool(int threads, String namePrefix) {
+        return Executors.newFixedThreadPool(threads, daemonThreads(namePrefix));
+    }
+
+    private static ThreadFactory daemonThreads(String namePrefix) {
+        AtomicInteger threadCount = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, namePrefix + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Outcome of a single file task
+     */
+    private static class FileResult {
+        // Claimed by another runner, or still in flight elsewhere
+        private static final FileResult SKIPPED = new FileResult(false, false, 0);
+        // Ingested by an earlier run
+        private static final FileResult ALREADY_DONE = new FileResult(false, true, 0);
+
+        private final boolean processed;
+        private final boolean done;
+        private final int recordCount;
+
+        private FileResult(boolean processed, boolean done, int recordCount) {
+            this.processed = processed;
+            this.done = done;
+            this.recordCount = recordCount;
+        }
+    }
+
+    /**
+     * A listed file and its (possibly still running) result
+     */
+    private static class PendingFile {
+        private final S3FileRef file;
+        private final Future<FileResult> result;
+
+        private PendingFile(S3FileRef file, Future<FileResult> result) {
+            this.file = file;
+            this.result = result;
+        }
+    }
+
+    /**
+     * Running totals of a job, fed in listing order. Also tracks, per listed partition, the
+     * last key before the first file that is not done: nothing at or below it needs listing again.
+     */
+    private static class JobTotals {
+        private final String bucket;
+        private final String prefix;
+        private final boolean partitioned;
+        private final Map<String, String> lastDoneKeys = new LinkedHashMap<>();
+        private final Set<String> blockedPartitions = new HashSet<>();
+
+        private int filesProcessed;
+        private int filesSkipped;
+        private int recordsProcessed;
+        private RuntimeException workerFailure;
+
+        private JobTotals(String bucket, String prefix, boolean partitioned) {
+            this.bucket = bucket;
+            this.prefix = prefix;
+            this.partitioned = partitioned;
+        }
+
+        private void add(S3FileRef file, FileResult result) {
+            filesProcessed += result.processed ? 1 : 0;
+            filesSkipped += result.processed ? 0 : 1;
+            recordsProcessed += result.recordCount;
+            track(file, result.done);
+        }
+
+        private void fail(S3FileRef file, Throwable cause) {
+            if (workerFailure == null) {
+                workerFailure = cause instanceof RuntimeException
+                    ? (RuntimeException) cause
+                    : new RuntimeException(cause.getMessage(), cause);
             }
+            track(file, false);
+        }
 
-            System.out.println("Total files processed: " + totalFilesProcessed);
-            System.out.println("Total files skipped: " + totalFilesSkipped);
-            System.out.println("Total records processed: " + totalRecordsProcessed);
+        private void track(S3FileRef file, boolean done) {
+            String partition = S3FileLister.partitionOf(file.getKey(), prefix, partitioned);
+            if (partition == null || blockedPartitions.contains(partition)) {
+                return;
+            }
+            if (done) {
+                lastDoneKeys.put(partition, file.getKey());
+            } else {
+                blockedPartitions.add(partition);
+            }
+        }
 
-            // Update job status
-            jobRepo.updateJobStatus(jobId, LocalDateTime.now(), "success");
-        } catch (Exception e) {
-            System.err.println("Error processing job: " + e.getMessage());
-            jobRepo.updateJobStatus(jobId, LocalDateTime.now(), "failed");
-            throw e;
+        private Map<String, String> watermarks() {
+            return lastDoneKeys;
         }
     }
 
@@ -131,40 +595,120 @@ public class JobRunner {
 
         public static List<S3FileRef> listAllFilesInBucket(String s3Uri, S3Client s3Client, LocalDateTime cutoffTime) {
             String[] parsed = parseUri(s3Uri);
-            String bucket = parsed[0];
-            String prefix = parsed[1];
-    
             List<S3FileRef> results = new ArrayList<>();
-    
+            streamFiles(s3Client, parsed[0], parsed[1], null, null, cutoffTime).forEachRemaining(results::add);
+            return results;
+        }
+
+        /**
+         * Lazily list the files under a prefix, one ListObjectsV2 page at a time.
+         * startAfter (exclusive) skips everything up to a previous watermark; a delimiter
+         * restricts the listing to objects directly under the prefix.
+         */
+        public static Iterator<S3FileRef> streamFiles(S3Client s3Client, String bucket, String prefix, String delimiter,
+                                                      String startAfter, LocalDateTime cutoffTime) {
+            return new Iterator<S3FileRef>() {
+                private Iterator<S3Object> page = Collections.emptyIterator();
+                private String continuationToken;
+                private boolean lastPage;
+                private S3FileRef next;
+
+                @Override
+                public boolean hasNext() {
+                    while (next == null) {
+                        if (page.hasNext()) {
+                            S3Object obj = page.next();
+                            if (isModifiedAfter(obj, cutoffTime)) {
+                                next = new S3FileRef(bucket, obj.key(), obj.lastModified(), obj.size());
+                            }
+                        } else if (lastPage) {
+                            return false;
+                        } else {
+                            ListObjectsV2Response response = s3Client.listObjectsV2(ListObjectsV2Request.builder()
+                                    .bucket(bucket)
+                                    .prefix(prefix)
+                                    .delimiter(delimiter)
+                                    .startAfter(startAfter)
+                                    .continuationToken(continuationToken)
+                                    .build());
+                            page = response.contents().iterator();
+                            continuationToken = response.nextContinuationToken();
+                            lastPage = continuationToken == null;
+                        }
+                    }
+                    return true;
+                }
+
+                @Override
+                public S3FileRef next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    S3FileRef file = next;
+                    next = null;
+                    return file;
+                }
+            };
+        }
+
+        /**
+         * List the objects directly under the prefix, then each of its sub-prefixes on its own
+         * thread from the pool. Keys come out in order within a sub-prefix but interleaved across them.
+         */
+        public static Iterator<S3FileRef> streamPartitions(S3Client s3Client, String bucket, String prefix,
+                                                           LocalDateTime cutoffTime,
+                                                           BiFunction<String, String, String> startAfterLookup,
+                                                           ExecutorService listers) {
+            List<Iterator<S3FileRef>> sources = new ArrayList<>();
+            sources.add(streamFiles(s3Client, bucket, prefix, "/", null, cutoffTime));
+            for (String subPrefix : listSubPrefixes(s3Client, bucket, prefix)) {
+                sources.add(streamFiles(s3Client, bucket, subPrefix, null,
+                    startAfterLookup.apply(bucket, subPrefix), cutoffTime));
+            }
+            return new ConcurrentListing(sources, listers);
+        }
+
+        /**
+         * The "/"-delimited sub-prefixes directly under a prefix
+         */
+        public static List<String> listSubPrefixes(S3Client s3Client, String bucket, String prefix) {
+            List<String> subPrefixes = new ArrayList<>();
             String continuationToken = null;
             do {
-                ListObjectsV2Request request = ListObjectsV2Request.builder()
+                ListObjectsV2Response response = s3Client.listObjectsV2(ListObjectsV2Request.builder()
                         .bucket(bucket)
                         .prefix(prefix)
+                        .delimiter("/")
                         .continuationToken(continuationToken)
-                        .build();
-    
-                ListObjectsV2Response response = s3Client.listObjectsV2(request);
-    
-                for (S3Object obj : response.contents()) {
-                    // Only include files that were created after the cutoff time
-                    if (obj.lastModified() != null) {
-                        Instant fileCreatedTime = obj.lastModified();
-                        LocalDateTime fileCreatedDateTime = LocalDateTime.ofInstant(fileCreatedTime, java.time.ZoneOffset.UTC);
-                        
-                        if (fileCreatedDateTime.isAfter(cutoffTime)) {
-                            results.add(new S3FileRef(bucket, obj.key(), obj.lastModified()));
-                        }
-                    } else {
-                        // If lastModified is null, include the file (conservative approach)
-                        results.add(new S3FileRef(bucket, obj.key(), obj.lastModified()));
-                    }
+                        .build());
+                for (CommonPrefix commonPrefix : response.commonPrefixes()) {
+                    subPrefixes.add(commonPrefix.prefix());
                 }
-    
                 continuationToken = response.nextContinuationToken();
             } while (continuationToken != null);
-    
-            return results;
+            return subPrefixes;
+        }
+
+        /**
+         * Prefix whose watermark covers the key: the job prefix itself, or when listing by partition
+         * the sub-prefix the key sits in. Keys directly under a partitioned prefix have none.
+         */
+        public static String partitionOf(String key, String prefix, boolean partitioned) {
+            if (!partitioned) {
+                return prefix;
+            }
+            int slash = key.indexOf('/', prefix.length());
+            return slash < 0 ? null : key.substring(0, slash + 1);
+        }
+
+        // Only include files that were created after the cutoff time
+        private static boolean isModifiedAfter(S3Object obj, LocalDateTime cutoffTime) {
+            if (obj.lastModified() == null) {
+                // If lastModified is null, include the file (conservative approach)
+                return true;
+            }
+            LocalDateTime fileCreatedDateTime = LocalDateTime.ofInstant(obj.lastModified(), java.time.ZoneOffset.UTC);
+            return fileCreatedDateTime.isAfter(cutoffTime);
         }
 
         public static String[] parseUri(String uri) {
@@ -180,22 +724,27 @@ public class JobRunner {
         private final String bucket;
         private final String key;
         private final Instant lastModified;
+        private final Long size;
 
         public S3FileRef(String bucket, String key) {
-            this.bucket = bucket;
-            this.key = key;
-            this.lastModified = null;
+            this(bucket, key, null, null);
         }
 
         public S3FileRef(String bucket, String key, Instant lastModified) {
+            this(bucket, key, lastModified, null);
+        }
+
+        public S3FileRef(String bucket, String key, Instant lastModified, Long size) {
             this.bucket = bucket;
             this.key = key;
             this.lastModified = lastModified;
+            this.size = size;
         }
     
         public String getBucket() { return bucket; }
         public String getKey() { return key; }
         public Instant getLastModified() { return lastModified; }
+        public Long getSize() { return size; }
 
         @Override
         public String toString() {
@@ -203,11 +752,102 @@ public class JobRunner {
         }
     }
 
+    /**
+     * Merges several listings that run on a pool into one iterator, through a bounded queue
+     * so listers can only run a page or so ahead of the workers
+     */
+    private static class ConcurrentListing implements Iterator<S3FileRef> {
+        private static final Object END = new Object();
+
+        private final BlockingQueue<Object> queue = new ArrayBlockingQueue<>(S3FileRepository.STATUS_LOOKUP_CHUNK);
+        private int running;
+        private S3FileRef next;
+
+        private ConcurrentListing(List<Iterator<S3FileRef>> sources, ExecutorService listers) {
+            this.running = sources.size();
+            for (Iterator<S3FileRef> source : sources) {
+                listers.execute(() -> {
+                    try {
+                        try {
+                            while (source.hasNext()) {
+                                queue.put(source.next());
+                            }
+                            queue.put(END);
+                        } catch (RuntimeException e) {
+                            queue.put(e);
+                        }
+                    } catch (InterruptedException e) {
+                        // The job is shutting the listers down
+                        Thread.currentThread().interrupt();
+                    }
+                });
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            try {
+                while (next == null && running > 0) {
+                    Object item = queue.take();
+                    if (item == END) {
+                        running--;
+                    } else if (item instanceof RuntimeException) {
+                        running = 0;
+                        throw (RuntimeException) item;
+                    } else {
+                        next = (S3FileRef) item;
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while listing S3 files", e);
+            }
+            return next != null;
+        }
+
+        @Override
+        public S3FileRef next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            S3FileRef file = next;
+            next = null;
+            return file;
+        }
+    }
+
+    /**
+     * Position to resume a file from; all zero when the file has never been checkpointed
+     */
+    private static class FileCheckpoint {
+        private static final FileCheckpoint START = new FileCheckpoint(0L, 0, 0);
+
+        private final long byteOffset;
+        private final int line;
+        private final int recordCount;
+
+        private FileCheckpoint(long byteOffset, int line, int recordCount) {
+            this.byteOffset = byteOffset;
+            this.line = line;
+            this.recordCount = recordCount;
+        }
+    }
+
+    private FileCheckpoint findCheckpoint(String s3Key) {
+        return fileRepo.findByS3Key(s3Key)
+            .filter(f -> f.getCheckpointOffset() != null && f.getCheckpointOffset() > 0)
+            .map(f -> new FileCheckpoint(
+                f.getCheckpointOffset(),
+                f.getCheckpointLine() != null ? f.getCheckpointLine() : 0,
+                f.getRecordCount() != null ? f.getRecordCount() : 0))
+            .orElse(FileCheckpoint.START);
+    }
+
     /**
      * Store each line of jsonl file in the record table
      */
     private void logRecord(Integer fileId, Integer jobId, Integer lineNumber, String jsonLine) throws Exception {
-        System.out.println("Processing record " + lineNumber ); // + ": " + jsonLine);
+        events.event("Staging line {} of file {}", lineNumber, fileId);
         recordRepo.logNewRecord(fileId, jobId, jsonLine);
     }
 
@@ -1,49 +1,361 @@
 package org.soumitra.reviewsystem;
 
+import com.github.luben.zstd.ZstdInputStream;
 import software.amazon.awssdk.core.ResponseInputStream;
 import software.amazon.awssdk.services.s3.S3Client;
 import software.amazon.awssdk.services.s3.model.GetObjectRequest;
 import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.S3Exception;
 
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
+import java.util.NoSuchElementException;
+import java.util.zip.GZIPInputStream;
 
 public class JsonlPaginator {
     
+    /**
+     * Read a single page of lines starting at startLine.
+     * Every call issues its own GetObject and skips from the top of the file, so
+     * walking a whole file this way is quadratic - use openJsonLines for that.
+     */
     public static List<String> readJsonLines(String bucket, String key, int startLine, int pageSize, S3Client s3Client) {
-        List<String> lines = new ArrayList<>();
-        
-        try {
-            GetObjectRequest request = GetObjectRequest.builder()
-                    .bucket(bucket)
-                    .key(key)
-                    .build();
-            
-            ResponseInputStream<GetObjectResponse> response = s3Client.getObject(request);
+        try (JsonlLineReader reader = openJsonLines(bucket, key, s3Client)) {
+            // Skip to start line
+            int currentLine = 0;
+            while (currentLine < startLine && reader.hasNext()) {
+                reader.next();
+                currentLine++;
+            }
             
-            try (BufferedReader reader = new BufferedReader(new InputStreamReader(response))) {
-                String line;
-                int currentLine = 0;
-                int linesRead = 0;
-                
-                // Skip to start line
-                while (currentLine < startLine && (line = reader.readLine()) != null) {
-                    currentLine++;
+            return reader.nextPage(pageSize);
+        } catch (Exception e) {
+            throw new RuntimeException("Error reading from S3: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Open a streaming line reader over a single GetObject response.
+     * The caller owns the reader and must close it to release the HTTP connection.
+     */
+    public static JsonlLineReader openJsonLines(String bucket, String key, S3Client s3Client) {
+        return openJsonLines(bucket, key, s3Client, 0L, 0);
+    }
+
+    /**
+     * Open a streaming line reader that resumes at a byte offset previously reported by
+     * JsonlLineReader.getByteOffset. The offset must sit on a line boundary; startLine is
+     * the line number that lives at that offset and only seeds the reader's counter.
+     * Compressed objects are inflated on the fly and their offsets count decompressed bytes,
+     * so they cannot be ranged: a resume re-reads the object and skips forward instead.
+     */
+    public static JsonlLineReader openJsonLines(String bucket, String key, S3Client s3Client, long startOffset, int startLine) {
+        Codec codec = Codec.fromKey(key);
+        boolean ranged = startOffset > 0 && codec == Codec.NONE;
+
+        ResponseInputStream<GetObjectResponse> response;
+        try {
+            response = getObject(bucket, key, s3Client, ranged ? startOffset : 0L);
+        } catch (S3Exception e) {
+            // Resuming exactly at the end of the object: nothing left to read
+            if (ranged && e.statusCode() == 416) {
+                return new JsonlLineReader(InputStream.nullInputStream(), startOffset, startLine);
+            }
+            throw e;
+        }
+
+        if (codec == Codec.NONE) {
+            codec = Codec.fromResponse(response.response());
+            if (codec == Codec.NONE) {
+                return new JsonlLineReader(response, startOffset, startLine);
+            }
+            if (ranged) {
+                // Only the headers said it was compressed; the ranged body is useless
+                response.abort();
+                response = getObject(bucket, key, s3Client, 0L);
+            }
+        }
+
+        try {
+            InputStream in = codec.decode(response);
+            if (startOffset > 0) {
+                in.skipNBytes(startOffset);
+            }
+            return new JsonlLineReader(in, startOffset, startLine);
+        } catch (IOException e) {
+            response.abort();
+            throw new RuntimeException("Error reading from S3: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Same as openJsonLines, but pulls the object as concurrent byte-range GETs. The object
+     * is sized with a HeadObject; the ranged parts are stitched back in order before any
+     * decompression or line splitting, so lines, offsets and counts match a single GET.
+     */
+    public static JsonlLineReader openJsonLines(String bucket, String key, S3Client s3Client,
+                                                long startOffset, int startLine, RangedDownload download) {
+        if (download == null) {
+            return openJsonLines(bucket, key, s3Client, startOffset, startLine);
+        }
+
+        HeadObjectResponse head = s3Client.headObject(HeadObjectRequest.builder()
+                .bucket(bucket)
+                .key(key)
+                .build());
+        if (head.contentLength() == null) {
+            // Without a size there is nothing to split; a plain GET reads the object to its real end
+            return openJsonLines(bucket, key, s3Client, startOffset, startLine);
+        }
+        long size = head.contentLength();
+        Codec codec = Codec.fromKey(key);
+        if (codec == Codec.NONE) {
+            codec = Codec.fromHeaders(head.contentEncoding(), head.contentType());
+        }
+
+        // Compressed offsets count decompressed bytes, so those objects are always fetched whole
+        long rawStart = codec == Codec.NONE ? startOffset : 0L;
+        if (rawStart >= size) {
+            return new JsonlLineReader(InputStream.nullInputStream(), startOffset, startLine);
+        }
+
+        InputStream raw = download.open(s3Client, bucket, key, rawStart, size, head.eTag());
+        try {
+            InputStream in = codec.decode(raw);
+            if (codec != Codec.NONE && startOffset > 0) {
+                in.skipNBytes(startOffset);
+            }
+            return new JsonlLineReader(in, startOffset, startLine);
+        } catch (IOException e) {
+            try {
+                raw.close();
+            } catch (IOException ignored) {
+                // already failing
+            }
+            throw new RuntimeException("Error reading from S3: " + e.getMessage(), e);
+        }
+    }
+
+    private static ResponseInputStream<GetObjectResponse> getObject(String bucket, String key, S3Client s3Client, long startOffset) {
+        GetObjectRequest.Builder request = GetObjectRequest.builder()
+                .bucket(bucket)
+                .key(key);
+        if (startOffset > 0) {
+            request.range("bytes=" + startOffset + "-");
+        }
+        return s3Client.getObject(request.build());
+    }
+
+    /**
+     * Compression of a JSONL object, detected from the key extension first and
+     * the Content-Encoding / Content-Type headers second
+     */
+    public enum Codec {
+        NONE,
+        GZIP,
+        ZSTD;
+
+        private static final int INFLATE_BUFFER_SIZE = 64 * 1024;
+
+        public static Codec fromKey(String key) {
+            String lower = key.toLowerCase(Locale.ROOT);
+            if (lower.endsWith(".gz") || lower.endsWith(".gzip")) {
+                return GZIP;
+            }
+            if (lower.endsWith(".zst") || lower.endsWith(".zstd")) {
+                return ZSTD;
+            }
+            return NONE;
+        }
+
+        public static Codec fromResponse(GetObjectResponse response) {
+            return fromHeaders(response.contentEncoding(), response.contentType());
+        }
+
+        public static Codec fromHeaders(String contentEncoding, String contentType) {
+            Codec codec = fromMediaType(contentEncoding);
+            return codec != NONE ? codec : fromMediaType(contentType);
+        }
+
+        private static Codec fromMediaType(String value) {
+            if (value == null) {
+                return NONE;
+            }
+            String lower = value.toLowerCase(Locale.ROOT);
+            if (lower.contains("gzip")) {
+                return GZIP;
+            }
+            if (lower.contains("zstd")) {
+                return ZSTD;
+            }
+            return NONE;
+        }
+
+        /**
+         * Wrap a raw object stream so it yields decompressed bytes
+         */
+        public InputStream decode(InputStream raw) throws IOException {
+            switch (this) {
+                case GZIP:
+                    return new GZIPInputStream(raw, INFLATE_BUFFER_SIZE);
+                case ZSTD:
+                    return new ZstdInputStream(raw);
+                default:
+                    return raw;
+            }
+        }
+    }
+
+    /**
+     * Forward-only iterator over the lines of a JSONL object.
+     * Lines are pulled lazily, so memory use is bounded by the page size the caller asks for.
+     * The reader splits on '\n' itself (dropping a trailing '\r') so it can report the exact
+     * byte offset of the next unread line, which is what ranged resume needs.
+     */
+    public static class JsonlLineReader implements Iterator<String>, Closeable {
+        private static final int BUFFER_SIZE = 64 * 1024;
+
+        private final InputStream in;
+        private final byte[] buffer = new byte[BUFFER_SIZE];
+        private int bufferPos;
+        private int bufferLimit;
+        private byte[] lineBuffer = new byte[1024];
+
+        private String nextLine;
+        private long nextLineEndOffset;
+        private boolean finished;
+        private int linesRead;
+        private long byteOffset;
+
+        JsonlLineReader(InputStream in, long startOffset, int startLine) {
+            this.in = in;
+            this.byteOffset = startOffset;
+            this.nextLineEndOffset = startOffset;
+            this.linesRead = startLine;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (nextLine != null) {
+                return true;
+            }
+            if (finished) {
+                return false;
+            }
+            try {
+                nextLine = readLine();
+            } catch (IOException e) {
+                throw new RuntimeException("Error reading from S3: " + e.getMessage(), e);
+            }
+            if (nextLine == null) {
+                finished = true;
+                return false;
+            }
+            return true;
+        }
+
+        @Override
+        public String next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            String line = nextLine;
+            nextLine = null;
+            linesRead++;
+            byteOffset = nextLineEndOffset;
+            return line;
+        }
+
+        /**
+         * Read up to pageSize lines; an empty list means the object is exhausted.
+         */
+        public List<String> nextPage(int pageSize) {
+            List<String> lines = new ArrayList<>(pageSize);
+            while (lines.size() < pageSize && hasNext()) {
+                lines.add(next());
+            }
+            return lines;
+        }
+
+        /**
+         * Number of lines handed out so far (0-based index of the next line).
+         */
+        public int getLinesRead() {
+            return linesRead;
+        }
+
+        /**
+         * Byte offset in the object just past the last line handed out.
+         */
+        public long getByteOffset() {
+            return byteOffset;
+        }
+
+        @Override
+        public void close() throws IOException {
+            finished = true;
+            nextLine = null;
+            in.close();
+        }
+
+        private String readLine() throws IOException {
+            int length = 0;
+            long consumed = 0;
+            while (true) {
+                if (bufferPos == bufferLimit) {
+                    bufferLimit = in.read(buffer, 0, buffer.length);
+                    bufferPos = 0;
+                    if (bufferLimit <= 0) {
+                        bufferLimit = 0;
+                        if (consumed == 0) {
+                            return null;
+                        }
+                        // Last line without a trailing newline
+                        nextLineEndOffset += consumed;
+                        return decode(length);
+                    }
                 }
-                
-                // Read pageSize lines
-                while (linesRead < pageSize && (line = reader.readLine()) != null) {
-                    lines.add(line);
-                    linesRead++;
+
+                int start = bufferPos;
+                while (bufferPos < bufferLimit && buffer[bufferPos] != '\n') {
+                    bufferPos++;
+                }
+                int chunk = bufferPos - start;
+                appendToLine(start, chunk, length);
+                length += chunk;
+                consumed += chunk;
+
+                if (bufferPos < bufferLimit) {
+                    // Consume the newline
+                    bufferPos++;
+                    nextLineEndOffset += consumed + 1;
+                    return decode(length);
                 }
             }
-        } catch (Exception e) {
-            throw new RuntimeException("Error reading from S3: " + e.getMessage(), e);
         }
-        
-        return lines;
+
+        private void appendToLine(int start, int count, int length) {
+            if (length + count > lineBuffer.length) {
+                lineBuffer = Arrays.copyOf(lineBuffer, Math.max(lineBuffer.length * 2, length + count));
+            }
+            System.arraycopy(buffer, start, lineBuffer, length, count);
+        }
+
+        private String decode(int length) {
+            if (length > 0 && lineBuffer[length - 1] == '\r') {
+                length--;
+            }
+            return new String(lineBuffer, 0, length, StandardCharsets.UTF_8);
+        }
     }
     
     public static List<String> listS3Keys(String bucket, S3Client s3Client) {
@@ -0,0 +1,58 @@
+package org.soumitra.reviewsystem;
+
+import io.micrometer.core.instrument.Timer;
+
+import java.util.function.Function;
+
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
+
+/**
+ * Times the three S3 requests ingestion makes. Only those are delegated; anything else
+ * falls through to S3Client's defaults, which throw UnsupportedOperationException.
+ */
+class MeteredS3Client implements S3Client {
+
+    private final S3Client delegate;
+    private final Timer list;
+    private final Timer get;
+    private final Timer head;
+
+    MeteredS3Client(S3Client delegate, Function<String, Timer> timers) {
+        this.delegate = delegate;
+        this.list = timers.apply("list");
+        this.get = timers.apply("get");
+        this.head = timers.apply("head");
+    }
+
+    @Override
+    public ListObjectsV2Response listObjectsV2(ListObjectsV2Request request) {
+        return list.record(() -> delegate.listObjectsV2(request));
+    }
+
+    @Override
+    public ResponseInputStream<GetObjectResponse> getObject(GetObjectRequest request) {
+        return get.record(() -> delegate.getObject(request));
+    }
+
+    @Override
+    public HeadObjectResponse headObject(HeadObjectRequest request) {
+        return head.record(() -> delegate.headObject(request));
+    }
+
+    @Override
+    public String serviceName() {
+        return delegate.serviceName();
+    }
+
+    @Override
+    public void close() {
+        // The delegate belongs to whoever created it
+    }
+}
@@ -0,0 +1,168 @@
+package org.soumitra.reviewsystem;
+
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Settings for fetching a large object as concurrent byte-range GETs.
+ * Parts are handed back strictly in order, so the stream is byte-for-byte the same as a
+ * single GetObject and the line reader, offsets and checkpoints work unchanged. Every part
+ * is pinned to the ETag the object was sized with, so an object overwritten mid-download
+ * fails instead of being stitched together from two versions.
+ */
+public class RangedDownload {
+
+    private final long thresholdBytes;
+    private final long partSizeBytes;
+    private final int parallelism;
+
+    public RangedDownload(long thresholdBytes, long partSizeBytes, int parallelism) {
+        this.thresholdBytes = thresholdBytes;
+        this.partSizeBytes = partSizeBytes > 0 ? partSizeBytes : 8L * 1024 * 1024;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Whether an object of this size is worth splitting; a parallelism of 1 or less disables it
+     */
+    public boolean appliesTo(Long objectSize) {
+        return parallelism > 1 && objectSize != null && objectSize >= thresholdBytes;
+    }
+
+    public long getThresholdBytes() { return thresholdBytes; }
+    public long getPartSizeBytes() { return partSizeBytes; }
+    public int getParallelism() { return parallelism; }
+
+    /**
+     * Open bytes [start, end) of the object. At most parallelism parts are in flight
+     * or buffered at once, so memory stays around (parallelism + 1) * partSize.
+     * With an eTag every part is a conditional GET (If-Match) on that version.
+     */
+    public InputStream open(S3Client s3Client, String bucket, String key, long start, long end, String eTag) {
+        return new PartStream(s3Client, bucket, key, start, end, eTag);
+    }
+
+    private class PartStream extends InputStream {
+        private final S3Client s3Client;
+        private final String bucket;
+        private final String key;
+        private final long end;
+        private final String eTag;
+        private final ExecutorService fetchers;
+        private final Deque<Future<byte[]>> inFlight = new ArrayDeque<>();
+        private long nextPartStart;
+        private byte[] current = new byte[0];
+        private int pos;
+
+        PartStream(S3Client s3Client, String bucket, String key, long start, long end, String eTag) {
+            this.s3Client = s3Client;
+            this.bucket = bucket;
+            this.key = key;
+            this.end = end;
+            this.eTag = eTag;
+            this.nextPartStart = start;
+
+            AtomicInteger threadCount = new AtomicInteger();
+            this.fetchers = Executors.newFixedThreadPool(parallelism, runnable -> {
+                Thread thread = new Thread(runnable, "ranged-get-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+            schedule();
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (pos == current.length && !advance()) {
+                return -1;
+            }
+            return current[pos++] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (pos == current.length && !advance()) {
+                return -1;
+            }
+            int count = Math.min(len, current.length - pos);
+            System.arraycopy(current, pos, b, off, count);
+            pos += count;
+            return count;
+        }
+
+        @Override
+        public void close() {
+            for (Future<byte[]> part : inFlight) {
+                part.cancel(true);
+            }
+            inFlight.clear();
+            fetchers.shutdownNow();
+        }
+
+        private void schedule() {
+            while (inFlight.size() < parallelism && nextPartStart < end) {
+                long first = nextPartStart;
+                long last = Math.min(first + partSizeBytes, end) - 1;
+                inFlight.add(fetchers.submit(() -> fetch(first, last)));
+                nextPartStart = last + 1;
+            }
+        }
+
+        private boolean advance() throws IOException {
+            Future<byte[]> next = inFlight.poll();
+            if (next == null) {
+                return false;
+            }
+            try {
+                current = next.get();
+            } catch (ExecutionException e) {
+                throw new IOException("Ranged GET failed for " + key + ": " + e.getCause().getMessage(), e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while downloading " + key, e);
+            }
+            pos = 0;
+            schedule();
+            return true;
+        }
+
+        private byte[] fetch(long first, long last) throws IOException {
+            GetObjectRequest request = GetObjectRequest.builder()
+                    .bucket(bucket)
+                    .key(key)
+                    .range("bytes=" + first + "-" + last)
+                    .ifMatch(eTag)
+                    .build();
+            try (ResponseInputStream<GetObjectResponse> response = s3Client.getObject(request)) {
+                byte[] bytes = response.readAllBytes();
+                // A short part means the object changed underneath us; stitching it would corrupt lines
+                if (bytes.length != last - first + 1) {
+                    throw new IOException("Expected " + (last - first + 1) + " bytes at offset " + first
+                        + " of " + key + " but got " + bytes.length);
+                }
+                return bytes;
+            } catch (S3Exception e) {
+                if (e.statusCode() == 412) {
+                    throw new IOException(key + " was overwritten during the download (no longer ETag " + eTag + ")", e);
+                }
+                throw e;
+            }
+        }
+    }
+}
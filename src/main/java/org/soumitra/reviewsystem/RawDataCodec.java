@@ -0,0 +1,181 @@
+package org.soumitra.reviewsystem;
+
+import com.github.luben.zstd.Zstd;
+import com.github.luben.zstd.ZstdDictCompress;
+import com.github.luben.zstd.ZstdDictDecompress;
+import com.github.luben.zstd.ZstdDictTrainer;
+import com.github.luben.zstd.ZstdException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.soumitra.reviewsystem.dao.RawDataDictionaryRepository;
+import org.soumitra.reviewsystem.model.RawDataDictionary;
+import org.soumitra.reviewsystem.model.Record;
+
+/**
+ * Compact storage format for staged JSONL lines: each line is its own zstd frame,
+ * compressed against a dictionary trained on review JSON. Lines are a few KB of the
+ * same keys over and over, which plain per-line compression barely touches; with the
+ * dictionary most of that shared structure costs nothing.
+ *
+ * Records carry the compressed bytes and are only decompressed when something asks for
+ * the text (see text(Record)). New records use the newest dictionary in
+ * raw_data_dictionaries, or no dictionary until one has been trained; a dictionary trained
+ * by another process is picked up within a few minutes. Older dictionaries stay in the
+ * table so the records compressed with them can still be read.
+ */
+public class RawDataCodec {
+
+    private static final long DICTIONARY_RECHECK_NANOS = TimeUnit.MINUTES.toNanos(5);
+
+    private final boolean enabled;
+    private final int level;
+    private final RawDataDictionaryRepository dictionaryRepo;
+    private final Map<Integer, ZstdDictDecompress> decompressors = new ConcurrentHashMap<>();
+    private volatile ActiveDictionary active;
+
+    public RawDataCodec(boolean enabled, int level, RawDataDictionaryRepository dictionaryRepo) {
+        this.enabled = enabled;
+        this.level = level;
+        this.dictionaryRepo = dictionaryRepo;
+    }
+
+    /**
+     * A codec that stores lines as text; it can still read records stored compressed without a dictionary
+     */
+    public static RawDataCodec uncompressed() {
+        return new RawDataCodec(false, 0, null);
+    }
+
+    /**
+     * Whether new records are written compressed
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public Compressed compress(String line) {
+        byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+        ActiveDictionary dictionary = activeDictionary();
+        if (dictionary.compressor == null) {
+            return new Compressed(Zstd.compress(bytes, level), null);
+        }
+        return new Compressed(Zstd.compress(bytes, dictionary.compressor), dictionary.id);
+    }
+
+    public String decompress(byte[] data, Integer dictionaryId) {
+        long size = Zstd.getFrameContentSize(data);
+        if (size < 0 || size > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Compressed raw data has no usable content size: " + size);
+        }
+        byte[] bytes = dictionaryId == null
+            ? Zstd.decompress(data, (int) size)
+            : Zstd.decompress(data, decompressor(dictionaryId), (int) size);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * The JSONL line of a record, decompressing it only if it was stored compressed
+     */
+    public String text(Record record) {
+        if (record.getRawData() != null || record.getRawDataZstd() == null) {
+            return record.getRawData();
+        }
+        return decompress(record.getRawDataZstd(), record.getRawDataDictId());
+    }
+
+    /**
+     * Train a dictionary on sample lines, store it and compress new records with it from now on
+     *
+     * @param dictionarySize target dictionary size in bytes; about 100 KB suits review JSON
+     */
+    public RawDataDictionary train(List<String> samples, int dictionarySize) {
+        if (dictionaryRepo == null) {
+            throw new IllegalStateException("No dictionary store configured");
+        }
+        int sampleBytes = 0;
+        for (String sample : samples) {
+            sampleBytes += sample.getBytes(StandardCharsets.UTF_8).length;
+        }
+        ZstdDictTrainer trainer = new ZstdDictTrainer(Math.max(sampleBytes, 1), dictionarySize);
+        for (String sample : samples) {
+            trainer.addSample(sample.getBytes(StandardCharsets.UTF_8));
+        }
+
+        byte[] dictionary;
+        try {
+            dictionary = trainer.trainSamples();
+        } catch (ZstdException e) {
+            throw new IllegalStateException("Could not train a dictionary on " + samples.size()
+                + " samples, try more of them: " + e.getMessage(), e);
+        }
+
+        RawDataDictionary saved = dictionaryRepo.save(RawDataDictionary.builder()
+            .dictionary(dictionary)
+            .sampleCount(samples.size())
+            .createdAt(LocalDateTime.now())
+            .build());
+        active = new ActiveDictionary(saved.getId(), new ZstdDictCompress(dictionary, level), System.nanoTime());
+        decompressors.put(saved.getId(), new ZstdDictDecompress(dictionary));
+        return saved;
+    }
+
+    private ActiveDictionary activeDictionary() {
+        ActiveDictionary current = active;
+        long now = System.nanoTime();
+        if (current != null && (dictionaryRepo == null || now - current.loadedAt < DICTIONARY_RECHECK_NANOS)) {
+            return current;
+        }
+        // Racing calls may both load it; either result is the same dictionary
+        ActiveDictionary loaded = dictionaryRepo == null ? null : dictionaryRepo.findTopByOrderByIdDesc()
+            .map(d -> current != null && d.getId().equals(current.id)
+                ? new ActiveDictionary(current.id, current.compressor, now)
+                : new ActiveDictionary(d.getId(), new ZstdDictCompress(d.getDictionary(), level), now))
+            .orElse(null);
+        active = loaded != null ? loaded : new ActiveDictionary(null, null, now);
+        return active;
+    }
+
+    private ZstdDictDecompress decompressor(Integer dictionaryId) {
+        return decompressors.computeIfAbsent(dictionaryId, id -> {
+            RawDataDictionary dictionary = dictionaryRepo == null ? null : dictionaryRepo.findById(id).orElse(null);
+            if (dictionary == null) {
+                throw new IllegalStateException("Raw data dictionary " + id + " not found");
+            }
+            return new ZstdDictDecompress(dictionary.getDictionary());
+        });
+    }
+
+    /**
+     * A compressed line and the dictionary it needs, null for none
+     */
+    public static class Compressed {
+        private final byte[] data;
+        private final Integer dictionaryId;
+
+        Compressed(byte[] data, Integer dictionaryId) {
+            this.data = data;
+            this.dictionaryId = dictionaryId;
+        }
+
+        public byte[] getData() { return data; }
+        public Integer getDictionaryId() { return dictionaryId; }
+    }
+
+    private static class ActiveDictionary {
+        private final Integer id;
+        private final ZstdDictCompress compressor;
+        private final long loadedAt;
+
+        ActiveDictionary(Integer id, ZstdDictCompress compressor, long loadedAt) {
+            this.id = id;
+            this.compressor = compressor;
+            this.loadedAt = loadedAt;
+        }
+    }
+}
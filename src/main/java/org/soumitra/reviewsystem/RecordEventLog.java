@@ -0,0 +1,70 @@
+package org.soumitra.reviewsystem;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Per-record events of one pipeline stage, logged at DEBUG on the logger
+ * org.soumitra.reviewsystem.records.&lt;stage&gt; and capped at a number of events per second.
+ * Events over the cap are counted and reported with the next one that gets through.
+ *
+ * With the stage logger at INFO (the default) an event costs one level check. Events name
+ * records by id, line or review id; the record content itself is never logged.
+ */
+public class RecordEventLog {
+
+    public static final String LOGGER_PREFIX = "org.soumitra.reviewsystem.records.";
+
+    public static final int DEFAULT_EVENTS_PER_SECOND = 20;
+
+    private final Logger logger;
+    private final int eventsPerSecond;
+    private final LongSupplier nanoClock;
+    private final AtomicLong window = new AtomicLong(Long.MIN_VALUE);
+    private final AtomicInteger loggedInWindow = new AtomicInteger();
+    private final AtomicLong suppressed = new AtomicLong();
+
+    RecordEventLog(Logger logger, int eventsPerSecond, LongSupplier nanoClock) {
+        this.logger = logger;
+        this.eventsPerSecond = eventsPerSecond;
+        this.nanoClock = nanoClock;
+    }
+
+    public static RecordEventLog forStage(String stage) {
+        return new RecordEventLog(LoggerFactory.getLogger(LOGGER_PREFIX + stage), DEFAULT_EVENTS_PER_SECOND, System::nanoTime);
+    }
+
+    public void event(String format, Object arg) {
+        if (logger.isDebugEnabled() && tryAcquire()) {
+            logger.debug(format, arg);
+        }
+    }
+
+    public void event(String format, Object arg1, Object arg2) {
+        if (logger.isDebugEnabled() && tryAcquire()) {
+            logger.debug(format, arg1, arg2);
+        }
+    }
+
+    private boolean tryAcquire() {
+        long second = TimeUnit.NANOSECONDS.toSeconds(nanoClock.getAsLong());
+        long current = window.get();
+        if (second != current && window.compareAndSet(current, second)) {
+            loggedInWindow.set(0);
+        }
+        if (loggedInWindow.incrementAndGet() > eventsPerSecond) {
+            suppressed.incrementAndGet();
+            return false;
+        }
+        long dropped = suppressed.getAndSet(0);
+        if (dropped > 0) {
+            logger.debug("{} record events suppressed", dropped);
+        }
+        return true;
+    }
+}
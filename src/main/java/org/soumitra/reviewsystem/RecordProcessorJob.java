@@ -1,14 +1,24 @@
 package org.soumitra.reviewsystem;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.OffsetDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 // Repository interfaces
 import org.soumitra.reviewsystem.dao.JobRunRepository;
 import org.soumitra.reviewsystem.dao.RecordRepository;
 import org.soumitra.reviewsystem.dao.RecordErrorRepository;
+import org.soumitra.reviewsystem.dao.RecordRepositoryCustom.RecordOutcome;
 import org.soumitra.reviewsystem.dao.ReviewRepository;
 import org.soumitra.reviewsystem.dao.HotelRepository;
 import org.soumitra.reviewsystem.dao.ProviderRepository;
@@ -20,32 +30,29 @@ import org.soumitra.reviewsystem.dao.RatingCategoryRepository;
 
 // Model classes
 import org.soumitra.reviewsystem.model.Record;
-import org.soumitra.reviewsystem.model.Review;
-import org.soumitra.reviewsystem.model.Hotel;
-import org.soumitra.reviewsystem.model.Provider;
-import org.soumitra.reviewsystem.model.Reviewer;
-import org.soumitra.reviewsystem.model.StayInfo;
-import org.soumitra.reviewsystem.model.ProviderHotelSummary;
-import org.soumitra.reviewsystem.model.ProviderHotelGrade;
-import org.soumitra.reviewsystem.model.RatingCategory;
 import org.soumitra.reviewsystem.util.HotelReviewJsonParser;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 public class RecordProcessorJob {
 
+    private static final Logger log = LoggerFactory.getLogger(RecordProcessorJob.class);
+
+    private static final RecordEventLog events = RecordEventLog.forStage("process");
+
+    // A claimed record still 'processing' after this long was left behind by a worker that died
+    private static final Duration CLAIM_LEASE = Duration.ofMinutes(10);
+
     private final JobRunRepository jobRepo;
     private final RecordRepository recordRepo;
-    private final RecordErrorRepository recordErrorRepo;
-    private final ReviewRepository reviewRepo;
-    private final HotelRepository hotelRepo;
-    private final ProviderRepository providerRepo;
-    private final ReviewerRepository reviewerRepo;
-    private final StayInfoRepository stayInfoRepo;
-    private final ProviderHotelSummaryRepository providerHotelSummaryRepo;
-    private final ProviderHotelGradeRepository providerHotelGradeRepo;
-    private final RatingCategoryRepository ratingCategoryRepo;
 
     private final int pageSize;
-    private final HotelReviewJsonParser parser;
+    private final int workers;
+    private final ReviewNormalizer normalizer;
+    private RawDataCodec rawDataCodec = RawDataCodec.uncompressed();
+    private IngestMetrics metrics = IngestMetrics.disabled();
+    private JobProgressRegistry progressRegistry;
 
     public RecordProcessorJob (JobRunRepository jobRepo,  
         RecordRepository recordRepo, RecordErrorRepository recordErrorRepo, 
@@ -54,324 +61,262 @@ public class RecordProcessorJob {
         StayInfoRepository stayInfoRepo, ProviderHotelSummaryRepository providerHotelSummaryRepo,
         ProviderHotelGradeRepository providerHotelGradeRepo, RatingCategoryRepository ratingCategoryRepo,
         HotelReviewJsonParser parser, int pageSize) {
+        this(jobRepo, recordRepo, recordErrorRepo, reviewRepo, hotelRepo, providerRepo, reviewerRepo,
+            stayInfoRepo, providerHotelSummaryRepo, providerHotelGradeRepo, ratingCategoryRepo, parser, pageSize, 1);
+    }
+
+    /**
+     * @param workers number of threads claiming and processing pages of records concurrently
+     */
+    public RecordProcessorJob (JobRunRepository jobRepo,
+        RecordRepository recordRepo, RecordErrorRepository recordErrorRepo,
+        ReviewRepository reviewRepo, HotelRepository hotelRepo,
+        ProviderRepository providerRepo, ReviewerRepository reviewerRepo,
+        StayInfoRepository stayInfoRepo, ProviderHotelSummaryRepository providerHotelSummaryRepo,
+        ProviderHotelGradeRepository providerHotelGradeRepo, RatingCategoryRepository ratingCategoryRepo,
+        HotelReviewJsonParser parser, int pageSize, int workers) {
         this.jobRepo = jobRepo;
         this.recordRepo = recordRepo;
-        this.recordErrorRepo = recordErrorRepo;
-        this.reviewRepo = reviewRepo;
-        this.hotelRepo = hotelRepo;
-        this.providerRepo = providerRepo;
-        this.reviewerRepo = reviewerRepo;
-        this.stayInfoRepo = stayInfoRepo;
-        this.providerHotelSummaryRepo = providerHotelSummaryRepo;
-        this.providerHotelGradeRepo = providerHotelGradeRepo;
-        this.ratingCategoryRepo = ratingCategoryRepo;
-        this.parser = parser;
+        this.normalizer = new ReviewNormalizer(reviewRepo, hotelRepo, providerRepo, reviewerRepo,
+            stayInfoRepo, providerHotelSummaryRepo, providerHotelGradeRepo, ratingCategoryRepo, parser);
         this.pageSize = pageSize > 0 ? pageSize : 10;
+        this.workers = workers > 0 ? workers : 1;
     }
 
-    public void runJob() {
-        // Create a new job run
-        Integer jobId = jobRepo.insertJob(LocalDateTime.now(), "MANUAL", "running", "Processing review records");
-
-        int totalRecordsProcessed = 0;
-
-        //Read new records from the record table in the order of their creation, using pageSize
-        List<Record> records = recordRepo.findNewRecords(pageSize);
-
-        while(records.size() > 0) {
-            for (Record record : records) {
-                try {
-                    // Update status to processing and set startedAt
-                    recordRepo.updateRecordStatusAndStartedAt(record.getId(), "processing");
-                    processRecord(record.getRawData());
-                    // Update status to success and set finishedAt
-                    recordRepo.updateRecordStatusAndFinishedAt(record.getId(), "success");
-                    System.out.println("Successfully processed record ID: " + record.getId());
-                } catch (Exception recEx) {
-                    String errorMessage = recEx.getMessage();
-                    String traceback = getStackTrace(recEx);
-                    
-                    System.err.println("Failed to process record ID: " + record.getId());
-                    System.err.println("Error: " + errorMessage);
-                    
-                    // Update status to failed and set finishedAt with error flag
-                    recordRepo.updateRecordStatusWithErrorAndFinishedAt(record.getId(), "failed");
-                    recordErrorRepo.logRecordError(record, errorMessage, traceback);
-                } finally {
-                    totalRecordsProcessed++;
-                }
-            }
-            records = recordRepo.findNewRecords(pageSize);
-        }
-
-        System.out.println("Total records processed: " + totalRecordsProcessed);
-
-        // Update job status
-        jobRepo.updateJobStatus(jobId, LocalDateTime.now(), "success");
+    /**
+     * Resolve dimension rows through a shared cache; it is warmed when the job starts
+     */
+    public void setDimensionCache(DimensionCache dimensionCache) {
+        normalizer.setDimensionCache(dimensionCache);
     }
 
-
     /**
-     * Parse JSON review data and store in database
-     * Implements upsert logic for reviews, hotels, providers, and reviewers
+     * Remember stored review ids across pages and jobs; see ReviewIdIndex
      */
-    private void processRecord(String jsonLine) throws Exception {
-        HotelReviewJsonParser.HotelReviewParseResult hotelReview =
-            this.parser.parseHotelReview(jsonLine);
-        
-        System.out.println("Processing record: " + jsonLine);
-            
-        // Extract and upsert provider first (hotels depend on providers)
-        Provider provider = upsertProviderFromDto(hotelReview.getProvider());
-            
-        // Extract and upsert hotel (now with provider relationship)
-        Hotel hotel = upsertHotelFromDto(hotelReview.getHotel(), provider);
-            
-        // Extract and upsert reviewer
-        Reviewer reviewer = upsertReviewerFromDto(hotelReview.getReviewer(), provider);
-            
-        // Extract and upsert review
-        Review review = upsertReviewFromDto(hotelReview.getReview(), hotel, provider, reviewer);
-
-        upsertStayInfoFromDto(hotelReview.getStayInfo(), hotel, provider, reviewer);
-        
-        // Extract and upsert provider hotel summaries and grades
-        upsertProviderHotelSummariesFromDto(hotelReview.getProviderHotelSummaries(), hotel, provider, review);
-        upsertProviderHotelGradesFromDto(hotelReview.getProviderHotelGrades(), hotel, provider, review);
+    public void setReviewIdIndex(ReviewIdIndex reviewIdIndex) {
+        normalizer.setReviewIdIndex(reviewIdIndex);
     }
-    
+
     /**
-     * Upsert provider from DTO
+     * Read records stored compressed; their lines are decompressed just before normalizing
      */
-    private Provider upsertProviderFromDto(org.soumitra.reviewsystem.dto.ProviderDto providerDto) {
-        return providerRepo.findByExternalId(providerDto.getExternalId())
-            .orElseGet(() -> {
-                Provider newProvider = Provider.builder()
-                    .externalId(providerDto.getExternalId())
-                    .providerName(providerDto.getProviderName())
-                    .build();
-                System.out.println("Creating new provider: " + newProvider.getProviderName());
-                return providerRepo.save(newProvider);
-            });
+    public void setRawDataCodec(RawDataCodec rawDataCodec) {
+        this.rawDataCodec = rawDataCodec;
     }
 
     /**
-     * Upsert hotel from DTO
+     * Where the job's parse and upsert timings and record counts go
      */
-    private Hotel upsertHotelFromDto(org.soumitra.reviewsystem.dto.HotelDto hotelDto, Provider provider) {
-        return hotelRepo.findByExternalIdAndProvider(hotelDto.getExternalId(), provider)
-            .orElseGet(() -> {
-                Hotel newHotel = Hotel.builder()
-                    .externalId(hotelDto.getExternalId())
-                    .provider(provider)
-                    .hotelName(hotelDto.getHotelName())
-                    .build();
-                System.out.println("Creating new hotel: " + newHotel);
-                return hotelRepo.save(newHotel);
-            });
+    public void setMetrics(IngestMetrics metrics) {
+        this.metrics = metrics != null ? metrics : IngestMetrics.disabled();
     }
-    
+
     /**
-     * Upsert reviewer from DTO
+     * Publish the job's live record counts there; null keeps them to the job
      */
-    private Reviewer upsertReviewerFromDto(org.soumitra.reviewsystem.dto.ReviewerDto reviewerDto, Provider provider) {
-        return reviewerRepo.findByDisplayNameAndCountryNameAndProvider(reviewerDto.getDisplayName(), reviewerDto.getCountryName(), provider)
-            .orElseGet(() -> {
-                Reviewer newReviewer = Reviewer.builder()
-                    .displayName(reviewerDto.getDisplayName())
-                    .countryName(reviewerDto.getCountryName())
-                    .countryId(reviewerDto.getCountryId())
-                    .flagCode(reviewerDto.getFlagCode())
-                    .isExpert(reviewerDto.getIsExpert())
-                    .reviewsWritten(reviewerDto.getReviewsWritten())
-                    .provider(provider) // Add provider relationship
-                    .build();
-                System.out.println("Creating new reviewer: " + newReviewer.getDisplayName());
-                return reviewerRepo.save(newReviewer);
-            });
+    public void setProgressRegistry(JobProgressRegistry progressRegistry) {
+        this.progressRegistry = progressRegistry;
+    }
+
+    public void runJob() {
+        // Create a new job run
+        runJob(jobRepo.insertJob(LocalDateTime.now(), "MANUAL", "running", "Processing review records"));
     }
 
     /**
-     * Upsert review from DTO
+     * Run under a job run that already exists and is running, such as one started by JobQueue
      */
-    private Review upsertReviewFromDto(org.soumitra.reviewsystem.dto.ReviewDto reviewDto, Hotel hotel, Provider provider, Reviewer reviewer) {
-        if (reviewRepo.existsByReviewExternalId(reviewDto.getReviewExternalId())) {
-            System.out.println("Review already exists, skipping: " + reviewDto.getReviewExternalId());
-            return reviewRepo.findByReviewExternalId(reviewDto.getReviewExternalId()).orElse(null);
+    public void runJob(Integer jobId) {
+        normalizer.setMetrics(metrics.forMode(IngestMetrics.MODE_PROCESS));
+        normalizer.warmUpDimensionCache();
+
+        AtomicInteger totalRecordsProcessed = new AtomicInteger();
+        JobProgress progress = progressRegistry != null
+            ? progressRegistry.start(jobId, "RECORD_PROCESSOR") : new JobProgress(jobId, "RECORD_PROCESSOR");
+
+        try {
+            // Counted once; records ingested while the job runs only show up as done
+            progress.setRecordsTotal(recordRepo.countNewRecords());
+            if (workers == 1) {
+                drainNewRecords(totalRecordsProcessed, progress);
+            } else {
+                runWorkers(totalRecordsProcessed, progress);
+            }
+        } catch (RuntimeException e) {
+            jobRepo.updateJobStatus(jobId, LocalDateTime.now(), "failed");
+            progress.finish(false);
+            throw e;
         }
-        
-        Review newReview = Review.builder()
-            .reviewExternalId(reviewDto.getReviewExternalId())
-            .hotel(hotel)
-            .provider(provider)
-            .reviewer(reviewer)
-            .rating(reviewDto.getRating())
-            .ratingText(reviewDto.getRatingText())
-            .ratingFormatted(reviewDto.getRatingFormatted())
-            .reviewTitle(reviewDto.getReviewTitle())
-            .reviewComment(reviewDto.getReviewComment())
-            .reviewVotePositive(reviewDto.getReviewVotePositive())
-            .reviewVoteNegative(reviewDto.getReviewVoteNegative())
-            .reviewDate(reviewDto.getReviewDate())
-            .translateSource(reviewDto.getTranslateSource())
-            .translateTarget(reviewDto.getTranslateTarget())
-            .isResponseShown(reviewDto.getIsResponseShown())
-            .responderName(reviewDto.getResponderName())
-            .responseText(reviewDto.getResponseText())
-            .responseDateText(reviewDto.getResponseDateText())
-            .responseDateFmt(reviewDto.getResponseDateFmt())
-            .checkInMonthYr(reviewDto.getCheckInMonthYr())
-            .build();
-            
-        System.out.println("Creating new review: " + reviewDto.getReviewExternalId());
-        return reviewRepo.save(newReview);
+
+        log.info("Job {}: {} records processed", jobId, totalRecordsProcessed.get());
+        if (normalizer.getDimensionCache() != null) {
+            log.info("Dimension cache: {}", normalizer.getDimensionCache().describeStats());
         }
-        
+
+        // Update job status
+        jobRepo.updateJobStatus(jobId, LocalDateTime.now(), "success");
+        progress.finish(true);
+    }
+
     /**
-     * Upsert stay info from DTO
+     * Claim pages of new records and process them until none are left. Claiming moves the page
+     * to 'processing' in the same statement, so concurrent workers (or other processor instances)
+     * never pick up the same record.
      */
-    private void upsertStayInfoFromDto(org.soumitra.reviewsystem.dto.StayInfoDto stayInfoDto, Hotel hotel, Provider provider, Reviewer reviewer) {
-        if (stayInfoDto == null) {
-            System.out.println("No stay info available, skipping");
-            return;
-        }
-        
-        // Find the review that was just created
-        Review review = reviewRepo.findByReviewExternalId(stayInfoDto.getReviewId())
-            .orElse(null);
-            
-        if (review == null) {
-            System.out.println("Review not found for stay info, skipping: " + stayInfoDto.getReviewId());
-            return;
-        }
-        
-        // Check if stay info already exists for this review
-        if (stayInfoRepo.existsByReviewId(review.getReviewId())) {
-            System.out.println("Stay info already exists for review, skipping: " + review.getReviewId());
-            return;
+    private void drainNewRecords(AtomicInteger totalRecordsProcessed, JobProgress progress) {
+        int lastId = 0;
+        List<Record> records = claimNextPage(lastId);
+
+        while(records.size() > 0) {
+            try {
+                processPage(records, totalRecordsProcessed, progress);
+            } catch (RuntimeException e) {
+                releasePage(records);
+                throw e;
+            }
+            lastId = records.get(records.size() - 1).getId();
+            records = claimNextPage(lastId);
         }
-        
-        StayInfo newStayInfo = StayInfo.builder()
-            .reviewId(review.getReviewId())
-            .roomTypeId(stayInfoDto.getRoomTypeId())
-            .roomTypeName(stayInfoDto.getRoomTypeName())
-            .reviewGroupId(stayInfoDto.getReviewGroupId())
-            .reviewGroupName(stayInfoDto.getReviewGroupName())
-            .lengthOfStay(stayInfoDto.getLengthOfStay())
-            .build();
-            
-        System.out.println("Creating new stay info for review: " + review.getReviewId());
-        stayInfoRepo.save(newStayInfo);
     }
-    
+
     /**
-     * Upsert provider hotel summaries from DTO
+     * Normalize one claimed page and finish its records in one go
      */
-    private void upsertProviderHotelSummariesFromDto(List<org.soumitra.reviewsystem.dto.ProviderHotelSummaryDto> summaries, Hotel hotel, Provider provider, Review review) {
-        if (summaries == null || summaries.isEmpty()) {
-            System.out.println("No provider hotel summaries available, skipping");
-            return;
-        }
-        
-        for (org.soumitra.reviewsystem.dto.ProviderHotelSummaryDto summaryDto : summaries) {
-            // Find the provider for this summary
-            Provider summaryProvider = providerRepo.findByExternalId(summaryDto.getProviderId())
-                .orElse(provider); // Fallback to the main provider if not found
-            
-            // Check if summary already exists
-            if (providerHotelSummaryRepo.existsByHotelHotelIdAndProviderProviderIdAndReviewReviewId(
-                hotel.getHotelId(), summaryProvider.getProviderId(), review.getReviewId())) {
-                System.out.println("Provider hotel summary already exists for hotel: " + hotel.getHotelId() + 
-                    ", provider: " + summaryProvider.getProviderId() + ", review: " + review.getReviewId());
-                continue;
+    private void processPage(List<Record> records, AtomicInteger totalRecordsProcessed, JobProgress progress) {
+        List<String> lines = new ArrayList<>(records.size());
+        Map<Integer, Exception> failures = new HashMap<>();
+        for (Record record : records) {
+            try {
+                lines.add(rawDataCodec.text(record));
+            } catch (RuntimeException e) {
+                // Keeps the line indexes aligned; the null line fails to parse and the decode error is kept
+                failures.put(lines.size(), e);
+                lines.add(null);
             }
-            
-            ProviderHotelSummary newSummary = ProviderHotelSummary.builder()
-                .hotel(hotel)
-                .provider(summaryProvider)
-                .review(review)
-                .overallScore(summaryDto.getOverallScore())
-                .reviewCount(summaryDto.getReviewCount())
-                .build();
+        }
+        // The whole page goes through at once so its dimension rows are upserted together
+        for (ReviewNormalizer.LineFailure failure : normalizer.normalizeAll(lines)) {
+            failures.putIfAbsent(failure.getIndex(), failure.getError());
+        }
+
+        List<RecordOutcome> outcomes = new ArrayList<>(records.size());
+        for (int i = 0; i < records.size(); i++) {
+            Record record = records.get(i);
+            Exception recEx = failures.get(i);
+            if (recEx == null) {
+                outcomes.add(RecordOutcome.success(record, LocalDateTime.now()));
+                events.event("Processed record {}", record.getId());
+            } else {
+                String errorMessage = recEx.getMessage();
+                String traceback = getStackTrace(recEx);
                 
-            System.out.println("Creating new provider hotel summary for hotel: " + hotel.getHotelId() + 
-                ", provider: " + summaryProvider.getProviderId() + ", review: " + review.getReviewId());
-            providerHotelSummaryRepo.save(newSummary);
+                events.event("Failed to process record {}: {}", record.getId(), errorMessage);
+                
+                outcomes.add(RecordOutcome.failure(record, LocalDateTime.now(), errorMessage, traceback));
+            }
+            totalRecordsProcessed.incrementAndGet();
+        }
+        // One round trip and one commit for the whole page's statuses and errors
+        List<Integer> lost = recordRepo.finishRecords(outcomes);
+        int failed = 0;
+        for (RecordOutcome outcome : outcomes) {
+            if (outcome.isFailed() && !lost.contains(outcome.getRecordId())) {
+                failed++;
+            }
+        }
+        int processed = records.size() - lost.size() - failed;
+        if (!lost.isEmpty()) {
+            // This page outlived CLAIM_LEASE and another worker took these over; their outcome is theirs to record
+            totalRecordsProcessed.addAndGet(-lost.size());
+            log.warn("Lost the claim on {} records (ids {}) to another worker; their outcome was not recorded",
+                lost.size(), lost);
         }
+        progress.recordsDone(processed);
+        progress.recordsFailed(failed);
+        log.info("Records {} to {}: {} processed, {} failed", records.get(0).getId(),
+            records.get(records.size() - 1).getId(), processed, failed);
     }
-    
+
     /**
-     * Upsert provider hotel grades from DTO
+     * Claim the next page after the last claimed id. When the cursor runs dry, look once from
+     * the start: a record committed late by a concurrent ingest can have a lower id than ones
+     * already claimed, and only an empty scan from the start means the backlog is drained.
+     * Then take over records whose claim outlived CLAIM_LEASE, left by a worker that died.
      */
-    private void upsertProviderHotelGradesFromDto(List<org.soumitra.reviewsystem.dto.ProviderHotelGradeDto> grades, Hotel hotel, Provider provider, Review review) {
-        if (grades == null || grades.isEmpty()) {
-            System.out.println("No provider hotel grades available, skipping");
-            return;
+    private List<Record> claimNextPage(int lastId) {
+        List<Record> records = lastId == 0 ? List.of() : recordRepo.claimNewRecordsAfter(lastId, pageSize);
+        if (records.isEmpty()) {
+            records = recordRepo.claimNewRecords(pageSize);
         }
-        
-        for (org.soumitra.reviewsystem.dto.ProviderHotelGradeDto gradeDto : grades) {
-            // Find the provider for this grade
-            Provider gradeProvider = providerRepo.findByExternalId(gradeDto.getProviderId())
-                .orElse(provider); // Fallback to the main provider if not found
-            
-            // Upsert the rating category
-            RatingCategory category = upsertRatingCategoryFromName(gradeDto.getCategoryName());
-            
-            if (category == null) {
-                System.out.println("Could not create rating category for: " + gradeDto.getCategoryName());
-                continue;
-            }
-            
-            // Check if grade already exists
-            if (providerHotelGradeRepo.existsByHotelHotelIdAndProviderProviderIdAndCategoryCategoryIdAndReviewReviewId(
-                hotel.getHotelId(), gradeProvider.getProviderId(), category.getCategoryId(), review.getReviewId())) {
-                System.out.println("Provider hotel grade already exists for hotel: " + hotel.getHotelId() + 
-                    ", provider: " + gradeProvider.getProviderId() + ", category: " + category.getCategoryId() + 
-                    ", review: " + review.getReviewId());
-                continue;
+        if (records.isEmpty()) {
+            records = recordRepo.claimExpiredRecords(LocalDateTime.now().minus(CLAIM_LEASE), pageSize);
+            if (!records.isEmpty()) {
+                log.info("Took over {} records whose claim expired", records.size());
             }
-            
-            ProviderHotelGrade newGrade = ProviderHotelGrade.builder()
-                .hotel(hotel)
-                .provider(gradeProvider)
-                .category(category)
-                .review(review)
-                .gradeValue(gradeDto.getGradeValue())
-                .build();
-                
-            System.out.println("Creating new provider hotel grade for hotel: " + hotel.getHotelId() + 
-                ", provider: " + gradeProvider.getProviderId() + ", category: " + category.getCategoryName() + 
-                ", review: " + review.getReviewId());
-            providerHotelGradeRepo.save(newGrade);
         }
+        return records;
     }
-    
+
+    /**
+     * Hand a page that failed part way back to the backlog, so the next claim retries it right
+     * away; if even that fails, its claim expires after CLAIM_LEASE
+     */
+    private void releasePage(List<Record> records) {
+        try {
+            recordRepo.releaseRecords(records);
+        } catch (RuntimeException e) {
+            log.warn("Could not release records {} to {}: {}", records.get(0).getId(),
+                records.get(records.size() - 1).getId(), e.getMessage());
+        }
+    }
+
     /**
-     * Upsert rating category from name
+     * Run drainNewRecords on a pool of workers and wait for all of them; the first worker
+     * failure is rethrown once every worker has stopped
      */
-    private RatingCategory upsertRatingCategoryFromName(String categoryName) {
-        if (categoryName == null || categoryName.trim().isEmpty()) {
-            return null;
+    private void runWorkers(AtomicInteger totalRecordsProcessed, JobProgress progress) {
+        AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(workers, runnable -> {
+            Thread thread = new Thread(runnable, "record-worker-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        try {
+            List<Future<?>> running = new ArrayList<>(workers);
+            for (int i = 0; i < workers; i++) {
+                running.add(pool.submit(() -> drainNewRecords(totalRecordsProcessed, progress)));
+            }
+
+            RuntimeException failure = null;
+            for (Future<?> worker : running) {
+                try {
+                    worker.get();
+                } catch (ExecutionException e) {
+                    if (failure == null) {
+                        failure = e.getCause() instanceof RuntimeException
+                            ? (RuntimeException) e.getCause()
+                            : new RuntimeException(e.getCause());
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException("Interrupted while waiting for record workers", e);
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        } finally {
+            pool.shutdownNow();
         }
-        
-        return ratingCategoryRepo.findByCategoryName(categoryName)
-            .orElseGet(() -> {
-                RatingCategory newCategory = RatingCategory.builder()
-                    .categoryName(categoryName)
-                    .build();
-                System.out.println("Creating new rating category: " + categoryName);
-                return ratingCategoryRepo.save(newCategory);
-            });
     }
-        
+
+
     /**
      * Get stack trace as string
      */
     private String getStackTrace(Exception e) {
-        java.io.StringWriter sw = new java.io.StringWriter();
-        java.io.PrintWriter pw = new java.io.PrintWriter(sw);
-        e.printStackTrace(pw);
-        return sw.toString();
+        return ReviewNormalizer.getStackTrace(e);
     }
     
 }
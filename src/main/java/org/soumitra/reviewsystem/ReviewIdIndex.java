@@ -0,0 +1,126 @@
+package org.soumitra.reviewsystem;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * In-memory review_external_id to review_id map for runs that reprocess reviews already
+ * stored, so most pages never have to ask the database which reviews exist.
+ *
+ * Keys and values are kept in two primitive long arrays with open addressing instead of a
+ * HashMap, which would box both sides and cost several times the memory per entry. Once
+ * maxEntries ids are held new ids are simply not remembered; a max of 0 disables the index.
+ * Entries never expire, so the index must be cleared if reviews are deleted under it.
+ */
+public class ReviewIdIndex {
+
+    private static final long EMPTY = 0L;
+    private static final int MIN_CAPACITY = 1024;
+
+    private final int maxEntries;
+    private long[] keys;
+    private long[] values;
+    private int size;
+
+    public ReviewIdIndex(int maxEntries) {
+        this.maxEntries = Math.max(maxEntries, 0);
+        clear();
+    }
+
+    public boolean isEnabled() {
+        return maxEntries > 0;
+    }
+
+    /**
+     * Copy the ids already known into resolved
+     *
+     * @return the external ids that are not in the index
+     */
+    public synchronized List<Long> getAll(Collection<Long> externalIds, Map<Long, Long> resolved) {
+        List<Long> missing = new ArrayList<>();
+        for (Long externalId : externalIds) {
+            long reviewId = get(externalId);
+            if (reviewId != EMPTY) {
+                resolved.put(externalId, reviewId);
+            } else {
+                missing.add(externalId);
+            }
+        }
+        return missing;
+    }
+
+    public synchronized void putAll(Map<Long, Long> reviewIds) {
+        reviewIds.forEach(this::put);
+    }
+
+    public synchronized void put(Long externalId, Long reviewId) {
+        // External ids are positive, which leaves 0 free to mark empty slots
+        if (!isEnabled() || externalId == null || reviewId == null || externalId <= 0) {
+            return;
+        }
+        int slot = slot(externalId);
+        if (keys[slot] == EMPTY) {
+            if (size >= maxEntries) {
+                return;
+            }
+            if ((size + 1) * 2 > keys.length) {
+                grow();
+                slot = slot(externalId);
+            }
+            keys[slot] = externalId;
+            size++;
+        }
+        values[slot] = reviewId;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public synchronized void clear() {
+        keys = new long[isEnabled() ? MIN_CAPACITY : 0];
+        values = new long[keys.length];
+        size = 0;
+    }
+
+    private long get(Long externalId) {
+        if (size == 0 || externalId == null || externalId <= 0) {
+            return EMPTY;
+        }
+        int slot = slot(externalId);
+        return keys[slot] == EMPTY ? EMPTY : values[slot];
+    }
+
+    /**
+     * Slot holding the key, or the empty slot where it belongs
+     */
+    private int slot(long key) {
+        int mask = keys.length - 1;
+        int slot = mix(key) & mask;
+        while (keys[slot] != EMPTY && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        long[] oldValues = values;
+        keys = new long[oldKeys.length * 2];
+        values = new long[keys.length];
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                int slot = slot(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    private static int mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
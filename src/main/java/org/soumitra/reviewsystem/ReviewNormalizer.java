@@ -0,0 +1,768 @@
+package org.soumitra.reviewsystem;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+// Repository interfaces
+import org.soumitra.reviewsystem.dao.ReviewRepository;
+import org.soumitra.reviewsystem.dao.HotelRepository;
+import org.soumitra.reviewsystem.dao.ProviderRepository;
+import org.soumitra.reviewsystem.dao.ReviewerRepository;
+import org.soumitra.reviewsystem.dao.StayInfoRepository;
+import org.soumitra.reviewsystem.dao.ProviderHotelSummaryRepository;
+import org.soumitra.reviewsystem.dao.ProviderHotelGradeRepository;
+import org.soumitra.reviewsystem.dao.RatingCategoryRepository;
+import org.soumitra.reviewsystem.dao.HotelRepositoryCustom.HotelKey;
+import org.soumitra.reviewsystem.dao.ReviewerRepositoryCustom.ReviewerKey;
+
+// Model classes
+import org.soumitra.reviewsystem.model.Review;
+import org.soumitra.reviewsystem.model.Hotel;
+import org.soumitra.reviewsystem.model.Provider;
+import org.soumitra.reviewsystem.model.Reviewer;
+import org.soumitra.reviewsystem.model.StayInfo;
+import org.soumitra.reviewsystem.model.ProviderHotelSummary;
+import org.soumitra.reviewsystem.model.ProviderHotelGrade;
+import org.soumitra.reviewsystem.model.RatingCategory;
+import org.soumitra.reviewsystem.util.HotelReviewJsonParser;
+import org.soumitra.reviewsystem.util.HotelReviewJsonParser.HotelReviewParseResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataIntegrityViolationException;
+
+/**
+ * Turns one raw JSONL review into rows of the normalized tables.
+ * Shared by RecordProcessorJob (reading staged records) and JobRunner's DIRECT mode
+ * (reading straight from S3).
+ */
+public class ReviewNormalizer {
+
+    private static final Logger log = LoggerFactory.getLogger(ReviewNormalizer.class);
+
+    private static final RecordEventLog events = RecordEventLog.forStage("normalize");
+
+    private final ReviewRepository reviewRepo;
+    private final HotelRepository hotelRepo;
+    private final ProviderRepository providerRepo;
+    private final ReviewerRepository reviewerRepo;
+    private final StayInfoRepository stayInfoRepo;
+    private final ProviderHotelSummaryRepository providerHotelSummaryRepo;
+    private final ProviderHotelGradeRepository providerHotelGradeRepo;
+    private final RatingCategoryRepository ratingCategoryRepo;
+    private final HotelReviewJsonParser parser;
+    private DimensionCache dimensionCache;
+    private ReviewIdIndex reviewIdIndex;
+    private IngestMetrics.Job metrics = IngestMetrics.disabled().forMode(IngestMetrics.MODE_PROCESS);
+
+    public ReviewNormalizer(ReviewRepository reviewRepo, HotelRepository hotelRepo,
+        ProviderRepository providerRepo, ReviewerRepository reviewerRepo,
+        StayInfoRepository stayInfoRepo, ProviderHotelSummaryRepository providerHotelSummaryRepo,
+        ProviderHotelGradeRepository providerHotelGradeRepo, RatingCategoryRepository ratingCategoryRepo,
+        HotelReviewJsonParser parser) {
+        this.reviewRepo = reviewRepo;
+        this.hotelRepo = hotelRepo;
+        this.providerRepo = providerRepo;
+        this.reviewerRepo = reviewerRepo;
+        this.stayInfoRepo = stayInfoRepo;
+        this.providerHotelSummaryRepo = providerHotelSummaryRepo;
+        this.providerHotelGradeRepo = providerHotelGradeRepo;
+        this.ratingCategoryRepo = ratingCategoryRepo;
+        this.parser = parser;
+    }
+
+    /**
+     * Serve provider, hotel, reviewer and rating category lookups from a shared cache
+     * instead of a SELECT per record; null (the default) goes to the database every time
+     */
+    public void setDimensionCache(DimensionCache dimensionCache) {
+        this.dimensionCache = dimensionCache;
+    }
+
+    /**
+     * Preload the cached dimensions that are small enough to load whole
+     */
+    public void warmUpDimensionCache() {
+        if (dimensionCache != null) {
+            int loaded = dimensionCache.warmUp(providerRepo, ratingCategoryRepo);
+            log.info("Dimension cache warmed with {} providers and rating categories", loaded);
+        }
+    }
+
+    public DimensionCache getDimensionCache() {
+        return dimensionCache;
+    }
+
+    /**
+     * Remember which reviews exist across pages, for runs that mostly reprocess stored
+     * reviews; null or a disabled index asks the database once per page
+     */
+    public void setReviewIdIndex(ReviewIdIndex reviewIdIndex) {
+        this.reviewIdIndex = reviewIdIndex != null && reviewIdIndex.isEnabled() ? reviewIdIndex : null;
+    }
+
+    /**
+     * Time parsing and each kind of upsert, and count the lines stored, failed and skipped
+     * as already stored, under the job that is running this normalizer
+     */
+    public void setMetrics(IngestMetrics.Job metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Normalize a page of lines; a bad line does not stop the rest.
+     * Providers, hotels, reviewers and rating categories for the whole page are resolved
+     * first, one set-based upsert per table, so each line only writes its review rows;
+     * summaries and grades for the page are then written together in JDBC batches.
+     * Returns the lines that failed, with their index in the page.
+     */
+    public List<LineFailure> normalizeAll(List<String> jsonLines) {
+        List<LineFailure> failures = new ArrayList<>();
+        List<HotelReviewParseResult> parsed = new ArrayList<>(jsonLines.size());
+        for (int i = 0; i < jsonLines.size(); i++) {
+            String jsonLine = jsonLines.get(i);
+            try {
+                parsed.add(metrics.parse(() -> parser.parseHotelReview(jsonLine)));
+            } catch (Exception e) {
+                parsed.add(null);
+                failures.add(new LineFailure(i, e));
+            }
+        }
+
+        PageDimensions page = resolvePageDimensions(parsed);
+        resolvePageReviewIds(parsed, page);
+
+        Map<Integer, LineRatings> ratingsByLine = new LinkedHashMap<>();
+        for (int i = 0; i < jsonLines.size(); i++) {
+            if (parsed.get(i) == null) {
+                continue;
+            }
+            try {
+                ratingsByLine.put(i, store(parsed.get(i), page));
+            } catch (Exception e) {
+                failures.add(new LineFailure(i, e));
+            }
+        }
+        writeRatings(ratingsByLine, failures);
+        failures.sort(Comparator.comparingInt(LineFailure::getIndex));
+        countOutcomes(parsed, ratingsByLine, failures);
+        return failures;
+    }
+
+    /**
+     * Parse JSON review data and store in database
+     * Implements upsert logic for reviews, hotels, providers, and reviewers
+     */
+    public void normalize(String jsonLine) throws Exception {
+        HotelReviewJsonParser.HotelReviewParseResult hotelReview = null;
+        try {
+            hotelReview = metrics.parse(() -> this.parser.parseHotelReview(jsonLine));
+            LineRatings ratings = store(hotelReview, new PageDimensions());
+            writeRatings(ratings);
+            countOutcome(hotelReview, ratings);
+        } catch (Exception e) {
+            metrics.recordFailed(providerName(hotelReview));
+            throw e;
+        }
+    }
+
+    private LineRatings store(HotelReviewParseResult hotelReview, PageDimensions page) {
+        LineRatings ratings = new LineRatings();
+
+        // Extract and upsert provider first (hotels depend on providers)
+        Provider provider = upsertProviderFromDto(hotelReview.getProvider(), page);
+            
+        // Extract and upsert hotel (now with provider relationship)
+        Hotel hotel = upsertHotelFromDto(hotelReview.getHotel(), provider, page);
+            
+        // Extract and upsert reviewer
+        Reviewer reviewer = upsertReviewerFromDto(hotelReview.getReviewer(), provider, page);
+            
+        // Extract and upsert review
+        Review review = upsertReviewFromDto(hotelReview.getReview(), hotel, provider, reviewer, page, ratings);
+
+        upsertStayInfoFromDto(hotelReview.getStayInfo(), hotel, provider, reviewer, page);
+        
+        // Extract provider hotel summaries and grades; the caller writes them in bulk
+        collectProviderHotelSummariesFromDto(hotelReview.getProviderHotelSummaries(), hotel, provider, review, page, ratings);
+        collectProviderHotelGradesFromDto(hotelReview.getProviderHotelGrades(), hotel, provider, review, page, ratings);
+        return ratings;
+    }
+
+    /**
+     * Resolve the distinct dimension rows of a page in bulk, through the cache when there is one.
+     * A failure here is not fatal: whatever is missing is resolved line by line, so a single bad
+     * row only fails its own line.
+     */
+    private PageDimensions resolvePageDimensions(List<HotelReviewParseResult> reviews) {
+        PageDimensions page = new PageDimensions();
+        try {
+            Map<Short, Provider> providerCandidates = new LinkedHashMap<>();
+            Set<Short> referencedProviders = new LinkedHashSet<>();
+            Set<String> categoryNames = new LinkedHashSet<>();
+            for (HotelReviewParseResult review : reviews) {
+                if (review == null) {
+                    continue;
+                }
+                if (review.getProvider() != null && review.getProvider().getExternalId() != null) {
+                    providerCandidates.putIfAbsent(review.getProvider().getExternalId(), newProvider(review.getProvider()));
+                }
+                if (review.getProviderHotelSummaries() != null) {
+                    for (org.soumitra.reviewsystem.dto.ProviderHotelSummaryDto summary : review.getProviderHotelSummaries()) {
+                        if (summary.getProviderId() != null) {
+                            referencedProviders.add(summary.getProviderId());
+                        }
+                    }
+                }
+                if (review.getProviderHotelGrades() != null) {
+                    for (org.soumitra.reviewsystem.dto.ProviderHotelGradeDto grade : review.getProviderHotelGrades()) {
+                        if (grade.getProviderId() != null) {
+                            referencedProviders.add(grade.getProviderId());
+                        }
+                        if (grade.getCategoryName() != null && !grade.getCategoryName().trim().isEmpty()) {
+                            categoryNames.add(grade.getCategoryName());
+                        }
+                    }
+                }
+            }
+
+            page.providers.putAll(cachedProviders(providerCandidates.keySet(),
+                missing -> metrics.upsert("provider", () -> providerRepo.findOrCreateAll(selectAll(providerCandidates, missing)))));
+
+            // Providers named only by summaries and grades are looked up, never created
+            referencedProviders.removeAll(page.providers.keySet());
+            if (!referencedProviders.isEmpty()) {
+                page.providers.putAll(cachedProviders(referencedProviders, missing -> {
+                    Map<Short, Provider> found = new HashMap<>();
+                    for (Provider provider : metrics.upsert("provider", () -> providerRepo.findAllByExternalIdIn(missing))) {
+                        found.put(provider.getExternalId(), provider);
+                    }
+                    return found;
+                }));
+            }
+
+            Map<HotelKey, Hotel> hotelCandidates = new LinkedHashMap<>();
+            Map<ReviewerKey, Reviewer> reviewerCandidates = new LinkedHashMap<>();
+            for (HotelReviewParseResult review : reviews) {
+                Provider provider = review != null && review.getProvider() != null
+                    ? page.providers.get(review.getProvider().getExternalId()) : null;
+                if (provider == null) {
+                    continue;
+                }
+                if (review.getHotel() != null && review.getHotel().getExternalId() != null) {
+                    Hotel candidate = newHotel(review.getHotel(), provider);
+                    hotelCandidates.putIfAbsent(HotelKey.of(candidate), candidate);
+                }
+                if (review.getReviewer() != null && review.getReviewer().getDisplayName() != null) {
+                    Reviewer candidate = newReviewer(review.getReviewer(), provider);
+                    reviewerCandidates.putIfAbsent(ReviewerKey.of(candidate), candidate);
+                }
+            }
+
+            page.hotels.putAll(dimensionCache != null
+                ? dimensionCache.hotels(hotelCandidates.keySet(),
+                    missing -> metrics.upsert("hotel", () -> hotelRepo.findOrCreateAll(selectAll(hotelCandidates, missing))))
+                : metrics.upsert("hotel", () -> hotelRepo.findOrCreateAll(hotelCandidates.values())));
+            page.reviewers.putAll(dimensionCache != null
+                ? dimensionCache.reviewers(reviewerCandidates.keySet(),
+                    missing -> metrics.upsert("reviewer", () -> reviewerRepo.findOrCreateAll(selectAll(reviewerCandidates, missing))))
+                : metrics.upsert("reviewer", () -> reviewerRepo.findOrCreateAll(reviewerCandidates.values())));
+            page.ratingCategories.putAll(dimensionCache != null
+                ? dimensionCache.ratingCategories(categoryNames,
+                    missing -> metrics.upsert("rating_category", () -> ratingCategoryRepo.findOrCreateAll(missing)))
+                : metrics.upsert("rating_category", () -> ratingCategoryRepo.findOrCreateAll(categoryNames)));
+        } catch (RuntimeException e) {
+            log.warn("Bulk dimension upsert failed, resolving the page record by record: {}", e.getMessage());
+        }
+        return page;
+    }
+
+    /**
+     * Resolve every review external id of the page to its stored review_id with one query,
+     * after whatever the review id index already knows. On failure each line looks its
+     * review up on its own.
+     */
+    private void resolvePageReviewIds(List<HotelReviewParseResult> reviews, PageDimensions page) {
+        Set<Long> externalIds = new LinkedHashSet<>();
+        for (HotelReviewParseResult review : reviews) {
+            if (review != null && review.getReview() != null && review.getReview().getReviewExternalId() != null) {
+                externalIds.add(review.getReview().getReviewExternalId());
+            }
+            if (review != null && review.getStayInfo() != null && review.getStayInfo().getReviewId() != null) {
+                externalIds.add(review.getStayInfo().getReviewId());
+            }
+        }
+        try {
+            Collection<Long> missing = reviewIdIndex != null ? reviewIdIndex.getAll(externalIds, page.reviewIds) : externalIds;
+            Map<Long, Long> stored = missing.isEmpty() ? Map.of()
+                : metrics.upsert("review_lookup", () -> reviewRepo.findReviewIdsByExternalIds(missing));
+            page.reviewIds.putAll(stored);
+            if (reviewIdIndex != null) {
+                reviewIdIndex.putAll(stored);
+            }
+            page.reviewIdsResolved = true;
+        } catch (RuntimeException e) {
+            page.reviewIds.clear();
+            log.warn("Bulk review lookup failed, resolving the page record by record: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Stored review_id of an external id, or null if the review is not stored yet
+     */
+    private Long findReviewId(Long externalId, PageDimensions page) {
+        Long reviewId = page.reviewIds.get(externalId);
+        if (reviewId != null || page.reviewIdsResolved || externalId == null) {
+            return reviewId;
+        }
+        Map<Long, Long> resolved = new HashMap<>();
+        if (reviewIdIndex == null || !reviewIdIndex.getAll(List.of(externalId), resolved).isEmpty()) {
+            resolved = metrics.upsert("review_lookup", () -> reviewRepo.findReviewIdsByExternalIds(List.of(externalId)));
+        }
+        reviewId = resolved.get(externalId);
+        rememberReviewId(externalId, reviewId, page);
+        return reviewId;
+    }
+
+    private void rememberReviewId(Long externalId, Long reviewId, PageDimensions page) {
+        if (externalId == null || reviewId == null) {
+            return;
+        }
+        page.reviewIds.put(externalId, reviewId);
+        if (reviewIdIndex != null) {
+            reviewIdIndex.put(externalId, reviewId);
+        }
+    }
+
+    private Map<Short, Provider> cachedProviders(Set<Short> externalIds, Function<Set<Short>, Map<Short, Provider>> loader) {
+        if (externalIds.isEmpty()) {
+            return Map.of();
+        }
+        return dimensionCache != null ? dimensionCache.providers(externalIds, loader) : loader.apply(externalIds);
+    }
+
+    private static <K, V> List<V> selectAll(Map<K, V> candidates, Collection<K> keys) {
+        List<V> selected = new ArrayList<>(keys.size());
+        for (K key : keys) {
+            selected.add(candidates.get(key));
+        }
+        return selected;
+    }
+
+    /**
+     * Upsert provider from DTO
+     */
+    private Provider upsertProviderFromDto(org.soumitra.reviewsystem.dto.ProviderDto providerDto, PageDimensions page) {
+        Provider resolved = page.providers.get(providerDto.getExternalId());
+        if (resolved != null) {
+            return resolved;
+        }
+        if (dimensionCache != null) {
+            return dimensionCache.provider(providerDto.getExternalId(), () -> findOrCreateProvider(providerDto));
+        }
+        return findOrCreateProvider(providerDto);
+    }
+
+    private Provider findOrCreateProvider(org.soumitra.reviewsystem.dto.ProviderDto providerDto) {
+        return metrics.upsert("provider", () -> providerRepo.findByExternalId(providerDto.getExternalId())
+            .orElseGet(() -> {
+                Provider newProvider = newProvider(providerDto);
+                events.event("Creating new provider: {}", newProvider.getProviderName());
+                return providerRepo.save(newProvider);
+            }));
+    }
+
+    /**
+     * Upsert hotel from DTO
+     */
+    private Hotel upsertHotelFromDto(org.soumitra.reviewsystem.dto.HotelDto hotelDto, Provider provider, PageDimensions page) {
+        Hotel resolved = page.hotels.get(HotelKey.of(hotelDto.getExternalId(), provider.getProviderId()));
+        if (resolved != null) {
+            return resolved;
+        }
+        if (dimensionCache != null) {
+            return dimensionCache.hotel(hotelDto.getExternalId(), provider, () -> findOrCreateHotel(hotelDto, provider));
+        }
+        return findOrCreateHotel(hotelDto, provider);
+    }
+
+    private Hotel findOrCreateHotel(org.soumitra.reviewsystem.dto.HotelDto hotelDto, Provider provider) {
+        return metrics.upsert("hotel", () -> hotelRepo.findByExternalIdAndProvider(hotelDto.getExternalId(), provider)
+            .orElseGet(() -> {
+                Hotel newHotel = newHotel(hotelDto, provider);
+                events.event("Creating new hotel: {}", newHotel.getExternalId());
+                return hotelRepo.save(newHotel);
+            }));
+    }
+    
+    /**
+     * Upsert reviewer from DTO
+     */
+    private Reviewer upsertReviewerFromDto(org.soumitra.reviewsystem.dto.ReviewerDto reviewerDto, Provider provider, PageDimensions page) {
+        Reviewer resolved = page.reviewers.get(
+            ReviewerKey.of(reviewerDto.getDisplayName(), reviewerDto.getCountryId(), provider.getProviderId()));
+        if (resolved != null) {
+            return resolved;
+        }
+        if (dimensionCache != null) {
+            return dimensionCache.reviewer(reviewerDto.getDisplayName(), reviewerDto.getCountryId(), provider,
+                () -> findOrCreateReviewer(reviewerDto, provider));
+        }
+        return findOrCreateReviewer(reviewerDto, provider);
+    }
+
+    private Reviewer findOrCreateReviewer(org.soumitra.reviewsystem.dto.ReviewerDto reviewerDto, Provider provider) {
+        return metrics.upsert("reviewer", () -> reviewerRepo.findFirstByDisplayNameAndCountryIdAndProviderOrderByReviewerIdAsc(reviewerDto.getDisplayName(), reviewerDto.getCountryId(), provider)
+            .orElseGet(() -> {
+                Reviewer newReviewer = newReviewer(reviewerDto, provider);
+                events.event("Creating new reviewer: {}", newReviewer.getDisplayName());
+                return reviewerRepo.save(newReviewer);
+            }));
+    }
+
+    /**
+     * Upsert review from DTO
+     */
+    private Review upsertReviewFromDto(org.soumitra.reviewsystem.dto.ReviewDto reviewDto, Hotel hotel, Provider provider, Reviewer reviewer, PageDimensions page, LineRatings ratings) {
+        Long existingId = findReviewId(reviewDto.getReviewExternalId(), page);
+        if (existingId != null) {
+            events.event("Review already exists, skipping: {}", reviewDto.getReviewExternalId());
+            ratings.reviewExisted = true;
+            // Only the id is needed for the rows that point at the review
+            return Review.builder().reviewId(existingId).reviewExternalId(reviewDto.getReviewExternalId()).build();
+        }
+        
+        Review newReview = Review.builder()
+            .reviewExternalId(reviewDto.getReviewExternalId())
+            .hotel(hotel)
+            .provider(provider)
+            .reviewer(reviewer)
+            .rating(reviewDto.getRating())
+            .ratingText(reviewDto.getRatingText())
+            .ratingFormatted(reviewDto.getRatingFormatted())
+            .reviewTitle(reviewDto.getReviewTitle())
+            .reviewComment(reviewDto.getReviewComment())
+            .reviewVotePositive(reviewDto.getReviewVotePositive())
+            .reviewVoteNegative(reviewDto.getReviewVoteNegative())
+            .reviewDate(reviewDto.getReviewDate())
+            .translateSource(reviewDto.getTranslateSource())
+            .translateTarget(reviewDto.getTranslateTarget())
+            .isResponseShown(reviewDto.getIsResponseShown())
+            .responderName(reviewDto.getResponderName())
+            .responseText(reviewDto.getResponseText())
+            .responseDateText(reviewDto.getResponseDateText())
+            .responseDateFmt(reviewDto.getResponseDateFmt())
+            .checkInMonthYr(reviewDto.getCheckInMonthYr())
+            .build();
+            
+        events.event("Creating new review: {}", reviewDto.getReviewExternalId());
+        Review saved;
+        try {
+            saved = metrics.upsert("review", () -> reviewRepo.save(newReview));
+        } catch (DataIntegrityViolationException e) {
+            // Another worker stored the review after this page's lookup; that is an existing review, not a failure
+            Long externalId = reviewDto.getReviewExternalId();
+            Long storedId = externalId != null
+                ? metrics.upsert("review_lookup", () -> reviewRepo.findReviewIdsByExternalIds(List.of(externalId))).get(externalId)
+                : null;
+            if (storedId == null) {
+                throw e;
+            }
+            events.event("Review was stored concurrently, skipping: {}", externalId);
+            ratings.reviewExisted = true;
+            rememberReviewId(externalId, storedId, page);
+            return Review.builder().reviewId(storedId).reviewExternalId(externalId).build();
+        }
+        rememberReviewId(saved.getReviewExternalId(), saved.getReviewId(), page);
+        return saved;
+    }
+        
+    /**
+     * Upsert stay info from DTO
+     */
+    private void upsertStayInfoFromDto(org.soumitra.reviewsystem.dto.StayInfoDto stayInfoDto, Hotel hotel, Provider provider, Reviewer reviewer, PageDimensions page) {
+        if (stayInfoDto == null) {
+            events.event("No stay info available for hotel {}, skipping", hotel.getExternalId());
+            return;
+        }
+        
+        // Find the review that was just created
+        Long reviewId = findReviewId(stayInfoDto.getReviewId(), page);
+            
+        if (reviewId == null) {
+            events.event("Review not found for stay info, skipping: {}", stayInfoDto.getReviewId());
+            return;
+        }
+        
+        // Check if stay info already exists for this review
+        if (stayInfoRepo.existsByReviewId(reviewId)) {
+            events.event("Stay info already exists for review, skipping: {}", reviewId);
+            return;
+        }
+        
+        StayInfo newStayInfo = StayInfo.builder()
+            .reviewId(reviewId)
+            .roomTypeId(stayInfoDto.getRoomTypeId())
+            .roomTypeName(stayInfoDto.getRoomTypeName())
+            .reviewGroupId(stayInfoDto.getReviewGroupId())
+            .reviewGroupName(stayInfoDto.getReviewGroupName())
+            .lengthOfStay(stayInfoDto.getLengthOfStay())
+            .build();
+            
+        events.event("Creating new stay info for review: {}", reviewId);
+        metrics.upsert("stay_info", () -> stayInfoRepo.save(newStayInfo));
+    }
+    
+    /**
+     * Collect provider hotel summaries from DTO; they are written with the rest of the page
+     */
+    private void collectProviderHotelSummariesFromDto(List<org.soumitra.reviewsystem.dto.ProviderHotelSummaryDto> summaries, Hotel hotel, Provider provider, Review review, PageDimensions page, LineRatings ratings) {
+        if (summaries == null || summaries.isEmpty()) {
+            events.event("No provider hotel summaries available for review {}, skipping", review.getReviewExternalId());
+            return;
+        }
+        
+        for (org.soumitra.reviewsystem.dto.ProviderHotelSummaryDto summaryDto : summaries) {
+            // Find the provider for this summary
+            Provider summaryProvider = findProviderOrDefault(summaryDto.getProviderId(), provider, page);
+            
+            // Rows that already exist are skipped by the insert
+            ratings.summaries.add(ProviderHotelSummary.builder()
+                .hotel(hotel)
+                .provider(summaryProvider)
+                .review(review)
+                .overallScore(summaryDto.getOverallScore())
+                .reviewCount(summaryDto.getReviewCount())
+                .build());
+        }
+    }
+    
+    /**
+     * Collect provider hotel grades from DTO; they are written with the rest of the page
+     */
+    private void collectProviderHotelGradesFromDto(List<org.soumitra.reviewsystem.dto.ProviderHotelGradeDto> grades, Hotel hotel, Provider provider, Review review, PageDimensions page, LineRatings ratings) {
+        if (grades == null || grades.isEmpty()) {
+            events.event("No provider hotel grades available for review {}, skipping", review.getReviewExternalId());
+            return;
+        }
+        
+        for (org.soumitra.reviewsystem.dto.ProviderHotelGradeDto gradeDto : grades) {
+            // Find the provider for this grade
+            Provider gradeProvider = findProviderOrDefault(gradeDto.getProviderId(), provider, page);
+            
+            // Upsert the rating category
+            RatingCategory category = upsertRatingCategoryFromName(gradeDto.getCategoryName(), page);
+            
+            if (category == null) {
+                events.event("Could not create rating category for: {}", gradeDto.getCategoryName());
+                continue;
+            }
+            
+            // Rows that already exist are skipped by the insert
+            ratings.grades.add(ProviderHotelGrade.builder()
+                .hotel(hotel)
+                .provider(gradeProvider)
+                .category(category)
+                .review(review)
+                .gradeValue(gradeDto.getGradeValue())
+                .build());
+        }
+    }
+
+    /**
+     * Write the summary and grade rows of a page in JDBC batches. If a batch is rejected,
+     * each line's rows are retried on their own so only lines with a bad row fail; rows
+     * that made it in the first time are skipped on the retry.
+     */
+    private void writeRatings(Map<Integer, LineRatings> ratingsByLine, List<LineFailure> failures) {
+        LineRatings all = new LineRatings();
+        for (LineRatings ratings : ratingsByLine.values()) {
+            all.summaries.addAll(ratings.summaries);
+            all.grades.addAll(ratings.grades);
+        }
+        if (all.isEmpty()) {
+            return;
+        }
+
+        try {
+            writeRatings(all);
+        } catch (RuntimeException e) {
+            log.warn("Batch write of provider hotel summaries and grades failed, retrying line by line: {}", e.getMessage());
+            for (Map.Entry<Integer, LineRatings> line : ratingsByLine.entrySet()) {
+                try {
+                    writeRatings(line.getValue());
+                } catch (RuntimeException lineError) {
+                    failures.add(new LineFailure(line.getKey(), lineError));
+                }
+            }
+        }
+    }
+
+    private void writeRatings(LineRatings ratings) {
+        int summaries = metrics.upsert("ratings", () -> providerHotelSummaryRepo.insertAllIgnoringExisting(ratings.summaries));
+        int grades = metrics.upsert("ratings", () -> providerHotelGradeRepo.insertAllIgnoringExisting(ratings.grades));
+        log.debug("Wrote {} of {} provider hotel summaries and {} of {} provider hotel grades",
+            summaries, ratings.summaries.size(), grades, ratings.grades.size());
+    }
+    
+    /**
+     * Count each parsed line of a page as failed, skipped (its review was already stored) or ok
+     */
+    private void countOutcomes(List<HotelReviewParseResult> parsed, Map<Integer, LineRatings> ratingsByLine,
+                               List<LineFailure> failures) {
+        Set<Integer> failed = new HashSet<>();
+        for (LineFailure failure : failures) {
+            failed.add(failure.getIndex());
+        }
+        for (int i = 0; i < parsed.size(); i++) {
+            if (failed.contains(i)) {
+                metrics.recordFailed(providerName(parsed.get(i)));
+            } else {
+                countOutcome(parsed.get(i), ratingsByLine.get(i));
+            }
+        }
+    }
+
+    private void countOutcome(HotelReviewParseResult hotelReview, LineRatings ratings) {
+        if (ratings.reviewExisted) {
+            metrics.recordSkipped(providerName(hotelReview));
+        } else {
+            metrics.recordOk(providerName(hotelReview));
+        }
+    }
+
+    private static String providerName(HotelReviewParseResult hotelReview) {
+        return hotelReview != null && hotelReview.getProvider() != null ? hotelReview.getProvider().getProviderName() : null;
+    }
+
+    /**
+     * Look up a provider by external id, falling back to the review's main provider if not found
+     */
+    private Provider findProviderOrDefault(Short externalId, Provider fallback, PageDimensions page) {
+        if (page.providers.containsKey(externalId)) {
+            return page.providers.get(externalId);
+        }
+        Provider found = dimensionCache != null
+            ? dimensionCache.provider(externalId, () -> providerRepo.findByExternalId(externalId).orElse(null))
+            : providerRepo.findByExternalId(externalId).orElse(null);
+        return found != null ? found : fallback;
+    }
+
+    /**
+     * Upsert rating category from name
+     */
+    private RatingCategory upsertRatingCategoryFromName(String categoryName, PageDimensions page) {
+        if (categoryName == null || categoryName.trim().isEmpty()) {
+            return null;
+        }
+        RatingCategory resolved = page.ratingCategories.get(categoryName);
+        if (resolved != null) {
+            return resolved;
+        }
+        if (dimensionCache != null) {
+            return dimensionCache.ratingCategory(categoryName, () -> findOrCreateRatingCategory(categoryName));
+        }
+        return findOrCreateRatingCategory(categoryName);
+    }
+
+    private RatingCategory findOrCreateRatingCategory(String categoryName) {
+        return metrics.upsert("rating_category", () -> ratingCategoryRepo.findByCategoryName(categoryName)
+            .orElseGet(() -> {
+                RatingCategory newCategory = RatingCategory.builder()
+                    .categoryName(categoryName)
+                    .build();
+                events.event("Creating new rating category: {}", categoryName);
+                return ratingCategoryRepo.save(newCategory);
+            }));
+    }
+        
+    private static Provider newProvider(org.soumitra.reviewsystem.dto.ProviderDto providerDto) {
+        return Provider.builder()
+            .externalId(providerDto.getExternalId())
+            .providerName(providerDto.getProviderName())
+            .build();
+    }
+
+    private static Hotel newHotel(org.soumitra.reviewsystem.dto.HotelDto hotelDto, Provider provider) {
+        return Hotel.builder()
+            .externalId(hotelDto.getExternalId())
+            .provider(provider)
+            .hotelName(hotelDto.getHotelName())
+            .build();
+    }
+
+    private static Reviewer newReviewer(org.soumitra.reviewsystem.dto.ReviewerDto reviewerDto, Provider provider) {
+        return Reviewer.builder()
+            .displayName(reviewerDto.getDisplayName())
+            .countryName(reviewerDto.getCountryName())
+            .countryId(reviewerDto.getCountryId())
+            .flagCode(reviewerDto.getFlagCode())
+            .isExpert(reviewerDto.getIsExpert())
+            .reviewsWritten(reviewerDto.getReviewsWritten())
+            .provider(provider) // Add provider relationship
+            .build();
+    }
+        
+    /**
+     * Get stack trace as string
+     */
+    public static String getStackTrace(Exception e) {
+        java.io.StringWriter sw = new java.io.StringWriter();
+        java.io.PrintWriter pw = new java.io.PrintWriter(sw);
+        e.printStackTrace(pw);
+        return sw.toString();
+    }
+
+    /**
+     * A line of a page that could not be normalized
+     */
+    public static class LineFailure {
+        private final int index;
+        private final Exception error;
+
+        public LineFailure(int index, Exception error) {
+            this.index = index;
+            this.error = error;
+        }
+
+        public int getIndex() { return index; }
+        public Exception getError() { return error; }
+    }
+
+    /**
+     * Dimension rows resolved for a page up front; lines fall back to their own lookups
+     * for anything not in here
+     */
+    private static class PageDimensions {
+        private final Map<Short, Provider> providers = new HashMap<>();
+        private final Map<HotelKey, Hotel> hotels = new HashMap<>();
+        private final Map<ReviewerKey, Reviewer> reviewers = new HashMap<>();
+        private final Map<String, RatingCategory> ratingCategories = new HashMap<>();
+        // review_external_id -> review_id of the page's reviews that are stored
+        private final Map<Long, Long> reviewIds = new HashMap<>();
+        // Whether reviewIds holds every stored review of the page, so a miss means new
+        private boolean reviewIdsResolved;
+    }
+
+    /**
+     * Summary and grade rows produced by one line, waiting to be written with the page
+     */
+    private static class LineRatings {
+        private final List<ProviderHotelSummary> summaries = new ArrayList<>();
+        private final List<ProviderHotelGrade> grades = new ArrayList<>();
+        // The line's review was stored before, so only missing rows were added
+        private boolean reviewExisted;
+
+        boolean isEmpty() {
+            return summaries.isEmpty() && grades.isEmpty();
+        }
+    }
+}
@@ -1,16 +1,25 @@
 package org.soumitra.reviewsystem.cli;
 
 import org.soumitra.reviewsystem.JobRunner;
+import org.soumitra.reviewsystem.DimensionCache;
+import org.soumitra.reviewsystem.IngestMetrics;
+import org.soumitra.reviewsystem.ReviewIdIndex;
+import org.soumitra.reviewsystem.RangedDownload;
+import org.soumitra.reviewsystem.RawDataCodec;
 import org.soumitra.reviewsystem.RecordProcessorJob;
+import org.soumitra.reviewsystem.ReviewNormalizer;
 import org.soumitra.reviewsystem.dao.JobRunRepository;
 import org.soumitra.reviewsystem.dao.S3FileRepository;
 import org.soumitra.reviewsystem.dao.RecordRepository;
+import org.soumitra.reviewsystem.dao.S3ListingWatermarkRepository;
 import org.soumitra.reviewsystem.dao.RecordErrorRepository;
 import org.soumitra.reviewsystem.dao.ReviewRepository;
 import org.soumitra.reviewsystem.dao.HotelRepository;
 import org.soumitra.reviewsystem.dao.ProviderRepository;
 import org.soumitra.reviewsystem.dao.ReviewerRepository;
 import org.soumitra.reviewsystem.model.JobRun;
+import org.soumitra.reviewsystem.model.RawDataDictionary;
+import org.soumitra.reviewsystem.model.Record;
 import software.amazon.awssdk.services.s3.S3Client;
 import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
 import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
@@ -18,7 +27,9 @@ import software.amazon.awssdk.services.s3.model.S3Object;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import java.nio.charset.StandardCharsets;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.List;
 
 @Service
@@ -62,19 +73,54 @@ public class CLIService {
     
     @Autowired
     private S3Client s3Client;
+
+    @Autowired
+    private RangedDownload rangedDownload;
+
+    @Autowired
+    private DimensionCache dimensionCache;
+
+    @Autowired
+    private ReviewIdIndex reviewIdIndex;
+
+    @Autowired
+    private RawDataCodec rawDataCodec;
+
+    @Autowired
+    private IngestMetrics ingestMetrics;
+
+    @Autowired
+    private S3ListingWatermarkRepository s3ListingWatermarkRepository;
     
     @Autowired
     private org.soumitra.reviewsystem.util.HotelReviewJsonParser hotelReviewJsonParser;
 
-    public void runJob(String bucket, int pageSize, String triggerType, String notes) {
+    public void runJob(String bucket, int pageSize, int concurrency, JobRunner.IngestMode mode,
+                       boolean incremental, int listingParallelism, String triggerType, String notes) {
         System.out.println("Starting job to process reviews from bucket: " + bucket);
         System.out.println("Page size: " + pageSize);
+        System.out.println("Concurrency: " + concurrency);
+        System.out.println("Ingest mode: " + mode);
+        System.out.println("Incremental listing: " + incremental);
+        System.out.println("Listing parallelism: " + listingParallelism);
         System.out.println("Trigger type: " + triggerType);
         System.out.println("Notes: " + notes);
         
         try {
             JobRunner runner = new JobRunner(jobRunRepository, s3FileRepository, 
-                recordRepository, s3Client, pageSize);
+                recordRepository, s3Client, pageSize, concurrency, mode);
+            runner.setRangedDownload(rangedDownload);
+            runner.setListingWatermarks(incremental ? s3ListingWatermarkRepository : null);
+            runner.setListingParallelism(listingParallelism);
+            runner.setMetrics(ingestMetrics);
+            if (mode == JobRunner.IngestMode.DIRECT) {
+                ReviewNormalizer normalizer = new ReviewNormalizer(reviewRepository, hotelRepository, providerRepository,
+                    reviewerRepository, stayInfoRepository, providerHotelSummaryRepository,
+                    providerHotelGradeRepository, ratingCategoryRepository, hotelReviewJsonParser);
+                normalizer.setDimensionCache(dimensionCache);
+                normalizer.setReviewIdIndex(reviewIdIndex);
+                runner.setNormalizer(normalizer, recordErrorRepository);
+            }
             
             String s3Uri = "s3://" + bucket;
             runner.runJob(s3Uri);
@@ -86,9 +132,10 @@ public class CLIService {
         }
     }
 
-    public void processRecords(int batchSize, String triggerType, String notes) {
+    public void processRecords(int batchSize, int workers, String triggerType, String notes) {
         System.out.println("Starting record processing job");
         System.out.println("Batch size: " + batchSize);
+        System.out.println("Workers: " + workers);
         System.out.println("Trigger type: " + triggerType);
         System.out.println("Notes: " + notes);
         
@@ -96,7 +143,11 @@ public class CLIService {
             RecordProcessorJob processor = new RecordProcessorJob(jobRunRepository, 
                 recordRepository, recordErrorRepository, reviewRepository, hotelRepository,
                 providerRepository, reviewerRepository, stayInfoRepository, providerHotelSummaryRepository,
-                providerHotelGradeRepository, ratingCategoryRepository, hotelReviewJsonParser, batchSize);
+                providerHotelGradeRepository, ratingCategoryRepository, hotelReviewJsonParser, batchSize, workers);
+            processor.setDimensionCache(dimensionCache);
+            processor.setReviewIdIndex(reviewIdIndex);
+            processor.setRawDataCodec(rawDataCodec);
+            processor.setMetrics(ingestMetrics);
             
             processor.runJob();
             
@@ -107,6 +158,50 @@ public class CLIService {
         }
     }
 
+    /**
+     * Train a dictionary on the most recent staged records and report what it saves on them
+     *
+     * @return whether a dictionary was trained
+     */
+    public boolean trainRawDataDictionary(int sampleCount, int sizeKb) {
+        System.out.println("Training raw data dictionary on up to " + sampleCount + " recent records");
+        
+        try {
+            List<String> samples = new ArrayList<>(sampleCount);
+            for (Record record : recordRepository.findLatestRecords(sampleCount)) {
+                String line = rawDataCodec.text(record);
+                if (line != null && !line.isEmpty()) {
+                    samples.add(line);
+                }
+            }
+            if (samples.isEmpty()) {
+                System.out.println("No records to train on.");
+                return false;
+            }
+            
+            RawDataDictionary dictionary = rawDataCodec.train(samples, sizeKb * 1024);
+            
+            long rawBytes = 0;
+            long compressedBytes = 0;
+            for (String sample : samples) {
+                rawBytes += sample.getBytes(StandardCharsets.UTF_8).length;
+                compressedBytes += rawDataCodec.compress(sample).getData().length;
+            }
+            System.out.println("Dictionary " + dictionary.getId() + " trained on " + samples.size() + " records ("
+                + dictionary.getDictionary().length + " bytes)");
+            System.out.printf("Sample records: %d bytes as text, %d bytes compressed (%.1fx)%n",
+                rawBytes, compressedBytes, (double) rawBytes / Math.max(compressedBytes, 1));
+            if (!rawDataCodec.isEnabled()) {
+                System.out.println("Set ingest.records.compression=zstd to store new records with it.");
+            }
+            return true;
+        } catch (Exception e) {
+            System.err.println("Dictionary training failed: " + e.getMessage());
+            e.printStackTrace();
+            return false;
+        }
+    }
+
     public void listJobs(int limit, String status) {
         System.out.println("Recent job runs (limit: " + limit + ")");
         if (status != null) {
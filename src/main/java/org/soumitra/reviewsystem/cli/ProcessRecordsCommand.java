@@ -20,6 +20,9 @@ public class ProcessRecordsCommand implements Callable<Integer> {
     @Option(names = {"-b", "--batch-size"}, description = "Batch size for processing (default: 10)")
     private int batchSize = 10;
     
+    @Option(names = {"-w", "--workers"}, description = "Number of workers claiming and processing batches in parallel (default: 1)")
+    private int workers = 1;
+    
     @Option(names = {"-t", "--trigger-type"}, description = "Trigger type (default: MANUAL)")
     private String triggerType = "MANUAL";
     
@@ -28,7 +31,7 @@ public class ProcessRecordsCommand implements Callable<Integer> {
 
     @Override
     public Integer call() throws Exception {
-        cliService.processRecords(batchSize, triggerType, notes);
+        cliService.processRecords(batchSize, workers, triggerType, notes);
         return 0;
     }
 } 
\ No newline at end of file
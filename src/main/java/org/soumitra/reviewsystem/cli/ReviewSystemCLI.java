@@ -18,7 +18,8 @@ import java.util.concurrent.Callable;
         RunJobCommand.class,
         ProcessRecordsCommand.class,
         ListJobsCommand.class,
-        ListFilesCommand.class
+        ListFilesCommand.class,
+        TrainDictionaryCommand.class
     }
 )
 public class ReviewSystemCLI implements Callable<Integer> {
@@ -1,5 +1,6 @@
 package org.soumitra.reviewsystem.cli;
 
+import org.soumitra.reviewsystem.JobRunner;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 import picocli.CommandLine.Command;
@@ -23,6 +24,18 @@ public class RunJobCommand implements Callable<Integer> {
     @Option(names = {"-p", "--page-size"}, description = "Page size for processing (default: 10)")
     private int pageSize = 10;
     
+    @Option(names = {"-c", "--concurrency"}, description = "Number of files ingested in parallel (default: 1)")
+    private int concurrency = 1;
+    
+    @Option(names = {"-m", "--mode"}, description = "Ingest mode: ${COMPLETION-CANDIDATES} (default: STAGED)")
+    private JobRunner.IngestMode mode = JobRunner.IngestMode.STAGED;
+    
+    @Option(names = {"-i", "--incremental"}, description = "Resume listing after the stored key watermark (for date-partitioned prefixes)")
+    private boolean incremental = false;
+    
+    @Option(names = {"-l", "--listing-parallelism"}, description = "Number of sub-prefixes listed in parallel (default: 1)")
+    private int listingParallelism = 1;
+    
     @Option(names = {"-t", "--trigger-type"}, description = "Trigger type (default: MANUAL)")
     private String triggerType = "MANUAL";
     
@@ -31,7 +44,7 @@ public class RunJobCommand implements Callable<Integer> {
 
     @Override
     public Integer call() throws Exception {
-        cliService.runJob(bucket, pageSize, triggerType, notes);
+        cliService.runJob(bucket, pageSize, concurrency, mode, incremental, listingParallelism, triggerType, notes);
         return 0;
     }
 } 
\ No newline at end of file
@@ -0,0 +1,30 @@
+package org.soumitra.reviewsystem.cli;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+
+import java.util.concurrent.Callable;
+
+@Component
+@Command(
+    name = "train-dictionary",
+    description = "Train the zstd dictionary used to store records compressed"
+)
+public class TrainDictionaryCommand implements Callable<Integer> {
+    
+    @Autowired
+    private CLIService cliService;
+    
+    @Option(names = {"-s", "--samples"}, description = "Number of recent records to train on (default: 5000)")
+    private int samples = 5000;
+    
+    @Option(names = {"-k", "--size-kb"}, description = "Dictionary size in KB (default: 112)")
+    private int sizeKb = 112;
+
+    @Override
+    public Integer call() throws Exception {
+        return cliService.trainRawDataDictionary(samples, sizeKb) ? 0 : 1;
+    }
+}
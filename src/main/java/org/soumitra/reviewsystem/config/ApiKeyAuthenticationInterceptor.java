@@ -121,6 +121,9 @@ public class ApiKeyAuthenticationInterceptor implements HandlerInterceptor {
         if (requestURI.matches("/api/jobs/\\d+")) {
             return "READ";
         }
+        if (requestURI.matches("/api/jobs/\\d+/progress/stream")) {
+            return "READ";
+        }
         if (requestURI.matches("/api/jobs/s3-files/\\d+")) {
             return "READ";
         }
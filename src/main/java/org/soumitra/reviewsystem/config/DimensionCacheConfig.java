@@ -0,0 +1,38 @@
+package org.soumitra.reviewsystem.config;
+
+import org.soumitra.reviewsystem.DimensionCache;
+import org.soumitra.reviewsystem.ReviewIdIndex;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Configuration
+public class DimensionCacheConfig {
+
+    @Value("${ingest.dimension-cache.maximum-size:100000}")
+    private long maximumSize;
+
+    @Value("${ingest.dimension-cache.ttl-minutes:60}")
+    private long ttlMinutes;
+
+    @Value("${ingest.review-id-index.max-entries:0}")
+    private int reviewIdIndexMaxEntries;
+
+    /**
+     * One cache for the whole application, so consecutive and concurrent jobs share it
+     */
+    @Bean
+    public DimensionCache dimensionCache() {
+        return new DimensionCache(maximumSize, Duration.ofMinutes(ttlMinutes));
+    }
+
+    /**
+     * Off unless ingest.review-id-index.max-entries is set; worth it when jobs reprocess stored reviews
+     */
+    @Bean
+    public ReviewIdIndex reviewIdIndex() {
+        return new ReviewIdIndex(reviewIdIndexMaxEntries);
+    }
+}
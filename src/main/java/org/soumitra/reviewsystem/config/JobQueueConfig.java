@@ -0,0 +1,34 @@
+package org.soumitra.reviewsystem.config;
+
+import org.soumitra.reviewsystem.JobProgressRegistry;
+import org.soumitra.reviewsystem.JobQueue;
+import org.soumitra.reviewsystem.dao.JobRunRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class JobQueueConfig {
+
+    @Value("${ingest.jobs.concurrency:2}")
+    private int concurrency;
+
+    @Value("${ingest.jobs.queue-capacity:20}")
+    private int queueCapacity;
+
+    /**
+     * Background runner for jobs started over the API; closed with the context, which fails the jobs still waiting
+     */
+    @Bean
+    public JobQueue jobQueue(JobRunRepository jobRunRepository) {
+        return new JobQueue(jobRunRepository, concurrency, queueCapacity);
+    }
+
+    /**
+     * In-memory progress of the jobs running in this instance, streamed by GET /api/jobs/{jobId}/progress/stream
+     */
+    @Bean
+    public JobProgressRegistry jobProgressRegistry() {
+        return new JobProgressRegistry();
+    }
+}
@@ -0,0 +1,27 @@
+package org.soumitra.reviewsystem.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.soumitra.reviewsystem.IngestMetrics;
+import org.soumitra.reviewsystem.dao.RecordRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Configuration
+public class MetricsConfig {
+
+    @Value("${ingest.metrics.backlog-refresh-seconds:30}")
+    private long backlogRefreshSeconds;
+
+    /**
+     * Ingestion meters on the Actuator registry, scraped at /actuator/prometheus
+     */
+    @Bean
+    public IngestMetrics ingestMetrics(MeterRegistry meterRegistry, RecordRepository recordRepository) {
+        IngestMetrics metrics = new IngestMetrics(meterRegistry);
+        metrics.registerBacklogGauge(recordRepository::countNewRecords, Duration.ofSeconds(backlogRefreshSeconds));
+        return metrics;
+    }
+}
@@ -0,0 +1,28 @@
+package org.soumitra.reviewsystem.config;
+
+import org.soumitra.reviewsystem.RawDataCodec;
+import org.soumitra.reviewsystem.dao.RawDataDictionaryRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class RawDataCodecConfig {
+
+    @Value("${ingest.records.compression:none}")
+    private String compression;
+
+    @Value("${ingest.records.compression-level:3}")
+    private int compressionLevel;
+
+    /**
+     * Reading compressed records works whatever the setting; it only decides how new ones are written
+     */
+    @Bean
+    public RawDataCodec rawDataCodec(RawDataDictionaryRepository rawDataDictionaryRepository) {
+        if (!"none".equalsIgnoreCase(compression) && !"zstd".equalsIgnoreCase(compression)) {
+            throw new IllegalArgumentException("ingest.records.compression must be none or zstd, not " + compression);
+        }
+        return new RawDataCodec("zstd".equalsIgnoreCase(compression), compressionLevel, rawDataDictionaryRepository);
+    }
+}
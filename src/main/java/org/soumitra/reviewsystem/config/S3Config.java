@@ -1,5 +1,6 @@
 package org.soumitra.reviewsystem.config;
 
+import org.soumitra.reviewsystem.RangedDownload;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -25,6 +26,15 @@ public class S3Config {
     @Value("${AWS_S3_ENDPOINT:${aws.s3.endpoint:}}")
     private String endpoint;
 
+    @Value("${ingest.download.ranged-threshold-mb:64}")
+    private long rangedThresholdMb;
+
+    @Value("${ingest.download.part-size-mb:8}")
+    private long partSizeMb;
+
+    @Value("${ingest.download.parallelism:1}")
+    private int downloadParallelism;
+
     @Bean
     public S3Client s3Client() {
         var builder = S3Client.builder()
@@ -40,4 +50,9 @@ public class S3Config {
         
         return builder.build();
     }
+
+    @Bean
+    public RangedDownload rangedDownload() {
+        return new RangedDownload(rangedThresholdMb * 1024 * 1024, partSizeMb * 1024 * 1024, downloadParallelism);
+    }
 } 
\ No newline at end of file
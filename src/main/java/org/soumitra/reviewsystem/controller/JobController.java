@@ -1,11 +1,22 @@
 package org.soumitra.reviewsystem.controller;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.env.Environment;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.soumitra.reviewsystem.IngestMetrics;
+import org.soumitra.reviewsystem.JobProgressRegistry;
+import org.soumitra.reviewsystem.JobQueue;
 import org.soumitra.reviewsystem.JobRunner;
+import org.soumitra.reviewsystem.DimensionCache;
+import org.soumitra.reviewsystem.ReviewIdIndex;
+import org.soumitra.reviewsystem.RawDataCodec;
+import org.soumitra.reviewsystem.RangedDownload;
 import org.soumitra.reviewsystem.RecordProcessorJob;
+import org.soumitra.reviewsystem.ReviewNormalizer;
 import org.soumitra.reviewsystem.dao.*;
 import org.soumitra.reviewsystem.model.JobRun;
 import org.soumitra.reviewsystem.model.S3File;
@@ -16,10 +27,13 @@ import org.soumitra.reviewsystem.util.HotelReviewJsonParser;
 import software.amazon.awssdk.services.s3.S3Client;
 
 import jakarta.servlet.http.HttpServletRequest;
+import java.net.URI;
+import java.time.Duration;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.RejectedExecutionException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
@@ -69,14 +83,55 @@ public class JobController {
     @Autowired
     private S3Client s3Client;
 
+    @Autowired
+    private RangedDownload rangedDownload;
+
+    @Autowired
+    private DimensionCache dimensionCache;
+
+    @Autowired
+    private ReviewIdIndex reviewIdIndex;
+
+    @Autowired
+    private RawDataCodec rawDataCodec;
+
+    @Autowired
+    private IngestMetrics ingestMetrics;
+
+    @Autowired
+    private JobQueue jobQueue;
+
+    @Autowired
+    private JobProgressRegistry jobProgressRegistry;
+
+    @Autowired
+    private JobProgressStreams jobProgressStreams;
+
+    @Autowired
+    private S3ListingWatermarkRepository s3ListingWatermarkRepository;
+
     @Autowired
     private HotelReviewJsonParser hotelReviewJsonParser;
 
     @Autowired
     private Environment environment;
 
+    @Value("${spring.datasource.hikari.maximum-pool-size:10}")
+    private int databasePoolSize;
+
+    @Value("${ingest.files.max-concurrency:8}")
+    private int maxIngestConcurrency;
+
+    @Value("${ingest.listing.max-parallelism:8}")
+    private int maxListingParallelism;
+
+    @Value("${ingest.records.max-workers:8}")
+    private int maxRecordWorkers;
+
     /**
-     * Endpoint to run the JobRunner job
+     * Endpoint to queue a JobRunner job; answers 202 with the job id, to follow with GET /api/jobs/{jobId}.
+     * While an ingest of the same S3 URI, mode and incremental setting is pending or running, that
+     * job's id and settings are returned instead.
      * POST /api/jobs/run-s3-ingest
      */
     @PostMapping("/run-s3-ingest")
@@ -86,6 +141,15 @@ public class JobController {
             ApiKey apiKey = (ApiKey) httpRequest.getAttribute("apiKey");
             String role = (String) httpRequest.getAttribute("apiKeyRole");
             
+            ResponseEntity<Map<String, Object>> rejected =
+                checkThreadCount("concurrency", request.getConcurrency(), maxIngestConcurrency);
+            if (rejected == null) {
+                rejected = checkThreadCount("listingParallelism", request.getListingParallelism(), maxListingParallelism);
+            }
+            if (rejected != null) {
+                return rejected;
+            }
+
             // s3Uri is optional. if missing take from application config
             String s3Uri = request.getS3Uri();
             if (s3Uri == null || s3Uri.trim().isEmpty()) {
@@ -98,22 +162,57 @@ public class JobController {
                 s3FileRepository,
                 recordRepository,
                 s3Client,
-                request.getBatchSize() != null ? request.getBatchSize() : 10
+                request.getBatchSize() != null ? request.getBatchSize() : 10,
+                request.getConcurrency() != null ? request.getConcurrency() : 1,
+                request.getMode()
             );
+            jobRunner.setRangedDownload(rangedDownload);
+            jobRunner.setListingWatermarks(Boolean.TRUE.equals(request.getIncremental()) ? s3ListingWatermarkRepository : null);
+            jobRunner.setListingParallelism(request.getListingParallelism() != null ? request.getListingParallelism() : 1);
+            jobRunner.setMetrics(ingestMetrics);
+            jobRunner.setProgressRegistry(jobProgressRegistry);
+            if (request.getMode() == JobRunner.IngestMode.DIRECT) {
+                ReviewNormalizer normalizer = new ReviewNormalizer(reviewRepository, hotelRepository, providerRepository,
+                    reviewerRepository, stayInfoRepository, providerHotelSummaryRepository,
+                    providerHotelGradeRepository, ratingCategoryRepository, hotelReviewJsonParser);
+                normalizer.setDimensionCache(dimensionCache);
+                normalizer.setReviewIdIndex(reviewIdIndex);
+                jobRunner.setNormalizer(normalizer, recordErrorRepository);
+            }
 
-            // Run the job
-            jobRunner.runJob(s3Uri);
+            // Queue the job; the key ignores trailing slashes, and only a job of the same mode and
+            // listing kind is joined
+            String ingestUri = s3Uri.trim();
+            JobRunner.IngestMode mode = request.getMode() != null ? request.getMode() : JobRunner.IngestMode.STAGED;
+            boolean incremental = Boolean.TRUE.equals(request.getIncremental());
+            String key = "s3-ingest:" + mode + ":" + (incremental ? "incremental" : "full") + ":" + withoutTrailingSlashes(ingestUri);
+
+            Map<String, Object> settings = new HashMap<>();
+            settings.put("s3Uri", ingestUri);
+            settings.put("batchSize", request.getBatchSize() != null ? request.getBatchSize() : 10);
+            settings.put("concurrency", request.getConcurrency() != null ? request.getConcurrency() : 1);
+            settings.put("mode", mode);
+            settings.put("incremental", incremental);
+            settings.put("listingParallelism", request.getListingParallelism() != null ? request.getListingParallelism() : 1);
+            JobQueue.Submission submission = jobQueue.submit(key, "Processing S3 files", settings,
+                jobId -> jobRunner.runJob(jobId, ingestUri));
 
             Map<String, Object> response = new HashMap<>();
             response.put("success", true);
-            response.put("message", "JobRunner job completed successfully");
-            response.put("s3Uri", s3Uri);
-            response.put("batchSize", request.getBatchSize() != null ? request.getBatchSize() : 10);
+            response.put("message", submission.isCoalesced()
+                ? "An ingest of this S3 URI is already queued or running"
+                : "JobRunner job queued");
+            response.put("jobId", submission.getJobId());
+            response.put("coalesced", submission.isCoalesced());
+            // A coalesced request answers with the settings of the job that runs, not its own
+            response.putAll(submission.getSettings());
             response.put("executedBy", apiKey.getName());
             response.put("executedByRole", role);
 
-            return ResponseEntity.ok(response);
+            return ResponseEntity.accepted().location(URI.create("/api/jobs/" + submission.getJobId())).body(response);
 
+        } catch (RejectedExecutionException e) {
+            return queueFull(e);
         } catch (Exception e) {
             Map<String, Object> errorResponse = new HashMap<>();
             errorResponse.put("success", false);
@@ -125,7 +224,8 @@ public class JobController {
     }
 
     /**
-     * Endpoint to run the RecordProcessorJob
+     * Endpoint to queue a RecordProcessorJob; answers 202 with the job id, to follow with GET /api/jobs/{jobId}.
+     * Record processors are not coalesced, several can share the backlog.
      * POST /api/jobs/run-record-processor
      */
     @PostMapping("/run-record-processor")
@@ -134,6 +234,12 @@ public class JobController {
             // Get authenticated API key info
             ApiKey apiKey = (ApiKey) httpRequest.getAttribute("apiKey");
             String role = (String) httpRequest.getAttribute("apiKeyRole");
+
+            ResponseEntity<Map<String, Object>> rejected =
+                checkThreadCount("workers", request.getWorkers(), maxRecordWorkers);
+            if (rejected != null) {
+                return rejected;
+            }
             
             // Create RecordProcessorJob instance
             RecordProcessorJob recordProcessorJob = new RecordProcessorJob(
@@ -149,21 +255,31 @@ public class JobController {
                 providerHotelGradeRepository,
                 ratingCategoryRepository,
                 hotelReviewJsonParser,
-                request.getPageSize() != null ? request.getPageSize() : 10
+                request.getPageSize() != null ? request.getPageSize() : 10,
+                request.getWorkers() != null ? request.getWorkers() : 1
             );
+            recordProcessorJob.setDimensionCache(dimensionCache);
+            recordProcessorJob.setReviewIdIndex(reviewIdIndex);
+            recordProcessorJob.setRawDataCodec(rawDataCodec);
+            recordProcessorJob.setMetrics(ingestMetrics);
+            recordProcessorJob.setProgressRegistry(jobProgressRegistry);
 
-            // Run the job
-            recordProcessorJob.runJob();
+            // Queue the job
+            JobQueue.Submission submission = jobQueue.submit(null, "Processing review records", recordProcessorJob::runJob);
 
             Map<String, Object> response = new HashMap<>();
             response.put("success", true);
-            response.put("message", "RecordProcessorJob completed successfully");
+            response.put("message", "RecordProcessorJob queued");
+            response.put("jobId", submission.getJobId());
             response.put("pageSize", request.getPageSize() != null ? request.getPageSize() : 10);
+            response.put("workers", request.getWorkers() != null ? request.getWorkers() : 1);
             response.put("executedBy", apiKey.getName());
             response.put("executedByRole", role);
 
-            return ResponseEntity.ok(response);
+            return ResponseEntity.accepted().location(URI.create("/api/jobs/" + submission.getJobId())).body(response);
 
+        } catch (RejectedExecutionException e) {
+            return queueFull(e);
         } catch (Exception e) {
             Map<String, Object> errorResponse = new HashMap<>();
             errorResponse.put("success", false);
@@ -174,6 +290,42 @@ public class JobController {
         }
     }
 
+    /**
+     * 400 when a requested thread count is above its configured limit, or above the database pool
+     * size since each of those threads may hold a connection; null when it is fine
+     */
+    private ResponseEntity<Map<String, Object>> checkThreadCount(String parameter, Integer requested, int configuredLimit) {
+        int limit = Math.max(Math.min(configuredLimit, databasePoolSize), 1);
+        if (requested == null || requested <= limit) {
+            return null;
+        }
+        Map<String, Object> errorResponse = new HashMap<>();
+        errorResponse.put("success", false);
+        errorResponse.put("error", parameter + " must be at most " + limit + ", got " + requested);
+
+        return ResponseEntity.badRequest().body(errorResponse);
+    }
+
+    /**
+     * "s3://bucket/path/" and "s3://bucket/path" name the same listing
+     */
+    private static String withoutTrailingSlashes(String s3Uri) {
+        int end = s3Uri.length();
+        while (end > "s3://".length() && s3Uri.charAt(end - 1) == '/') {
+            end--;
+        }
+        return s3Uri.substring(0, end);
+    }
+
+    private ResponseEntity<Map<String, Object>> queueFull(RejectedExecutionException e) {
+        Map<String, Object> errorResponse = new HashMap<>();
+        errorResponse.put("success", false);
+        errorResponse.put("error", "Job not queued: " + e.getMessage());
+        errorResponse.put("jobsWaiting", jobQueue.getWaiting());
+
+        return ResponseEntity.status(503).header("Retry-After", "60").body(errorResponse);
+    }
+
     /**
      * Get job status endpoint
      * GET /api/jobs/health
@@ -185,6 +337,8 @@ public class JobController {
         response.put("availableJobs", new String[]{"job-runner", "record-processor"});
         response.put("message", "Job controller is ready to process requests");
         response.put("authentication", "API key required for all endpoints except health check");
+        response.put("jobsRunning", jobQueue.getRunning());
+        response.put("jobsWaiting", jobQueue.getWaiting());
         
         return ResponseEntity.ok(response);
     }
@@ -258,6 +412,7 @@ public class JobController {
                 Map<String, Object> response = new HashMap<>();
                 response.put("success", true);
                 response.put("job", job);
+                jobProgressRegistry.find(jobId).ifPresent(progress -> response.put("progress", progress.snapshot()));
                 response.put("requestedBy", apiKey.getName());
                 response.put("requestedByRole", role);
                 
@@ -280,6 +435,36 @@ public class JobController {
         }
     }
 
+    /**
+     * Stream a job's live progress as Server-Sent Events, one "progress" event every intervalSeconds
+     * until the job finishes. The counters are kept in memory by the instance running the job; for a
+     * job that is not running here, one event with its stored status is sent.
+     * GET /api/jobs/{jobId}/progress/stream
+     */
+    @GetMapping(value = "/{jobId}/progress/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamJobProgress(@PathVariable Integer jobId,
+                                                        @RequestParam(defaultValue = "1") int intervalSeconds) {
+        Duration interval = Duration.ofSeconds(Math.min(Math.max(intervalSeconds, 1), 60));
+        if (jobProgressRegistry.find(jobId).isPresent()) {
+            return ResponseEntity.ok(jobProgressStreams.open(jobId, interval));
+        }
+
+        Optional<JobRun> jobOptional = jobRunRepository.findById(jobId);
+        if (jobOptional.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        String status = jobOptional.get().getStatus();
+        if ("pending".equals(status)) {
+            // Still waiting in the queue; the stream picks up its counters once it starts
+            return ResponseEntity.ok(jobProgressStreams.open(jobId, interval));
+        }
+
+        Map<String, Object> stored = new HashMap<>();
+        stored.put("jobId", jobId);
+        stored.put("state", status != null ? status.toUpperCase() : null);
+        return ResponseEntity.ok(jobProgressStreams.once(stored));
+    }
+
     // ==================== S3 FILES ENDPOINTS ====================
 
     /**
@@ -452,6 +637,10 @@ public class JobController {
             
             if (recordOptional.isPresent()) {
                 Record record = recordOptional.get();
+                if (record.getRawData() == null && record.getRawDataZstd() != null) {
+                    // Stored compressed: answer with a copy holding the text, the entity stays as stored
+                    record = record.toBuilder().rawData(rawDataCodec.text(record)).build();
+                }
                 
                 Map<String, Object> response = new HashMap<>();
                 response.put("success", true);
@@ -580,6 +769,10 @@ public class JobController {
     public static class JobRunnerRequest {
         private String s3Uri;
         private Integer batchSize;
+        private Integer concurrency;
+        private JobRunner.IngestMode mode;
+        private Boolean incremental;
+        private Integer listingParallelism;
 
         // Getters and setters
         public String getS3Uri() {
@@ -597,10 +790,43 @@ public class JobController {
         public void setBatchSize(Integer batchSize) {
             this.batchSize = batchSize;
         }
+
+        public Integer getConcurrency() {
+            return concurrency;
+        }
+
+        public void setConcurrency(Integer concurrency) {
+            this.concurrency = concurrency;
+        }
+
+        public JobRunner.IngestMode getMode() {
+            return mode;
+        }
+
+        public void setMode(JobRunner.IngestMode mode) {
+            this.mode = mode;
+        }
+
+        public Boolean getIncremental() {
+            return incremental;
+        }
+
+        public void setIncremental(Boolean incremental) {
+            this.incremental = incremental;
+        }
+
+        public Integer getListingParallelism() {
+            return listingParallelism;
+        }
+
+        public void setListingParallelism(Integer listingParallelism) {
+            this.listingParallelism = listingParallelism;
+        }
     }
 
     public static class RecordProcessorRequest {
         private Integer pageSize;
+        private Integer workers;
 
         // Getters and setters
         public Integer getPageSize() {
@@ -610,5 +836,13 @@ public class JobController {
         public void setPageSize(Integer pageSize) {
             this.pageSize = pageSize;
         }
+
+        public Integer getWorkers() {
+            return workers;
+        }
+
+        public void setWorkers(Integer workers) {
+            this.workers = workers;
+        }
     }
 } 
\ No newline at end of file
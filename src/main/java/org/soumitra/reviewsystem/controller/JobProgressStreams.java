@@ -0,0 +1,149 @@
+package org.soumitra.reviewsystem.controller;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.soumitra.reviewsystem.JobProgress;
+import org.soumitra.reviewsystem.JobProgressRegistry;
+import org.soumitra.reviewsystem.dao.JobRunRepository;
+import org.soumitra.reviewsystem.model.JobRun;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Pushes JobProgress snapshots to Server-Sent Events clients. One scheduler thread serves
+ * every stream: each tick reads the job's counters from the JobProgressRegistry and sends a
+ * "progress" event, and the stream is completed after the event that shows the job finished.
+ * A stream whose client has gone away is cancelled on the next failed send.
+ *
+ * A job still waiting in the JobQueue has no counters yet; until it starts, its events only
+ * carry the job id and its stored state, PENDING at first. That state is read again from
+ * job_runs every STATUS_CHECK_INTERVAL while there are no counters, so a job that runs on
+ * another instance, or fails before it gets counters, still ends the stream once it is
+ * finished.
+ */
+@Component
+public class JobProgressStreams {
+
+    private static final Logger log = LoggerFactory.getLogger(JobProgressStreams.class);
+
+    public static final String EVENT_NAME = "progress";
+
+    private static final Duration STATUS_CHECK_INTERVAL = Duration.ofSeconds(15);
+
+    private final JobProgressRegistry progressRegistry;
+    private final JobRunRepository jobRunRepository;
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "job-progress-stream");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public JobProgressStreams(JobProgressRegistry progressRegistry, JobRunRepository jobRunRepository) {
+        this.progressRegistry = progressRegistry;
+        this.jobRunRepository = jobRunRepository;
+    }
+
+    /**
+     * Stream the job's progress every interval until it finishes
+     */
+    public SseEmitter open(Integer jobId, Duration interval) {
+        // No timeout: the stream ends with the job or the client
+        SseEmitter emitter = new SseEmitter(0L);
+        AtomicReference<ScheduledFuture<?>> tick = new AtomicReference<>();
+        Runnable cancel = () -> {
+            ScheduledFuture<?> scheduled = tick.get();
+            if (scheduled != null) {
+                scheduled.cancel(false);
+            }
+        };
+        emitter.onCompletion(cancel);
+        emitter.onTimeout(cancel);
+        emitter.onError(error -> cancel.run());
+        AtomicReference<String> storedStatus = new AtomicReference<>("pending");
+        AtomicLong nextStatusCheck = new AtomicLong(System.nanoTime() + STATUS_CHECK_INTERVAL.toNanos());
+
+        tick.set(scheduler.scheduleAtFixedRate(() -> {
+            JobProgress progress = progressRegistry.find(jobId).orElse(null);
+            // Read the state before the counters, so a finished snapshot is always the last one sent
+            boolean finished = progress != null && progress.isFinished();
+            try {
+                Object data;
+                if (progress != null) {
+                    data = progress.snapshot();
+                } else {
+                    if (System.nanoTime() - nextStatusCheck.get() >= 0) {
+                        nextStatusCheck.set(System.nanoTime() + STATUS_CHECK_INTERVAL.toNanos());
+                        storedStatus.set(findStatus(jobId, storedStatus.get()));
+                    }
+                    finished = storedStatus.get() == null || isFinished(storedStatus.get());
+                    data = storedState(jobId, storedStatus.get());
+                }
+                emitter.send(SseEmitter.event().name(EVENT_NAME).data(data));
+                if (finished) {
+                    emitter.complete();
+                    cancel.run();
+                }
+            } catch (IOException | IllegalStateException e) {
+                log.debug("Progress stream of job {} closed: {}", jobId, e.getMessage());
+                cancel.run();
+            }
+        }, 0, interval.toMillis(), TimeUnit.MILLISECONDS));
+        return emitter;
+    }
+
+    /**
+     * The job's status in job_runs, null once the row is gone; the last known status when it
+     * cannot be read
+     */
+    private String findStatus(Integer jobId, String lastStatus) {
+        try {
+            return jobRunRepository.findById(jobId).map(JobRun::getStatus).orElse(null);
+        } catch (RuntimeException e) {
+            log.warn("Could not read the status of job {}: {}", jobId, e.getMessage());
+            return lastStatus;
+        }
+    }
+
+    private static boolean isFinished(String status) {
+        return !"pending".equals(status) && !"running".equals(status);
+    }
+
+    private static Map<String, Object> storedState(Integer jobId, String status) {
+        Map<String, Object> data = new HashMap<>();
+        data.put("jobId", jobId);
+        data.put("state", status != null ? status.toUpperCase() : null);
+        return data;
+    }
+
+    /**
+     * Send a single event and complete, for a job with no live progress in this instance
+     */
+    public SseEmitter once(Object data) {
+        SseEmitter emitter = new SseEmitter(0L);
+        try {
+            emitter.send(SseEmitter.event().name(EVENT_NAME).data(data));
+            emitter.complete();
+        } catch (IOException e) {
+            emitter.completeWithError(e);
+        }
+        return emitter;
+    }
+
+    @PreDestroy
+    public void close() {
+        scheduler.shutdownNow();
+    }
+}
@@ -0,0 +1,35 @@
+package org.soumitra.reviewsystem.dao;
+
+import java.util.Collection;
+import java.util.Map;
+
+import lombok.Value;
+import org.soumitra.reviewsystem.model.Hotel;
+
+/**
+ * Set-based hotel upserts, one statement per group rather than one per review
+ */
+public interface HotelRepositoryCustom {
+
+    /**
+     * Resolve each hotel by (external id, provider), inserting the missing ones with a single
+     * multi-row INSERT ... ON CONFLICT DO NOTHING against hotel_unique_key. Candidates must carry
+     * a saved provider; only the first candidate per key is used.
+     *
+     * @return saved hotels keyed by natural key, each pointing at its candidate's provider
+     */
+    Map<HotelKey, Hotel> findOrCreateAll(Collection<Hotel> hotels);
+
+    /**
+     * Natural key of a hotel, matching hotel_unique_key
+     */
+    @Value(staticConstructor = "of")
+    class HotelKey {
+        Integer externalId;
+        Short providerId;
+
+        public static HotelKey of(Hotel hotel) {
+            return of(hotel.getExternalId(), hotel.getProvider().getProviderId());
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package org.soumitra.reviewsystem.dao;
+
+import org.soumitra.reviewsystem.dao.HotelRepositoryCustom.HotelKey;
+import org.soumitra.reviewsystem.model.Hotel;
+import org.soumitra.reviewsystem.model.Provider;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class HotelRepositoryCustomImpl extends JdbcRepositorySupport implements HotelRepositoryCustom {
+
+    private static final String HOTEL_COLUMNS = "hotel_id, external_id, provider_id, hotel_name";
+
+    public HotelRepositoryCustomImpl(JdbcTemplate jdbcTemplate) {
+        super(jdbcTemplate);
+    }
+
+    @Override
+    public Map<HotelKey, Hotel> findOrCreateAll(Collection<Hotel> hotels) {
+        Map<HotelKey, Hotel> candidates = new LinkedHashMap<>();
+        Map<Short, Provider> providers = new HashMap<>();
+        for (Hotel hotel : hotels) {
+            if (hotel.getExternalId() != null && hotel.getProvider() != null && hotel.getProvider().getProviderId() != null) {
+                candidates.putIfAbsent(HotelKey.of(hotel), hotel);
+                providers.putIfAbsent(hotel.getProvider().getProviderId(), hotel.getProvider());
+            }
+        }
+
+        // Rows come back with the caller's provider instances, so nothing needs to be lazily loaded
+        RowMapper<Hotel> mapper = (rs, rowNum) -> Hotel.builder()
+            .hotelId(rs.getInt("hotel_id"))
+            .externalId(rs.getInt("external_id"))
+            .provider(providers.get(rs.getShort("provider_id")))
+            .hotelName(rs.getString("hotel_name"))
+            .build();
+
+        return findOrInsert(candidates.keySet(), keys -> select(keys, mapper),
+            missing -> insert(missing, candidates, mapper));
+    }
+
+    private Map<HotelKey, Hotel> select(Collection<HotelKey> keys, RowMapper<Hotel> mapper) {
+        List<Object> params = new ArrayList<>(keys.size() * 2);
+        for (HotelKey key : keys) {
+            params.add(key.getExternalId());
+            params.add(key.getProviderId());
+        }
+        return byKey(jdbcTemplate.query(
+            "SELECT " + HOTEL_COLUMNS + " FROM hotel WHERE (external_id, provider_id) IN ("
+                + placeholders(keys.size(), "(?, ?)") + ")",
+            mapper, params.toArray()));
+    }
+
+    private Map<HotelKey, Hotel> insert(List<HotelKey> keys, Map<HotelKey, Hotel> candidates, RowMapper<Hotel> mapper) {
+        if (isPostgres()) {
+            List<Object> params = new ArrayList<>(keys.size() * 3);
+            for (HotelKey key : keys) {
+                params.add(key.getExternalId());
+                params.add(key.getProviderId());
+                params.add(candidates.get(key).getHotelName());
+            }
+            return byKey(jdbcTemplate.query(
+                "INSERT INTO hotel (external_id, provider_id, hotel_name) VALUES " + placeholders(keys.size(), "(?, ?, ?)")
+                    + " ON CONFLICT DO NOTHING RETURNING " + HOTEL_COLUMNS,
+                mapper, params.toArray()));
+        }
+
+        Map<HotelKey, Hotel> inserted = new LinkedHashMap<>();
+        for (HotelKey key : keys) {
+            Hotel candidate = candidates.get(key);
+            KeyHolder keyHolder = new GeneratedKeyHolder();
+            jdbcTemplate.update(connection -> {
+                PreparedStatement ps = connection.prepareStatement(
+                    "INSERT INTO hotel (external_id, provider_id, hotel_name) VALUES (?, ?, ?)", new String[] {"hotel_id"});
+                ps.setInt(1, key.getExternalId());
+                ps.setShort(2, key.getProviderId());
+                ps.setString(3, candidate.getHotelName());
+                return ps;
+            }, keyHolder);
+            inserted.put(key, Hotel.builder()
+                .hotelId(keyHolder.getKey().intValue())
+                .externalId(key.getExternalId())
+                .provider(candidate.getProvider())
+                .hotelName(candidate.getHotelName())
+                .build());
+        }
+        return inserted;
+    }
+
+    private static Map<HotelKey, Hotel> byKey(List<Hotel> rows) {
+        Map<HotelKey, Hotel> byKey = new LinkedHashMap<>();
+        for (Hotel row : rows) {
+            byKey.put(HotelKey.of(row), row);
+        }
+        return byKey;
+    }
+}
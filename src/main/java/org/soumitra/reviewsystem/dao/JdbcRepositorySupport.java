@@ -0,0 +1,105 @@
+package org.soumitra.reviewsystem.dao;
+
+import org.postgresql.PGConnection;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Shared plumbing for the JDBC repository fragments: PostgreSQL detection, so each
+ * fragment can use COPY, unnest or ON CONFLICT there and plain JDBC elsewhere, and the
+ * find-or-insert sequence the dimension upserts share.
+ */
+abstract class JdbcRepositorySupport {
+
+    /**
+     * Keys per find-or-insert statement, so the IN and VALUES lists stay well under the
+     * driver's 65535 bind parameters and the plan cache sees a handful of statement shapes
+     */
+    static final int MAX_ROWS_PER_STATEMENT = 1000;
+
+    protected final JdbcTemplate jdbcTemplate;
+    private volatile Boolean postgres;
+
+    protected JdbcRepositorySupport(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    protected boolean isPostgres() {
+        if (postgres == null) {
+            postgres = jdbcTemplate.execute(
+                (ConnectionCallback<Boolean>) connection -> connection.isWrapperFor(PGConnection.class));
+        }
+        return postgres;
+    }
+
+    /**
+     * Resolve every key to its row: read the existing ones, insert the rest, then read again
+     * whatever the insert skipped because a concurrent writer created it first. Keys are
+     * handled MAX_ROWS_PER_STATEMENT at a time.
+     */
+    protected <K, E> Map<K, E> findOrInsert(Collection<K> keys,
+                                            Function<Collection<K>, Map<K, E>> select,
+                                            Function<List<K>, Map<K, E>> insert) {
+        if (keys.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        List<K> all = new ArrayList<>(keys);
+        Map<K, E> resolved = new LinkedHashMap<>();
+        for (int from = 0; from < all.size(); from += MAX_ROWS_PER_STATEMENT) {
+            resolved.putAll(findOrInsertChunk(all.subList(from, Math.min(from + MAX_ROWS_PER_STATEMENT, all.size())),
+                select, insert));
+        }
+        return resolved;
+    }
+
+    private static <K, E> Map<K, E> findOrInsertChunk(List<K> keys,
+                                                      Function<Collection<K>, Map<K, E>> select,
+                                                      Function<List<K>, Map<K, E>> insert) {
+        Map<K, E> resolved = new LinkedHashMap<>(select.apply(keys));
+
+        List<K> missing = missingFrom(resolved, keys);
+        if (!missing.isEmpty()) {
+            resolved.putAll(insert.apply(missing));
+            List<K> lostRaces = missingFrom(resolved, missing);
+            if (!lostRaces.isEmpty()) {
+                resolved.putAll(select.apply(lostRaces));
+            }
+        }
+        return resolved;
+    }
+
+    private static <K> List<K> missingFrom(Map<K, ?> resolved, Collection<K> keys) {
+        List<K> missing = new ArrayList<>();
+        for (K key : keys) {
+            if (!resolved.containsKey(key)) {
+                missing.add(key);
+            }
+        }
+        return missing;
+    }
+
+    /**
+     * Rows affected across all batches; drivers may report SUCCESS_NO_INFO (-2) instead of a count
+     */
+    protected static int sum(int[][] batchCounts) {
+        int total = 0;
+        for (int[] batch : batchCounts) {
+            for (int count : batch) {
+                total += count > 0 ? count : 0;
+            }
+        }
+        return total;
+    }
+
+    protected static String placeholders(int count, String placeholder) {
+        return String.join(", ", Collections.nCopies(count, placeholder));
+    }
+}
@@ -38,6 +38,14 @@ public interface JobRunRepository extends JpaRepository<JobRun, Integer> {
                         @Param("finishedAt") LocalDateTime finishedAt, 
                         @Param("status") String status);
     
+    /**
+     * Move a queued job from pending to running; returns 0 if it was no longer pending
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE JobRun j SET j.status = 'running' WHERE j.id = :jobId AND j.status = 'pending'")
+    int startPendingJob(@Param("jobId") Integer jobId);
+    
     /**
      * Find the last successful job run
      */
@@ -8,7 +8,7 @@ import org.springframework.stereotype.Repository;
 import java.util.Optional;
 
 @Repository
-public interface ProviderHotelGradeRepository extends JpaRepository<ProviderHotelGrade, ProviderHotelGradeId> {
+public interface ProviderHotelGradeRepository extends JpaRepository<ProviderHotelGrade, ProviderHotelGradeId>, ProviderHotelGradeRepositoryCustom {
     
     /**
      * Find provider hotel grade by hotel, provider, category, and review
@@ -0,0 +1,20 @@
+package org.soumitra.reviewsystem.dao;
+
+import java.util.List;
+
+import org.soumitra.reviewsystem.model.ProviderHotelGrade;
+
+/**
+ * Bulk writes for provider_hotel_grade, the largest table in the schema
+ */
+public interface ProviderHotelGradeRepositoryCustom {
+
+    /**
+     * Insert grades in JDBC batches of ingest.ratings.flush-size, skipping any whose primary key
+     * (hotel, provider, category, review) already exists. Hotel, provider, category and review
+     * must already be saved.
+     *
+     * @return number of grades the driver reported as inserted
+     */
+    int insertAllIgnoringExisting(List<ProviderHotelGrade> grades);
+}
@@ -0,0 +1,53 @@
+package org.soumitra.reviewsystem.dao;
+
+import org.soumitra.reviewsystem.model.ProviderHotelGrade;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Types;
+import java.util.List;
+
+public class ProviderHotelGradeRepositoryCustomImpl extends JdbcRepositorySupport implements ProviderHotelGradeRepositoryCustom {
+
+    private static final String INSERT_GRADE_SQL =
+        "INSERT INTO provider_hotel_grade (hotel_id, provider_id, category_id, review_id, grade_value) "
+            + "VALUES (?, ?, ?, ?, ?) ON CONFLICT (hotel_id, provider_id, category_id, review_id) DO NOTHING";
+
+    // Same effect without ON CONFLICT; only safe against writers in the same transaction
+    private static final String INSERT_MISSING_GRADE_SQL =
+        "INSERT INTO provider_hotel_grade (hotel_id, provider_id, category_id, review_id, grade_value) "
+            + "SELECT ?, ?, ?, ?, ? WHERE NOT EXISTS (SELECT 1 FROM provider_hotel_grade "
+            + "WHERE hotel_id = ? AND provider_id = ? AND category_id = ? AND review_id = ?)";
+
+    private final int flushSize;
+
+    public ProviderHotelGradeRepositoryCustomImpl(JdbcTemplate jdbcTemplate,
+                                                  @Value("${ingest.ratings.flush-size:1000}") int flushSize) {
+        super(jdbcTemplate);
+        this.flushSize = flushSize > 0 ? flushSize : 1000;
+    }
+
+    @Override
+    @Transactional
+    public int insertAllIgnoringExisting(List<ProviderHotelGrade> grades) {
+        if (grades.isEmpty()) {
+            return 0;
+        }
+        boolean postgres = isPostgres();
+        return sum(jdbcTemplate.batchUpdate(postgres ? INSERT_GRADE_SQL : INSERT_MISSING_GRADE_SQL, grades, flushSize,
+            (ps, grade) -> {
+                ps.setInt(1, grade.getHotel().getHotelId());
+                ps.setShort(2, grade.getProvider().getProviderId());
+                ps.setShort(3, grade.getCategory().getCategoryId());
+                ps.setLong(4, grade.getReview().getReviewId());
+                ps.setObject(5, grade.getGradeValue(), Types.NUMERIC);
+                if (!postgres) {
+                    ps.setInt(6, grade.getHotel().getHotelId());
+                    ps.setShort(7, grade.getProvider().getProviderId());
+                    ps.setShort(8, grade.getCategory().getCategoryId());
+                    ps.setLong(9, grade.getReview().getReviewId());
+                }
+            }));
+    }
+}
@@ -8,7 +8,7 @@ import org.springframework.stereotype.Repository;
 import java.util.Optional;
 
 @Repository
-public interface ProviderHotelSummaryRepository extends JpaRepository<ProviderHotelSummary, ProviderHotelSummaryId> {
+public interface ProviderHotelSummaryRepository extends JpaRepository<ProviderHotelSummary, ProviderHotelSummaryId>, ProviderHotelSummaryRepositoryCustom {
     
     /**
      * Find provider hotel summary by hotel, provider, and review
@@ -0,0 +1,19 @@
+package org.soumitra.reviewsystem.dao;
+
+import java.util.List;
+
+import org.soumitra.reviewsystem.model.ProviderHotelSummary;
+
+/**
+ * Bulk writes for provider_hotel_summary
+ */
+public interface ProviderHotelSummaryRepositoryCustom {
+
+    /**
+     * Insert summaries in JDBC batches of ingest.ratings.flush-size, skipping any whose primary key
+     * (hotel, provider, review) already exists. Hotel, provider and review must already be saved.
+     *
+     * @return number of summaries the driver reported as inserted
+     */
+    int insertAllIgnoringExisting(List<ProviderHotelSummary> summaries);
+}
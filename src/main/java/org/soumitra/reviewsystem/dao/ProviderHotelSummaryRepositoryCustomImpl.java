@@ -0,0 +1,52 @@
+package org.soumitra.reviewsystem.dao;
+
+import org.soumitra.reviewsystem.model.ProviderHotelSummary;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Types;
+import java.util.List;
+
+public class ProviderHotelSummaryRepositoryCustomImpl extends JdbcRepositorySupport implements ProviderHotelSummaryRepositoryCustom {
+
+    private static final String INSERT_SUMMARY_SQL =
+        "INSERT INTO provider_hotel_summary (hotel_id, provider_id, review_id, overall_score, review_count) "
+            + "VALUES (?, ?, ?, ?, ?) ON CONFLICT (hotel_id, provider_id, review_id) DO NOTHING";
+
+    // Same effect without ON CONFLICT; only safe against writers in the same transaction
+    private static final String INSERT_MISSING_SUMMARY_SQL =
+        "INSERT INTO provider_hotel_summary (hotel_id, provider_id, review_id, overall_score, review_count) "
+            + "SELECT ?, ?, ?, ?, ? WHERE NOT EXISTS (SELECT 1 FROM provider_hotel_summary "
+            + "WHERE hotel_id = ? AND provider_id = ? AND review_id = ?)";
+
+    private final int flushSize;
+
+    public ProviderHotelSummaryRepositoryCustomImpl(JdbcTemplate jdbcTemplate,
+                                                    @Value("${ingest.ratings.flush-size:1000}") int flushSize) {
+        super(jdbcTemplate);
+        this.flushSize = flushSize > 0 ? flushSize : 1000;
+    }
+
+    @Override
+    @Transactional
+    public int insertAllIgnoringExisting(List<ProviderHotelSummary> summaries) {
+        if (summaries.isEmpty()) {
+            return 0;
+        }
+        boolean postgres = isPostgres();
+        return sum(jdbcTemplate.batchUpdate(postgres ? INSERT_SUMMARY_SQL : INSERT_MISSING_SUMMARY_SQL, summaries, flushSize,
+            (ps, summary) -> {
+                ps.setInt(1, summary.getHotel().getHotelId());
+                ps.setShort(2, summary.getProvider().getProviderId());
+                ps.setLong(3, summary.getReview().getReviewId());
+                ps.setObject(4, summary.getOverallScore(), Types.NUMERIC);
+                ps.setObject(5, summary.getReviewCount(), Types.INTEGER);
+                if (!postgres) {
+                    ps.setInt(6, summary.getHotel().getHotelId());
+                    ps.setShort(7, summary.getProvider().getProviderId());
+                    ps.setLong(8, summary.getReview().getReviewId());
+                }
+            }));
+    }
+}
@@ -4,16 +4,23 @@ import org.soumitra.reviewsystem.model.Provider;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface ProviderRepository extends JpaRepository<Provider, Short> {
+public interface ProviderRepository extends JpaRepository<Provider, Short>, ProviderRepositoryCustom {
     
     /**
      * Find provider by external ID
      */
     Optional<Provider> findByExternalId(Short externalId);
     
+    /**
+     * Find the providers among these external IDs that exist
+     */
+    List<Provider> findAllByExternalIdIn(Collection<Short> externalIds);
+    
     /**
      * Check if provider exists by external ID
      */
@@ -0,0 +1,20 @@
+package org.soumitra.reviewsystem.dao;
+
+import java.util.Collection;
+import java.util.Map;
+
+import org.soumitra.reviewsystem.model.Provider;
+
+/**
+ * Set-based provider upserts, one statement per group rather than one per review
+ */
+public interface ProviderRepositoryCustom {
+
+    /**
+     * Resolve each provider by external id, inserting the missing ones with a single
+     * multi-row INSERT ... ON CONFLICT DO NOTHING. Only the first candidate per external id is used.
+     *
+     * @return saved providers keyed by external id
+     */
+    Map<Short, Provider> findOrCreateAll(Collection<Provider> providers);
+}
@@ -0,0 +1,91 @@
+package org.soumitra.reviewsystem.dao;
+
+import org.soumitra.reviewsystem.model.Provider;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class ProviderRepositoryCustomImpl extends JdbcRepositorySupport implements ProviderRepositoryCustom {
+
+    private static final String PROVIDER_COLUMNS = "provider_id, external_id, provider_name";
+
+    private static final RowMapper<Provider> PROVIDER_MAPPER = (rs, rowNum) -> Provider.builder()
+        .providerId(rs.getShort("provider_id"))
+        .externalId(rs.getShort("external_id"))
+        .providerName(rs.getString("provider_name"))
+        .build();
+
+    public ProviderRepositoryCustomImpl(JdbcTemplate jdbcTemplate) {
+        super(jdbcTemplate);
+    }
+
+    @Override
+    public Map<Short, Provider> findOrCreateAll(Collection<Provider> providers) {
+        Map<Short, Provider> candidates = new LinkedHashMap<>();
+        for (Provider provider : providers) {
+            if (provider.getExternalId() != null) {
+                candidates.putIfAbsent(provider.getExternalId(), provider);
+            }
+        }
+        return findOrInsert(candidates.keySet(), this::selectByExternalIds,
+            missing -> insert(missing, candidates));
+    }
+
+    private Map<Short, Provider> selectByExternalIds(Collection<Short> externalIds) {
+        List<Provider> rows = jdbcTemplate.query(
+            "SELECT " + PROVIDER_COLUMNS + " FROM provider WHERE external_id IN (" + placeholders(externalIds.size(), "?") + ")",
+            PROVIDER_MAPPER, externalIds.toArray());
+        return byExternalId(rows);
+    }
+
+    private Map<Short, Provider> insert(List<Short> externalIds, Map<Short, Provider> candidates) {
+        List<Object> params = new ArrayList<>(externalIds.size() * 2);
+        for (Short externalId : externalIds) {
+            params.add(externalId);
+            params.add(candidates.get(externalId).getProviderName());
+        }
+
+        if (isPostgres()) {
+            // Rows another writer inserted meanwhile are skipped here and picked up by the follow-up select
+            return byExternalId(jdbcTemplate.query(
+                "INSERT INTO provider (external_id, provider_name) VALUES " + placeholders(externalIds.size(), "(?, ?)")
+                    + " ON CONFLICT DO NOTHING RETURNING " + PROVIDER_COLUMNS,
+                PROVIDER_MAPPER, params.toArray()));
+        }
+
+        Map<Short, Provider> inserted = new LinkedHashMap<>();
+        for (Short externalId : externalIds) {
+            Provider candidate = candidates.get(externalId);
+            KeyHolder keyHolder = new GeneratedKeyHolder();
+            jdbcTemplate.update(connection -> {
+                PreparedStatement ps = connection.prepareStatement(
+                    "INSERT INTO provider (external_id, provider_name) VALUES (?, ?)", new String[] {"provider_id"});
+                ps.setShort(1, externalId);
+                ps.setString(2, candidate.getProviderName());
+                return ps;
+            }, keyHolder);
+            inserted.put(externalId, Provider.builder()
+                .providerId(keyHolder.getKey().shortValue())
+                .externalId(externalId)
+                .providerName(candidate.getProviderName())
+                .build());
+        }
+        return inserted;
+    }
+
+    private static Map<Short, Provider> byExternalId(List<Provider> rows) {
+        Map<Short, Provider> byExternalId = new LinkedHashMap<>();
+        for (Provider row : rows) {
+            byExternalId.put(row.getExternalId(), row);
+        }
+        return byExternalId;
+    }
+}
@@ -7,7 +7,7 @@ import org.springframework.stereotype.Repository;
 import java.util.Optional;
 
 @Repository
-public interface RatingCategoryRepository extends JpaRepository<RatingCategory, Short> {
+public interface RatingCategoryRepository extends JpaRepository<RatingCategory, Short>, RatingCategoryRepositoryCustom {
     
     /**
      * Find rating category by name
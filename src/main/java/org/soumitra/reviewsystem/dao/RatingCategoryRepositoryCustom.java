@@ -0,0 +1,20 @@
+package org.soumitra.reviewsystem.dao;
+
+import java.util.Collection;
+import java.util.Map;
+
+import org.soumitra.reviewsystem.model.RatingCategory;
+
+/**
+ * Set-based rating category upserts, one statement per group rather than one per grade
+ */
+public interface RatingCategoryRepositoryCustom {
+
+    /**
+     * Resolve each category by name, inserting the missing ones with a single
+     * multi-row INSERT ... ON CONFLICT DO NOTHING
+     *
+     * @return saved categories keyed by name
+     */
+    Map<String, RatingCategory> findOrCreateAll(Collection<String> categoryNames);
+}
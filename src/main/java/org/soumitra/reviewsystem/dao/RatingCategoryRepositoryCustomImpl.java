@@ -0,0 +1,78 @@
+package org.soumitra.reviewsystem.dao;
+
+import org.soumitra.reviewsystem.model.RatingCategory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+
+import java.sql.PreparedStatement;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public class RatingCategoryRepositoryCustomImpl extends JdbcRepositorySupport implements RatingCategoryRepositoryCustom {
+
+    private static final RowMapper<RatingCategory> CATEGORY_MAPPER = (rs, rowNum) -> RatingCategory.builder()
+        .categoryId(rs.getShort("category_id"))
+        .categoryName(rs.getString("category_name"))
+        .build();
+
+    public RatingCategoryRepositoryCustomImpl(JdbcTemplate jdbcTemplate) {
+        super(jdbcTemplate);
+    }
+
+    @Override
+    public Map<String, RatingCategory> findOrCreateAll(Collection<String> categoryNames) {
+        Set<String> names = new LinkedHashSet<>();
+        for (String name : categoryNames) {
+            if (name != null && !name.trim().isEmpty()) {
+                names.add(name);
+            }
+        }
+        return findOrInsert(names, this::select, this::insert);
+    }
+
+    private Map<String, RatingCategory> select(Collection<String> names) {
+        return byName(jdbcTemplate.query(
+            "SELECT category_id, category_name FROM rating_category WHERE category_name IN ("
+                + placeholders(names.size(), "?") + ")",
+            CATEGORY_MAPPER, names.toArray()));
+    }
+
+    private Map<String, RatingCategory> insert(List<String> names) {
+        if (isPostgres()) {
+            return byName(jdbcTemplate.query(
+                "INSERT INTO rating_category (category_name) VALUES " + placeholders(names.size(), "(?)")
+                    + " ON CONFLICT DO NOTHING RETURNING category_id, category_name",
+                CATEGORY_MAPPER, names.toArray()));
+        }
+
+        Map<String, RatingCategory> inserted = new LinkedHashMap<>();
+        for (String name : names) {
+            KeyHolder keyHolder = new GeneratedKeyHolder();
+            jdbcTemplate.update(connection -> {
+                PreparedStatement ps = connection.prepareStatement(
+                    "INSERT INTO rating_category (category_name) VALUES (?)", new String[] {"category_id"});
+                ps.setString(1, name);
+                return ps;
+            }, keyHolder);
+            inserted.put(name, RatingCategory.builder()
+                .categoryId(keyHolder.getKey().shortValue())
+                .categoryName(name)
+                .build());
+        }
+        return inserted;
+    }
+
+    private static Map<String, RatingCategory> byName(List<RatingCategory> rows) {
+        Map<String, RatingCategory> byName = new LinkedHashMap<>();
+        for (RatingCategory row : rows) {
+            byName.put(row.getCategoryName(), row);
+        }
+        return byName;
+    }
+}
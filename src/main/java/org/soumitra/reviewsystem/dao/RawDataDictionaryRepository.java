@@ -0,0 +1,16 @@
+package org.soumitra.reviewsystem.dao;
+
+import org.soumitra.reviewsystem.model.RawDataDictionary;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface RawDataDictionaryRepository extends JpaRepository<RawDataDictionary, Integer> {
+
+    /**
+     * The most recently trained dictionary, which new records are compressed with
+     */
+    Optional<RawDataDictionary> findTopByOrderByIdDesc();
+}
@@ -13,7 +13,7 @@ import java.time.LocalDateTime;
 import java.util.List;
 
 @Repository
-public interface RecordRepository extends JpaRepository<Record, Integer> {
+public interface RecordRepository extends JpaRepository<Record, Integer>, RecordRepositoryCustom {
     
     /**
      * Log a record with status and error message
@@ -31,29 +31,6 @@ public interface RecordRepository extends JpaRepository<Record, Integer> {
                    @Param("finishedAt") LocalDateTime finishedAt,
                    @Param("errorFlag") Boolean errorFlag);
     
-    /**
-     * Simplified log method for JobRunner
-     */
-    default void logNewRecord(Integer s3FileId, Integer jobId, String jsonLine) {
-        Record record = new Record();
-        
-        // Create S3File reference
-        org.soumitra.reviewsystem.model.S3File s3File = new org.soumitra.reviewsystem.model.S3File();
-        s3File.setId(s3FileId);
-        record.setS3File(s3File);
-        
-        // Create JobRun reference
-        org.soumitra.reviewsystem.model.JobRun jobRun = new org.soumitra.reviewsystem.model.JobRun();
-        jobRun.setId(jobId);
-        record.setJobRun(jobRun);
-        
-        record.setRawData(jsonLine);
-        record.setStatus("new");
-        record.setDownloadedAt(LocalDateTime.now());
-        
-        save(record);        
-    }
-    
     /**
      * Find new records with pagination
      */
@@ -64,7 +41,35 @@ public interface RecordRepository extends JpaRepository<Record, Integer> {
      * Find new records with limit (simplified method)
      */
     default List<Record> findNewRecords(int limit) {
-        return findNewRecords(org.springframework.data.domain.PageRequest.of(0, limit));
+        return findNewRecordsAfter(0, limit);
+    }
+    
+    /**
+     * Keyset page of the new-records backlog: the next records with id above lastId.
+     * Served by the partial index idx_records_new_backlog, so the cost of a page does
+     * not grow with the table or with how far into the backlog the reader is.
+     */
+    @Query("SELECT r FROM Record r WHERE r.status = 'new' AND r.id > :lastId ORDER BY r.id ASC")
+    List<Record> findNewRecordsAfter(@Param("lastId") Integer lastId, Pageable pageable);
+    
+    /**
+     * Keyset page of new records with limit (simplified method)
+     */
+    default List<Record> findNewRecordsAfter(Integer lastId, int limit) {
+        return findNewRecordsAfter(lastId, org.springframework.data.domain.PageRequest.of(0, limit));
+    }
+    
+    /**
+     * Most recently staged records, newest first
+     */
+    @Query("SELECT r FROM Record r ORDER BY r.id DESC")
+    List<Record> findLatestRecords(Pageable pageable);
+    
+    /**
+     * Most recently staged records with limit (simplified method)
+     */
+    default List<Record> findLatestRecords(int limit) {
+        return findLatestRecords(org.springframework.data.domain.PageRequest.of(0, limit));
     }
     
     /**
@@ -148,4 +153,10 @@ public interface RecordRepository extends JpaRepository<Record, Integer> {
      */
     @Query("SELECT COUNT(r) FROM Record r WHERE r.s3File.id = :s3FileId AND r.status = :status")
     long countByS3FileIdAndStatus(@Param("s3FileId") Integer s3FileId, @Param("status") String status);
+    
+    /**
+     * Count the new-records backlog; an index-only count over idx_records_new_backlog
+     */
+    @Query("SELECT COUNT(r) FROM Record r WHERE r.status = 'new'")
+    long countNewRecords();
 } 
\ No newline at end of file
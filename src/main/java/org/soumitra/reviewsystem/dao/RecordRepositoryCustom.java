@@ -0,0 +1,165 @@
+package org.soumitra.reviewsystem.dao;
+
+import java.time.LocalDateTime;
+import java.util.Iterator;
+import java.util.List;
+
+import org.soumitra.reviewsystem.model.Record;
+
+/**
+ * Bulk operations on the records staging table that go around Hibernate.
+ * Record ids are IDENTITY-generated, which stops Hibernate from batching inserts,
+ * so these are implemented with plain JDBC in RecordRepositoryCustomImpl.
+ */
+public interface RecordRepositoryCustom {
+
+    /**
+     * Stage a page of JSONL lines as 'new' records in a single transaction.
+     * Rows are sent in JDBC batches of ingest.records.flush-size.
+     *
+     * @return number of records inserted
+     */
+    int logNewRecords(Integer s3FileId, Integer jobId, List<String> jsonLines);
+
+    /**
+     * logNewRecords that also stores the file's checkpoint in the same transaction, so the
+     * checkpoint never lags behind (or runs ahead of) the records that were committed.
+     * A null checkpoint leaves the s3_files row alone.
+     *
+     * @return number of records inserted
+     */
+    int logNewRecords(Integer s3FileId, Integer jobId, List<String> jsonLines, FileCheckpoint checkpoint);
+
+    /**
+     * Stage a single line as a 'new' record, for the line-by-line retry of a page whose
+     * batch failed. Stored like logNewRecords, compressed when ingest.records.compression is on.
+     */
+    void logNewRecord(Integer s3FileId, Integer jobId, String jsonLine);
+
+    /**
+     * Keep a line that failed normalization in DIRECT ingest mode, already marked failed,
+     * so it can be inspected and replayed. Stored like logNewRecords, compressed when
+     * ingest.records.compression is on.
+     *
+     * @return an id-only reference to the stored record, for its error row
+     */
+    Record logFailedRecord(Integer s3FileId, Integer jobId, String jsonLine);
+
+    /**
+     * Whether the datasource is PostgreSQL and can take copyNewRecords
+     */
+    boolean isCopySupported();
+
+    /**
+     * Stream lines straight into COPY records FROM STDIN as 'new' records.
+     * The iterator is drained lazily, so the whole object never sits in memory;
+     * the load is a single transaction and either all lines land or none do.
+     *
+     * @return number of records copied
+     */
+    long copyNewRecords(Integer s3FileId, Integer jobId, Iterator<String> jsonLines);
+
+    /**
+     * Atomically move up to limit 'new' records to 'processing' and return them in id order.
+     * On PostgreSQL rows locked by another claimer are skipped (FOR UPDATE SKIP LOCKED), so any
+     * number of workers, in this JVM or on other nodes, can drain the backlog without sharing a row.
+     * Returned records carry id-only references to their S3 file and job run.
+     */
+    List<Record> claimNewRecords(int limit);
+
+    /**
+     * Keyset variant of claimNewRecords: only considers records with id above afterId,
+     * so a worker that passes its last claimed id skips straight past the part of the
+     * backlog it has already drained.
+     */
+    List<Record> claimNewRecordsAfter(int afterId, int limit);
+
+    /**
+     * Take over up to limit records still 'processing' under a claim made before claimedBefore:
+     * their worker died or failed without finishing or releasing them. The claim is renewed
+     * (started_at) in the same statement, with the same skip-locked or compare-and-set rules
+     * as claimNewRecords, so only one claimer gets each record.
+     */
+    List<Record> claimExpiredRecords(LocalDateTime claimedBefore, int limit);
+
+    /**
+     * Hand claimed records that will not be finished back to the backlog as 'new'. A record
+     * is only released while it is still under the claim it was returned with (its started_at),
+     * so a claim another worker has taken over is left alone.
+     *
+     * @return number of records released
+     */
+    int releaseRecords(List<Record> claimedRecords);
+
+    /**
+     * Finalize a page of processed records in one transaction: one set-based UPDATE of
+     * status and finished_at for the whole page, and one batch of record_errors rows
+     * for the failures (an existing error row for a record is replaced). Each record is only
+     * finished while it is still under the claim in its outcome; a record whose claim was
+     * taken over by another worker is left, errors included, to that worker.
+     *
+     * @return ids of the records whose claim was lost, none of which were finished
+     */
+    List<Integer> finishRecords(List<RecordOutcome> outcomes);
+
+    /**
+     * How far into an S3 file its records have been committed
+     */
+    class FileCheckpoint {
+        private final long byteOffset;
+        private final int line;
+        private final int recordCount;
+
+        public FileCheckpoint(long byteOffset, int line, int recordCount) {
+            this.byteOffset = byteOffset;
+            this.line = line;
+            this.recordCount = recordCount;
+        }
+
+        public long getByteOffset() { return byteOffset; }
+        public int getLine() { return line; }
+        public int getRecordCount() { return recordCount; }
+    }
+
+    /**
+     * How processing of a single claimed record ended
+     */
+    class RecordOutcome {
+        private final Integer recordId;
+        private final LocalDateTime claimedAt;
+        private final boolean failed;
+        private final LocalDateTime finishedAt;
+        private final String errorMessage;
+        private final String traceback;
+
+        private RecordOutcome(Integer recordId, LocalDateTime claimedAt, boolean failed, LocalDateTime finishedAt,
+                              String errorMessage, String traceback) {
+            this.recordId = recordId;
+            this.claimedAt = claimedAt;
+            this.failed = failed;
+            this.finishedAt = finishedAt;
+            this.errorMessage = errorMessage;
+            this.traceback = traceback;
+        }
+
+        /**
+         * @param claimed the record as it was claimed, carrying its claim's started_at
+         */
+        public static RecordOutcome success(Record claimed, LocalDateTime finishedAt) {
+            return new RecordOutcome(claimed.getId(), claimed.getStartedAt(), false, finishedAt, null, null);
+        }
+
+        public static RecordOutcome failure(Record claimed, LocalDateTime finishedAt,
+                                            String errorMessage, String traceback) {
+            return new RecordOutcome(claimed.getId(), claimed.getStartedAt(), true, finishedAt, errorMessage, traceback);
+        }
+
+        public Integer getRecordId() { return recordId; }
+        public LocalDateTime getClaimedAt() { return claimedAt; }
+        public boolean isFailed() { return failed; }
+        public String getStatus() { return failed ? "failed" : "success"; }
+        public LocalDateTime getFinishedAt() { return finishedAt; }
+        public String getErrorMessage() { return errorMessage; }
+        public String getTraceback() { return traceback; }
+    }
+}
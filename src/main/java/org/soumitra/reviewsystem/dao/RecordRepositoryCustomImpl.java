@@ -0,0 +1,529 @@
+package org.soumitra.reviewsystem.dao;
+
+import org.postgresql.PGConnection;
+import org.soumitra.reviewsystem.RawDataCodec;
+import org.soumitra.reviewsystem.model.JobRun;
+import org.soumitra.reviewsystem.model.Record;
+import org.soumitra.reviewsystem.model.S3File;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+public class RecordRepositoryCustomImpl extends JdbcRepositorySupport implements RecordRepositoryCustom {
+
+    private static final String INSERT_NEW_RECORD_SQL =
+        "INSERT INTO records (s3_file_id, job_run_id, raw_data, status, downloaded_at) VALUES (?, ?, ?, 'new', ?)";
+
+    private static final String INSERT_NEW_COMPRESSED_RECORD_SQL =
+        "INSERT INTO records (s3_file_id, job_run_id, raw_data_zstd, raw_data_dict_id, status, downloaded_at) "
+            + "VALUES (?, ?, ?, ?, 'new', ?)";
+
+    private static final String INSERT_FAILED_RECORD_SQL =
+        "INSERT INTO records (s3_file_id, job_run_id, raw_data, status, downloaded_at, started_at, finished_at, error_flag) "
+            + "VALUES (?, ?, ?, 'failed', ?, ?, ?, TRUE)";
+
+    private static final String INSERT_FAILED_COMPRESSED_RECORD_SQL =
+        "INSERT INTO records (s3_file_id, job_run_id, raw_data_zstd, raw_data_dict_id, status, downloaded_at, "
+            + "started_at, finished_at, error_flag) VALUES (?, ?, ?, ?, 'failed', ?, ?, ?, TRUE)";
+
+    private static final String COPY_NEW_RECORDS_SQL =
+        "COPY records (s3_file_id, job_run_id, raw_data, status, downloaded_at) FROM STDIN";
+
+    private static final String COPY_NEW_COMPRESSED_RECORDS_SQL =
+        "COPY records (s3_file_id, job_run_id, raw_data_zstd, raw_data_dict_id, status, downloaded_at) FROM STDIN";
+
+    private static final String UPDATE_FILE_CHECKPOINT_SQL =
+        "UPDATE s3_files SET checkpoint_offset = ?, checkpoint_line = ?, record_count = ?, checkpointed_at = ? WHERE id = ?";
+
+    private static final String RECORD_COLUMNS =
+        "id, s3_file_id, job_run_id, raw_data, raw_data_zstd, raw_data_dict_id, status, downloaded_at, started_at";
+
+    private static final String CLAIM_NEW_RECORDS_SQL =
+        "UPDATE records SET status = 'processing', started_at = ? WHERE id IN ("
+            + "SELECT id FROM records WHERE status = 'new' AND id > ? ORDER BY id LIMIT ? FOR UPDATE SKIP LOCKED) "
+            + "RETURNING " + RECORD_COLUMNS;
+
+    private static final String SELECT_NEW_RECORD_IDS_SQL =
+        "SELECT id FROM records WHERE status = 'new' AND id > ? ORDER BY id LIMIT ?";
+
+    private static final String CLAIM_RECORD_SQL =
+        "UPDATE records SET status = 'processing', started_at = ? WHERE id = ? AND status = 'new'";
+
+    private static final String CLAIM_EXPIRED_RECORDS_SQL =
+        "UPDATE records SET started_at = ? WHERE id IN ("
+            + "SELECT id FROM records WHERE status = 'processing' AND started_at < ? ORDER BY id LIMIT ? FOR UPDATE SKIP LOCKED) "
+            + "RETURNING " + RECORD_COLUMNS;
+
+    private static final String SELECT_EXPIRED_RECORD_IDS_SQL =
+        "SELECT id FROM records WHERE status = 'processing' AND started_at < ? ORDER BY id LIMIT ?";
+
+    private static final String CLAIM_EXPIRED_RECORD_SQL =
+        "UPDATE records SET started_at = ? WHERE id = ? AND status = 'processing' AND started_at < ?";
+
+    // Release and finish only touch a record still under the claim the caller got (its started_at),
+    // so a worker whose claim was taken over cannot undo or overwrite the new owner's work
+    private static final String RELEASE_RECORD_SQL =
+        "UPDATE records SET status = 'new', started_at = NULL WHERE id = ? AND status = 'processing' AND started_at = ?";
+
+    private static final String FINISH_RECORDS_SQL =
+        "UPDATE records r SET status = u.status, finished_at = u.finished_at, "
+            + "error_flag = CASE WHEN u.failed THEN TRUE ELSE r.error_flag END "
+            + "FROM unnest(?::int[], ?::timestamp[], ?::text[], ?::timestamp[], ?::boolean[]) "
+            + "AS u(id, claimed_at, status, finished_at, failed) "
+            + "WHERE r.id = u.id AND r.status = 'processing' AND r.started_at = u.claimed_at "
+            + "RETURNING r.id";
+
+    private static final String UPSERT_RECORD_ERRORS_SQL =
+        "INSERT INTO record_errors (record_id, error_type, error_message, traceback) "
+            + "SELECT u.record_id, 'PROCESSING_ERROR', u.error_message, u.traceback "
+            + "FROM unnest(?::int[], ?::text[], ?::text[]) AS u(record_id, error_message, traceback) "
+            + "ON CONFLICT (record_id) DO UPDATE SET error_message = EXCLUDED.error_message, traceback = EXCLUDED.traceback";
+
+    private static final String FINISH_RECORD_SQL =
+        "UPDATE records SET status = 'success', finished_at = ? WHERE id = ? AND status = 'processing' AND started_at = ?";
+
+    private static final String FAIL_RECORD_SQL =
+        "UPDATE records SET status = 'failed', finished_at = ?, error_flag = TRUE "
+            + "WHERE id = ? AND status = 'processing' AND started_at = ?";
+
+    private static final String DELETE_RECORD_ERROR_SQL =
+        "DELETE FROM record_errors WHERE record_id = ?";
+
+    private static final String INSERT_RECORD_ERROR_SQL =
+        "INSERT INTO record_errors (record_id, error_type, error_message, traceback) VALUES (?, 'PROCESSING_ERROR', ?, ?)";
+
+    private static final RowMapper<Record> CLAIMED_RECORD_MAPPER = (rs, rowNum) -> {
+        Integer s3FileId = rs.getObject("s3_file_id", Integer.class);
+        Integer jobRunId = rs.getObject("job_run_id", Integer.class);
+        Timestamp downloadedAt = rs.getTimestamp("downloaded_at");
+        Timestamp startedAt = rs.getTimestamp("started_at");
+        return Record.builder()
+            .id(rs.getInt("id"))
+            .s3File(s3FileId != null ? S3File.builder().id(s3FileId).build() : null)
+            .jobRun(jobRunId != null ? JobRun.builder().id(jobRunId).build() : null)
+            .rawData(rs.getString("raw_data"))
+            // Left compressed; RawDataCodec.text decompresses when the line is used
+            .rawDataZstd(rs.getBytes("raw_data_zstd"))
+            .rawDataDictId(rs.getObject("raw_data_dict_id", Integer.class))
+            .status(rs.getString("status"))
+            .downloadedAt(downloadedAt != null ? downloadedAt.toLocalDateTime() : null)
+            .startedAt(startedAt != null ? startedAt.toLocalDateTime() : null)
+            .build();
+    };
+
+    private final int flushSize;
+    private final RawDataCodec rawDataCodec;
+
+    public RecordRepositoryCustomImpl(JdbcTemplate jdbcTemplate, int flushSize) {
+        this(jdbcTemplate, flushSize, RawDataCodec.uncompressed());
+    }
+
+    @Autowired
+    public RecordRepositoryCustomImpl(JdbcTemplate jdbcTemplate,
+                                      @Value("${ingest.records.flush-size:500}") int flushSize,
+                                      RawDataCodec rawDataCodec) {
+        super(jdbcTemplate);
+        this.flushSize = flushSize > 0 ? flushSize : 500;
+        this.rawDataCodec = rawDataCodec;
+    }
+
+    @Override
+    @Transactional
+    public int logNewRecords(Integer s3FileId, Integer jobId, List<String> jsonLines) {
+        return logNewRecords(s3FileId, jobId, jsonLines, null);
+    }
+
+    @Override
+    @Transactional
+    public int logNewRecords(Integer s3FileId, Integer jobId, List<String> jsonLines, FileCheckpoint checkpoint) {
+        int inserted = insertNewRecords(s3FileId, jobId, jsonLines);
+        if (checkpoint != null) {
+            jdbcTemplate.update(UPDATE_FILE_CHECKPOINT_SQL, checkpoint.getByteOffset(), checkpoint.getLine(),
+                checkpoint.getRecordCount(), Timestamp.valueOf(LocalDateTime.now()), s3FileId);
+        }
+        return inserted;
+    }
+
+    private int insertNewRecords(Integer s3FileId, Integer jobId, List<String> jsonLines) {
+        if (jsonLines.isEmpty()) {
+            return 0;
+        }
+
+        Timestamp downloadedAt = Timestamp.valueOf(LocalDateTime.now());
+        if (rawDataCodec.isEnabled()) {
+            jdbcTemplate.batchUpdate(INSERT_NEW_COMPRESSED_RECORD_SQL, jsonLines, flushSize, (ps, jsonLine) -> {
+                RawDataCodec.Compressed compressed = rawDataCodec.compress(jsonLine);
+                ps.setInt(1, s3FileId);
+                ps.setInt(2, jobId);
+                ps.setBytes(3, compressed.getData());
+                ps.setObject(4, compressed.getDictionaryId(), Types.INTEGER);
+                ps.setTimestamp(5, downloadedAt);
+            });
+            return jsonLines.size();
+        }
+        jdbcTemplate.batchUpdate(INSERT_NEW_RECORD_SQL, jsonLines, flushSize, (ps, jsonLine) -> {
+            ps.setInt(1, s3FileId);
+            ps.setInt(2, jobId);
+            ps.setString(3, jsonLine);
+            ps.setTimestamp(4, downloadedAt);
+        });
+
+        // With reWriteBatchedInserts the driver reports SUCCESS_NO_INFO per row, so count what was sent
+        return jsonLines.size();
+    }
+
+    @Override
+    @Transactional
+    public void logNewRecord(Integer s3FileId, Integer jobId, String jsonLine) {
+        insertNewRecords(s3FileId, jobId, List.of(jsonLine));
+    }
+
+    @Override
+    @Transactional
+    public Record logFailedRecord(Integer s3FileId, Integer jobId, String jsonLine) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        boolean compressed = rawDataCodec.isEnabled();
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.update(connection -> {
+            PreparedStatement ps = connection.prepareStatement(
+                compressed ? INSERT_FAILED_COMPRESSED_RECORD_SQL : INSERT_FAILED_RECORD_SQL, new String[] {"id"});
+            int column = 1;
+            ps.setInt(column++, s3FileId);
+            ps.setInt(column++, jobId);
+            if (compressed) {
+                RawDataCodec.Compressed line = rawDataCodec.compress(jsonLine);
+                ps.setBytes(column++, line.getData());
+                ps.setObject(column++, line.getDictionaryId(), Types.INTEGER);
+            } else {
+                ps.setString(column++, jsonLine);
+            }
+            ps.setTimestamp(column++, now);
+            ps.setTimestamp(column++, now);
+            ps.setTimestamp(column, now);
+            return ps;
+        }, keyHolder);
+        return Record.builder().id(keyHolder.getKey().intValue()).build();
+    }
+
+    @Override
+    public boolean isCopySupported() {
+        return isPostgres();
+    }
+
+    @Override
+    @Transactional
+    public List<Record> claimNewRecords(int limit) {
+        return claimNewRecordsAfter(0, limit);
+    }
+
+    @Override
+    @Transactional
+    public List<Record> claimNewRecordsAfter(int afterId, int limit) {
+        if (limit <= 0) {
+            return Collections.emptyList();
+        }
+
+        Timestamp startedAt = Timestamp.valueOf(LocalDateTime.now());
+        if (isPostgres()) {
+            List<Record> claimed = new ArrayList<>(
+                jdbcTemplate.query(CLAIM_NEW_RECORDS_SQL, CLAIMED_RECORD_MAPPER, startedAt, afterId, limit));
+            // RETURNING makes no ordering promise
+            claimed.sort(Comparator.comparing(Record::getId));
+            return claimed;
+        }
+
+        // No SKIP LOCKED here: pick candidates, then take each one with a compare-and-set.
+        // A row another worker got to first updates zero rows and is simply left out.
+        List<Integer> candidates = jdbcTemplate.queryForList(SELECT_NEW_RECORD_IDS_SQL, Integer.class, afterId, limit);
+        return claimEach(candidates, CLAIM_RECORD_SQL, (ps, id) -> {
+            ps.setTimestamp(1, startedAt);
+            ps.setInt(2, id);
+        });
+    }
+
+    @Override
+    @Transactional
+    public List<Record> claimExpiredRecords(LocalDateTime claimedBefore, int limit) {
+        if (limit <= 0) {
+            return Collections.emptyList();
+        }
+
+        Timestamp startedAt = Timestamp.valueOf(LocalDateTime.now());
+        Timestamp expiredBefore = Timestamp.valueOf(claimedBefore);
+        if (isPostgres()) {
+            List<Record> claimed = new ArrayList<>(
+                jdbcTemplate.query(CLAIM_EXPIRED_RECORDS_SQL, CLAIMED_RECORD_MAPPER, startedAt, expiredBefore, limit));
+            claimed.sort(Comparator.comparing(Record::getId));
+            return claimed;
+        }
+
+        List<Integer> candidates = jdbcTemplate.queryForList(SELECT_EXPIRED_RECORD_IDS_SQL, Integer.class, expiredBefore, limit);
+        return claimEach(candidates, CLAIM_EXPIRED_RECORD_SQL, (ps, id) -> {
+            ps.setTimestamp(1, startedAt);
+            ps.setInt(2, id);
+            ps.setTimestamp(3, expiredBefore);
+        });
+    }
+
+    @Override
+    @Transactional
+    public int releaseRecords(List<Record> claimedRecords) {
+        return sum(jdbcTemplate.batchUpdate(RELEASE_RECORD_SQL, claimedRecords, flushSize, (ps, record) -> {
+            ps.setInt(1, record.getId());
+            ps.setTimestamp(2, Timestamp.valueOf(record.getStartedAt()));
+        }));
+    }
+
+    /**
+     * Run a compare-and-set claim per candidate and read back the ones it took, in id order
+     */
+    private List<Record> claimEach(List<Integer> candidates, String claimSql,
+                                   ParameterizedPreparedStatementSetter<Integer> setter) {
+        if (candidates.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<Integer> claimedIds = updated(candidates, jdbcTemplate.batchUpdate(claimSql, candidates, flushSize, setter));
+        if (claimedIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        return jdbcTemplate.query(
+            "SELECT " + RECORD_COLUMNS + " FROM records WHERE id IN (" + placeholders(claimedIds.size(), "?") + ") ORDER BY id",
+            CLAIMED_RECORD_MAPPER, claimedIds.toArray());
+    }
+
+    /**
+     * The items whose statement in the batch updated a row
+     */
+    private static <T> List<T> updated(List<T> items, int[][] batchCounts) {
+        List<T> updated = new ArrayList<>(items.size());
+        int index = 0;
+        for (int[] batch : batchCounts) {
+            for (int count : batch) {
+                if (count > 0) {
+                    updated.add(items.get(index));
+                }
+                index++;
+            }
+        }
+        return updated;
+    }
+
+    @Override
+    @Transactional
+    public List<Integer> finishRecords(List<RecordOutcome> outcomes) {
+        if (outcomes.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        Set<Integer> finished;
+        if (isPostgres()) {
+            finished = jdbcTemplate.execute((ConnectionCallback<Set<Integer>>) connection -> {
+                Set<Integer> ids = new HashSet<>();
+                try (PreparedStatement ps = connection.prepareStatement(FINISH_RECORDS_SQL)) {
+                    ps.setArray(1, connection.createArrayOf("integer",
+                        outcomes.stream().map(RecordOutcome::getRecordId).toArray(Integer[]::new)));
+                    ps.setArray(2, connection.createArrayOf("timestamp",
+                        outcomes.stream().map(o -> Timestamp.valueOf(o.getClaimedAt())).toArray(Timestamp[]::new)));
+                    ps.setArray(3, connection.createArrayOf("text",
+                        outcomes.stream().map(RecordOutcome::getStatus).toArray(String[]::new)));
+                    ps.setArray(4, connection.createArrayOf("timestamp",
+                        outcomes.stream().map(o -> Timestamp.valueOf(o.getFinishedAt())).toArray(Timestamp[]::new)));
+                    ps.setArray(5, connection.createArrayOf("boolean",
+                        outcomes.stream().map(RecordOutcome::isFailed).toArray(Boolean[]::new)));
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            ids.add(rs.getInt(1));
+                        }
+                    }
+                }
+                List<RecordOutcome> failures = outcomes.stream()
+                    .filter(o -> o.isFailed() && ids.contains(o.getRecordId()))
+                    .collect(Collectors.toList());
+                if (!failures.isEmpty()) {
+                    try (PreparedStatement ps = connection.prepareStatement(UPSERT_RECORD_ERRORS_SQL)) {
+                        ps.setArray(1, connection.createArrayOf("integer",
+                            failures.stream().map(RecordOutcome::getRecordId).toArray(Integer[]::new)));
+                        ps.setArray(2, connection.createArrayOf("text",
+                            failures.stream().map(RecordOutcome::getErrorMessage).toArray(String[]::new)));
+                        ps.setArray(3, connection.createArrayOf("text",
+                            failures.stream().map(RecordOutcome::getTraceback).toArray(String[]::new)));
+                        ps.executeUpdate();
+                    }
+                }
+                return ids;
+            });
+        } else {
+            // Portable path: the same work as JDBC batches, one per statement shape
+            List<RecordOutcome> successes = outcomes.stream()
+                .filter(o -> !o.isFailed())
+                .collect(Collectors.toList());
+            List<RecordOutcome> failures = outcomes.stream()
+                .filter(RecordOutcome::isFailed)
+                .collect(Collectors.toList());
+            List<RecordOutcome> done = new ArrayList<>(updated(successes,
+                jdbcTemplate.batchUpdate(FINISH_RECORD_SQL, successes, flushSize, this::setFinish)));
+            List<RecordOutcome> failed = updated(failures,
+                jdbcTemplate.batchUpdate(FAIL_RECORD_SQL, failures, flushSize, this::setFinish));
+            jdbcTemplate.batchUpdate(DELETE_RECORD_ERROR_SQL, failed, flushSize,
+                (ps, o) -> ps.setInt(1, o.getRecordId()));
+            jdbcTemplate.batchUpdate(INSERT_RECORD_ERROR_SQL, failed, flushSize, (ps, o) -> {
+                ps.setInt(1, o.getRecordId());
+                ps.setString(2, o.getErrorMessage());
+                ps.setString(3, o.getTraceback());
+            });
+            done.addAll(failed);
+            finished = done.stream().map(RecordOutcome::getRecordId).collect(Collectors.toSet());
+        }
+
+        List<Integer> lost = new ArrayList<>();
+        for (RecordOutcome outcome : outcomes) {
+            if (!finished.contains(outcome.getRecordId())) {
+                lost.add(outcome.getRecordId());
+            }
+        }
+        return lost;
+    }
+
+    private void setFinish(PreparedStatement ps, RecordOutcome outcome) throws SQLException {
+        ps.setTimestamp(1, Timestamp.valueOf(outcome.getFinishedAt()));
+        ps.setInt(2, outcome.getRecordId());
+        ps.setTimestamp(3, Timestamp.valueOf(outcome.getClaimedAt()));
+    }
+
+    @Override
+    @Transactional
+    public long copyNewRecords(Integer s3FileId, Integer jobId, Iterator<String> jsonLines) {
+        String rowPrefix = s3FileId + "\t" + jobId + "\t";
+        String rowSuffix = "\tnew\t" + Timestamp.valueOf(LocalDateTime.now()) + "\n";
+        boolean compressed = rawDataCodec.isEnabled();
+        CopyRowReader rows = compressed
+            ? new CopyRowReader(jsonLines, rowPrefix, rowSuffix, this::compressedCopyColumns)
+            : new CopyRowReader(jsonLines, rowPrefix, rowSuffix);
+
+        // Runs on the transaction's connection, so the COPY commits or rolls back with it
+        return jdbcTemplate.execute((ConnectionCallback<Long>) connection -> {
+            try {
+                return connection.unwrap(PGConnection.class).getCopyAPI()
+                    .copyIn(compressed ? COPY_NEW_COMPRESSED_RECORDS_SQL : COPY_NEW_RECORDS_SQL, rows);
+            } catch (IOException e) {
+                throw new SQLException("COPY into records failed: " + e.getMessage(), e);
+            }
+        });
+    }
+
+    /**
+     * raw_data_zstd and raw_data_dict_id of a line in COPY text format: bytea as an escaped
+     * hex literal, and \N for no dictionary
+     */
+    private String compressedCopyColumns(String jsonLine) {
+        RawDataCodec.Compressed compressed = rawDataCodec.compress(jsonLine);
+        return "\\\\x" + HexFormat.of().formatHex(compressed.getData()) + "\t"
+            + (compressed.getDictionaryId() != null ? compressed.getDictionaryId() : "\\N");
+    }
+
+    /**
+     * Escape a value for the COPY text format: backslash, newline, carriage return and tab
+     * are the characters that would otherwise end a column or a row
+     */
+    static String escapeCopyText(String value) {
+        StringBuilder escaped = null;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            String replacement;
+            switch (c) {
+                case '\\': replacement = "\\\\"; break;
+                case '\n': replacement = "\\n"; break;
+                case '\r': replacement = "\\r"; break;
+                case '\t': replacement = "\\t"; break;
+                default: replacement = null;
+            }
+            if (replacement != null) {
+                if (escaped == null) {
+                    escaped = new StringBuilder(value.length() + 16).append(value, 0, i);
+                }
+                escaped.append(replacement);
+            } else if (escaped != null) {
+                escaped.append(c);
+            }
+        }
+        return escaped != null ? escaped.toString() : value;
+    }
+
+    /**
+     * Reader that renders one COPY text row per line, pulling lines from the iterator on demand
+     */
+    static class CopyRowReader extends Reader {
+        private final Iterator<String> lines;
+        private final String rowPrefix;
+        private final String rowSuffix;
+        private final Function<String, String> columns;
+        private String row = "";
+        private int rowPos;
+
+        CopyRowReader(Iterator<String> lines, String rowPrefix, String rowSuffix) {
+            this(lines, rowPrefix, rowSuffix, RecordRepositoryCustomImpl::escapeCopyText);
+        }
+
+        /**
+         * @param columns renders a line as the already escaped column text between prefix and suffix
+         */
+        CopyRowReader(Iterator<String> lines, String rowPrefix, String rowSuffix, Function<String, String> columns) {
+            this.lines = lines;
+            this.rowPrefix = rowPrefix;
+            this.rowSuffix = rowSuffix;
+            this.columns = columns;
+        }
+
+        @Override
+        public int read(char[] cbuf, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            int written = 0;
+            while (written < len) {
+                if (rowPos == row.length()) {
+                    if (!lines.hasNext()) {
+                        break;
+                    }
+                    row = rowPrefix + columns.apply(lines.next()) + rowSuffix;
+                    rowPos = 0;
+                }
+                int count = Math.min(len - written, row.length() - rowPos);
+                row.getChars(rowPos, rowPos + count, cbuf, off + written);
+                rowPos += count;
+                written += count;
+            }
+            return written == 0 ? -1 : written;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -6,6 +6,10 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 @Repository
@@ -21,6 +25,25 @@ public interface ReviewRepository extends JpaRepository<Review, Long> {
      */
     boolean existsByReviewExternalId(Long reviewExternalId);
     
+    /**
+     * Find the ids of the reviews already stored for these external IDs
+     */
+    List<ReviewIdView> findAllByReviewExternalIdIn(Collection<Long> reviewExternalIds);
+    
+    /**
+     * Map each stored external ID to its review_id in one query; unknown IDs are left out
+     */
+    default Map<Long, Long> findReviewIdsByExternalIds(Collection<Long> reviewExternalIds) {
+        Map<Long, Long> reviewIds = new HashMap<>();
+        if (reviewExternalIds.isEmpty()) {
+            return reviewIds;
+        }
+        for (ReviewIdView review : findAllByReviewExternalIdIn(reviewExternalIds)) {
+            reviewIds.putIfAbsent(review.getReviewExternalId(), review.getReviewId());
+        }
+        return reviewIds;
+    }
+    
     /**
      * Find reviews by hotel external ID
      */
@@ -32,4 +55,12 @@ public interface ReviewRepository extends JpaRepository<Review, Long> {
      */
     @Query("SELECT r FROM Review r JOIN r.provider p WHERE p.externalId = :providerExternalId")
     java.util.List<Review> findByProviderExternalId(@Param("providerExternalId") Short providerExternalId);
-} 
\ No newline at end of file
+    
+    /**
+     * Just the two ids of a review, so existence checks do not load whole rows
+     */
+    interface ReviewIdView {
+        Long getReviewId();
+        Long getReviewExternalId();
+    }
+}
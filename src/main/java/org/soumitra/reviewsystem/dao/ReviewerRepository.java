@@ -9,7 +9,7 @@ import java.util.Optional;
 import java.util.List;
 
 @Repository
-public interface ReviewerRepository extends JpaRepository<Reviewer, Long> {
+public interface ReviewerRepository extends JpaRepository<Reviewer, Long>, ReviewerRepositoryCustom {
     
     /**
      * Find reviewer by display name and country
@@ -40,4 +40,9 @@ public interface ReviewerRepository extends JpaRepository<Reviewer, Long> {
      * Check if reviewer exists by display name, country, and provider
      */
     boolean existsByDisplayNameAndCountryNameAndProvider(String displayName, String countryName, Provider provider);
+
+    /**
+     * Find the oldest reviewer on the unique constraint's columns: display name, country id, and provider
+     */
+    Optional<Reviewer> findFirstByDisplayNameAndCountryIdAndProviderOrderByReviewerIdAsc(String displayName, Integer countryId, Provider provider);
 } 
\ No newline at end of file
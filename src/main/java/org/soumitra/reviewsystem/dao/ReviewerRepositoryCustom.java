@@ -0,0 +1,38 @@
+package org.soumitra.reviewsystem.dao;
+
+import java.util.Collection;
+import java.util.Map;
+
+import lombok.Value;
+import org.soumitra.reviewsystem.model.Reviewer;
+
+/**
+ * Set-based reviewer upserts, one statement per group rather than one per review
+ */
+public interface ReviewerRepositoryCustom {
+
+    /**
+     * Resolve each reviewer by (display name, country id, provider), inserting the missing
+     * ones with multi-row INSERT ... ON CONFLICT DO NOTHING statements. Candidates must carry a
+     * saved provider; only the first candidate per key is used. Reviewers without a display
+     * name never conflict on the unique constraint and are left out, to be resolved one by one.
+     *
+     * @return saved reviewers keyed by natural key, each pointing at its candidate's provider
+     */
+    Map<ReviewerKey, Reviewer> findOrCreateAll(Collection<Reviewer> reviewers);
+
+    /**
+     * Natural key on the columns of reviewer_display_country_provider_unique, so a key the
+     * insert skips on conflict is always one the follow-up select can find
+     */
+    @Value(staticConstructor = "of")
+    class ReviewerKey {
+        String displayName;
+        Integer countryId;
+        Short providerId;
+
+        public static ReviewerKey of(Reviewer reviewer) {
+            return of(reviewer.getDisplayName(), reviewer.getCountryId(), reviewer.getProvider().getProviderId());
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package org.soumitra.reviewsystem.dao;
+
+import org.soumitra.reviewsystem.dao.ReviewerRepositoryCustom.ReviewerKey;
+import org.soumitra.reviewsystem.model.Provider;
+import org.soumitra.reviewsystem.model.Reviewer;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+
+import java.sql.PreparedStatement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public class ReviewerRepositoryCustomImpl extends JdbcRepositorySupport implements ReviewerRepositoryCustom {
+
+    private static final String REVIEWER_COLUMNS =
+        "reviewer_id, display_name, provider_id, country_id, country_name, flag_code, is_expert, reviews_written";
+
+    private static final String INSERT_COLUMNS =
+        "display_name, provider_id, country_id, country_name, flag_code, is_expert, reviews_written";
+
+    public ReviewerRepositoryCustomImpl(JdbcTemplate jdbcTemplate) {
+        super(jdbcTemplate);
+    }
+
+    @Override
+    public Map<ReviewerKey, Reviewer> findOrCreateAll(Collection<Reviewer> reviewers) {
+        Map<ReviewerKey, Reviewer> candidates = new LinkedHashMap<>();
+        Map<Short, Provider> providers = new HashMap<>();
+        for (Reviewer reviewer : reviewers) {
+            if (reviewer.getDisplayName() != null && reviewer.getProvider() != null
+                    && reviewer.getProvider().getProviderId() != null) {
+                candidates.putIfAbsent(ReviewerKey.of(reviewer), reviewer);
+                providers.putIfAbsent(reviewer.getProvider().getProviderId(), reviewer.getProvider());
+            }
+        }
+
+        RowMapper<Reviewer> mapper = (rs, rowNum) -> Reviewer.builder()
+            .reviewerId(rs.getLong("reviewer_id"))
+            .displayName(rs.getString("display_name"))
+            .provider(providers.get(rs.getShort("provider_id")))
+            .countryId(rs.getObject("country_id", Integer.class))
+            .countryName(rs.getString("country_name"))
+            .flagCode(rs.getString("flag_code"))
+            .isExpert(rs.getObject("is_expert", Boolean.class))
+            .reviewsWritten(rs.getObject("reviews_written", Integer.class))
+            .build();
+
+        return findOrInsert(candidates.keySet(), keys -> select(keys, mapper),
+            missing -> insert(missing, candidates, mapper));
+    }
+
+    /**
+     * Narrow by display name and provider, which the unique index leads with, and match
+     * the country (possibly null) in memory; the oldest row wins if there are duplicates
+     */
+    private Map<ReviewerKey, Reviewer> select(Collection<ReviewerKey> keys, RowMapper<Reviewer> mapper) {
+        Set<String> displayNames = new LinkedHashSet<>();
+        Set<Short> providerIds = new LinkedHashSet<>();
+        for (ReviewerKey key : keys) {
+            displayNames.add(key.getDisplayName());
+            providerIds.add(key.getProviderId());
+        }
+        List<Object> params = new ArrayList<>(displayNames);
+        params.addAll(providerIds);
+
+        List<Reviewer> rows = jdbcTemplate.query(
+            "SELECT " + REVIEWER_COLUMNS + " FROM reviewer WHERE display_name IN (" + placeholders(displayNames.size(), "?")
+                + ") AND provider_id IN (" + placeholders(providerIds.size(), "?") + ") ORDER BY reviewer_id",
+            mapper, params.toArray());
+
+        Set<ReviewerKey> wanted = new LinkedHashSet<>(keys);
+        Map<ReviewerKey, Reviewer> byKey = new LinkedHashMap<>();
+        for (Reviewer row : rows) {
+            ReviewerKey key = ReviewerKey.of(row);
+            if (wanted.contains(key)) {
+                byKey.putIfAbsent(key, row);
+            }
+        }
+        return byKey;
+    }
+
+    private Map<ReviewerKey, Reviewer> insert(List<ReviewerKey> keys, Map<ReviewerKey, Reviewer> candidates,
+                                              RowMapper<Reviewer> mapper) {
+        if (isPostgres()) {
+            List<Object> params = new ArrayList<>(keys.size() * 7);
+            for (ReviewerKey key : keys) {
+                Reviewer candidate = candidates.get(key);
+                params.add(key.getDisplayName());
+                params.add(key.getProviderId());
+                params.add(key.getCountryId());
+                params.add(candidate.getCountryName());
+                params.add(candidate.getFlagCode());
+                params.add(candidate.getIsExpert());
+                params.add(candidate.getReviewsWritten());
+            }
+            Map<ReviewerKey, Reviewer> inserted = new LinkedHashMap<>();
+            for (Reviewer row : jdbcTemplate.query(
+                    "INSERT INTO reviewer (" + INSERT_COLUMNS + ") VALUES " + placeholders(keys.size(), "(?, ?, ?, ?, ?, ?, ?)")
+                        + " ON CONFLICT DO NOTHING RETURNING " + REVIEWER_COLUMNS,
+                    mapper, params.toArray())) {
+                inserted.put(ReviewerKey.of(row), row);
+            }
+            return inserted;
+        }
+
+        Map<ReviewerKey, Reviewer> inserted = new LinkedHashMap<>();
+        for (ReviewerKey key : keys) {
+            Reviewer candidate = candidates.get(key);
+            KeyHolder keyHolder = new GeneratedKeyHolder();
+            jdbcTemplate.update(connection -> {
+                PreparedStatement ps = connection.prepareStatement(
+                    "INSERT INTO reviewer (" + INSERT_COLUMNS + ") VALUES (?, ?, ?, ?, ?, ?, ?)", new String[] {"reviewer_id"});
+                ps.setString(1, key.getDisplayName());
+                ps.setShort(2, key.getProviderId());
+                ps.setObject(3, key.getCountryId(), Types.INTEGER);
+                ps.setString(4, candidate.getCountryName());
+                ps.setString(5, candidate.getFlagCode());
+                ps.setObject(6, candidate.getIsExpert(), Types.BOOLEAN);
+                ps.setObject(7, candidate.getReviewsWritten(), Types.INTEGER);
+                return ps;
+            }, keyHolder);
+            inserted.put(key, Reviewer.builder()
+                .reviewerId(keyHolder.getKey().longValue())
+                .displayName(key.getDisplayName())
+                .provider(candidate.getProvider())
+                .countryId(key.getCountryId())
+                .countryName(candidate.getCountryName())
+                .flagCode(candidate.getFlagCode())
+                .isExpert(candidate.getIsExpert())
+                .reviewsWritten(candidate.getReviewsWritten())
+                .build());
+        }
+        return inserted;
+    }
+}
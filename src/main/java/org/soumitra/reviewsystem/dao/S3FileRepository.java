@@ -1,6 +1,7 @@
 package org.soumitra.reviewsystem.dao;
 
 import org.soumitra.reviewsystem.model.S3File;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
@@ -8,12 +9,28 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 @Repository
 public interface S3FileRepository extends JpaRepository<S3File, Integer> {
+
+    /**
+     * A 'processing' file whose checkpoint (or start, before its first checkpoint) is older
+     * than this belongs to a run that died, and may be claimed again
+     */
+    Duration ABANDONED_AFTER = Duration.ofMinutes(10);
+
+    /**
+     * Keys per IN list in findStatusesByS3Keys; callers that batch keys use the same size
+     */
+    int STATUS_LOOKUP_CHUNK = 1000;
     
     /**
      * Find by S3 key
@@ -21,30 +38,53 @@ public interface S3FileRepository extends JpaRepository<S3File, Integer> {
     Optional<S3File> findByS3Key(String s3Key);
     
     /**
-     * Insert or update file
+     * Insert or update file, claiming it for the calling job.
+     * Returns null when the file is not claimable: it is done, another runner holds it, or
+     * another runner's insert won the unique s3_key race.
      */
     default Integer insertOrUpdateFile(Integer jobRunId, String bucket, String s3Key, String status, String errorMessage, boolean isNew) {
         Optional<S3File> existing = findByS3Key(s3Key);
+        LocalDateTime now = LocalDateTime.now();
         
-        S3File s3File;
         if (existing.isPresent()) {
-            s3File = existing.get();
-            s3File.setStartedAt(LocalDateTime.now());
-            s3File.setStatus(status);
-            s3File.setErrorMessage(errorMessage);
-        } else {
-            s3File = new S3File();
-            s3File.setJobRun(new org.soumitra.reviewsystem.model.JobRun() {{ setId(jobRunId); }});
-            s3File.setS3Key(s3Key);
-            s3File.setStartedAt(LocalDateTime.now());
-            s3File.setStatus(status);
-            s3File.setErrorMessage(errorMessage);
+            // The update itself decides: the row we read may have been claimed or finished since
+            int claimed = claimFile(existing.get().getId(), now.minus(ABANDONED_AFTER), status, errorMessage, now);
+            return claimed == 1 ? existing.get().getId() : null;
         }
         
-        S3File saved = save(s3File);
-        return saved.getId();
+        S3File s3File = new S3File();
+        s3File.setJobRun(new org.soumitra.reviewsystem.model.JobRun() {{ setId(jobRunId); }});
+        s3File.setS3Key(s3Key);
+        s3File.setStartedAt(now);
+        s3File.setStatus(status);
+        s3File.setErrorMessage(errorMessage);
+        
+        try {
+            S3File saved = saveAndFlush(s3File);
+            return saved.getId();
+        } catch (DataIntegrityViolationException e) {
+            // Lost the race to insert this key
+            return null;
+        }
     }
     
+    /**
+     * Claim an existing file row if it is claimable: new, failed, or processing with no sign of
+     * life since staleBefore. The check and the claim are one statement, so of two runners only
+     * one gets an updated row. The claim counts as a sign of life, so checkpointedAt is reset too.
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE S3File s SET s.status = :status, s.errorMessage = :errorMessage, s.startedAt = :startedAt, " +
+           "s.checkpointedAt = :startedAt " +
+           "WHERE s.id = :fileId AND (s.status IN ('new', 'failed') " +
+           "OR (s.status = 'processing' AND COALESCE(s.checkpointedAt, s.startedAt) < :staleBefore))")
+    int claimFile(@Param("fileId") Integer fileId,
+                  @Param("staleBefore") LocalDateTime staleBefore,
+                  @Param("status") String status,
+                  @Param("errorMessage") String errorMessage,
+                  @Param("startedAt") LocalDateTime startedAt);
+    
     /**
      * Update file status
      */
@@ -65,6 +105,43 @@ public interface S3FileRepository extends JpaRepository<S3File, Integer> {
         updateFileStatus(fileId, LocalDateTime.now(), status, errorMessage, recordCount);
     }
     
+    /**
+     * Persist how far into the file records have been committed, so an interrupted
+     * run can resume with a ranged GET instead of starting from line 0
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE S3File s SET s.checkpointOffset = :checkpointOffset, s.checkpointLine = :checkpointLine, " +
+           "s.recordCount = :recordCount, s.checkpointedAt = :checkpointedAt WHERE s.id = :fileId")
+    void updateFileCheckpoint(@Param("fileId") Integer fileId,
+                              @Param("checkpointOffset") Long checkpointOffset,
+                              @Param("checkpointLine") Integer checkpointLine,
+                              @Param("recordCount") Integer recordCount,
+                              @Param("checkpointedAt") LocalDateTime checkpointedAt);
+    
+    /**
+     * Simplified checkpoint method for JobRunner
+     */
+    default void updateFileCheckpoint(Integer fileId, long checkpointOffset, int checkpointLine, int recordCount) {
+        updateFileCheckpoint(fileId, checkpointOffset, checkpointLine, recordCount, LocalDateTime.now());
+    }
+    
+    /**
+     * Show that the file's runner is alive without moving its checkpoint, for stretches where
+     * the checkpoint cannot advance; keeps the file from looking abandoned (see ABANDONED_AFTER)
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE S3File s SET s.checkpointedAt = :checkpointedAt WHERE s.id = :fileId AND s.status = 'processing'")
+    void heartbeatFile(@Param("fileId") Integer fileId, @Param("checkpointedAt") LocalDateTime checkpointedAt);
+
+    /**
+     * Simplified heartbeat method for JobRunner
+     */
+    default void heartbeatFile(Integer fileId) {
+        heartbeatFile(fileId, LocalDateTime.now());
+    }
+    
     /**
      * Find files by job run ID
      */
@@ -81,6 +158,26 @@ public interface S3FileRepository extends JpaRepository<S3File, Integer> {
     @Query("SELECT s FROM S3File s WHERE s.status IN ('new', 'processing')")
     List<S3File> findUnprocessedFiles();
     
+    /**
+     * Key and status of every tracked file among the given keys, as [s3Key, status] rows
+     */
+    @Query("SELECT s.s3Key, s.status FROM S3File s WHERE s.s3Key IN :s3Keys")
+    List<Object[]> findKeyStatuses(@Param("s3Keys") Collection<String> s3Keys);
+    
+    /**
+     * Status of each tracked key in one query per STATUS_LOOKUP_CHUNK keys; untracked keys are absent from the map
+     */
+    default Map<String, String> findStatusesByS3Keys(Collection<String> s3Keys) {
+        Map<String, String> statuses = new HashMap<>();
+        List<String> keys = new ArrayList<>(s3Keys);
+        for (int from = 0; from < keys.size(); from += STATUS_LOOKUP_CHUNK) {
+            for (Object[] row : findKeyStatuses(keys.subList(from, Math.min(from + STATUS_LOOKUP_CHUNK, keys.size())))) {
+                statuses.put((String) row[0], (String) row[1]);
+            }
+        }
+        return statuses;
+    }
+    
     /**
      * Check if file has been successfully processed
      */
@@ -0,0 +1,41 @@
+package org.soumitra.reviewsystem.dao;
+
+import org.soumitra.reviewsystem.model.S3ListingWatermark;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+@Repository
+public interface S3ListingWatermarkRepository extends JpaRepository<S3ListingWatermark, Integer> {
+
+    /**
+     * Find the watermark of a bucket prefix
+     */
+    Optional<S3ListingWatermark> findByBucketAndPrefix(String bucket, String prefix);
+
+    /**
+     * Key to pass as StartAfter when listing the prefix, or null to list from the start
+     */
+    default String findStartAfter(String bucket, String prefix) {
+        return findByBucketAndPrefix(bucket, prefix)
+            .map(S3ListingWatermark::getLastKey)
+            .orElse(null);
+    }
+
+    /**
+     * Move the watermark of a bucket prefix forward; it never moves backwards
+     */
+    default void advance(String bucket, String prefix, String lastKey) {
+        S3ListingWatermark watermark = findByBucketAndPrefix(bucket, prefix)
+            .orElseGet(() -> S3ListingWatermark.builder().bucket(bucket).prefix(prefix).build());
+
+        if (watermark.getLastKey() != null && watermark.getLastKey().compareTo(lastKey) >= 0) {
+            return;
+        }
+        watermark.setLastKey(lastKey);
+        watermark.setUpdatedAt(LocalDateTime.now());
+        save(watermark);
+    }
+}
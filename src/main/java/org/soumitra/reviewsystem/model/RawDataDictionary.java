@@ -0,0 +1,27 @@
+package org.soumitra.reviewsystem.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "raw_data_dictionaries")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class RawDataDictionary {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Integer id;
+
+    @Column(name = "dictionary", nullable = false)
+    private byte[] dictionary;
+
+    @Column(name = "sample_count")
+    private Integer sampleCount;
+
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+}
@@ -1,5 +1,6 @@
 package org.soumitra.reviewsystem.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import lombok.*;
 import java.time.LocalDateTime;
@@ -10,7 +11,7 @@ import java.time.LocalDateTime;
 @Setter
 @NoArgsConstructor
 @AllArgsConstructor
-@Builder
+@Builder(toBuilder = true)
 public class Record {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -27,6 +28,15 @@ public class Record {
     @Column(name = "raw_data", columnDefinition = "jsonb")
     private String rawData;
 
+    // Set instead of rawData when records are stored compressed; see RawDataCodec
+    @JsonIgnore
+    @Column(name = "raw_data_zstd")
+    private byte[] rawDataZstd;
+
+    @JsonIgnore
+    @Column(name = "raw_data_dict_id")
+    private Integer rawDataDictId;
+
     @Column(name = "status")
     private String status;
 
@@ -40,4 +40,13 @@ public class S3File {
 
     @Column(name = "error_message")
     private String errorMessage;
+
+    @Column(name = "checkpoint_offset")
+    private Long checkpointOffset;
+
+    @Column(name = "checkpoint_line")
+    private Integer checkpointLine;
+
+    @Column(name = "checkpointed_at")
+    private LocalDateTime checkpointedAt;
 } 
\ No newline at end of file
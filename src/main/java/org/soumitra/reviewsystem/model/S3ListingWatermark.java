@@ -0,0 +1,31 @@
+package org.soumitra.reviewsystem.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "s3_listing_watermarks",
+       uniqueConstraints = @UniqueConstraint(columnNames = {"bucket", "prefix"}))
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class S3ListingWatermark {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Integer id;
+
+    @Column(name = "bucket", nullable = false)
+    private String bucket;
+
+    @Column(name = "prefix", nullable = false)
+    private String prefix;
+
+    @Column(name = "last_key", nullable = false)
+    private String lastKey;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+}
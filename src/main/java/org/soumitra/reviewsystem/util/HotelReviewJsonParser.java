@@ -1,10 +1,16 @@
 package org.soumitra.reviewsystem.util;
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.io.NumberInput;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import org.soumitra.reviewsystem.RecordEventLog;
 import org.soumitra.reviewsystem.dto.*;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import java.io.IOException;
 import java.time.OffsetDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
@@ -13,12 +19,23 @@ import java.util.List;
 @Component
 public class HotelReviewJsonParser {
 
+    private static final RecordEventLog events = RecordEventLog.forStage("parse");
+
     private final ObjectMapper objectMapper;
+    private boolean streaming = true;
 
     public HotelReviewJsonParser() {
         this.objectMapper = new ObjectMapper();
     }
 
+    /**
+     * Parse with the single-pass token reader (the default) or by building a JsonNode tree
+     */
+    @Value("${ingest.parser.streaming:true}")
+    public void setStreaming(boolean streaming) {
+        this.streaming = streaming;
+    }
+
     /**
      * Parse a hotel review JSON string and create the corresponding DTO objects
      * 
@@ -27,6 +44,13 @@ public class HotelReviewJsonParser {
      * @throws Exception if parsing fails
      */
     public HotelReviewParseResult parseHotelReview(String hotelReviewJson) throws Exception {
+        return streaming ? parseHotelReviewStreaming(hotelReviewJson) : parseHotelReviewTree(hotelReviewJson);
+    }
+
+    /**
+     * Parse by reading the whole document into a JsonNode tree first
+     */
+    public HotelReviewParseResult parseHotelReviewTree(String hotelReviewJson) throws Exception {
         JsonNode rootNode = objectMapper.readTree(hotelReviewJson);
         
         // Parse provider first (hotels depend on providers)
@@ -57,6 +81,430 @@ public class HotelReviewJsonParser {
                 .build();
     }
 
+    /**
+     * Parse in one pass over the parser's tokens, without building a JsonNode tree.
+     * Fields the DTOs do not use, such as encryptedReviewData, are skipped unread.
+     *
+     * Gives exactly what parseHotelReviewTree gives for the same input, including its
+     * coercions (a number where text is expected, a null platform read as "null", the last
+     * of duplicate keys winning) and the order in which missing fields are reported.
+     */
+    public HotelReviewParseResult parseHotelReviewStreaming(String hotelReviewJson) throws IOException {
+        RootFields root = new RootFields();
+        try (JsonParser p = objectMapper.getFactory().createParser(hotelReviewJson)) {
+            if (p.nextToken() == JsonToken.START_OBJECT) {
+                readRoot(p, root);
+            } else {
+                p.skipChildren();
+            }
+        }
+
+        // Same checks in the same order as the tree path
+        String providerName = root.platform != null ? root.platform
+            : root.comment != null ? root.comment.reviewProviderText : null;
+        if (root.comment == null || root.comment.providerId == null || providerName == null) {
+            throw new RuntimeException("Provider ID or name is missing");
+        }
+        ProviderDto provider = ProviderDto.builder()
+                .externalId(root.comment.providerId)
+                .providerName(providerName)
+                .build();
+
+        if (root.hotelId == null || root.hotelName == null) {
+            throw new RuntimeException("Hotel ID or name is missing");
+        }
+        HotelDto hotel = HotelDto.builder()
+                .externalId(root.hotelId)
+                .provider(provider)
+                .hotelName(root.hotelName)
+                .build();
+
+        CommentFields comment = root.comment;
+        ReviewerInfoFields reviewerInfo = comment.reviewerInfo;
+        if (reviewerInfo == null) {
+            throw new RuntimeException("Reviewer info is missing");
+        }
+        if (reviewerInfo.displayName == null) {
+            throw new RuntimeException("Reviewer display name is missing");
+        }
+        ReviewerDto reviewer = ReviewerDto.builder()
+                .displayName(reviewerInfo.displayName)
+                .countryName(reviewerInfo.countryName)
+                .countryId(reviewerInfo.countryId)
+                .flagCode(reviewerInfo.flagCode)
+                .isExpert(reviewerInfo.isExpert)
+                .reviewsWritten(reviewerInfo.reviewsWritten)
+                .build();
+
+        if (comment.reviewExternalId == null) {
+            throw new RuntimeException("Review ID is missing");
+        }
+        OffsetDateTime reviewDate = null;
+        if (comment.reviewDate != null) {
+            try {
+                reviewDate = OffsetDateTime.parse(comment.reviewDate, DateTimeFormatter.ISO_OFFSET_DATE_TIME);
+            } catch (Exception e) {
+                events.event("Could not parse review date: {}", comment.reviewDate);
+            }
+        }
+        ReviewDto review = ReviewDto.builder()
+                .reviewExternalId(comment.reviewExternalId)
+                .hotel(hotel)
+                .provider(provider)
+                .reviewer(reviewer)
+                .rating(comment.rating)
+                .ratingText(comment.ratingText)
+                .ratingFormatted(comment.ratingFormatted)
+                .reviewTitle(comment.reviewTitle)
+                .reviewComment(comment.reviewComment)
+                .reviewVotePositive(null) // Not available in this structure
+                .reviewVoteNegative(null) // Not available in this structure
+                .reviewDate(reviewDate)
+                .translateSource(comment.translateSource)
+                .translateTarget(comment.translateTarget)
+                .isResponseShown(comment.isResponseShown)
+                .responderName(comment.responderName)
+                .responseText(comment.responseText)
+                .responseDateText(comment.responseDateText)
+                .responseDateFmt(comment.responseDateFmt)
+                .checkInMonthYr(comment.checkInMonthYr)
+                .build();
+
+        List<ProviderHotelSummaryDto> summaries = new ArrayList<>();
+        List<ProviderHotelGradeDto> grades = new ArrayList<>();
+        if (root.overallByProviders != null) {
+            for (ProviderSummaryFields entry : root.overallByProviders) {
+                if (entry.providerId != null && entry.providerName != null) {
+                    summaries.add(ProviderHotelSummaryDto.builder()
+                            .hotelId(hotel.getHotelId())
+                            .providerId(entry.providerId)
+                            .reviewId(review.getReviewExternalId())
+                            .overallScore(entry.overallScore)
+                            .reviewCount(entry.reviewCount)
+                            .build());
+                }
+            }
+            for (ProviderSummaryFields entry : root.overallByProviders) {
+                if (entry.gradeNames == null || entry.providerId == null) {
+                    continue;
+                }
+                for (int i = 0; i < entry.gradeNames.size(); i++) {
+                    Double gradeValue = entry.gradeValues.get(i);
+                    if (gradeValue != null) {
+                        grades.add(ProviderHotelGradeDto.builder()
+                                .hotelId(hotel.getHotelId())
+                                .providerId(entry.providerId)
+                                .categoryName(entry.gradeNames.get(i)) // Store category name instead of ID
+                                .reviewId(review.getReviewExternalId())
+                                .gradeValue(gradeValue)
+                                .build());
+                    }
+                }
+            }
+        }
+
+        StayInfoDto stayInfo = null;
+        if (comment.reviewExternalId != null || reviewerInfo.roomTypeId != null || reviewerInfo.roomTypeName != null
+            || reviewerInfo.reviewGroupId != null || reviewerInfo.reviewGroupName != null || reviewerInfo.lengthOfStay != null) {
+            stayInfo = StayInfoDto.builder()
+                    .reviewId(comment.reviewExternalId)
+                    .roomTypeId(reviewerInfo.roomTypeId)
+                    .roomTypeName(reviewerInfo.roomTypeName)
+                    .reviewGroupId(reviewerInfo.reviewGroupId)
+                    .reviewGroupName(reviewerInfo.reviewGroupName)
+                    .lengthOfStay(reviewerInfo.lengthOfStay)
+                    .build();
+        }
+
+        return HotelReviewParseResult.builder()
+                .provider(provider)
+                .hotel(hotel)
+                .reviewer(reviewer)
+                .review(review)
+                .stayInfo(stayInfo)
+                .providerHotelSummaries(summaries)
+                .providerHotelGrades(grades)
+                .build();
+    }
+
+    private void readRoot(JsonParser p, RootFields root) throws IOException {
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String field = p.currentName();
+            p.nextToken();
+            switch (field) {
+                // The tree path reads these whenever the key is present, even when null
+                case "hotelId" -> root.hotelId = asInt(p);
+                case "platform" -> root.platform = asText(p);
+                case "hotelName" -> root.hotelName = asText(p);
+                case "comment" -> root.comment = readComment(p);
+                case "overallByProviders" -> root.overallByProviders = readOverallByProviders(p);
+                default -> p.skipChildren();
+            }
+        }
+    }
+
+    private CommentFields readComment(JsonParser p) throws IOException {
+        CommentFields comment = new CommentFields();
+        if (p.currentToken() != JsonToken.START_OBJECT) {
+            // A comment that is not an object has none of the fields
+            p.skipChildren();
+            return comment;
+        }
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String field = p.currentName();
+            p.nextToken();
+            switch (field) {
+                case "providerId" -> comment.providerId = shortValue(p);
+                case "reviewProviderText" -> comment.reviewProviderText = asText(p);
+                case "reviewDate" -> comment.reviewDate = asText(p);
+                case "hotelReviewId" -> comment.reviewExternalId = isNull(p) ? null : asLong(p);
+                case "rating" -> comment.rating = isNull(p) ? null : asDouble(p);
+                case "ratingText" -> comment.ratingText = textOrNull(p);
+                case "formattedRating" -> comment.ratingFormatted = textOrNull(p);
+                case "reviewTitle" -> comment.reviewTitle = textOrNull(p);
+                case "reviewComments" -> comment.reviewComment = textOrNull(p);
+                case "translateSource" -> comment.translateSource = textOrNull(p);
+                case "translateTarget" -> comment.translateTarget = textOrNull(p);
+                case "isShowReviewResponse" -> comment.isResponseShown = isNull(p) ? null : asBoolean(p);
+                case "responderName" -> comment.responderName = textOrNull(p);
+                case "originalComment" -> comment.responseText = textOrNull(p);
+                case "responseDateText" -> comment.responseDateText = textOrNull(p);
+                case "formattedResponseDate" -> comment.responseDateFmt = textOrNull(p);
+                case "checkInDateMonthAndYear" -> comment.checkInMonthYr = textOrNull(p);
+                case "reviewerInfo" -> comment.reviewerInfo = readReviewerInfo(p);
+                default -> p.skipChildren();
+            }
+        }
+        return comment;
+    }
+
+    private ReviewerInfoFields readReviewerInfo(JsonParser p) throws IOException {
+        ReviewerInfoFields reviewerInfo = new ReviewerInfoFields();
+        if (p.currentToken() != JsonToken.START_OBJECT) {
+            p.skipChildren();
+            return reviewerInfo;
+        }
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String field = p.currentName();
+            p.nextToken();
+            switch (field) {
+                case "displayMemberName" -> reviewerInfo.displayName = textOrNull(p);
+                case "countryName" -> reviewerInfo.countryName = textOrNull(p);
+                case "countryId" -> reviewerInfo.countryId = isNull(p) ? null : asInt(p);
+                case "flagName" -> reviewerInfo.flagCode = textOrNull(p);
+                case "isExpertReviewer" -> reviewerInfo.isExpert = isNull(p) ? null : asBoolean(p);
+                case "reviewerReviewedCount" -> reviewerInfo.reviewsWritten = isNull(p) ? null : asInt(p);
+                case "roomTypeId" -> reviewerInfo.roomTypeId = isNull(p) ? null : asInt(p);
+                case "roomTypeName" -> reviewerInfo.roomTypeName = textOrNull(p);
+                case "reviewGroupId" -> reviewerInfo.reviewGroupId = isNull(p) ? null : asInt(p);
+                case "reviewGroupName" -> reviewerInfo.reviewGroupName = textOrNull(p);
+                case "lengthOfStay" -> reviewerInfo.lengthOfStay = isNull(p) ? null : shortValue(p);
+                default -> p.skipChildren();
+            }
+        }
+        return reviewerInfo;
+    }
+
+    private List<ProviderSummaryFields> readOverallByProviders(JsonParser p) throws IOException {
+        if (p.currentToken() != JsonToken.START_ARRAY) {
+            p.skipChildren();
+            return null;
+        }
+        List<ProviderSummaryFields> entries = new ArrayList<>();
+        while (p.nextToken() != JsonToken.END_ARRAY) {
+            ProviderSummaryFields entry = new ProviderSummaryFields();
+            entries.add(entry);
+            if (p.currentToken() != JsonToken.START_OBJECT) {
+                p.skipChildren();
+                continue;
+            }
+            while (p.nextToken() == JsonToken.FIELD_NAME) {
+                String field = p.currentName();
+                p.nextToken();
+                switch (field) {
+                    case "providerId" -> entry.providerId = isNull(p) ? null : shortValue(p);
+                    case "provider" -> entry.providerName = textOrNull(p);
+                    case "overallScore" -> entry.overallScore = isNull(p) ? null : asDouble(p);
+                    case "reviewCount" -> entry.reviewCount = isNull(p) ? null : asInt(p);
+                    case "grades" -> readGrades(p, entry);
+                    default -> p.skipChildren();
+                }
+            }
+        }
+        return entries;
+    }
+
+    private void readGrades(JsonParser p, ProviderSummaryFields entry) throws IOException {
+        entry.gradeNames = new ArrayList<>();
+        entry.gradeValues = new ArrayList<>();
+        if (p.currentToken() != JsonToken.START_OBJECT) {
+            p.skipChildren();
+            return;
+        }
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String categoryName = p.currentName();
+            p.nextToken();
+            Double gradeValue = isNull(p) ? null : asDouble(p);
+            // A repeated category keeps its first position and its last value, as in an ObjectNode
+            int existing = entry.gradeNames.indexOf(categoryName);
+            if (existing >= 0) {
+                entry.gradeValues.set(existing, gradeValue);
+            } else {
+                entry.gradeNames.add(categoryName);
+                entry.gradeValues.add(gradeValue);
+            }
+        }
+    }
+
+    // Token conversions matching JsonNode.asText/asInt/asLong/asDouble/asBoolean/shortValue
+    private static boolean isNull(JsonParser p) {
+        return p.currentToken() == JsonToken.VALUE_NULL;
+    }
+
+    private static String textOrNull(JsonParser p) throws IOException {
+        return isNull(p) ? null : asText(p);
+    }
+
+    private static String asText(JsonParser p) throws IOException {
+        switch (p.currentToken()) {
+            case VALUE_STRING:
+                return p.getText();
+            case VALUE_NUMBER_INT:
+            case VALUE_NUMBER_FLOAT:
+                return p.getNumberValue().toString();
+            case VALUE_TRUE:
+                return "true";
+            case VALUE_FALSE:
+                return "false";
+            case VALUE_NULL:
+                return "null";
+            default:
+                p.skipChildren();
+                return "";
+        }
+    }
+
+    private static int asInt(JsonParser p) throws IOException {
+        switch (p.currentToken()) {
+            case VALUE_NUMBER_INT:
+            case VALUE_NUMBER_FLOAT:
+                return p.getNumberValue().intValue();
+            case VALUE_STRING:
+                return NumberInput.parseAsInt(p.getText(), 0);
+            case VALUE_TRUE:
+                return 1;
+            default:
+                p.skipChildren();
+                return 0;
+        }
+    }
+
+    private static long asLong(JsonParser p) throws IOException {
+        switch (p.currentToken()) {
+            case VALUE_NUMBER_INT:
+            case VALUE_NUMBER_FLOAT:
+                return p.getNumberValue().longValue();
+            case VALUE_STRING:
+                return NumberInput.parseAsLong(p.getText(), 0L);
+            case VALUE_TRUE:
+                return 1L;
+            default:
+                p.skipChildren();
+                return 0L;
+        }
+    }
+
+    private static double asDouble(JsonParser p) throws IOException {
+        switch (p.currentToken()) {
+            case VALUE_NUMBER_INT:
+            case VALUE_NUMBER_FLOAT:
+                return p.getNumberValue().doubleValue();
+            case VALUE_STRING:
+                return NumberInput.parseAsDouble(p.getText(), 0.0, false);
+            case VALUE_TRUE:
+                return 1.0;
+            default:
+                p.skipChildren();
+                return 0.0;
+        }
+    }
+
+    private static boolean asBoolean(JsonParser p) throws IOException {
+        switch (p.currentToken()) {
+            case VALUE_TRUE:
+                return true;
+            case VALUE_NUMBER_INT:
+                return p.getNumberType() == JsonParser.NumberType.BIG_INTEGER
+                    ? p.getBigIntegerValue().signum() != 0 : p.getLongValue() != 0L;
+            case VALUE_STRING:
+                return "true".equals(p.getText().trim());
+            default:
+                p.skipChildren();
+                return false;
+        }
+    }
+
+    private static short shortValue(JsonParser p) throws IOException {
+        if (p.currentToken() == JsonToken.VALUE_NUMBER_INT || p.currentToken() == JsonToken.VALUE_NUMBER_FLOAT) {
+            return p.getNumberValue().shortValue();
+        }
+        p.skipChildren();
+        return 0;
+    }
+
+    // Fields read by the streaming path; a null nested object means the key was absent
+    private static class RootFields {
+        private Integer hotelId;
+        private String platform;
+        private String hotelName;
+        private CommentFields comment;
+        private List<ProviderSummaryFields> overallByProviders;
+    }
+
+    private static class CommentFields {
+        private Short providerId;
+        private String reviewProviderText;
+        private String reviewDate;
+        private Long reviewExternalId;
+        private Double rating;
+        private String ratingText;
+        private String ratingFormatted;
+        private String reviewTitle;
+        private String reviewComment;
+        private String translateSource;
+        private String translateTarget;
+        private Boolean isResponseShown;
+        private String responderName;
+        private String responseText;
+        private String responseDateText;
+        private String responseDateFmt;
+        private String checkInMonthYr;
+        private ReviewerInfoFields reviewerInfo;
+    }
+
+    private static class ReviewerInfoFields {
+        private String displayName;
+        private String countryName;
+        private Integer countryId;
+        private String flagCode;
+        private Boolean isExpert;
+        private Integer reviewsWritten;
+        private Integer roomTypeId;
+        private String roomTypeName;
+        private Integer reviewGroupId;
+        private String reviewGroupName;
+        private Short lengthOfStay;
+    }
+
+    private static class ProviderSummaryFields {
+        private Short providerId;
+        private String providerName;
+        private Double overallScore;
+        private Integer reviewCount;
+        private List<String> gradeNames;
+        private List<Double> gradeValues;
+    }
+
     /**
      * Parse provider information from JSON
      */
@@ -184,7 +632,7 @@ public class HotelReviewJsonParser {
                 String reviewDateStr = commentNode.get("reviewDate").asText();
                 reviewDate = OffsetDateTime.parse(reviewDateStr, DateTimeFormatter.ISO_OFFSET_DATE_TIME);
             } catch (Exception e) {
-                System.out.println("Warning: Could not parse review date: " + commentNode.get("reviewDate").asText());
+                events.event("Could not parse review date: {}", commentNode.get("reviewDate").asText());
             }
         }
         
@@ -0,0 +1,85 @@
+package org.soumitra.reviewsystem;
+
+import org.junit.jupiter.api.Test;
+import org.soumitra.reviewsystem.dao.ProviderRepository;
+import org.soumitra.reviewsystem.dao.RatingCategoryRepository;
+import org.soumitra.reviewsystem.model.Hotel;
+import org.soumitra.reviewsystem.model.Provider;
+import org.soumitra.reviewsystem.model.RatingCategory;
+import org.soumitra.reviewsystem.model.Reviewer;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class DimensionCacheTest {
+
+    private final DimensionCache cache = new DimensionCache(100, Duration.ofMinutes(5));
+
+    @Test
+    void testLoaderRunsOncePerNaturalKey() {
+        Provider agoda = provider((short) 1, (short) 332);
+        Provider booking = provider((short) 2, (short) 333);
+        AtomicInteger loads = new AtomicInteger();
+
+        Hotel first = cache.hotel(16402071, agoda, () -> hotel(10, loads));
+        Hotel again = cache.hotel(16402071, agoda, () -> hotel(11, loads));
+        Hotel otherProvider = cache.hotel(16402071, booking, () -> hotel(12, loads));
+
+        assertSame(first, again);
+        assertEquals(12, otherProvider.getHotelId());
+        assertEquals(2, loads.get());
+        assertEquals(1, cache.stats().get("hotel").hitCount());
+        assertEquals(2, cache.stats().get("hotel").missCount());
+    }
+
+    @Test
+    void testReviewerKeyIncludesCountryAndAllowsNulls() {
+        Provider agoda = provider((short) 1, (short) 332);
+        AtomicInteger loads = new AtomicInteger();
+
+        cache.reviewer("Anna", null, agoda, () -> { loads.incrementAndGet(); return new Reviewer(); });
+        cache.reviewer("Anna", null, agoda, () -> { loads.incrementAndGet(); return new Reviewer(); });
+        cache.reviewer("Anna", 7, agoda, () -> { loads.incrementAndGet(); return new Reviewer(); });
+
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void testMissingRowsAreNotCached() {
+        AtomicInteger loads = new AtomicInteger();
+
+        assertNull(cache.provider((short) 999, () -> { loads.incrementAndGet(); return null; }));
+        assertNull(cache.provider((short) 999, () -> { loads.incrementAndGet(); return null; }));
+
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void testWarmUpPreloadsProvidersAndCategories() {
+        ProviderRepository providerRepo = mock(ProviderRepository.class);
+        RatingCategoryRepository ratingCategoryRepo = mock(RatingCategoryRepository.class);
+        Provider agoda = provider((short) 1, (short) 332);
+        RatingCategory cleanliness = RatingCategory.builder().categoryId((short) 5).categoryName("Cleanliness").build();
+        when(providerRepo.findAll()).thenReturn(List.of(agoda));
+        when(ratingCategoryRepo.findAll()).thenReturn(List.of(cleanliness));
+
+        assertEquals(2, cache.warmUp(providerRepo, ratingCategoryRepo));
+
+        assertSame(agoda, cache.provider((short) 332, () -> fail("provider should be cached")));
+        assertSame(cleanliness, cache.ratingCategory("Cleanliness", () -> fail("category should be cached")));
+        assertEquals(1.0, cache.stats().get("provider").hitRate());
+    }
+
+    private static Provider provider(short providerId, short externalId) {
+        return Provider.builder().providerId(providerId).externalId(externalId).providerName("p" + externalId).build();
+    }
+
+    private static Hotel hotel(int hotelId, AtomicInteger loads) {
+        loads.incrementAndGet();
+        return Hotel.builder().hotelId(hotelId).build();
+    }
+}
@@ -0,0 +1,117 @@
+package org.soumitra.reviewsystem;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.soumitra.reviewsystem.util.MockS3Client;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IngestMetricsTest {
+
+    @Test
+    void testRecordsAreCountedPerModeOutcomeAndProvider() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        IngestMetrics metrics = new IngestMetrics(registry);
+
+        IngestMetrics.Job job = metrics.forMode("DIRECT");
+        job.recordOk("Agoda");
+        job.recordOk("Agoda");
+        job.recordSkipped("Agoda");
+        job.recordFailed(null);
+        metrics.forMode("PROCESS").recordOk("Agoda");
+
+        assertEquals(2.0, registry.get("ingest.records")
+            .tags("mode", "DIRECT", "outcome", "ok", "provider", "Agoda").counter().count());
+        assertEquals(1.0, registry.get("ingest.records")
+            .tags("mode", "DIRECT", "outcome", "skipped").counter().count());
+        assertEquals(1.0, registry.get("ingest.records")
+            .tags("mode", "DIRECT", "outcome", "failed", "provider", "unknown").counter().count());
+        assertEquals(1.0, registry.get("ingest.records")
+            .tags("mode", "PROCESS", "outcome", "ok").counter().count());
+    }
+
+    @Test
+    void testSuccessiveJobsShareTheirModesMeters() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        IngestMetrics metrics = new IngestMetrics(registry);
+
+        for (int run = 0; run < 5; run++) {
+            IngestMetrics.Job job = metrics.forMode("STAGED");
+            job.recordOk("Agoda");
+            job.upsert("hotel", () -> 1);
+        }
+
+        assertEquals(5.0, registry.get("ingest.records").tags("mode", "STAGED").counter().count());
+        assertEquals(1, registry.find("ingest.records").counters().size());
+        assertEquals(1, registry.find("ingest.upsert").timers().size());
+        assertTrue(registry.getMeters().stream().noneMatch(meter -> meter.getId().getTag("job") != null));
+    }
+
+    @Test
+    void testTimersCarryModeTags() throws Exception {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        IngestMetrics.Job job = new IngestMetrics(registry).forMode("STAGED");
+
+        assertEquals(5, (int) job.stagingInsert(() -> 5));
+        assertEquals("parsed", job.parse(() -> "parsed"));
+        job.upsert("hotel", () -> 1);
+        job.upsert("hotel", () -> 2);
+        job.upsert("review", () -> 3);
+
+        assertEquals(1, registry.get("ingest.staging.insert").tags("mode", "STAGED").timer().count());
+        assertEquals(1, registry.get("ingest.parse").tags("mode", "STAGED").timer().count());
+        assertEquals(2, registry.get("ingest.upsert").tags("mode", "STAGED", "type", "hotel").timer().count());
+        assertEquals(1, registry.get("ingest.upsert").tags("mode", "STAGED", "type", "review").timer().count());
+    }
+
+    @Test
+    void testS3RequestsAreTimedPerOperation() throws Exception {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        S3Client s3 = new IngestMetrics(registry).forMode("COPY").s3Client(new MockS3Client());
+
+        assertEquals(3, s3.listObjectsV2(ListObjectsV2Request.builder().bucket("test-bucket").build()).contents().size());
+        try (ResponseInputStream<GetObjectResponse> body = s3.getObject(GetObjectRequest.builder()
+                .bucket("test-bucket").key("test-prefix/file2.jsonl").build())) {
+            assertTrue(body.readAllBytes().length > 0);
+        }
+
+        assertEquals(1, registry.get("ingest.s3.requests").tags("mode", "COPY", "operation", "list").timer().count());
+        assertEquals(1, registry.get("ingest.s3.requests").tags("mode", "COPY", "operation", "get").timer().count());
+        assertEquals(0, registry.get("ingest.s3.requests").tags("mode", "COPY", "operation", "head").timer().count());
+    }
+
+    @Test
+    void testBacklogIsCountedOncePerRefreshInterval() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        AtomicLong counts = new AtomicLong();
+        new IngestMetrics(registry).registerBacklogGauge(() -> 40 + counts.incrementAndGet(), Duration.ofHours(1));
+
+        assertEquals(41.0, registry.get("ingest.records.backlog").gauge().value());
+        assertEquals(41.0, registry.get("ingest.records.backlog").gauge().value());
+        assertEquals(1, counts.get());
+    }
+
+    @Test
+    void testBacklogKeepsLastCountWhenCountingFails() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        AtomicLong counts = new AtomicLong();
+        new IngestMetrics(registry).registerBacklogGauge(() -> {
+            if (counts.incrementAndGet() > 1) {
+                throw new IllegalStateException("database is down");
+            }
+            return 42;
+        }, Duration.ZERO);
+
+        assertEquals(42.0, registry.get("ingest.records.backlog").gauge().value());
+        assertEquals(42.0, registry.get("ingest.records.backlog").gauge().value());
+        assertEquals(2, counts.get());
+    }
+}
@@ -0,0 +1,294 @@
+package org.soumitra.reviewsystem;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.soumitra.reviewsystem.dao.HotelRepository;
+import org.soumitra.reviewsystem.dao.JobRunRepository;
+import org.soumitra.reviewsystem.dao.ProviderHotelGradeRepository;
+import org.soumitra.reviewsystem.dao.ProviderHotelSummaryRepository;
+import org.soumitra.reviewsystem.dao.ProviderRepository;
+import org.soumitra.reviewsystem.dao.RatingCategoryRepository;
+import org.soumitra.reviewsystem.dao.RecordErrorRepository;
+import org.soumitra.reviewsystem.dao.RecordRepository;
+import org.soumitra.reviewsystem.dao.ReviewRepository;
+import org.soumitra.reviewsystem.dao.ReviewerRepository;
+import org.soumitra.reviewsystem.dao.S3FileRepository;
+import org.soumitra.reviewsystem.dao.StayInfoRepository;
+import org.soumitra.reviewsystem.util.HotelReviewJsonParser;
+import org.soumitra.reviewsystem.util.MockS3Client;
+import org.soumitra.reviewsystem.util.SyntheticReviewGenerator;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * End-to-end ingestion throughput: S3 listing and download through JobRunner (STAGED mode)
+ * into records, then parsing and normalization through RecordProcessorJob, against the
+ * test profile's in-memory H2 and a MockS3Client serving a generated JSONL corpus from disk.
+ *
+ * Tagged "benchmark" and left out of the normal build; run it with
+ *
+ *   mvn -Pbenchmark test -Dbenchmark.lines=100000
+ *
+ * Other knobs: benchmark.files, benchmark.pageSize, benchmark.concurrency, benchmark.workers,
+ * benchmark.providers, benchmark.gradeCategories, benchmark.commentLength and benchmark.seed.
+ * Pass -Dspring.datasource.url=... (and username, password, driver-class-name, and
+ * spring.jpa.database-platform) to run against an empty PostgreSQL database instead; millions
+ * of lines need it, or at least a file-backed H2.
+ *
+ * Each run writes a JSON report to target/benchmark-reports (benchmark.reportDir) with the
+ * commit, the settings, the wall time of both jobs and the time spent per stage. Stage times
+ * are summed over threads, so with more than one worker they can exceed the wall time.
+ */
+@Tag("benchmark")
+@SpringBootTest(classes = ReviewSystemApplication.class, properties = "spring.jpa.show-sql=false")
+@ActiveProfiles("test")
+class IngestionThroughputBenchmarkTest {
+
+    private static final String BUCKET = "benchmark-reviews";
+
+    @Autowired private JobRunRepository jobRunRepository;
+    @Autowired private S3FileRepository s3FileRepository;
+    @Autowired private RecordRepository recordRepository;
+    @Autowired private RecordErrorRepository recordErrorRepository;
+    @Autowired private ReviewRepository reviewRepository;
+    @Autowired private HotelRepository hotelRepository;
+    @Autowired private ProviderRepository providerRepository;
+    @Autowired private ReviewerRepository reviewerRepository;
+    @Autowired private StayInfoRepository stayInfoRepository;
+    @Autowired private ProviderHotelSummaryRepository providerHotelSummaryRepository;
+    @Autowired private ProviderHotelGradeRepository providerHotelGradeRepository;
+    @Autowired private RatingCategoryRepository ratingCategoryRepository;
+
+    @Autowired private JdbcTemplate jdbcTemplate;
+
+    @Value("${spring.datasource.url}")
+    private String datasourceUrl;
+
+    private final long lines = Long.getLong("benchmark.lines", 10_000L);
+    private final int files = Integer.getInteger("benchmark.files", 4);
+    private final int pageSize = Integer.getInteger("benchmark.pageSize", 500);
+    private final int concurrency = Integer.getInteger("benchmark.concurrency", 1);
+    private final int workers = Integer.getInteger("benchmark.workers", 1);
+    private final long seed = Long.getLong("benchmark.seed", 42L);
+    private final SyntheticReviewGenerator generator = new SyntheticReviewGenerator(seed)
+        .withProviders(Integer.getInteger("benchmark.providers", 1))
+        .withGradeCategories(Integer.getInteger("benchmark.gradeCategories", 5))
+        .withCommentLength(Integer.getInteger("benchmark.commentLength", 200));
+
+    private Path corpusDir;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        corpusDir = Files.createTempDirectory("ingestion-benchmark");
+        if (datasourceUrl.startsWith("jdbc:h2:")) {
+            // H2 keeps a string bound to its JSON type as a JSON string value, and Hibernate sizes
+            // the error columns at 255 characters; give them the text columns PostgreSQL has
+            jdbcTemplate.execute("ALTER TABLE records ALTER COLUMN raw_data SET DATA TYPE TEXT");
+            jdbcTemplate.execute("ALTER TABLE record_errors ALTER COLUMN error_message SET DATA TYPE TEXT");
+            jdbcTemplate.execute("ALTER TABLE record_errors ALTER COLUMN traceback SET DATA TYPE TEXT");
+        }
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        try (Stream<Path> paths = Files.walk(corpusDir)) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    @Test
+    void testIngestAndProcessGeneratedCorpus() throws Exception {
+        MockS3Client s3Client = new MockS3Client();
+        long corpusBytes = writeCorpus(s3Client);
+
+        // Listing on its own first; in the job it is interleaved with everything else
+        long listStarted = System.nanoTime();
+        List<JobRunner.S3FileRef> listed = JobRunner.S3FileLister.listAllFilesInBucket("s3://" + BUCKET, s3Client);
+        long listNanos = System.nanoTime() - listStarted;
+        assertEquals(files, listed.size());
+
+        Map<String, AtomicLong> recordRepoNanos = new LinkedHashMap<>();
+        RecordRepository timedRecordRepo = timed(recordRepository, recordRepoNanos,
+            Set.of("logNewRecords", "logNewRecord", "copyNewRecords", "claimNewRecords", "claimNewRecordsAfter",
+                "finishRecords", "countByStatus"));
+
+        long ingestStarted = System.nanoTime();
+        new JobRunner(jobRunRepository, s3FileRepository, timedRecordRepo, s3Client, pageSize, concurrency)
+            .runJob("s3://" + BUCKET);
+        long ingestNanos = System.nanoTime() - ingestStarted;
+        assertEquals(lines, recordRepository.count());
+
+        TimedParser parser = new TimedParser();
+        RecordProcessorJob processor = new RecordProcessorJob(jobRunRepository, timedRecordRepo,
+            recordErrorRepository, reviewRepository, hotelRepository, providerRepository, reviewerRepository,
+            stayInfoRepository, providerHotelSummaryRepository, providerHotelGradeRepository, ratingCategoryRepository,
+            parser, pageSize, workers);
+        processor.setDimensionCache(new DimensionCache(100_000, Duration.ofMinutes(30)));
+        long processStarted = System.nanoTime();
+        processor.runJob();
+        long processNanos = System.nanoTime() - processStarted;
+        assertEquals(lines, reviewRepository.count());
+
+        long stagingNanos = sum(recordRepoNanos, "logNewRecords", "logNewRecord", "copyNewRecords");
+        long claimNanos = sum(recordRepoNanos, "claimNewRecords", "claimNewRecordsAfter", "finishRecords", "countByStatus");
+
+        Map<String, Object> stages = new LinkedHashMap<>();
+        stages.put("listing", stage(listNanos, files));
+        stages.put("download", stage(s3Client.getDownloadNanos(), lines));
+        stages.put("stagingInsert", stage(stagingNanos, lines));
+        stages.put("ingestOther", stage(ingestNanos - s3Client.getDownloadNanos() - stagingNanos, lines));
+        stages.put("claimAndFinish", stage(claimNanos, lines));
+        stages.put("parse", stage(parser.nanos.get(), lines));
+        stages.put("normalize", stage(processNanos - parser.nanos.get() - claimNanos, lines));
+
+        Map<String, Object> settings = new LinkedHashMap<>();
+        settings.put("lines", lines);
+        settings.put("files", files);
+        settings.put("corpusBytes", corpusBytes);
+        settings.put("pageSize", pageSize);
+        settings.put("concurrency", concurrency);
+        settings.put("workers", workers);
+        settings.put("seed", seed);
+        settings.put("providers", Integer.getInteger("benchmark.providers", 1));
+        settings.put("gradeCategories", Integer.getInteger("benchmark.gradeCategories", 5));
+        settings.put("commentLength", Integer.getInteger("benchmark.commentLength", 200));
+        settings.put("datasource", datasourceUrl);
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("benchmark", "ingestion-throughput");
+        report.put("commit", gitCommit());
+        report.put("timestamp", Instant.now().toString());
+        report.put("java", System.getProperty("java.version"));
+        report.put("availableProcessors", Runtime.getRuntime().availableProcessors());
+        report.put("settings", settings);
+        report.put("ingest", stage(ingestNanos, lines));
+        report.put("process", stage(processNanos, lines));
+        report.put("total", stage(ingestNanos + processNanos, lines));
+        report.put("stages", stages);
+
+        Path reportDir = Paths.get(System.getProperty("benchmark.reportDir", "target/benchmark-reports"));
+        Files.createDirectories(reportDir);
+        Path reportFile = reportDir.resolve("ingestion-" + lines + "-" + System.currentTimeMillis() + ".json");
+        ObjectMapper mapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+        mapper.writeValue(reportFile.toFile(), report);
+        System.out.println(mapper.writeValueAsString(report));
+        System.out.println("Benchmark report written to " + reportFile.toAbsolutePath());
+    }
+
+    /**
+     * Split the corpus into files of consecutive lines and serve them from disk
+     */
+    private long writeCorpus(MockS3Client s3Client) throws IOException {
+        long bytes = 0;
+        for (int f = 0; f < files; f++) {
+            long from = lines * f / files;
+            long to = lines * (f + 1) / files;
+            Path file = corpusDir.resolve(String.format("part-%05d.jsonl", f));
+            try (Writer out = new BufferedWriter(Files.newBufferedWriter(file, StandardCharsets.UTF_8), 1 << 16)) {
+                for (long i = from; i < to; i++) {
+                    out.write(generator.line(i));
+                    out.write('\n');
+                }
+            }
+            bytes += Files.size(file);
+            s3Client.addFileObject(BUCKET, "reviews/" + file.getFileName(), file);
+        }
+        return bytes;
+    }
+
+    private static Map<String, Object> stage(long nanos, long count) {
+        Map<String, Object> stage = new LinkedHashMap<>();
+        double seconds = nanos / 1e9;
+        stage.put("millis", TimeUnit.NANOSECONDS.toMillis(nanos));
+        stage.put("count", count);
+        stage.put("perSecond", seconds > 0 ? Math.round(count / seconds) : null);
+        return stage;
+    }
+
+    private static long sum(Map<String, AtomicLong> nanos, String... methods) {
+        long total = 0;
+        for (String method : methods) {
+            AtomicLong value = nanos.get(method);
+            total += value != null ? value.get() : 0;
+        }
+        return total;
+    }
+
+    /**
+     * The repository with the time spent in the given methods added up per method
+     */
+    private static RecordRepository timed(RecordRepository target, Map<String, AtomicLong> nanos, Set<String> methods) {
+        methods.forEach(method -> nanos.put(method, new AtomicLong()));
+        return (RecordRepository) Proxy.newProxyInstance(RecordRepository.class.getClassLoader(),
+            new Class<?>[] {RecordRepository.class}, (proxy, method, args) -> {
+                long started = System.nanoTime();
+                try {
+                    return method.invoke(target, args);
+                } catch (InvocationTargetException e) {
+                    throw e.getCause();
+                } finally {
+                    AtomicLong total = nanos.get(method.getName());
+                    if (total != null) {
+                        total.addAndGet(System.nanoTime() - started);
+                    }
+                }
+            });
+    }
+
+    private static String gitCommit() {
+        try {
+            Process git = new ProcessBuilder("git", "rev-parse", "HEAD").redirectErrorStream(true).start();
+            String out = new String(git.getInputStream().readAllBytes(), StandardCharsets.UTF_8).trim();
+            return git.waitFor() == 0 ? out : null;
+        } catch (IOException e) {
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    private static class TimedParser extends HotelReviewJsonParser {
+        private final AtomicLong nanos = new AtomicLong();
+
+        @Override
+        public HotelReviewParseResult parseHotelReview(String hotelReviewJson) throws Exception {
+            long started = System.nanoTime();
+            try {
+                return super.parseHotelReview(hotelReviewJson);
+            } finally {
+                nanos.addAndGet(System.nanoTime() - started);
+            }
+        }
+    }
+}
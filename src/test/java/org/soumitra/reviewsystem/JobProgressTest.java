@@ -0,0 +1,80 @@
+package org.soumitra.reviewsystem;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JobProgressTest {
+
+    private final AtomicLong nanos = new AtomicLong(TimeUnit.SECONDS.toNanos(1000));
+
+    private void advanceSeconds(long seconds) {
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(seconds));
+    }
+
+    @Test
+    void testRecordRateErrorRateAndEtaAgainstKnownTotal() {
+        JobProgress progress = new JobProgress(7, "RECORD_PROCESSOR", nanos::get);
+        progress.setRecordsTotal(1000);
+
+        advanceSeconds(10);
+        progress.recordsDone(180);
+        progress.recordsFailed(20);
+
+        JobProgress.Snapshot snapshot = progress.snapshot();
+        assertEquals(JobProgress.State.RUNNING, snapshot.getState());
+        assertEquals(200, snapshot.getRecordsDone() + snapshot.getRecordsFailed());
+        assertEquals(1000L, snapshot.getRecordsTotal());
+        assertEquals(10, snapshot.getElapsedSeconds());
+        assertEquals(20.0, snapshot.getRecordsPerSecond(), 0.001);
+        assertEquals(0.1, snapshot.getErrorRate(), 0.001);
+        // 800 records left at 20 a second
+        assertEquals(40L, snapshot.getEtaSeconds());
+    }
+
+    @Test
+    void testFileTotalAndEtaOnlyOnceListingIsComplete() {
+        JobProgress progress = new JobProgress(8, "S3_INGEST", nanos::get);
+        for (int i = 0; i < 6; i++) {
+            progress.fileListed();
+        }
+        progress.fileSkipped();
+        advanceSeconds(30);
+        progress.fileFinished(true);
+        progress.fileFinished(false);
+
+        JobProgress.Snapshot listing = progress.snapshot();
+        assertEquals(6, listing.getFilesListed());
+        assertNull(listing.getFilesTotal());
+        assertNull(listing.getEtaSeconds());
+
+        progress.listingComplete();
+        JobProgress.Snapshot listed = progress.snapshot();
+        assertEquals(6L, listed.getFilesTotal());
+        assertEquals(1, listed.getFilesDone());
+        assertEquals(1, listed.getFilesFailed());
+        assertEquals(1, listed.getFilesSkipped());
+        // 3 files left at 15 seconds a file
+        assertEquals(45L, listed.getEtaSeconds());
+    }
+
+    @Test
+    void testFinishedJobStopsTheClock() {
+        JobProgress progress = new JobProgress(9, "S3_INGEST", nanos::get);
+        advanceSeconds(4);
+        progress.recordsDone(40);
+        progress.finish(false);
+        advanceSeconds(100);
+
+        JobProgress.Snapshot snapshot = progress.snapshot();
+        assertTrue(progress.isFinished());
+        assertEquals(JobProgress.State.FAILED, snapshot.getState());
+        assertEquals(4, snapshot.getElapsedSeconds());
+        assertEquals(10.0, snapshot.getRecordsPerSecond(), 0.001);
+        assertEquals(0L, snapshot.getEtaSeconds());
+        assertEquals(TimeUnit.SECONDS.toNanos(100), progress.finishedFor());
+    }
+}
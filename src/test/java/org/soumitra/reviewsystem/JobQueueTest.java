@@ -0,0 +1,150 @@
+package org.soumitra.reviewsystem;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.soumitra.reviewsystem.dao.JobRunRepository;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class JobQueueTest {
+
+    private final JobRunRepository jobRepo = mock(JobRunRepository.class);
+    private final AtomicInteger jobIds = new AtomicInteger(100);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private JobQueue queue;
+
+    private JobQueue newQueue(int concurrency, int capacity) {
+        when(jobRepo.insertJob(any(), anyString(), anyString(), anyString())).thenAnswer(call -> jobIds.incrementAndGet());
+        when(jobRepo.startPendingJob(anyInt())).thenReturn(1);
+        queue = new JobQueue(jobRepo, concurrency, capacity);
+        return queue;
+    }
+
+    @AfterEach
+    void closeQueue() {
+        release.countDown();
+        if (queue != null) {
+            queue.close();
+        }
+    }
+
+    @Test
+    void testSameKeyJoinsTheActiveJob() throws Exception {
+        JobQueue queue = newQueue(1, 5);
+        CountDownLatch started = new CountDownLatch(1);
+        AtomicInteger ranAs = new AtomicInteger();
+
+        JobQueue.Submission first = queue.submit("s3-ingest:s3://bucket", "Processing S3 files", jobId -> {
+            ranAs.set(jobId);
+            started.countDown();
+            await(release);
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        JobQueue.Submission second = queue.submit("s3-ingest:s3://bucket", "Processing S3 files", jobId -> fail("coalesced job ran"));
+
+        assertFalse(first.isCoalesced());
+        assertTrue(second.isCoalesced());
+        assertEquals(first.getJobId(), second.getJobId());
+        assertEquals(first.getJobId().intValue(), ranAs.get());
+        verify(jobRepo, times(1)).insertJob(any(LocalDateTime.class), eq("API"), eq("pending"), eq("Processing S3 files"));
+        verify(jobRepo).startPendingJob(first.getJobId());
+
+        // Once the job is done the key is free again
+        release.countDown();
+        CountDownLatch ranAgain = new CountDownLatch(1);
+        JobQueue.Submission third = awaitSubmit(queue, "s3-ingest:s3://bucket", ranAgain);
+        assertTrue(ranAgain.await(5, TimeUnit.SECONDS));
+        assertNotEquals(first.getJobId(), third.getJobId());
+    }
+
+    @Test
+    void testFullQueueRejectsWithoutCreatingAJobRun() throws Exception {
+        JobQueue queue = newQueue(1, 1);
+        CountDownLatch started = new CountDownLatch(1);
+        queue.submit(null, "running", jobId -> {
+            started.countDown();
+            await(release);
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        queue.submit(null, "waiting", jobId -> { });
+
+        assertThrows(RejectedExecutionException.class, () -> queue.submit(null, "rejected", jobId -> { }));
+        verify(jobRepo, never()).insertJob(any(), anyString(), anyString(), eq("rejected"));
+        assertEquals(1, queue.getWaiting());
+    }
+
+    @Test
+    void testJobThatThrowsIsMarkedFailed() throws Exception {
+        JobQueue queue = newQueue(1, 5);
+        JobQueue.Submission submission = queue.submit(null, "failing", jobId -> {
+            throw new IllegalStateException("DIRECT ingest mode needs a ReviewNormalizer");
+        });
+
+        verify(jobRepo, timeout(5000)).updateJobStatus(eq(submission.getJobId()), any(LocalDateTime.class), eq("failed"));
+    }
+
+    @Test
+    void testJobThatThrowsAnErrorIsMarkedFailedAndFreesItsKey() throws Exception {
+        JobQueue queue = newQueue(1, 5);
+        JobQueue.Submission submission = queue.submit("s3-ingest:s3://bucket", "overflowing", jobId -> {
+            throw new StackOverflowError();
+        });
+
+        verify(jobRepo, timeout(5000)).updateJobStatus(eq(submission.getJobId()), any(LocalDateTime.class), eq("failed"));
+        // The pool replaces the worker the Error killed, so the next job with the key still runs
+        CountDownLatch ranAgain = new CountDownLatch(1);
+        awaitSubmit(queue, "s3-ingest:s3://bucket", ranAgain);
+        assertTrue(ranAgain.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void testWaitingJobsAreMarkedFailedOnClose() throws Exception {
+        JobQueue queue = newQueue(1, 5);
+        CountDownLatch started = new CountDownLatch(1);
+        queue.submit(null, "running", jobId -> {
+            started.countDown();
+            await(release);
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        JobQueue.Submission waiting = queue.submit(null, "waiting", jobId -> fail("waiting job ran"));
+
+        queue.close();
+
+        verify(jobRepo).updateJobStatus(eq(waiting.getJobId()), any(LocalDateTime.class), eq("failed"));
+        verify(jobRepo, never()).startPendingJob(waiting.getJobId());
+    }
+
+    /**
+     * The finished job frees its key just after it returns, so retry until the submission is not coalesced
+     */
+    private static JobQueue.Submission awaitSubmit(JobQueue queue, String key, CountDownLatch ran) throws InterruptedException {
+        for (int attempt = 0; attempt < 500; attempt++) {
+            JobQueue.Submission submission = queue.submit(key, "again", jobId -> ran.countDown());
+            if (!submission.isCoalesced()) {
+                return submission;
+            }
+            Thread.sleep(10);
+        }
+        throw new AssertionError("key was never freed");
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -12,7 +12,10 @@ import org.soumitra.reviewsystem.util.MockS3Client;
 
 import java.time.LocalDateTime;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
@@ -58,9 +61,8 @@ class JobRunnerFileCheckTest {
         doNothing().when(jobRunRepository).updateJobStatus(anyInt(), any(LocalDateTime.class), anyString());
 
         // Mock file repository to simulate already processed file
-        when(s3FileRepository.isFileSuccessfullyProcessed("test-prefix/file1.jsonl")).thenReturn(true);
-        when(s3FileRepository.isFileSuccessfullyProcessed("test-prefix/file2.jsonl")).thenReturn(false);
-        when(s3FileRepository.isFileBeingProcessed(anyString())).thenReturn(false);
+        when(s3FileRepository.findStatusesByS3Keys(anyCollection()))
+            .thenReturn(Map.of("test-prefix/file1.jsonl", "success"));
         when(s3FileRepository.insertOrUpdateFile(anyInt(), anyString(), anyString(), anyString(), any(), anyBoolean()))
             .thenReturn(1);
         doNothing().when(s3FileRepository).updateFileStatus(anyInt(), anyString(), any(), anyInt(), anyBoolean());
@@ -71,9 +73,8 @@ class JobRunnerFileCheckTest {
         // Verify
         verify(jobRunRepository).insertJob(any(LocalDateTime.class), eq("MANUAL"), eq("running"), eq("Processing S3 files"));
         
-        // Verify that isFileSuccessfullyProcessed was called for both files
-        verify(s3FileRepository).isFileSuccessfullyProcessed("test-prefix/file1.jsonl");
-        verify(s3FileRepository).isFileSuccessfullyProcessed("test-prefix/file2.jsonl");
+        // Verify that both files were resolved with a single status lookup
+        verify(s3FileRepository).findStatusesByS3Keys(List.of("test-prefix/file1.jsonl", "test-prefix/file2.jsonl"));
         
         // Verify that insertOrUpdateFile was only called for the unprocessed file
         verify(s3FileRepository).insertOrUpdateFile(eq(1), eq("test-bucket"), eq("test-prefix/file2.jsonl"), eq("processing"), eq(null), eq(true));
@@ -99,8 +100,11 @@ class JobRunnerFileCheckTest {
         doNothing().when(jobRunRepository).updateJobStatus(anyInt(), any(LocalDateTime.class), anyString());
 
         // Mock file repository to simulate currently processing file
-        when(s3FileRepository.isFileSuccessfullyProcessed("test-prefix/file1.jsonl")).thenReturn(false);
-        when(s3FileRepository.isFileBeingProcessed("test-prefix/file1.jsonl")).thenReturn(true);
+        when(s3FileRepository.findStatusesByS3Keys(anyCollection()))
+            .thenReturn(Map.of("test-prefix/file1.jsonl", "processing"));
+        // Its runner is still alive, so the claim does not take it
+        when(s3FileRepository.insertOrUpdateFile(anyInt(), anyString(), anyString(), anyString(), any(), anyBoolean()))
+            .thenReturn(null);
 
         // Execute
         jobRunner.runJob(s3Uri);
@@ -108,11 +112,12 @@ class JobRunnerFileCheckTest {
         // Verify
         verify(jobRunRepository).insertJob(any(LocalDateTime.class), eq("MANUAL"), eq("running"), eq("Processing S3 files"));
         
-        // Verify that isFileBeingProcessed was called
-        verify(s3FileRepository).isFileBeingProcessed("test-prefix/file1.jsonl");
+        // Verify that the status lookup was made for the file
+        verify(s3FileRepository).findStatusesByS3Keys(List.of("test-prefix/file1.jsonl"));
         
-        // Verify that insertOrUpdateFile was NOT called for the currently processing file
-        verify(s3FileRepository, never()).insertOrUpdateFile(anyInt(), anyString(), anyString(), anyString(), any(), anyBoolean());
+        // Verify that the currently processing file was neither read nor finished
+        verify(recordRepository, never()).logNewRecords(anyInt(), anyInt(), anyList(), any());
+        verify(s3FileRepository, never()).updateFileStatus(anyInt(), anyString(), any(), anyInt(), anyBoolean());
         
         verify(jobRunRepository).updateJobStatus(eq(1), any(LocalDateTime.class), eq("success"));
     }
@@ -132,8 +137,7 @@ class JobRunnerFileCheckTest {
         doNothing().when(jobRunRepository).updateJobStatus(anyInt(), any(LocalDateTime.class), anyString());
 
         // Mock file repository to simulate new file
-        when(s3FileRepository.isFileSuccessfullyProcessed("test-prefix/file1.jsonl")).thenReturn(false);
-        when(s3FileRepository.isFileBeingProcessed("test-prefix/file1.jsonl")).thenReturn(false);
+        when(s3FileRepository.findStatusesByS3Keys(anyCollection())).thenReturn(Map.of());
         when(s3FileRepository.insertOrUpdateFile(anyInt(), anyString(), anyString(), anyString(), any(), anyBoolean()))
             .thenReturn(1);
         doNothing().when(s3FileRepository).updateFileStatus(anyInt(), anyString(), any(), anyInt(), anyBoolean());
@@ -149,4 +153,30 @@ class JobRunnerFileCheckTest {
         
         verify(jobRunRepository).updateJobStatus(eq(1), any(LocalDateTime.class), eq("success"));
     }
-} 
\ No newline at end of file
+
+    @Test
+    void testRunJobLooksUpStatusesInChunks() throws Exception {
+        String s3Uri = "s3://test-bucket/test-prefix/";
+        s3Client.clearBucketContents();
+        for (int i = 0; i < 1500; i++) {
+            s3Client.addBucketContent("test-bucket", "test-prefix/file" + i + ".jsonl", 1000L);
+        }
+
+        when(jobRunRepository.insertJob(any(LocalDateTime.class), anyString(), anyString(), anyString()))
+            .thenReturn(1);
+        // Every listed file is already done
+        when(s3FileRepository.findStatusesByS3Keys(anyCollection())).thenAnswer(invocation -> {
+            Map<String, String> statuses = new HashMap<>();
+            for (Object key : invocation.getArgument(0, Collection.class)) {
+                statuses.put((String) key, "success");
+            }
+            return statuses;
+        });
+
+        jobRunner.runJob(s3Uri);
+
+        verify(s3FileRepository, times(2)).findStatusesByS3Keys(anyCollection());
+        verify(s3FileRepository, never()).insertOrUpdateFile(anyInt(), anyString(), anyString(), anyString(), any(), anyBoolean());
+        verify(jobRunRepository).updateJobStatus(eq(1), any(LocalDateTime.class), eq("success"));
+    }
+}
@@ -6,8 +6,12 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.soumitra.reviewsystem.dao.JobRunRepository;
+import org.soumitra.reviewsystem.dao.RecordErrorRepository;
 import org.soumitra.reviewsystem.dao.RecordRepository;
 import org.soumitra.reviewsystem.dao.S3FileRepository;
+import org.soumitra.reviewsystem.dao.S3ListingWatermarkRepository;
+import org.soumitra.reviewsystem.model.Record;
+import org.soumitra.reviewsystem.model.S3File;
 import org.soumitra.reviewsystem.util.MockS3Client;
 import software.amazon.awssdk.services.s3.S3Client;
 import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
@@ -17,7 +21,10 @@ import software.amazon.awssdk.services.s3.model.S3Object;
 import java.time.Instant;
 import java.time.LocalDateTime;
 import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
@@ -35,6 +42,15 @@ class JobRunnerTest {
     @Mock
     private RecordRepository recordRepository;
 
+    @Mock
+    private S3ListingWatermarkRepository watermarkRepository;
+
+    @Mock
+    private RecordErrorRepository recordErrorRepository;
+
+    @Mock
+    private ReviewNormalizer normalizer;
+
     private MockS3Client s3Client;
 
     private JobRunner jobRunner;
@@ -187,6 +203,309 @@ class JobRunnerTest {
         verify(jobRunRepository).updateJobStatus(eq(1), any(LocalDateTime.class), eq("success"));
     }
 
+    @Test
+    void testRunJobResumesFileFromCheckpoint() throws Exception {
+        String s3Uri = "s3://test-bucket/test-prefix/";
+        s3Client.clearBucketContents();
+        s3Client.addBucketContent("test-bucket", "test-prefix/file1.jsonl", 1000L);
+
+        // file1.jsonl holds two lines; the first one was committed before the previous run died
+        String firstLine = "{\"hotelId\": 1, \"platform\": \"Agoda\", \"hotelName\": \"Test Hotel 1\"}\n";
+        S3File interrupted = S3File.builder()
+            .id(7)
+            .s3Key("test-prefix/file1.jsonl")
+            .status("processing")
+            .startedAt(LocalDateTime.now().minusHours(1))
+            .checkpointOffset((long) firstLine.length())
+            .checkpointLine(1)
+            .checkpointedAt(LocalDateTime.now().minusHours(1))
+            .recordCount(1)
+            .build();
+
+        when(jobRunRepository.insertJob(any(LocalDateTime.class), anyString(), anyString(), anyString()))
+            .thenReturn(1);
+        when(s3FileRepository.findStatusesByS3Keys(anyCollection()))
+            .thenReturn(Map.of("test-prefix/file1.jsonl", "processing"));
+        when(s3FileRepository.findByS3Key("test-prefix/file1.jsonl")).thenReturn(Optional.of(interrupted));
+        when(s3FileRepository.insertOrUpdateFile(anyInt(), anyString(), anyString(), anyString(), any(), anyBoolean()))
+            .thenReturn(7);
+
+        when(recordRepository.logNewRecords(anyInt(), anyInt(), anyList(), any()))
+            .thenAnswer(inv -> inv.getArgument(2, List.class).size());
+
+        jobRunner.runJob(s3Uri);
+
+        verify(recordRepository, times(1)).logNewRecords(eq(7), eq(1), anyList(), any());
+        verify(recordRepository).logNewRecords(eq(7), eq(1),
+            argThat(lines -> lines.size() == 1 && lines.get(0).contains("Test Hotel 2")), any());
+        // The page commits with the position after it, whatever the checkpoint interval
+        verify(recordRepository).logNewRecords(eq(7), eq(1), anyList(),
+            argThat(checkpoint -> checkpoint.getLine() == 2 && checkpoint.getRecordCount() == 2));
+        verify(s3FileRepository).updateFileStatus(eq(7), eq("success"), eq(null), eq(2), eq(false));
+    }
+
+    @Test
+    void testRunJobProcessesFilesInParallel() throws Exception {
+        String s3Uri = "s3://test-bucket/test-prefix/";
+        JobRunner parallelRunner = new JobRunner(
+            jobRunRepository, s3FileRepository, recordRepository,
+            s3Client, 10, 3
+        );
+
+        when(jobRunRepository.insertJob(any(LocalDateTime.class), anyString(), anyString(), anyString()))
+            .thenReturn(1);
+        when(s3FileRepository.insertOrUpdateFile(anyInt(), anyString(), anyString(), anyString(), any(), anyBoolean()))
+            .thenReturn(11, 12, 13);
+
+        parallelRunner.runJob(s3Uri);
+
+        // file1 and file2 have content, file3 is empty
+        verify(recordRepository, times(2)).logNewRecords(anyInt(), eq(1), anyList(), any());
+        verify(s3FileRepository, times(3)).updateFileStatus(anyInt(), eq("success"), eq(null), anyInt(), eq(false));
+        verify(jobRunRepository).updateJobStatus(eq(1), any(LocalDateTime.class), eq("success"));
+    }
+
+    @Test
+    void testRunJobSkipsFileClaimedByAnotherRunner() throws Exception {
+        String s3Uri = "s3://test-bucket/test-prefix/";
+        s3Client.clearBucketContents();
+        s3Client.addBucketContent("test-bucket", "test-prefix/file1.jsonl", 1000L);
+
+        when(jobRunRepository.insertJob(any(LocalDateTime.class), anyString(), anyString(), anyString()))
+            .thenReturn(1);
+        when(s3FileRepository.insertOrUpdateFile(anyInt(), anyString(), anyString(), anyString(), any(), anyBoolean()))
+            .thenReturn(null);
+
+        jobRunner.runJob(s3Uri);
+
+        verify(recordRepository, never()).logNewRecords(anyInt(), anyInt(), anyList(), any());
+        verify(s3FileRepository, never()).updateFileStatus(anyInt(), anyString(), any(), anyInt(), anyBoolean());
+        verify(jobRunRepository).updateJobStatus(eq(1), any(LocalDateTime.class), eq("success"));
+    }
+
+    @Test
+    void testRunJobFallsBackToSingleInsertsWhenBatchFails() throws Exception {
+        String s3Uri = "s3://test-bucket/test-prefix/";
+        s3Client.clearBucketContents();
+        s3Client.addBucketContent("test-bucket", "test-prefix/file1.jsonl", 1000L);
+
+        when(jobRunRepository.insertJob(any(LocalDateTime.class), anyString(), anyString(), anyString()))
+            .thenReturn(1);
+        when(s3FileRepository.insertOrUpdateFile(anyInt(), anyString(), anyString(), anyString(), any(), anyBoolean()))
+            .thenReturn(5);
+        when(recordRepository.logNewRecords(anyInt(), anyInt(), anyList(), any()))
+            .thenThrow(new RuntimeException("value too long"));
+        doThrow(new RuntimeException("bad line")).when(recordRepository)
+            .logNewRecord(eq(5), eq(1), contains("Test Hotel 1"));
+
+        jobRunner.runJob(s3Uri);
+
+        // Both lines are retried individually; the good one is kept and the file is marked failed
+        verify(recordRepository, times(2)).logNewRecord(eq(5), eq(1), anyString());
+        verify(s3FileRepository).updateFileStatus(eq(5), eq("failed"), eq(null), eq(1), eq(false));
+    }
+
+    @Test
+    void testRunJobCopiesEachFileWhenCopyIsSupported() throws Exception {
+        String s3Uri = "s3://test-bucket/test-prefix/";
+        s3Client.clearBucketContents();
+        s3Client.addBucketContent("test-bucket", "test-prefix/file1.jsonl", 1000L);
+        JobRunner copyRunner = new JobRunner(
+            jobRunRepository, s3FileRepository, recordRepository,
+            s3Client, 10, 1, JobRunner.IngestMode.COPY
+        );
+
+        when(jobRunRepository.insertJob(any(LocalDateTime.class), anyString(), anyString(), anyString()))
+            .thenReturn(1);
+        when(s3FileRepository.insertOrUpdateFile(anyInt(), anyString(), anyString(), anyString(), any(), anyBoolean()))
+            .thenReturn(5);
+        when(recordRepository.isCopySupported()).thenReturn(true);
+        when(recordRepository.copyNewRecords(eq(5), eq(1), any())).thenAnswer(invocation -> {
+            Iterator<String> lines = invocation.getArgument(2);
+            long count = 0;
+            while (lines.hasNext()) {
+                lines.next();
+                count++;
+            }
+            return count;
+        });
+
+        copyRunner.runJob(s3Uri);
+
+        verify(recordRepository, never()).logNewRecords(anyInt(), anyInt(), anyList(), any());
+        verify(s3FileRepository, never()).updateFileCheckpoint(anyInt(), anyLong(), anyInt(), anyInt());
+        verify(s3FileRepository).updateFileStatus(eq(5), eq("success"), eq(null), eq(2), eq(false));
+    }
+
+    @Test
+    void testRunJobFallsBackToBatchedInsertsWhenCopyIsUnsupported() throws Exception {
+        String s3Uri = "s3://test-bucket/test-prefix/";
+        s3Client.clearBucketContents();
+        s3Client.addBucketContent("test-bucket", "test-prefix/file1.jsonl", 1000L);
+        JobRunner copyRunner = new JobRunner(
+            jobRunRepository, s3FileRepository, recordRepository,
+            s3Client, 10, 1, JobRunner.IngestMode.COPY
+        );
+
+        when(jobRunRepository.insertJob(any(LocalDateTime.class), anyString(), anyString(), anyString()))
+            .thenReturn(1);
+        when(s3FileRepository.insertOrUpdateFile(anyInt(), anyString(), anyString(), anyString(), any(), anyBoolean()))
+            .thenReturn(5);
+        when(recordRepository.isCopySupported()).thenReturn(false);
+        when(recordRepository.logNewRecords(eq(5), eq(1), anyList(), any()))
+            .thenAnswer(invocation -> ((List<?>) invocation.getArgument(2)).size());
+
+        copyRunner.runJob(s3Uri);
+
+        verify(recordRepository, never()).copyNewRecords(anyInt(), anyInt(), any());
+        verify(s3FileRepository).updateFileStatus(eq(5), eq("success"), eq(null), eq(2), eq(false));
+    }
+
+    @Test
+    void testRunJobUsesRangedDownloadForLargeFiles() throws Exception {
+        String s3Uri = "s3://test-bucket/test-prefix/";
+        s3Client.clearBucketContents();
+        s3Client.addBucketContent("test-bucket", "test-prefix/file1.jsonl", 1000L);
+        jobRunner.setRangedDownload(new RangedDownload(500L, 16L, 4));
+
+        when(jobRunRepository.insertJob(any(LocalDateTime.class), anyString(), anyString(), anyString()))
+            .thenReturn(1);
+        when(s3FileRepository.insertOrUpdateFile(anyInt(), anyString(), anyString(), anyString(), any(), anyBoolean()))
+            .thenReturn(5);
+        when(recordRepository.logNewRecords(eq(5), eq(1), anyList(), any()))
+            .thenAnswer(invocation -> ((List<?>) invocation.getArgument(2)).size());
+
+        jobRunner.runJob(s3Uri);
+
+        // file1 is ~130 bytes, so it arrives as several 16-byte ranged GETs
+        assertTrue(s3Client.getGetObjectCallCount() > 1);
+        verify(recordRepository).logNewRecords(eq(5), eq(1),
+            argThat(lines -> lines.size() == 2 && lines.get(1).contains("Test Hotel 2")), any());
+        verify(s3FileRepository).updateFileStatus(eq(5), eq("success"), eq(null), eq(2), eq(false));
+    }
+
+    @Test
+    void testRunJobListsAfterWatermarkAndAdvancesIt() throws Exception {
+        String s3Uri = "s3://test-bucket/test-prefix/";
+        jobRunner.setListingWatermarks(watermarkRepository);
+
+        when(jobRunRepository.insertJob(any(LocalDateTime.class), anyString(), anyString(), anyString()))
+            .thenReturn(1);
+        when(watermarkRepository.findStartAfter("test-bucket", "test-prefix/")).thenReturn("test-prefix/file1.jsonl");
+        when(s3FileRepository.insertOrUpdateFile(anyInt(), anyString(), anyString(), anyString(), any(), anyBoolean()))
+            .thenReturn(2, 3);
+
+        jobRunner.runJob(s3Uri);
+
+        assertEquals("test-prefix/file1.jsonl", s3Client.getListRequests().get(0).startAfter());
+        verify(s3FileRepository, never()).insertOrUpdateFile(anyInt(), anyString(), eq("test-prefix/file1.jsonl"), anyString(), any(), anyBoolean());
+        verify(watermarkRepository).advance("test-bucket", "test-prefix/", "test-prefix/file3.jsonl");
+    }
+
+    @Test
+    void testWatermarkStopsBeforeFileThatIsNotDone() throws Exception {
+        String s3Uri = "s3://test-bucket/test-prefix/";
+        jobRunner.setListingWatermarks(watermarkRepository);
+
+        when(jobRunRepository.insertJob(any(LocalDateTime.class), anyString(), anyString(), anyString()))
+            .thenReturn(1);
+        // file2 is claimed by another runner, so the watermark may not pass it
+        when(s3FileRepository.insertOrUpdateFile(anyInt(), anyString(), anyString(), anyString(), any(), anyBoolean()))
+            .thenReturn(1, null, 3);
+
+        jobRunner.runJob(s3Uri);
+
+        verify(s3FileRepository, times(3)).insertOrUpdateFile(anyInt(), anyString(), anyString(), anyString(), any(), anyBoolean());
+        verify(watermarkRepository).advance("test-bucket", "test-prefix/", "test-prefix/file1.jsonl");
+        verify(watermarkRepository, never()).advance(anyString(), anyString(), eq("test-prefix/file3.jsonl"));
+    }
+
+    @Test
+    void testRunJobListsPartitionsConcurrently() throws Exception {
+        String s3Uri = "s3://part-bucket/exports/";
+        s3Client.addBucketContent("part-bucket", "exports/dt=2024-01-01/a.jsonl", 10L);
+        s3Client.addBucketContent("part-bucket", "exports/dt=2024-01-01/b.jsonl", 10L);
+        s3Client.addBucketContent("part-bucket", "exports/dt=2024-01-02/c.jsonl", 10L);
+        s3Client.addBucketContent("part-bucket", "exports/manifest.jsonl", 10L);
+        jobRunner.setListingWatermarks(watermarkRepository);
+        jobRunner.setListingParallelism(3);
+
+        when(jobRunRepository.insertJob(any(LocalDateTime.class), anyString(), anyString(), anyString()))
+            .thenReturn(1);
+        when(watermarkRepository.findStartAfter("part-bucket", "exports/dt=2024-01-01/"))
+            .thenReturn("exports/dt=2024-01-01/a.jsonl");
+        when(s3FileRepository.insertOrUpdateFile(anyInt(), anyString(), anyString(), anyString(), any(), anyBoolean()))
+            .thenReturn(1);
+
+        jobRunner.runJob(s3Uri);
+
+        // a.jsonl is behind its partition's watermark; the rest are ingested
+        verify(s3FileRepository, times(3)).insertOrUpdateFile(anyInt(), anyString(), anyString(), anyString(), any(), anyBoolean());
+        verify(s3FileRepository, never()).insertOrUpdateFile(anyInt(), anyString(), eq("exports/dt=2024-01-01/a.jsonl"), anyString(), any(), anyBoolean());
+        verify(watermarkRepository).advance("part-bucket", "exports/dt=2024-01-01/", "exports/dt=2024-01-01/b.jsonl");
+        verify(watermarkRepository).advance("part-bucket", "exports/dt=2024-01-02/", "exports/dt=2024-01-02/c.jsonl");
+        // Objects directly under the partitioned prefix are always listed in full
+        verify(watermarkRepository, never()).advance(anyString(), eq("exports/"), anyString());
+        verify(jobRunRepository).updateJobStatus(eq(1), any(LocalDateTime.class), eq("success"));
+    }
+
+    @Test
+    void testStreamFilesFetchesListingPagesLazily() {
+        s3Client.setListPageSize(1);
+
+        Iterator<JobRunner.S3FileRef> files = JobRunner.S3FileLister.streamFiles(
+            s3Client, "test-bucket", "test-prefix/", null, null, LocalDateTime.MIN);
+
+        assertEquals(0, s3Client.getListRequests().size());
+        assertEquals("test-prefix/file1.jsonl", files.next().getKey());
+        assertEquals(1, s3Client.getListRequests().size());
+        assertEquals("test-prefix/file2.jsonl", files.next().getKey());
+        assertEquals("test-prefix/file3.jsonl", files.next().getKey());
+        assertFalse(files.hasNext());
+        assertEquals(3, s3Client.getListRequests().size());
+    }
+
+    @Test
+    void testDirectModeNormalizesLinesAndKeepsOnlyFailures() throws Exception {
+        String s3Uri = "s3://test-bucket/test-prefix/";
+        s3Client.clearBucketContents();
+        s3Client.addBucketContent("test-bucket", "test-prefix/file1.jsonl", 1000L);
+        JobRunner directRunner = new JobRunner(
+            jobRunRepository, s3FileRepository, recordRepository,
+            s3Client, 10, 1, JobRunner.IngestMode.DIRECT
+        );
+        directRunner.setNormalizer(normalizer, recordErrorRepository);
+
+        Record failedRecord = new Record();
+        failedRecord.setId(42);
+        when(jobRunRepository.insertJob(any(LocalDateTime.class), anyString(), anyString(), anyString()))
+            .thenReturn(1);
+        when(s3FileRepository.insertOrUpdateFile(anyInt(), anyString(), anyString(), anyString(), any(), anyBoolean()))
+            .thenReturn(5);
+        when(normalizer.normalizeAll(anyList()))
+            .thenReturn(List.of(new ReviewNormalizer.LineFailure(1, new IllegalArgumentException("bad review"))));
+        when(recordRepository.logFailedRecord(eq(5), eq(1), contains("Test Hotel 2"))).thenReturn(failedRecord);
+
+        directRunner.runJob(s3Uri);
+
+        verify(recordRepository, never()).logNewRecords(anyInt(), anyInt(), anyList(), any());
+        verify(recordRepository, times(1)).logFailedRecord(anyInt(), anyInt(), anyString());
+        verify(recordErrorRepository).logRecordError(eq(failedRecord), eq("bad review"), anyString());
+        verify(s3FileRepository).updateFileStatus(eq(5), eq("success"),
+            eq("1 lines failed normalization and were kept as failed records"), eq(1), eq(false));
+    }
+
+    @Test
+    void testDirectModeRequiresNormalizer() {
+        JobRunner directRunner = new JobRunner(
+            jobRunRepository, s3FileRepository, recordRepository,
+            s3Client, 10, 1, JobRunner.IngestMode.DIRECT
+        );
+
+        assertThrows(IllegalStateException.class, () -> directRunner.runJob("s3://test-bucket/test-prefix/"));
+        verify(jobRunRepository, never()).insertJob(any(LocalDateTime.class), anyString(), anyString(), anyString());
+    }
+
     // Helper methods
     private S3Object createS3Object(String key, Long size) {
         return S3Object.builder()
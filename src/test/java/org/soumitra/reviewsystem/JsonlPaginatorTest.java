@@ -0,0 +1,279 @@
+package org.soumitra.reviewsystem;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.soumitra.reviewsystem.util.MockS3Client;
+
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JsonlPaginatorTest {
+
+    private MockS3Client s3Client;
+
+    @BeforeEach
+    void setUp() {
+        s3Client = new MockS3Client();
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 25; i++) {
+            content.append("{\"line\": ").append(i).append("}\n");
+        }
+        s3Client.addObjectContent("test-bucket/big.jsonl", content.toString());
+    }
+
+    @Test
+    void testOpenJsonLinesReadsWholeFileWithSingleGet() throws Exception {
+        List<String> all = new ArrayList<>();
+        try (JsonlPaginator.JsonlLineReader reader = JsonlPaginator.openJsonLines("test-bucket", "big.jsonl", s3Client)) {
+            List<String> page;
+            while (!(page = reader.nextPage(10)).isEmpty()) {
+                assertTrue(page.size() <= 10);
+                all.addAll(page);
+            }
+            assertEquals(25, reader.getLinesRead());
+        }
+
+        assertEquals(25, all.size());
+        assertEquals("{\"line\": 0}", all.get(0));
+        assertEquals("{\"line\": 24}", all.get(24));
+        assertEquals(1, s3Client.getGetObjectCallCount());
+    }
+
+    @Test
+    void testReadJsonLinesReturnsSinglePage() {
+        List<String> page = JsonlPaginator.readJsonLines("test-bucket", "big.jsonl", 20, 10, s3Client);
+
+        assertEquals(5, page.size());
+        assertEquals("{\"line\": 20}", page.get(0));
+    }
+
+    @Test
+    void testReadJsonLinesPastEndReturnsEmpty() {
+        List<String> page = JsonlPaginator.readJsonLines("test-bucket", "big.jsonl", 100, 10, s3Client);
+
+        assertTrue(page.isEmpty());
+    }
+
+    @Test
+    void testResumeFromByteOffsetContinuesAtNextLine() throws Exception {
+        long offset;
+        try (JsonlPaginator.JsonlLineReader reader = JsonlPaginator.openJsonLines("test-bucket", "big.jsonl", s3Client)) {
+            reader.nextPage(10);
+            offset = reader.getByteOffset();
+            assertEquals(10, reader.getLinesRead());
+        }
+
+        try (JsonlPaginator.JsonlLineReader reader = JsonlPaginator.openJsonLines("test-bucket", "big.jsonl", s3Client, offset, 10)) {
+            List<String> page = reader.nextPage(100);
+            assertEquals(15, page.size());
+            assertEquals("{\"line\": 10}", page.get(0));
+            assertEquals(25, reader.getLinesRead());
+        }
+    }
+
+    @Test
+    void testResumeAtEndOfObjectIsEmpty() throws Exception {
+        long end;
+        try (JsonlPaginator.JsonlLineReader reader = JsonlPaginator.openJsonLines("test-bucket", "big.jsonl", s3Client)) {
+            reader.nextPage(100);
+            end = reader.getByteOffset();
+        }
+
+        try (JsonlPaginator.JsonlLineReader reader = JsonlPaginator.openJsonLines("test-bucket", "big.jsonl", s3Client, end, 25)) {
+            assertFalse(reader.hasNext());
+        }
+    }
+
+    @Test
+    void testCrlfAndMissingTrailingNewline() throws Exception {
+        s3Client.addObjectContent("test-bucket/crlf.jsonl", "{\"a\": 1}\r\n{\"a\": 2}");
+
+        try (JsonlPaginator.JsonlLineReader reader = JsonlPaginator.openJsonLines("test-bucket", "crlf.jsonl", s3Client)) {
+            List<String> page = reader.nextPage(10);
+            assertEquals(List.of("{\"a\": 1}", "{\"a\": 2}"), page);
+            assertEquals(18, reader.getByteOffset());
+        }
+    }
+
+    @Test
+    void testGzipObjectIsDecompressedByExtension() throws Exception {
+        assertCompressedFixtureReadsAsPlainJsonl("reviews.jsonl.gz");
+    }
+
+    @Test
+    void testZstdObjectIsDecompressedByExtension() throws Exception {
+        assertCompressedFixtureReadsAsPlainJsonl("reviews.jsonl.zst");
+    }
+
+    @Test
+    void testGzipObjectIsDecompressedByContentType() throws Exception {
+        assertCompressedFixtureReadsAsPlainJsonl("reviews-export");
+    }
+
+    @Test
+    void testResumeCompressedObjectSkipsToDecompressedOffset() throws Exception {
+        long offset;
+        try (JsonlPaginator.JsonlLineReader reader = JsonlPaginator.openJsonLines("compressed-bucket", "reviews.jsonl.zst", s3Client)) {
+            reader.nextPage(1);
+            offset = reader.getByteOffset();
+        }
+
+        try (JsonlPaginator.JsonlLineReader reader = JsonlPaginator.openJsonLines("compressed-bucket", "reviews.jsonl.zst", s3Client, offset, 1)) {
+            List<String> page = reader.nextPage(10);
+            assertEquals(1, page.size());
+            assertTrue(page.get(0).contains("Test Hotel 2"));
+            assertEquals(2, reader.getLinesRead());
+        }
+    }
+
+    @Test
+    void testResumeByContentTypeRefetchesWholeObject() throws Exception {
+        long offset;
+        try (JsonlPaginator.JsonlLineReader reader = JsonlPaginator.openJsonLines("compressed-bucket", "reviews-export", s3Client)) {
+            reader.nextPage(1);
+            offset = reader.getByteOffset();
+        }
+
+        try (JsonlPaginator.JsonlLineReader reader = JsonlPaginator.openJsonLines("compressed-bucket", "reviews-export", s3Client, offset, 1)) {
+            List<String> page = reader.nextPage(10);
+            assertEquals(1, page.size());
+            assertTrue(page.get(0).contains("Test Hotel 2"));
+        }
+    }
+
+    @Test
+    void testRangedDownloadMatchesSingleGet() throws Exception {
+        // Parts of 7 bytes split every line, so the stitching is exercised on each one
+        RangedDownload download = new RangedDownload(0L, 7L, 3);
+
+        List<String> single;
+        long singleOffset;
+        try (JsonlPaginator.JsonlLineReader reader = JsonlPaginator.openJsonLines("test-bucket", "big.jsonl", s3Client)) {
+            single = reader.nextPage(100);
+            singleOffset = reader.getByteOffset();
+        }
+        try (JsonlPaginator.JsonlLineReader reader = JsonlPaginator.openJsonLines("test-bucket", "big.jsonl", s3Client, 0L, 0, download)) {
+            assertEquals(single, reader.nextPage(100));
+            assertEquals(singleOffset, reader.getByteOffset());
+            assertEquals(25, reader.getLinesRead());
+        }
+    }
+
+    @Test
+    void testRangedDownloadResumesFromByteOffset() throws Exception {
+        RangedDownload download = new RangedDownload(0L, 16L, 4);
+        long offset;
+        try (JsonlPaginator.JsonlLineReader reader = JsonlPaginator.openJsonLines("test-bucket", "big.jsonl", s3Client)) {
+            reader.nextPage(10);
+            offset = reader.getByteOffset();
+        }
+
+        try (JsonlPaginator.JsonlLineReader reader = JsonlPaginator.openJsonLines("test-bucket", "big.jsonl", s3Client, offset, 10, download)) {
+            List<String> page = reader.nextPage(100);
+            assertEquals(15, page.size());
+            assertEquals("{\"line\": 10}", page.get(0));
+        }
+    }
+
+    @Test
+    void testRangedDownloadOfCompressedObject() throws Exception {
+        RangedDownload download = new RangedDownload(0L, 5L, 2);
+        try (JsonlPaginator.JsonlLineReader reader = JsonlPaginator.openJsonLines("compressed-bucket", "reviews-export", s3Client, 0L, 0, download)) {
+            List<String> page = reader.nextPage(10);
+            assertEquals(2, page.size());
+            assertTrue(page.get(1).contains("Test Hotel 2"));
+        }
+    }
+
+    @Test
+    void testRangedPartsArePinnedToTheHeadETag() throws Exception {
+        List<String> ifMatches = Collections.synchronizedList(new ArrayList<>());
+        MockS3Client versioned = versionedClient(ifMatches, false);
+
+        try (JsonlPaginator.JsonlLineReader reader = JsonlPaginator.openJsonLines("test-bucket", "big.jsonl", versioned, 0L, 0,
+                new RangedDownload(0L, 16L, 4))) {
+            assertEquals(25, reader.nextPage(100).size());
+        }
+        assertFalse(ifMatches.isEmpty());
+        assertTrue(ifMatches.stream().allMatch("\"v1\""::equals));
+    }
+
+    @Test
+    void testObjectOverwrittenDuringRangedDownloadFails() throws Exception {
+        MockS3Client overwritten = versionedClient(new ArrayList<>(), true);
+
+        try (JsonlPaginator.JsonlLineReader reader = JsonlPaginator.openJsonLines("test-bucket", "big.jsonl", overwritten, 0L, 0,
+                new RangedDownload(0L, 16L, 4))) {
+            RuntimeException e = assertThrows(RuntimeException.class, () -> reader.nextPage(100));
+            assertTrue(e.getMessage().contains("overwritten"), e.getMessage());
+        }
+    }
+
+    @Test
+    void testRangedDownloadWithoutContentLengthFallsBackToSingleGet() throws Exception {
+        MockS3Client unsized = new MockS3Client() {
+            @Override
+            public HeadObjectResponse headObject(HeadObjectRequest request) {
+                return HeadObjectResponse.builder().build();
+            }
+        };
+        unsized.addObjectContent("test-bucket/big.jsonl", "{\"line\": 0}\n{\"line\": 1}\n");
+
+        try (JsonlPaginator.JsonlLineReader reader = JsonlPaginator.openJsonLines("test-bucket", "big.jsonl", unsized, 0L, 0,
+                new RangedDownload(0L, 4L, 4))) {
+            assertEquals(2, reader.nextPage(10).size());
+        }
+        assertEquals(1, unsized.getGetObjectCallCount());
+    }
+
+    @Test
+    void testRangedDownloadAppliesOnlyAboveThreshold() {
+        RangedDownload download = new RangedDownload(1000L, 100L, 4);
+        assertFalse(download.appliesTo(999L));
+        assertTrue(download.appliesTo(1000L));
+        assertFalse(download.appliesTo(null));
+        assertFalse(new RangedDownload(0L, 100L, 1).appliesTo(1000L));
+    }
+
+    /**
+     * big.jsonl at ETag "v1"; when overwritten, every conditional GET fails as S3 does
+     */
+    private MockS3Client versionedClient(List<String> ifMatches, boolean overwritten) {
+        MockS3Client versioned = new MockS3Client() {
+            @Override
+            public HeadObjectResponse headObject(HeadObjectRequest request) {
+                return super.headObject(request).toBuilder().eTag("\"v1\"").build();
+            }
+
+            @Override
+            public ResponseInputStream<GetObjectResponse> getObject(GetObjectRequest request) {
+                ifMatches.add(request.ifMatch());
+                if (overwritten && request.ifMatch() != null) {
+                    throw (S3Exception) S3Exception.builder().statusCode(412).message("Precondition Failed").build();
+                }
+                return super.getObject(request);
+            }
+        };
+        versioned.addObjectContent("test-bucket/big.jsonl", s3Client.getObjectContents().get("test-bucket/big.jsonl"));
+        return versioned;
+    }
+
+    private void assertCompressedFixtureReadsAsPlainJsonl(String key) throws Exception {
+        try (JsonlPaginator.JsonlLineReader reader = JsonlPaginator.openJsonLines("compressed-bucket", key, s3Client)) {
+            List<String> page = reader.nextPage(10);
+            assertEquals(2, page.size());
+            assertTrue(page.get(0).contains("Test Hotel 1"));
+            assertTrue(page.get(1).contains("Test Hotel 2"));
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package org.soumitra.reviewsystem;
+
+import org.junit.jupiter.api.Test;
+import org.soumitra.reviewsystem.dao.RawDataDictionaryRepository;
+import org.soumitra.reviewsystem.model.RawDataDictionary;
+import org.soumitra.reviewsystem.model.Record;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class RawDataCodecTest {
+
+    @Test
+    void testLinesRoundTripWithoutADictionary() {
+        RawDataCodec codec = new RawDataCodec(true, 3, null);
+        String line = reviewLine(1);
+
+        RawDataCodec.Compressed compressed = codec.compress(line);
+
+        assertNull(compressed.getDictionaryId());
+        assertEquals(line, codec.decompress(compressed.getData(), null));
+    }
+
+    @Test
+    void testTextPrefersStoredTextAndDecompressesOtherwise() {
+        RawDataCodec codec = RawDataCodec.uncompressed();
+        byte[] data = new RawDataCodec(true, 3, null).compress("{\"a\":1}").getData();
+
+        assertEquals("{\"b\":2}", codec.text(Record.builder().rawData("{\"b\":2}").build()));
+        assertEquals("{\"a\":1}", codec.text(Record.builder().rawDataZstd(data).build()));
+        assertNull(codec.text(new Record()));
+    }
+
+    @Test
+    void testTrainedDictionaryIsStoredUsedAndReadBack() {
+        RawDataDictionaryRepository dictionaryRepo = mock(RawDataDictionaryRepository.class);
+        when(dictionaryRepo.findTopByOrderByIdDesc()).thenReturn(Optional.empty());
+        when(dictionaryRepo.save(any())).thenAnswer(invocation -> {
+            RawDataDictionary dictionary = invocation.getArgument(0);
+            dictionary.setId(4);
+            return dictionary;
+        });
+        RawDataCodec codec = new RawDataCodec(true, 3, dictionaryRepo);
+        List<String> samples = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            samples.add(reviewLine(i));
+        }
+        String line = reviewLine(5000);
+        int plainSize = codec.compress(line).getData().length;
+
+        RawDataDictionary dictionary = codec.train(samples, 16 * 1024);
+        RawDataCodec.Compressed compressed = codec.compress(line);
+
+        assertEquals(4, dictionary.getId());
+        assertEquals(2000, dictionary.getSampleCount());
+        assertEquals(4, compressed.getDictionaryId());
+        assertTrue(compressed.getData().length < plainSize,
+            compressed.getData().length + " bytes with the dictionary, " + plainSize + " without");
+
+        // A fresh codec, as in another process, loads the dictionary to read the line
+        when(dictionaryRepo.findById(4)).thenReturn(Optional.of(dictionary));
+        RawDataCodec reader = new RawDataCodec(false, 3, dictionaryRepo);
+        assertEquals(line, reader.decompress(compressed.getData(), 4));
+    }
+
+    private static String reviewLine(int i) {
+        return "{\"hotelId\":" + (10000 + i % 97) + ",\"platform\":\"Agoda\",\"hotelName\":\"Hotel " + (i % 97)
+            + "\",\"comment\":{\"hotelReviewId\":" + (900000 + i) + ",\"providerId\":332,\"rating\":" + (i % 10)
+            + ".0,\"checkInDateMonthAndYear\":\"April 2023\",\"encryptedReviewData\":\"cZwJ" + Integer.toHexString(i * 7919)
+            + "\",\"formattedRating\":\"" + (i % 10) + ".0\",\"formattedReviewDate\":\"April 10, 2023\","
+            + "\"ratingText\":\"Exceptional\",\"responderName\":\"Hotel " + (i % 97) + "\",\"responseDateText\":\"\","
+            + "\"reviewComments\":\"Review number " + i + " - the room was clean and the staff were friendly\","
+            + "\"reviewerInfo\":{\"countryName\":\"India\",\"displayMemberName\":\"Guest " + (i % 31)
+            + "\",\"flagName\":\"in\",\"reviewGroupName\":\"Solo traveler\",\"roomTypeName\":\"Premium Deluxe\","
+            + "\"countryId\":35,\"lengthOfStay\":" + (1 + i % 5) + ",\"reviewGroupId\":3,\"roomTypeId\":0,"
+            + "\"reviewerReviewedCount\":0,\"isExpertReviewer\":false,\"isShowGlobalIcon\":false,"
+            + "\"isShowReviewedCount\":false},\"originalTitle\":\"\",\"originalComment\":\"\"},"
+            + "\"overallByProviders\":[{\"providerId\":332,\"provider\":\"Agoda\",\"overallScore\":7.9,"
+            + "\"reviewCount\":" + (7000 + i % 50) + ",\"grades\":{\"Cleanliness\":7.7,\"Facilities\":7.2,"
+            + "\"Location\":8.5,\"Service\":7.8,\"Value for money\":7.5}}]}";
+    }
+}
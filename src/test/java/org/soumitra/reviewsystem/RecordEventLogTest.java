@@ -0,0 +1,66 @@
+package org.soumitra.reviewsystem;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RecordEventLogTest {
+
+    private final Logger logger = (Logger) LoggerFactory.getLogger(RecordEventLog.LOGGER_PREFIX + "test");
+    private final ListAppender<ILoggingEvent> appender = new ListAppender<>();
+    private final AtomicLong nanos = new AtomicLong();
+
+    @BeforeEach
+    void attachAppender() {
+        appender.start();
+        logger.addAppender(appender);
+    }
+
+    @AfterEach
+    void detachAppender() {
+        logger.detachAppender(appender);
+        logger.setLevel(null);
+    }
+
+    @Test
+    void testEventsAreCappedPerSecondAndSuppressedOnesReported() {
+        logger.setLevel(Level.DEBUG);
+        RecordEventLog events = new RecordEventLog(logger, 3, nanos::get);
+
+        for (int i = 0; i < 10; i++) {
+            events.event("Created review {}", i);
+        }
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        events.event("Created review {}", 10);
+
+        assertEquals(List.of("Created review 0", "Created review 1", "Created review 2",
+            "7 record events suppressed", "Created review 10"), messages());
+    }
+
+    @Test
+    void testNothingIsLoggedAboveDebug() {
+        logger.setLevel(Level.INFO);
+        RecordEventLog events = new RecordEventLog(logger, 3, nanos::get);
+
+        events.event("Created review {}", 1);
+        events.event("Failed record {}: {}", 2, "bad line");
+
+        assertTrue(appender.list.isEmpty());
+    }
+
+    private List<String> messages() {
+        return appender.list.stream().map(ILoggingEvent::getFormattedMessage).collect(Collectors.toList());
+    }
+}
@@ -3,17 +3,22 @@ package org.soumitra.reviewsystem;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.soumitra.reviewsystem.dao.*;
 import org.soumitra.reviewsystem.model.*;
+import org.soumitra.reviewsystem.dao.RecordRepositoryCustom.RecordOutcome;
 import org.soumitra.reviewsystem.model.Record;
 import org.soumitra.reviewsystem.util.HotelReviewJsonParser;
 
 import java.time.LocalDateTime;
 import java.util.Arrays;
 import java.util.List;
+import java.util.stream.Collectors;
 
+import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 import static org.mockito.Mockito.doNothing;
@@ -83,9 +88,7 @@ class RecordProcessorJobTest {
         // Mock repository responses
         when(jobRunRepository.insertJob(any(LocalDateTime.class), anyString(), anyString(), anyString()))
             .thenReturn(1);
-        when(recordRepository.findNewRecords(10)).thenReturn(records).thenReturn(List.of());
-        doNothing().when(recordRepository).updateRecordStatusAndStartedAt(anyInt(), anyString());
-        doNothing().when(recordRepository).updateRecordStatusWithErrorAndFinishedAt(anyInt(), anyString());
+        when(recordRepository.claimNewRecords(10)).thenReturn(records).thenReturn(List.of());
         doNothing().when(jobRunRepository).updateJobStatus(anyInt(), any(LocalDateTime.class), anyString());
 
         // Execute
@@ -93,9 +96,13 @@ class RecordProcessorJobTest {
 
         // Verify - records are processed but fail due to JSON parsing issues
         verify(jobRunRepository).insertJob(any(LocalDateTime.class), eq("MANUAL"), eq("running"), eq("Processing review records"));
-        verify(recordRepository, times(2)).findNewRecords(10);
-        verify(recordRepository, times(2)).updateRecordStatusAndStartedAt(anyInt(), eq("processing"));
-        verify(recordRepository, times(2)).updateRecordStatusWithErrorAndFinishedAt(anyInt(), eq("failed"));
+        verify(recordRepository, times(2)).claimNewRecords(10);
+        // Claiming already moved the records to processing
+        verify(recordRepository, never()).updateRecordStatusAndStartedAt(anyInt(), anyString());
+        verify(recordRepository, never()).updateRecordStatusWithErrorAndFinishedAt(anyInt(), anyString());
+        List<RecordOutcome> outcomes = captureFinishedOutcomes(1).get(0);
+        assertEquals(List.of(1, 2), outcomes.stream().map(RecordOutcome::getRecordId).collect(Collectors.toList()));
+        assertTrue(outcomes.stream().allMatch(RecordOutcome::isFailed));
         verify(jobRunRepository).updateJobStatus(eq(1), any(LocalDateTime.class), eq("success"));
     }
 
@@ -109,18 +116,20 @@ class RecordProcessorJobTest {
         // Mock repository responses
         when(jobRunRepository.insertJob(any(LocalDateTime.class), anyString(), anyString(), anyString()))
             .thenReturn(1);
-        when(recordRepository.findNewRecords(10)).thenReturn(records).thenReturn(List.of());
-        doNothing().when(recordRepository).updateRecordStatusAndStartedAt(anyInt(), anyString());
-        doNothing().when(recordRepository).updateRecordStatusWithErrorAndFinishedAt(anyInt(), anyString());
+        when(recordRepository.claimNewRecords(10)).thenReturn(records).thenReturn(List.of());
         doNothing().when(jobRunRepository).updateJobStatus(anyInt(), any(LocalDateTime.class), anyString());
 
         // Execute
         recordProcessorJob.runJob();
 
         // Verify - record fails due to JSON parsing error
-        verify(recordRepository).updateRecordStatusAndStartedAt(eq(1), eq("processing"));
-        verify(recordRepository).updateRecordStatusWithErrorAndFinishedAt(eq(1), eq("failed"));
-        verify(recordErrorRepository).logRecordError(eq(record), anyString(), anyString());
+        RecordOutcome outcome = captureFinishedOutcomes(1).get(0).get(0);
+        assertEquals(1, outcome.getRecordId());
+        assertEquals("failed", outcome.getStatus());
+        assertNotNull(outcome.getFinishedAt());
+        assertNotNull(outcome.getErrorMessage());
+        assertNotNull(outcome.getTraceback());
+        verifyNoInteractions(recordErrorRepository);
         verify(jobRunRepository).updateJobStatus(eq(1), any(LocalDateTime.class), eq("success"));
     }
 
@@ -129,7 +138,7 @@ class RecordProcessorJobTest {
         // Mock repository responses
         when(jobRunRepository.insertJob(any(LocalDateTime.class), anyString(), anyString(), anyString()))
             .thenReturn(1);
-        when(recordRepository.findNewRecords(10)).thenReturn(List.of());
+        when(recordRepository.claimNewRecords(10)).thenReturn(List.of());
         doNothing().when(jobRunRepository).updateJobStatus(anyInt(), any(LocalDateTime.class), anyString());
 
         // Execute
@@ -137,7 +146,8 @@ class RecordProcessorJobTest {
 
         // Verify
         verify(jobRunRepository).insertJob(any(LocalDateTime.class), eq("MANUAL"), eq("running"), eq("Processing review records"));
-        verify(recordRepository).findNewRecords(10);
+        verify(recordRepository).claimNewRecords(10);
+        verify(recordRepository, never()).finishRecords(anyList());
         verify(jobRunRepository).updateJobStatus(eq(1), any(LocalDateTime.class), eq("success"));
     }
 
@@ -151,9 +161,7 @@ class RecordProcessorJobTest {
         // Mock repository responses
         when(jobRunRepository.insertJob(any(LocalDateTime.class), anyString(), anyString(), anyString()))
             .thenReturn(1);
-        when(recordRepository.findNewRecords(10)).thenReturn(records).thenReturn(List.of());
-        doNothing().when(recordRepository).updateRecordStatusAndStartedAt(anyInt(), anyString());
-        doNothing().when(recordRepository).updateRecordStatusWithErrorAndFinishedAt(anyInt(), anyString());
+        when(recordRepository.claimNewRecords(10)).thenReturn(records).thenReturn(List.of());
         doNothing().when(jobRunRepository).updateJobStatus(anyInt(), any(LocalDateTime.class), anyString());
 
         // Execute
@@ -161,9 +169,8 @@ class RecordProcessorJobTest {
 
         // Verify - record fails due to JSON parsing issues
         verify(jobRunRepository).insertJob(any(LocalDateTime.class), eq("MANUAL"), eq("running"), eq("Processing review records"));
-        verify(recordRepository, times(2)).findNewRecords(10);
-        verify(recordRepository).updateRecordStatusAndStartedAt(eq(1), eq("processing"));
-        verify(recordRepository).updateRecordStatusWithErrorAndFinishedAt(eq(1), eq("failed"));
+        verify(recordRepository, times(2)).claimNewRecords(10);
+        assertEquals("failed", captureFinishedOutcomes(1).get(0).get(0).getStatus());
         verify(jobRunRepository).updateJobStatus(eq(1), any(LocalDateTime.class), eq("success"));
     }
 
@@ -177,25 +184,128 @@ class RecordProcessorJobTest {
         // Mock repository responses
         when(jobRunRepository.insertJob(any(LocalDateTime.class), anyString(), anyString(), anyString()))
             .thenReturn(1);
-        when(recordRepository.findNewRecords(10)).thenReturn(records).thenReturn(List.of());
-        doNothing().when(recordRepository).updateRecordStatusAndStartedAt(anyInt(), anyString());
-        doNothing().when(recordRepository).updateRecordStatusWithErrorAndFinishedAt(anyInt(), anyString());
+        when(recordRepository.claimNewRecords(10)).thenReturn(records).thenReturn(List.of());
         doNothing().when(jobRunRepository).updateJobStatus(anyInt(), any(LocalDateTime.class), anyString());
 
         // Execute
         recordProcessorJob.runJob();
 
         // Verify - record fails due to JSON parsing issues
-        verify(recordRepository).updateRecordStatusAndStartedAt(eq(1), eq("processing"));
-        verify(recordRepository).updateRecordStatusWithErrorAndFinishedAt(eq(1), eq("failed"));
+        assertEquals("failed", captureFinishedOutcomes(1).get(0).get(0).getStatus());
+    }
+
+    @Test
+    void testRunJobWithWorkersProcessesEveryClaimedRecordOnce() throws Exception {
+        RecordProcessorJob job = new RecordProcessorJob(
+            jobRunRepository, recordRepository, recordErrorRepository,
+            reviewRepository, hotelRepository, providerRepository, reviewerRepository,
+            stayInfoRepository, providerHotelSummaryRepository, providerHotelGradeRepository,
+            ratingCategoryRepository, parser, 10, 3
+        );
+
+        // Four pages handed out across the workers, then the backlog is empty for everyone
+        when(jobRunRepository.insertJob(any(LocalDateTime.class), anyString(), anyString(), anyString()))
+            .thenReturn(1);
+        when(recordRepository.claimNewRecords(10))
+            .thenReturn(List.of(createTestRecord(1, "invalid json"), createTestRecord(2, "invalid json")))
+            .thenReturn(List.of(createTestRecord(3, "invalid json")))
+            .thenReturn(List.of(createTestRecord(4, "invalid json")))
+            .thenReturn(List.of(createTestRecord(5, "invalid json")))
+            .thenReturn(List.of());
+
+        job.runJob();
+
+        List<Integer> finished = captureFinishedOutcomes(4).stream()
+            .flatMap(List::stream)
+            .map(RecordOutcome::getRecordId)
+            .sorted()
+            .collect(Collectors.toList());
+        assertEquals(List.of(1, 2, 3, 4, 5), finished);
+        verify(jobRunRepository).updateJobStatus(eq(1), any(LocalDateTime.class), eq("success"));
+    }
+
+    @Test
+    void testRunJobPagesThroughBacklogByKeysetBeforeRescanning() throws Exception {
+        when(jobRunRepository.insertJob(any(LocalDateTime.class), anyString(), anyString(), anyString()))
+            .thenReturn(1);
+        when(recordRepository.claimNewRecords(10))
+            .thenReturn(List.of(createTestRecord(1, "invalid json"), createTestRecord(2, "invalid json")))
+            .thenReturn(List.of());
+        when(recordRepository.claimNewRecordsAfter(2, 10)).thenReturn(List.of(createTestRecord(3, "invalid json")));
+        when(recordRepository.claimNewRecordsAfter(3, 10)).thenReturn(List.of());
+
+        recordProcessorJob.runJob();
+
+        InOrder claims = inOrder(recordRepository);
+        claims.verify(recordRepository).claimNewRecords(10);
+        claims.verify(recordRepository).claimNewRecordsAfter(2, 10);
+        claims.verify(recordRepository).claimNewRecordsAfter(3, 10);
+        claims.verify(recordRepository).claimNewRecords(10);
+        captureFinishedOutcomes(2);
+        verify(jobRunRepository).updateJobStatus(eq(1), any(LocalDateTime.class), eq("success"));
+    }
+
+    @Test
+    void testRunJobMarksJobFailedWhenClaimingFails() throws Exception {
+        when(jobRunRepository.insertJob(any(LocalDateTime.class), anyString(), anyString(), anyString()))
+            .thenReturn(1);
+        when(recordRepository.claimNewRecords(10)).thenThrow(new RuntimeException("database unavailable"));
+
+        assertThrows(RuntimeException.class, () -> recordProcessorJob.runJob());
+
+        verify(jobRunRepository).updateJobStatus(eq(1), any(LocalDateTime.class), eq("failed"));
+        verify(jobRunRepository, never()).updateJobStatus(anyInt(), any(LocalDateTime.class), eq("success"));
+    }
+
+    @Test
+    void testRunJobReleasesThePageWhenFinishingItFails() throws Exception {
+        when(jobRunRepository.insertJob(any(LocalDateTime.class), anyString(), anyString(), anyString()))
+            .thenReturn(1);
+        when(recordRepository.claimNewRecords(10))
+            .thenReturn(List.of(createTestRecord(1, "invalid json"), createTestRecord(2, "invalid json")));
+        when(recordRepository.finishRecords(anyList())).thenThrow(new RuntimeException("connection reset"));
+
+        assertThrows(RuntimeException.class, () -> recordProcessorJob.runJob());
+
+        verify(recordRepository).releaseRecords(argThat(records -> records.size() == 2
+            && records.get(0).getId() == 1 && records.get(1).getId() == 2));
+        verify(jobRunRepository).updateJobStatus(eq(1), any(LocalDateTime.class), eq("failed"));
+    }
+
+    @Test
+    void testRunJobTakesOverExpiredClaimsOnceTheBacklogIsDrained() throws Exception {
+        when(jobRunRepository.insertJob(any(LocalDateTime.class), anyString(), anyString(), anyString()))
+            .thenReturn(1);
+        when(recordRepository.claimNewRecords(10)).thenReturn(List.of());
+        when(recordRepository.claimNewRecordsAfter(7, 10)).thenReturn(List.of());
+        when(recordRepository.claimExpiredRecords(any(LocalDateTime.class), eq(10)))
+            .thenReturn(List.of(createTestRecord(7, "invalid json")))
+            .thenReturn(List.of());
+
+        recordProcessorJob.runJob();
+
+        ArgumentCaptor<LocalDateTime> claimedBefore = ArgumentCaptor.forClass(LocalDateTime.class);
+        verify(recordRepository, times(2)).claimExpiredRecords(claimedBefore.capture(), eq(10));
+        assertTrue(claimedBefore.getValue().isBefore(LocalDateTime.now().minusMinutes(9)));
+        assertEquals(List.of(7), captureFinishedOutcomes(1).get(0).stream()
+            .map(RecordOutcome::getRecordId).collect(Collectors.toList()));
+        verify(jobRunRepository).updateJobStatus(eq(1), any(LocalDateTime.class), eq("success"));
     }
 
     // Helper methods
+    @SuppressWarnings("unchecked")
+    private List<List<RecordOutcome>> captureFinishedOutcomes(int pages) {
+        ArgumentCaptor<List<RecordOutcome>> captor = ArgumentCaptor.forClass(List.class);
+        verify(recordRepository, times(pages)).finishRecords(captor.capture());
+        return captor.getAllValues();
+    }
+
     private Record createTestRecord(int id, String rawData) {
         Record record = new Record();
         record.setId(id);
         record.setRawData(rawData);
-        record.setStatus("new");
+        record.setStatus("processing");
+        record.setStartedAt(LocalDateTime.of(2024, 1, 1, 12, 0));
         return record;
     }
 
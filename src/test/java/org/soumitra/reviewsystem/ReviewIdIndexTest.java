@@ -0,0 +1,49 @@
+package org.soumitra.reviewsystem;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReviewIdIndexTest {
+
+    @Test
+    void testIdsSurviveGrowingPastInitialCapacity() {
+        ReviewIdIndex index = new ReviewIdIndex(10_000);
+        for (long externalId = 1; externalId <= 5_000; externalId++) {
+            index.put(externalId * 7919, externalId + 1_000_000);
+        }
+
+        Map<Long, Long> resolved = new HashMap<>();
+        List<Long> missing = index.getAll(List.of(7919L, 5_000L * 7919, 3L), resolved);
+
+        assertEquals(5_000, index.size());
+        assertEquals(List.of(3L), missing);
+        assertEquals(1_000_001L, resolved.get(7919L));
+        assertEquals(1_005_000L, resolved.get(5_000L * 7919));
+    }
+
+    @Test
+    void testStopsRememberingAtMaxEntries() {
+        ReviewIdIndex index = new ReviewIdIndex(2);
+        index.putAll(Map.of(1L, 10L, 2L, 20L));
+        index.put(3L, 30L);
+        index.put(1L, 11L);
+
+        Map<Long, Long> resolved = new HashMap<>();
+        assertEquals(List.of(3L), index.getAll(List.of(1L, 2L, 3L), resolved));
+        assertEquals(Map.of(1L, 11L, 2L, 20L), resolved);
+    }
+
+    @Test
+    void testDisabledIndexRemembersNothing() {
+        ReviewIdIndex index = new ReviewIdIndex(0);
+        index.put(1L, 10L);
+
+        assertFalse(index.isEnabled());
+        assertEquals(List.of(1L), index.getAll(List.of(1L), new HashMap<>()));
+    }
+}
@@ -0,0 +1,188 @@
+package org.soumitra.reviewsystem;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.soumitra.reviewsystem.dao.*;
+import org.soumitra.reviewsystem.dao.HotelRepositoryCustom.HotelKey;
+import org.soumitra.reviewsystem.dao.ReviewerRepositoryCustom.ReviewerKey;
+import org.soumitra.reviewsystem.model.*;
+import org.soumitra.reviewsystem.util.HotelReviewJsonParser;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ReviewNormalizerTest {
+
+    @Mock
+    private ReviewRepository reviewRepository;
+
+    @Mock
+    private HotelRepository hotelRepository;
+
+    @Mock
+    private ProviderRepository providerRepository;
+
+    @Mock
+    private ReviewerRepository reviewerRepository;
+
+    @Mock
+    private StayInfoRepository stayInfoRepository;
+
+    @Mock
+    private ProviderHotelSummaryRepository providerHotelSummaryRepository;
+
+    @Mock
+    private ProviderHotelGradeRepository providerHotelGradeRepository;
+
+    @Mock
+    private RatingCategoryRepository ratingCategoryRepository;
+
+    private ReviewNormalizer normalizer;
+
+    @BeforeEach
+    void setUp() {
+        normalizer = new ReviewNormalizer(reviewRepository, hotelRepository, providerRepository,
+            reviewerRepository, stayInfoRepository, providerHotelSummaryRepository,
+            providerHotelGradeRepository, ratingCategoryRepository, new HotelReviewJsonParser());
+    }
+
+    @Test
+    void testNormalizeAllReportsEveryBadLineWithItsIndex() {
+        List<ReviewNormalizer.LineFailure> failures =
+            normalizer.normalizeAll(List.of("invalid json", "{not json either", "also invalid"));
+
+        assertEquals(3, failures.size());
+        assertEquals(0, failures.get(0).getIndex());
+        assertEquals(2, failures.get(2).getIndex());
+        assertNotNull(failures.get(1).getError());
+    }
+
+    @Test
+    void testNormalizeAllWithNoLines() {
+        assertTrue(normalizer.normalizeAll(List.of()).isEmpty());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testNormalizeAllResolvesDimensionsOncePerPage() {
+        stubPageDimensions();
+        when(reviewRepository.save(any(Review.class))).thenAnswer(invocation -> {
+            Review review = invocation.getArgument(0);
+            review.setReviewId(review.getReviewExternalId());
+            return review;
+        });
+
+        List<ReviewNormalizer.LineFailure> failures = normalizer.normalizeAll(List.of(review(947130812L), review(947130813L)));
+
+        assertTrue(failures.isEmpty());
+        verify(providerRepository).findOrCreateAll(argThat(providers -> providers.size() == 1));
+        verify(hotelRepository).findOrCreateAll(argThat(hotels -> hotels.size() == 1));
+        verify(reviewerRepository).findOrCreateAll(argThat(reviewers -> reviewers.size() == 1));
+        verify(ratingCategoryRepository).findOrCreateAll(argThat(names -> names.size() == 5));
+        verify(providerRepository, never()).findByExternalId(any());
+        verify(hotelRepository, never()).findByExternalIdAndProvider(any(), any());
+        verify(reviewerRepository, never()).findFirstByDisplayNameAndCountryIdAndProviderOrderByReviewerIdAsc(any(), any(), any());
+        verify(ratingCategoryRepository, never()).findByCategoryName(any());
+        verify(reviewRepository).findReviewIdsByExternalIds(argThat(ids -> ids.size() == 2));
+        verify(reviewRepository, never()).existsByReviewExternalId(any());
+        verify(reviewRepository, times(2)).save(any(Review.class));
+        verify(providerHotelGradeRepository).insertAllIgnoringExisting(argThat(grades -> grades.size() == 10));
+        verify(providerHotelSummaryRepository).insertAllIgnoringExisting(argThat(summaries -> summaries.size() == 2));
+        verify(providerHotelGradeRepository, never()).save(any(ProviderHotelGrade.class));
+    }
+
+    @Test
+    void testStoredReviewsAreRememberedByTheReviewIdIndex() {
+        stubPageDimensions();
+        when(reviewRepository.findReviewIdsByExternalIds(anyCollection())).thenReturn(Map.of(947130812L, 5L));
+        ReviewIdIndex reviewIdIndex = new ReviewIdIndex(100);
+        normalizer.setReviewIdIndex(reviewIdIndex);
+
+        assertTrue(normalizer.normalizeAll(List.of(review(947130812L))).isEmpty());
+        assertTrue(normalizer.normalizeAll(List.of(review(947130812L))).isEmpty());
+
+        verify(reviewRepository).findReviewIdsByExternalIds(anyCollection());
+        verify(reviewRepository, never()).save(any(Review.class));
+        verify(providerHotelGradeRepository, times(2)).insertAllIgnoringExisting(
+            argThat(grades -> grades.stream().allMatch(grade -> grade.getReview().getReviewId() == 5L)));
+        assertEquals(1, reviewIdIndex.size());
+    }
+
+    @Test
+    void testReviewStoredConcurrentlyAfterThePageLookupIsTreatedAsExisting() {
+        stubPageDimensions();
+        when(reviewRepository.findReviewIdsByExternalIds(anyCollection()))
+            .thenReturn(Map.of())
+            .thenReturn(Map.of(947130812L, 5L));
+        when(reviewRepository.save(any(Review.class)))
+            .thenThrow(new DataIntegrityViolationException("duplicate key value violates unique constraint \"uq_review_external_id\""));
+
+        assertTrue(normalizer.normalizeAll(List.of(review(947130812L))).isEmpty());
+
+        verify(reviewRepository, times(2)).findReviewIdsByExternalIds(anyCollection());
+        verify(providerHotelGradeRepository).insertAllIgnoringExisting(
+            argThat(grades -> grades.stream().allMatch(grade -> grade.getReview().getReviewId() == 5L)));
+    }
+
+    @Test
+    void testOtherIntegrityViolationsOnTheReviewInsertStillFailTheLine() {
+        stubPageDimensions();
+        when(reviewRepository.save(any(Review.class)))
+            .thenThrow(new DataIntegrityViolationException("null value in column \"hotel_id\""));
+
+        List<ReviewNormalizer.LineFailure> failures = normalizer.normalizeAll(List.of(review(947130812L)));
+
+        assertEquals(1, failures.size());
+        assertTrue(failures.get(0).getError() instanceof DataIntegrityViolationException);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void stubPageDimensions() {
+        Provider agoda = Provider.builder().providerId((short) 1).externalId((short) 332).providerName("Agoda").build();
+        when(providerRepository.findOrCreateAll(anyCollection())).thenReturn(Map.of((short) 332, agoda));
+        when(hotelRepository.findOrCreateAll(anyCollection())).thenAnswer(invocation -> {
+            Map<HotelKey, Hotel> hotels = new HashMap<>();
+            for (Hotel hotel : (Collection<Hotel>) invocation.getArgument(0)) {
+                hotel.setHotelId(10);
+                hotels.put(HotelKey.of(hotel), hotel);
+            }
+            return hotels;
+        });
+        when(reviewerRepository.findOrCreateAll(anyCollection())).thenAnswer(invocation -> {
+            Map<ReviewerKey, Reviewer> reviewers = new HashMap<>();
+            for (Reviewer reviewer : (Collection<Reviewer>) invocation.getArgument(0)) {
+                reviewer.setReviewerId(20L);
+                reviewers.put(ReviewerKey.of(reviewer), reviewer);
+            }
+            return reviewers;
+        });
+        when(ratingCategoryRepository.findOrCreateAll(anyCollection())).thenAnswer(invocation -> {
+            Map<String, RatingCategory> categories = new HashMap<>();
+            for (String name : (Collection<String>) invocation.getArgument(0)) {
+                categories.put(name, RatingCategory.builder().categoryId((short) categories.size()).categoryName(name).build());
+            }
+            return categories;
+        });
+    }
+
+    private static String review(long hotelReviewId) {
+        return "{\"hotelId\":16402071,\"platform\":\"Agoda\",\"hotelName\":\"Surfer's Point Deck\","
+            + "\"comment\":{\"hotelReviewId\":" + hotelReviewId + ",\"providerId\":332,\"rating\":8.8,"
+            + "\"reviewDate\":\"2025-04-10T04:10:00+07:00\",\"reviewerInfo\":{\"countryName\":\"Philippines\","
+            + "\"displayMemberName\":\"*****\",\"countryId\":70}},"
+            + "\"overallByProviders\":[{\"providerId\":332,\"provider\":\"Agoda\",\"overallScore\":6.5,"
+            + "\"reviewCount\":262,\"grades\":{\"Cleanliness\":6.0,\"Facilities\":5.5,\"Location\":7.9,"
+            + "\"Service\":7.0,\"Value for money\":6.2}}]}";
+    }
+}
@@ -0,0 +1,119 @@
+package org.soumitra.reviewsystem.dao;
+
+import org.junit.jupiter.api.Test;
+import org.soumitra.reviewsystem.dao.HotelRepositoryCustom.HotelKey;
+import org.soumitra.reviewsystem.dao.ReviewerRepositoryCustom.ReviewerKey;
+import org.soumitra.reviewsystem.model.Hotel;
+import org.soumitra.reviewsystem.model.Provider;
+import org.soumitra.reviewsystem.model.RatingCategory;
+import org.soumitra.reviewsystem.model.Reviewer;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DimensionRepositoryCustomImplTest {
+
+    @Test
+    void testHotelsAreFoundOrCreatedOncePerKey() {
+        JdbcTemplate jdbcTemplate = dimensionsDatabase("hotels");
+        jdbcTemplate.update("INSERT INTO hotel (external_id, provider_id, hotel_name) VALUES (100, 1, 'Existing')");
+        HotelRepositoryCustomImpl repository = new HotelRepositoryCustomImpl(jdbcTemplate);
+        Provider agoda = Provider.builder().providerId((short) 1).externalId((short) 332).build();
+
+        Map<HotelKey, Hotel> hotels = repository.findOrCreateAll(List.of(
+            hotel(100, "Renamed", agoda), hotel(200, "New", agoda), hotel(200, "New again", agoda)));
+
+        assertEquals(2, hotels.size());
+        assertEquals("Existing", hotels.get(HotelKey.of(100, (short) 1)).getHotelName());
+        assertEquals("New", hotels.get(HotelKey.of(200, (short) 1)).getHotelName());
+        assertSame(agoda, hotels.get(HotelKey.of(200, (short) 1)).getProvider());
+        assertEquals(2, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM hotel", Integer.class));
+
+        // A second page with the same hotels only reads
+        Map<HotelKey, Hotel> again = repository.findOrCreateAll(List.of(hotel(200, "New", agoda)));
+        assertEquals(hotels.get(HotelKey.of(200, (short) 1)).getHotelId(), again.get(HotelKey.of(200, (short) 1)).getHotelId());
+        assertEquals(2, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM hotel", Integer.class));
+    }
+
+    @Test
+    void testReviewersMatchOnCountryIdIncludingNullAndSkipAnonymousOnes() {
+        JdbcTemplate jdbcTemplate = dimensionsDatabase("reviewers");
+        jdbcTemplate.update("INSERT INTO reviewer (display_name, provider_id, country_id, country_name) VALUES ('Anna', 1, NULL, NULL)");
+        jdbcTemplate.update("INSERT INTO reviewer (display_name, provider_id, country_id, country_name) VALUES ('Bruno', 1, 7, 'Italia')");
+        ReviewerRepositoryCustomImpl repository = new ReviewerRepositoryCustomImpl(jdbcTemplate);
+        Provider agoda = Provider.builder().providerId((short) 1).externalId((short) 332).build();
+
+        Map<ReviewerKey, Reviewer> reviewers = repository.findOrCreateAll(List.of(
+            reviewer("Anna", null, null, agoda), reviewer("Anna", 7, "Italy", agoda), reviewer(null, 7, "Italy", agoda),
+            // Same country id under a different country name is the same reviewer to the unique constraint
+            reviewer("Bruno", 7, "Italy", agoda)));
+
+        assertEquals(3, reviewers.size());
+        assertEquals(1L, reviewers.get(ReviewerKey.of("Anna", null, (short) 1)).getReviewerId());
+        assertNotEquals(1L, reviewers.get(ReviewerKey.of("Anna", 7, (short) 1)).getReviewerId());
+        assertEquals(2L, reviewers.get(ReviewerKey.of("Bruno", 7, (short) 1)).getReviewerId());
+        assertEquals(3, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM reviewer", Integer.class));
+    }
+
+    @Test
+    void testHotelsAreResolvedInChunksOfBoundedStatements() {
+        JdbcTemplate jdbcTemplate = dimensionsDatabase("hotel_chunks");
+        jdbcTemplate.update("INSERT INTO hotel (external_id, provider_id, hotel_name) VALUES (1500, 1, 'Existing')");
+        HotelRepositoryCustomImpl repository = new HotelRepositoryCustomImpl(jdbcTemplate);
+        Provider agoda = Provider.builder().providerId((short) 1).externalId((short) 332).build();
+        List<Hotel> candidates = new ArrayList<>();
+        for (int externalId = 1; externalId <= JdbcRepositorySupport.MAX_ROWS_PER_STATEMENT * 2 + 1; externalId++) {
+            candidates.add(hotel(externalId, "Hotel " + externalId, agoda));
+        }
+
+        Map<HotelKey, Hotel> hotels = repository.findOrCreateAll(candidates);
+
+        assertEquals(candidates.size(), hotels.size());
+        assertEquals("Existing", hotels.get(HotelKey.of(1500, (short) 1)).getHotelName());
+        assertEquals(candidates.size(), jdbcTemplate.queryForObject("SELECT COUNT(*) FROM hotel", Integer.class));
+    }
+
+    @Test
+    void testRatingCategoriesAndProvidersAreCreatedWhenMissing() {
+        JdbcTemplate jdbcTemplate = dimensionsDatabase("categories");
+        jdbcTemplate.update("INSERT INTO rating_category (category_name) VALUES ('Cleanliness')");
+
+        Map<String, RatingCategory> categories = new RatingCategoryRepositoryCustomImpl(jdbcTemplate)
+            .findOrCreateAll(List.of("Cleanliness", "Location", " "));
+        Map<Short, Provider> providers = new ProviderRepositoryCustomImpl(jdbcTemplate)
+            .findOrCreateAll(List.of(Provider.builder().externalId((short) 332).providerName("Agoda").build()));
+
+        assertEquals(List.of("Cleanliness", "Location"), List.copyOf(categories.keySet()));
+        assertEquals(Short.valueOf((short) 1), categories.get("Cleanliness").getCategoryId());
+        assertEquals("Agoda", providers.get((short) 332).getProviderName());
+        assertNotNull(providers.get((short) 332).getProviderId());
+    }
+
+    private static Hotel hotel(int externalId, String name, Provider provider) {
+        return Hotel.builder().externalId(externalId).hotelName(name).provider(provider).build();
+    }
+
+    private static Reviewer reviewer(String displayName, Integer countryId, String countryName, Provider provider) {
+        return Reviewer.builder().displayName(displayName).countryId(countryId).countryName(countryName).provider(provider).build();
+    }
+
+    private static JdbcTemplate dimensionsDatabase(String name) {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(
+            new DriverManagerDataSource("jdbc:h2:mem:dimensions_" + name + ";DB_CLOSE_DELAY=-1", "sa", ""));
+        jdbcTemplate.execute("CREATE TABLE provider (provider_id SMALLINT AUTO_INCREMENT PRIMARY KEY, "
+            + "external_id SMALLINT NOT NULL UNIQUE, provider_name TEXT NOT NULL)");
+        jdbcTemplate.execute("CREATE TABLE rating_category (category_id SMALLINT AUTO_INCREMENT PRIMARY KEY, "
+            + "category_name TEXT NOT NULL UNIQUE)");
+        jdbcTemplate.execute("CREATE TABLE hotel (hotel_id INT AUTO_INCREMENT PRIMARY KEY, external_id INT NOT NULL, "
+            + "provider_id SMALLINT NOT NULL, hotel_name TEXT NOT NULL, UNIQUE (external_id, provider_id))");
+        jdbcTemplate.execute("CREATE TABLE reviewer (reviewer_id BIGINT AUTO_INCREMENT PRIMARY KEY, display_name TEXT, "
+            + "provider_id SMALLINT NOT NULL, country_id INT, country_name VARCHAR(255), flag_code CHAR(2), "
+            + "is_expert BOOLEAN DEFAULT FALSE, reviews_written INT DEFAULT 0)");
+        return jdbcTemplate;
+    }
+}
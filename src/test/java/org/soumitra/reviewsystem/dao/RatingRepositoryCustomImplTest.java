@@ -0,0 +1,71 @@
+package org.soumitra.reviewsystem.dao;
+
+import org.junit.jupiter.api.Test;
+import org.soumitra.reviewsystem.model.Hotel;
+import org.soumitra.reviewsystem.model.Provider;
+import org.soumitra.reviewsystem.model.ProviderHotelGrade;
+import org.soumitra.reviewsystem.model.ProviderHotelSummary;
+import org.soumitra.reviewsystem.model.RatingCategory;
+import org.soumitra.reviewsystem.model.Review;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RatingRepositoryCustomImplTest {
+
+    private final Hotel hotel = Hotel.builder().hotelId(10).build();
+    private final Provider agoda = Provider.builder().providerId((short) 1).build();
+    private final Review review = Review.builder().reviewId(100L).build();
+
+    @Test
+    void testGradesAlreadyStoredAreSkipped() {
+        JdbcTemplate jdbcTemplate = ratingsDatabase("grades");
+        jdbcTemplate.update("INSERT INTO provider_hotel_grade VALUES (10, 1, 1, 100, 6.0)");
+        ProviderHotelGradeRepositoryCustomImpl repository = new ProviderHotelGradeRepositoryCustomImpl(jdbcTemplate, 2);
+
+        int written = repository.insertAllIgnoringExisting(List.of(grade(1, 9.0), grade(2, 5.5), grade(3, 7.9)));
+
+        assertEquals(2, written);
+        assertEquals(3, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM provider_hotel_grade", Integer.class));
+        assertEquals(6.0, jdbcTemplate.queryForObject(
+            "SELECT grade_value FROM provider_hotel_grade WHERE category_id = 1", Double.class));
+    }
+
+    @Test
+    void testSummariesAlreadyStoredAreSkipped() {
+        JdbcTemplate jdbcTemplate = ratingsDatabase("summaries");
+        ProviderHotelSummaryRepositoryCustomImpl repository = new ProviderHotelSummaryRepositoryCustomImpl(jdbcTemplate, 1000);
+        ProviderHotelSummary summary = ProviderHotelSummary.builder()
+            .hotel(hotel).provider(agoda).review(review).overallScore(6.5).reviewCount(262).build();
+
+        assertEquals(1, repository.insertAllIgnoringExisting(List.of(summary)));
+        assertEquals(0, repository.insertAllIgnoringExisting(List.of(summary)));
+        assertEquals(0, repository.insertAllIgnoringExisting(List.of()));
+        assertEquals(1, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM provider_hotel_summary", Integer.class));
+    }
+
+    private ProviderHotelGrade grade(int categoryId, double value) {
+        return ProviderHotelGrade.builder()
+            .hotel(hotel)
+            .provider(agoda)
+            .category(RatingCategory.builder().categoryId((short) categoryId).build())
+            .review(review)
+            .gradeValue(value)
+            .build();
+    }
+
+    private static JdbcTemplate ratingsDatabase(String name) {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(
+            new DriverManagerDataSource("jdbc:h2:mem:ratings_" + name + ";DB_CLOSE_DELAY=-1", "sa", ""));
+        jdbcTemplate.execute("CREATE TABLE provider_hotel_grade (hotel_id INT NOT NULL, provider_id SMALLINT NOT NULL, "
+            + "category_id SMALLINT NOT NULL, review_id BIGINT NOT NULL, grade_value NUMERIC(3,1) NOT NULL, "
+            + "PRIMARY KEY (hotel_id, provider_id, category_id, review_id))");
+        jdbcTemplate.execute("CREATE TABLE provider_hotel_summary (hotel_id INT NOT NULL, provider_id SMALLINT NOT NULL, "
+            + "review_id BIGINT NOT NULL, overall_score NUMERIC(3,1), review_count INT, "
+            + "PRIMARY KEY (hotel_id, provider_id, review_id))");
+        return jdbcTemplate;
+    }
+}
@@ -0,0 +1,239 @@
+package org.soumitra.reviewsystem.dao;
+
+import org.junit.jupiter.api.Test;
+import org.soumitra.reviewsystem.RawDataCodec;
+import org.soumitra.reviewsystem.model.Record;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import org.soumitra.reviewsystem.dao.RecordRepositoryCustom.RecordOutcome;
+
+import java.io.Reader;
+import java.io.StringWriter;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RecordRepositoryCustomImplTest {
+
+    @Test
+    void testEscapeCopyTextLeavesPlainJsonUntouched() {
+        String json = "{\"hotelName\":\"Test Hotel\",\"rating\":8.5}";
+        assertSame(json, RecordRepositoryCustomImpl.escapeCopyText(json));
+    }
+
+    @Test
+    void testEscapeCopyTextEscapesDelimitersAndBackslashes() {
+        String json = "{\"comment\":\"tab\there\\\\n and\r\nnewline\"}";
+        assertEquals("{\"comment\":\"tab\\there\\\\\\\\n and\\r\\nnewline\"}",
+            RecordRepositoryCustomImpl.escapeCopyText(json));
+    }
+
+    @Test
+    void testCopyRowReaderRendersOneRowPerLine() throws Exception {
+        Reader reader = new RecordRepositoryCustomImpl.CopyRowReader(
+            Arrays.asList("{\"a\":1}", "{\"b\":\"x\\ty\"}").iterator(), "3\t7\t", "\tnew\t2024-01-01 00:00:00.0\n");
+
+        // Read through a tiny buffer so rows are split across read() calls
+        StringWriter out = new StringWriter();
+        char[] buffer = new char[5];
+        int read;
+        while ((read = reader.read(buffer, 0, buffer.length)) != -1) {
+            out.write(buffer, 0, read);
+        }
+
+        assertEquals("3\t7\t{\"a\":1}\tnew\t2024-01-01 00:00:00.0\n"
+                + "3\t7\t{\"b\":\"x\\\\ty\"}\tnew\t2024-01-01 00:00:00.0\n",
+            out.toString());
+    }
+
+    @Test
+    void testCopyRowReaderWithNoLinesIsEmpty() throws Exception {
+        Reader reader = new RecordRepositoryCustomImpl.CopyRowReader(
+            Collections.emptyIterator(), "3\t7\t", "\tnew\t2024-01-01 00:00:00.0\n");
+        assertEquals(-1, reader.read(new char[8], 0, 8));
+    }
+
+    @Test
+    void testClaimNewRecordsNeverHandsOutARowTwice() {
+        JdbcTemplate jdbcTemplate = recordsDatabase("claim");
+        RecordRepositoryCustomImpl repository = new RecordRepositoryCustomImpl(jdbcTemplate, 500);
+        repository.logNewRecords(3, 7, Arrays.asList("{\"a\":1}", "{\"a\":2}", "{\"a\":3}"));
+
+        List<Record> first = repository.claimNewRecords(2);
+        List<Record> second = repository.claimNewRecords(2);
+
+        assertEquals(List.of(1, 2), first.stream().map(Record::getId).collect(Collectors.toList()));
+        assertEquals(List.of(3), second.stream().map(Record::getId).collect(Collectors.toList()));
+        assertEquals("processing", first.get(0).getStatus());
+        assertEquals("{\"a\":1}", first.get(0).getRawData());
+        assertEquals(3, first.get(0).getS3File().getId());
+        assertEquals(7, first.get(0).getJobRun().getId());
+        assertNotNull(first.get(0).getStartedAt());
+        assertTrue(repository.claimNewRecords(2).isEmpty());
+        assertTrue(repository.claimNewRecordsAfter(3, 2).isEmpty());
+        assertEquals(3, jdbcTemplate.queryForObject(
+            "SELECT COUNT(*) FROM records WHERE status = 'processing'", Integer.class));
+    }
+
+    @Test
+    void testClaimNewRecordsAfterStartsPastTheCursor() {
+        JdbcTemplate jdbcTemplate = recordsDatabase("keyset");
+        RecordRepositoryCustomImpl repository = new RecordRepositoryCustomImpl(jdbcTemplate, 500);
+        repository.logNewRecords(3, 7, Arrays.asList("{}", "{}", "{}", "{}"));
+
+        List<Record> claimed = repository.claimNewRecordsAfter(2, 10);
+
+        assertEquals(List.of(3, 4), claimed.stream().map(Record::getId).collect(Collectors.toList()));
+        assertEquals(List.of(1, 2), repository.claimNewRecords(10).stream().map(Record::getId).collect(Collectors.toList()));
+    }
+
+    @Test
+    void testFinishRecordsUpdatesStatusesAndReplacesErrors() {
+        JdbcTemplate jdbcTemplate = recordsDatabase("finish");
+        RecordRepositoryCustomImpl repository = new RecordRepositoryCustomImpl(jdbcTemplate, 500);
+        repository.logNewRecords(3, 7, Arrays.asList("{}", "{}", "{}"));
+        List<Record> claimed = repository.claimNewRecords(3);
+        jdbcTemplate.update("INSERT INTO record_errors VALUES (2, 'PROCESSING_ERROR', 'old', null)");
+
+        LocalDateTime finishedAt = LocalDateTime.of(2024, 1, 1, 12, 0);
+        List<Integer> lost = repository.finishRecords(Arrays.asList(
+            RecordOutcome.success(claimed.get(0), finishedAt),
+            RecordOutcome.failure(claimed.get(1), finishedAt, "bad rating", "trace 2"),
+            RecordOutcome.failure(claimed.get(2), finishedAt, "bad hotel", "trace 3")));
+
+        assertTrue(lost.isEmpty());
+        List<Map<String, Object>> rows = jdbcTemplate.queryForList(
+            "SELECT id, status, finished_at, error_flag FROM records ORDER BY id");
+        assertEquals("success", rows.get(0).get("STATUS"));
+        assertNull(rows.get(0).get("ERROR_FLAG"));
+        assertEquals("failed", rows.get(1).get("STATUS"));
+        assertEquals(Boolean.TRUE, rows.get(1).get("ERROR_FLAG"));
+        assertEquals(Timestamp.valueOf(finishedAt), rows.get(2).get("FINISHED_AT"));
+        assertEquals(List.of("bad rating", "bad hotel"), jdbcTemplate.queryForList(
+            "SELECT error_message FROM record_errors ORDER BY record_id", String.class));
+    }
+
+    @Test
+    void testCompressedRecordsAreStoredAsBytesAndClaimedCompressed() {
+        JdbcTemplate jdbcTemplate = recordsDatabase("compressed");
+        RawDataCodec codec = new RawDataCodec(true, 3, null);
+        RecordRepositoryCustomImpl repository = new RecordRepositoryCustomImpl(jdbcTemplate, 500, codec);
+        String line = "{\"hotelName\":\"Test Hotel\",\"comment\":\"Caf\u00e9 was great\"}";
+        repository.logNewRecords(3, 7, List.of(line));
+
+        Record claimed = repository.claimNewRecords(1).get(0);
+
+        assertNull(claimed.getRawData());
+        assertNotNull(claimed.getRawDataZstd());
+        assertNull(claimed.getRawDataDictId());
+        assertEquals(line, codec.text(claimed));
+        assertEquals(0, jdbcTemplate.queryForObject(
+            "SELECT COUNT(*) FROM records WHERE raw_data IS NOT NULL", Integer.class));
+    }
+
+    @Test
+    void testSingleAndFailedLinesAreCompressedLikeBatches() {
+        JdbcTemplate jdbcTemplate = recordsDatabase("compressed_single");
+        RawDataCodec codec = new RawDataCodec(true, 3, null);
+        RecordRepositoryCustomImpl repository = new RecordRepositoryCustomImpl(jdbcTemplate, 500, codec);
+
+        repository.logNewRecord(3, 7, "{\"retried\":true}");
+        Record failed = repository.logFailedRecord(3, 7, "{\"normalized\":false}");
+
+        assertEquals(2, failed.getId());
+        assertEquals(0, jdbcTemplate.queryForObject(
+            "SELECT COUNT(*) FROM records WHERE raw_data IS NOT NULL OR raw_data_zstd IS NULL", Integer.class));
+        Map<String, Object> row = jdbcTemplate.queryForMap("SELECT status, error_flag, finished_at FROM records WHERE id = 2");
+        assertEquals("failed", row.get("STATUS"));
+        assertEquals(Boolean.TRUE, row.get("ERROR_FLAG"));
+        assertNotNull(row.get("FINISHED_AT"));
+        assertEquals("{\"retried\":true}", codec.text(repository.claimNewRecords(1).get(0)));
+    }
+
+    @Test
+    void testExpiredClaimsAreTakenOverAndReleasedRecordsClaimedAgain() {
+        JdbcTemplate jdbcTemplate = recordsDatabase("leases");
+        RecordRepositoryCustomImpl repository = new RecordRepositoryCustomImpl(jdbcTemplate, 500);
+        repository.logNewRecords(3, 7, Arrays.asList("{}", "{}", "{}"));
+        List<Record> claimed = repository.claimNewRecords(3);
+        // Record 1 was claimed an hour ago by a worker that never came back
+        jdbcTemplate.update("UPDATE records SET started_at = ? WHERE id = 1",
+            Timestamp.valueOf(LocalDateTime.now().minusHours(1)));
+
+        List<Record> takenOver = repository.claimExpiredRecords(LocalDateTime.now().minusMinutes(10), 10);
+        assertEquals(List.of(1), takenOver.stream().map(Record::getId).collect(Collectors.toList()));
+        assertTrue(repository.claimExpiredRecords(LocalDateTime.now().minusMinutes(10), 10).isEmpty());
+
+        assertEquals(2, repository.releaseRecords(claimed.subList(1, 3)));
+        assertEquals(List.of(2, 3), repository.claimNewRecords(10).stream().map(Record::getId).collect(Collectors.toList()));
+    }
+
+    @Test
+    void testTakenOverClaimCannotBeFinishedOrReleasedByItsOldOwner() {
+        JdbcTemplate jdbcTemplate = recordsDatabase("lost_claims");
+        RecordRepositoryCustomImpl repository = new RecordRepositoryCustomImpl(jdbcTemplate, 500);
+        repository.logNewRecords(3, 7, Arrays.asList("{}", "{}"));
+        // The old owner's claims are an hour old, and another worker takes record 1 over
+        jdbcTemplate.update("UPDATE records SET status = 'processing', started_at = ?",
+            Timestamp.valueOf(LocalDateTime.now().minusHours(1)));
+        List<Record> oldClaims = jdbcTemplate.query("SELECT id, started_at FROM records ORDER BY id",
+            (rs, rowNum) -> Record.builder().id(rs.getInt("id")).startedAt(rs.getTimestamp("started_at").toLocalDateTime()).build());
+        Record newClaim = repository.claimExpiredRecords(LocalDateTime.now().minusMinutes(10), 1).get(0);
+        assertEquals(1, newClaim.getId());
+
+        LocalDateTime finishedAt = LocalDateTime.of(2024, 1, 1, 12, 0);
+        List<Integer> lost = repository.finishRecords(Arrays.asList(
+            RecordOutcome.failure(oldClaims.get(0), finishedAt, "stale", "trace"),
+            RecordOutcome.success(oldClaims.get(1), finishedAt)));
+        assertEquals(List.of(1), lost);
+        assertEquals(0, repository.releaseRecords(List.of(oldClaims.get(0))));
+
+        Map<String, Object> takenOver = jdbcTemplate.queryForMap("SELECT status, finished_at FROM records WHERE id = 1");
+        assertEquals("processing", takenOver.get("STATUS"));
+        assertNull(takenOver.get("FINISHED_AT"));
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM record_errors", Integer.class));
+        assertEquals("success", jdbcTemplate.queryForObject("SELECT status FROM records WHERE id = 2", String.class));
+
+        // The new owner still finishes it
+        assertTrue(repository.finishRecords(List.of(RecordOutcome.success(newClaim, finishedAt))).isEmpty());
+        assertEquals("success", jdbcTemplate.queryForObject("SELECT status FROM records WHERE id = 1", String.class));
+    }
+
+    @Test
+    void testLogNewRecordsStoresTheFileCheckpointWithThePage() {
+        JdbcTemplate jdbcTemplate = recordsDatabase("checkpoint");
+        jdbcTemplate.execute("CREATE TABLE s3_files (id INT PRIMARY KEY, checkpoint_offset BIGINT, "
+            + "checkpoint_line INT, record_count INT, checkpointed_at TIMESTAMP)");
+        jdbcTemplate.update("INSERT INTO s3_files (id) VALUES (3)");
+        RecordRepositoryCustomImpl repository = new RecordRepositoryCustomImpl(jdbcTemplate, 500);
+
+        repository.logNewRecords(3, 7, Arrays.asList("{}", "{}"), new RecordRepositoryCustom.FileCheckpoint(42L, 2, 2));
+
+        Map<String, Object> file = jdbcTemplate.queryForMap(
+            "SELECT checkpoint_offset, checkpoint_line, record_count, checkpointed_at FROM s3_files WHERE id = 3");
+        assertEquals(42L, ((Number) file.get("CHECKPOINT_OFFSET")).longValue());
+        assertEquals(2, ((Number) file.get("CHECKPOINT_LINE")).intValue());
+        assertEquals(2, ((Number) file.get("RECORD_COUNT")).intValue());
+        assertNotNull(file.get("CHECKPOINTED_AT"));
+        assertEquals(2, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM records", Integer.class));
+    }
+
+    private static JdbcTemplate recordsDatabase(String name) {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(
+            new DriverManagerDataSource("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1", "sa", ""));
+        jdbcTemplate.execute("CREATE TABLE records (id INT AUTO_INCREMENT PRIMARY KEY, s3_file_id INT, "
+            + "job_run_id INT, raw_data TEXT, raw_data_zstd VARBINARY, raw_data_dict_id INT, "
+            + "status VARCHAR(20), downloaded_at TIMESTAMP, "
+            + "started_at TIMESTAMP, finished_at TIMESTAMP, error_flag BOOLEAN)");
+        jdbcTemplate.execute("CREATE TABLE record_errors (record_id INT PRIMARY KEY REFERENCES records(id), "
+            + "error_type TEXT, error_message TEXT, traceback TEXT)");
+        return jdbcTemplate;
+    }
+}
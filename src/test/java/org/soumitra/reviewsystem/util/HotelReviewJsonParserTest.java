@@ -5,6 +5,8 @@ import org.junit.jupiter.api.Test;
 import org.soumitra.reviewsystem.dto.*;
 import org.springframework.boot.test.context.SpringBootTest;
 
+import java.util.List;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 @SpringBootTest
@@ -250,4 +252,184 @@ class HotelReviewJsonParserTest {
         assertNull(result.getReviewer().getIsExpert());
         assertNull(result.getReviewer().getReviewsWritten());
     }
-} 
\ No newline at end of file
+
+    @Test
+    void testStreamingParserMatchesTreeParser() throws Exception {
+        String review = """
+            {
+                "hotelId": 16402071,
+                "platform": "Agoda",
+                "hotelName": "Surfer's Point Deck",
+                "comment": {
+                    "isShowReviewResponse": false,
+                    "hotelReviewId": 947130812,
+                    "providerId": 332,
+                    "rating": 8.8,
+                    "checkInDateMonthAndYear": "March 2025",
+                    "encryptedReviewData": "cZwJ6a6ZOFxwfFUOSDQ9Hg==",
+                    "formattedRating": "8.8",
+                    "formattedReviewDate": "April 10, 2025",
+                    "ratingText": "Excellent",
+                    "responderName": "Surfer's Point Deck",
+                    "responseDateText": "",
+                    "reviewComments": "perfect spot to just look at the sea.",
+                    "reviewNegatives": "",
+                    "reviewPositives": "",
+                    "reviewProviderLogo": "",
+                    "reviewProviderText": "Agoda",
+                    "reviewTitle": "value for money",
+                    "translateSource": "en",
+                    "translateTarget": "en",
+                    "reviewDate": "2025-04-10T04:10:00+07:00",
+                    "reviewerInfo": {
+                        "countryName": "Philippines",
+                        "displayMemberName": "*****",
+                        "flagName": "ph",
+                        "reviewGroupName": "Solo traveler",
+                        "roomTypeName": "Bungalow with Sea View",
+                        "countryId": 70,
+                        "lengthOfStay": 2,
+                        "reviewGroupId": 3,
+                        "roomTypeId": 0,
+                        "reviewerReviewedCount": 1,
+                        "isExpertReviewer": false,
+                        "isShowGlobalIcon": false,
+                        "isShowReviewedCount": false
+                    },
+                    "originalTitle": "",
+                    "originalComment": "",
+                    "formattedResponseDate": ""
+                },
+                "overallByProviders": [
+                    {
+                        "providerId": 332,
+                        "provider": "Agoda",
+                        "overallScore": 6.5,
+                        "reviewCount": 262,
+                        "grades": {
+                            "Cleanliness": 6.0,
+                            "Facilities": 5.5,
+                            "Location": 7.9,
+                            "Service": 7.0,
+                            "Value for money": 6.2
+                        }
+                    },
+                    {
+                        "providerId": 334,
+                        "provider": "Booking.com",
+                        "overallScore": 7.1,
+                        "reviewCount": 38,
+                        "grades": {
+                            "Cleanliness": 7.5,
+                            "Facilities": null,
+                            "Location": 8.1
+                        }
+                    }
+                ]
+            }
+            """;
+
+        HotelReviewJsonParser.HotelReviewParseResult result = parser.parseHotelReviewStreaming(review);
+
+        assertSameResult(parser.parseHotelReviewTree(review), result);
+        assertEquals(2, result.getProviderHotelSummaries().size());
+        assertEquals(7, result.getProviderHotelGrades().size());
+        assertEquals("Bungalow with Sea View", result.getStayInfo().getRoomTypeName());
+        assertEquals(Short.valueOf((short) 2), result.getStayInfo().getLengthOfStay());
+        assertNotNull(result.getReview().getReviewDate());
+    }
+
+    @Test
+    void testStreamingParserCoercesValuesLikeTreeParser() throws Exception {
+        List<String> documents = List.of(
+            // Numbers as text, text as numbers, booleans as numbers and text
+            """
+            {"hotelId": "16402071", "platform": 7, "hotelName": 12.50,
+             "comment": {"hotelReviewId": "947130812", "providerId": 332.9, "rating": "8.8", "ratingText": 10,
+                         "isShowReviewResponse": 1, "reviewDate": "not a date",
+                         "reviewerInfo": {"displayMemberName": true, "countryId": 70.6, "isExpertReviewer": "true",
+                                          "reviewerReviewedCount": "x", "lengthOfStay": "3", "roomTypeId": 12345678901}},
+             "overallByProviders": [{"providerId": "332", "provider": "Agoda"}, 5, [], {"providerId": 70000, "provider": 1,
+                                    "overallScore": true, "reviewCount": 2.5, "grades": {"A": "6.5", "B": false, "C": {}}}]}
+            """,
+            // Present but null keys the tree parser reads anyway, and values that are objects or arrays
+            """
+            {"hotelId": null, "platform": null, "hotelName": null,
+             "comment": {"hotelReviewId": 1, "providerId": null, "reviewDate": null, "reviewTitle": {"a": [1, 2]},
+                         "isShowReviewResponse": 123456789012345678901234567890,
+                         "reviewerInfo": {"displayMemberName": ["x"], "countryName": {}}},
+             "overallByProviders": {"providerId": 332}}
+            """,
+            // Duplicate keys: the last one wins, nested objects are replaced rather than merged
+            """
+            {"hotelId": 1, "hotelId": 2, "platform": "Agoda", "hotelName": "a", "hotelName": "b",
+             "comment": {"providerId": 1, "hotelReviewId": 5, "reviewerInfo": {"displayMemberName": "x"}},
+             "comment": {"providerId": 2, "hotelReviewId": 6, "hotelReviewId": 7,
+                         "reviewerInfo": {"displayMemberName": "y", "countryName": "Italy"},
+                         "reviewerInfo": {"displayMemberName": "z"}},
+             "overallByProviders": [{"providerId": 2, "provider": "Agoda", "provider": null,
+                                     "grades": {"A": 1.0, "B": 2.0, "A": 3.0, "B": null}, "grades": {"C": 4.0}}]}
+            """,
+            // Provider name from the comment when there is no platform
+            """
+            {"hotelId": 1, "hotelName": "a", "comment": {"providerId": 332, "reviewProviderText": "Agoda",
+             "hotelReviewId": 5, "reviewerInfo": {"displayMemberName": "x"}}, "overallByProviders": null}
+            """,
+            // Missing sections, in the order the tree parser checks them
+            "{\"hotelId\": 1, \"hotelName\": \"a\", \"platform\": \"Agoda\", \"comment\": \"text\"}",
+            "{\"hotelId\": 1, \"hotelName\": \"a\", \"platform\": \"Agoda\", \"comment\": {\"providerId\": 1}}",
+            "{\"hotelName\": \"a\", \"platform\": \"Agoda\", \"comment\": {\"providerId\": 1}}",
+            "{\"hotelId\": 1, \"hotelName\": \"a\", \"platform\": \"Agoda\", "
+                + "\"comment\": {\"providerId\": 1, \"reviewerInfo\": null}}",
+            "{\"hotelId\": 1, \"hotelName\": \"a\", \"platform\": \"Agoda\", "
+                + "\"comment\": {\"providerId\": 1, \"reviewerInfo\": {\"displayMemberName\": \"x\"}}}",
+            "[1, 2]",
+            "",
+            // Only the first document is read
+            "{\"hotelId\": 1, \"hotelName\": \"a\", \"platform\": \"Agoda\", \"comment\": {\"providerId\": 1, "
+                + "\"hotelReviewId\": 9, \"reviewerInfo\": {\"displayMemberName\": \"x\"}}} {\"hotelId\": 2}"
+        );
+
+        for (String document : documents) {
+            Object tree = parseOrError(() -> parser.parseHotelReviewTree(document));
+            Object streaming = parseOrError(() -> parser.parseHotelReviewStreaming(document));
+            if (tree instanceof HotelReviewJsonParser.HotelReviewParseResult treeResult) {
+                assertSameResult(treeResult, (HotelReviewJsonParser.HotelReviewParseResult) streaming);
+            } else {
+                assertEquals(tree, streaming, document);
+            }
+        }
+    }
+
+    @Test
+    void testStreamingParserRejectsMalformedJson() {
+        assertThrows(Exception.class, () -> parser.parseHotelReviewStreaming("{\"hotelId\": 1, \"comment\": {"));
+        assertThrows(Exception.class, () -> parser.parseHotelReviewStreaming("{ invalid json }"));
+    }
+
+    private static void assertSameResult(HotelReviewJsonParser.HotelReviewParseResult expected,
+                                         HotelReviewJsonParser.HotelReviewParseResult actual) {
+        assertEquals(expected.getProvider(), actual.getProvider());
+        assertEquals(expected.getHotel(), actual.getHotel());
+        assertEquals(expected.getReviewer(), actual.getReviewer());
+        assertEquals(expected.getReview(), actual.getReview());
+        assertEquals(expected.getStayInfo(), actual.getStayInfo());
+        assertEquals(expected.getProviderHotelSummaries(), actual.getProviderHotelSummaries());
+        assertEquals(expected.getProviderHotelGrades(), actual.getProviderHotelGrades());
+    }
+
+    /**
+     * The result, or the class and message of what was thrown, so failures can be compared too
+     */
+    private static Object parseOrError(ParseCall call) {
+        try {
+            return call.parse();
+        } catch (Exception e) {
+            return e.getClass().getName() + ": " + e.getMessage();
+        }
+    }
+
+    private interface ParseCall {
+        HotelReviewJsonParser.HotelReviewParseResult parse() throws Exception;
+    }
+}
@@ -5,10 +5,26 @@ import software.amazon.awssdk.core.SdkResponse;
 import software.amazon.awssdk.services.s3.S3Client;
 import software.amazon.awssdk.services.s3.model.*;
 
+import com.github.luben.zstd.Zstd;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * Mock implementation of S3Client for testing purposes
@@ -17,8 +33,17 @@ public class MockS3Client implements S3Client {
 
     private final Map<String, List<S3Object>> bucketContents = new HashMap<>();
     private final Map<String, String> objectContents = new HashMap<>();
+    private final Map<String, byte[]> binaryContents = new HashMap<>();
+    private final Map<String, String> contentTypes = new HashMap<>();
+    private final Map<String, Path> fileContents = new HashMap<>();
     private boolean shouldThrowException = false;
     private String exceptionMessage = "Mock S3 exception";
+    private final AtomicInteger getObjectCallCount = new AtomicInteger();
+    private final List<ListObjectsV2Request> listRequests = java.util.Collections.synchronizedList(new ArrayList<>());
+    private int listPageSize = 0;
+    private final AtomicLong listNanos = new AtomicLong();
+    private final AtomicLong downloadNanos = new AtomicLong();
+    private final AtomicLong downloadedBytes = new AtomicLong();
 
     public MockS3Client() {
         // Initialize with some test data
@@ -42,6 +67,27 @@ public class MockS3Client implements S3Client {
             "{\"hotelId\": 2, \"platform\": \"Booking\", \"hotelName\": \"Test Hotel 2\"}");
         objectContents.put("test-bucket/test-prefix/file2.jsonl", 
             "{\"hotelId\": 3, \"platform\": \"Expedia\", \"hotelName\": \"Test Hotel 3\"}");
+
+        // Compressed copies of file1: detected by extension, and by Content-Type alone
+        byte[] file1 = objectContents.get("test-bucket/test-prefix/file1.jsonl").getBytes(StandardCharsets.UTF_8);
+        List<S3Object> compressedFiles = new ArrayList<>();
+        compressedFiles.add(createS3Object("reviews.jsonl.gz", 100L));
+        compressedFiles.add(createS3Object("reviews.jsonl.zst", 100L));
+        compressedFiles.add(createS3Object("reviews-export", 100L));
+        bucketContents.put("compressed-bucket", compressedFiles);
+        addObjectContent("compressed-bucket/reviews.jsonl.gz", gzip(file1), null);
+        addObjectContent("compressed-bucket/reviews.jsonl.zst", Zstd.compress(file1), null);
+        addObjectContent("compressed-bucket/reviews-export", gzip(file1), "application/gzip");
+    }
+
+    public static byte[] gzip(byte[] bytes) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(bytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
     }
 
     public void setShouldThrowException(boolean shouldThrowException) {
@@ -61,8 +107,37 @@ public class MockS3Client implements S3Client {
         objectContents.put(key, content);
     }
 
+    public void addObjectContent(String key, byte[] content, String contentType) {
+        binaryContents.put(key, content);
+        if (contentType != null) {
+            contentTypes.put(key, contentType);
+        }
+    }
+
+    /**
+     * Serve an object from a file, for corpora too large to hold in memory; it is listed
+     * in the bucket with the file's size
+     */
+    public void addFileObject(String bucket, String key, Path file) {
+        try {
+            addBucketContent(bucket, key, Files.size(file));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        fileContents.put(bucket + "/" + key, file);
+    }
+
     @Override
     public ListObjectsV2Response listObjectsV2(ListObjectsV2Request request) {
+        long started = System.nanoTime();
+        try {
+            return list(request);
+        } finally {
+            listNanos.addAndGet(System.nanoTime() - started);
+        }
+    }
+
+    private ListObjectsV2Response list(ListObjectsV2Request request) {
         if (shouldThrowException) {
             throw new RuntimeException(exceptionMessage);
         }
@@ -77,23 +152,54 @@ public class MockS3Client implements S3Client {
 
         String bucket = request.bucket();
         String prefix = request.prefix() != null ? request.prefix() : "";
+        String delimiter = request.delimiter();
+        String startAfter = request.startAfter();
         
-        List<S3Object> objects = bucketContents.getOrDefault(bucket, new ArrayList<>());
+        List<S3Object> objects = new ArrayList<>(bucketContents.getOrDefault(bucket, new ArrayList<>()));
+        // S3 lists keys in lexicographic order
+        objects.sort(java.util.Comparator.comparing(S3Object::key));
         
-        // Filter by prefix if specified
+        // Filter by prefix and StartAfter, and roll keys below a delimiter up into common prefixes
         List<S3Object> filteredObjects = new ArrayList<>();
+        java.util.Set<String> commonPrefixes = new java.util.TreeSet<>();
         for (S3Object obj : objects) {
-            if (obj.key().startsWith(prefix)) {
+            if (!obj.key().startsWith(prefix) || (startAfter != null && obj.key().compareTo(startAfter) <= 0)) {
+                continue;
+            }
+            int split = delimiter != null ? obj.key().indexOf(delimiter, prefix.length()) : -1;
+            if (split >= 0) {
+                commonPrefixes.add(obj.key().substring(0, split + delimiter.length()));
+            } else {
                 filteredObjects.add(obj);
             }
         }
+        listRequests.add(request);
+
+        // Optional paging of contents, with the next index as continuation token
+        int from = request.continuationToken() != null ? Integer.parseInt(request.continuationToken()) : 0;
+        int to = listPageSize > 0 ? Math.min(from + listPageSize, filteredObjects.size()) : filteredObjects.size();
+        String nextToken = to < filteredObjects.size() ? String.valueOf(to) : null;
+
+        List<CommonPrefix> prefixes = new ArrayList<>();
+        for (String commonPrefix : commonPrefixes) {
+            prefixes.add(CommonPrefix.builder().prefix(commonPrefix).build());
+        }
 
         return ListObjectsV2Response.builder()
-            .contents(filteredObjects)
-            .nextContinuationToken(null) // No pagination for simplicity
+            .contents(filteredObjects.subList(from, to))
+            .commonPrefixes(from == 0 ? prefixes : new ArrayList<>())
+            .nextContinuationToken(nextToken)
             .build();
     }
 
+    public void setListPageSize(int listPageSize) {
+        this.listPageSize = listPageSize;
+    }
+
+    public List<ListObjectsV2Request> getListRequests() {
+        return new ArrayList<>(listRequests);
+    }
+
     @Override
     public software.amazon.awssdk.core.ResponseInputStream<GetObjectResponse> getObject(GetObjectRequest request) {
         if (shouldThrowException) {
@@ -108,15 +214,145 @@ public class MockS3Client implements S3Client {
             return new software.amazon.awssdk.core.ResponseInputStream<>(response, null);
         }
 
-        String key = request.key();
-        String content = objectContents.getOrDefault(key, "");
+        getObjectCallCount.incrementAndGet();
+
+        String fullKey = request.bucket() + "/" + request.key();
+        Path file = fileContents.get(fullKey);
+        if (file != null) {
+            return fileObject(file, request.range());
+        }
+        byte[] bytes = applyRange(objectBytes(request.bucket(), request.key()), request.range());
         
         GetObjectResponse response = GetObjectResponse.builder()
-            .contentLength((long) content.getBytes().length)
+            .contentLength((long) bytes.length)
+            .contentType(contentTypes.get(fullKey))
             .build();
         
-        // Return a mock ResponseInputStream - in a real implementation, this would wrap the content
-        return new software.amazon.awssdk.core.ResponseInputStream<>(response, null);
+        return new software.amazon.awssdk.core.ResponseInputStream<>(response, new TimedInputStream(new ByteArrayInputStream(bytes)));
+    }
+
+    private software.amazon.awssdk.core.ResponseInputStream<GetObjectResponse> fileObject(Path file, String range) {
+        try {
+            FileChannel channel = FileChannel.open(file);
+            long size = channel.size();
+            long start = 0;
+            long end = size - 1;
+            if (range != null) {
+                String[] bounds = range.replace("bytes=", "").split("-", -1);
+                start = Long.parseLong(bounds[0]);
+                end = bounds[1].isEmpty() ? end : Math.min(Long.parseLong(bounds[1]), end);
+                if (start >= size) {
+                    channel.close();
+                    throw (S3Exception) S3Exception.builder()
+                        .statusCode(416)
+                        .message("The requested range is not satisfiable")
+                        .build();
+                }
+            }
+            channel.position(start);
+            long length = end - start + 1;
+            InputStream body = new java.io.BufferedInputStream(Channels.newInputStream(channel), 64 * 1024) {
+                private long remaining = length;
+
+                @Override
+                public synchronized int read(byte[] b, int off, int len) throws IOException {
+                    if (remaining <= 0) {
+                        return -1;
+                    }
+                    int read = super.read(b, off, (int) Math.min(len, remaining));
+                    remaining -= Math.max(read, 0);
+                    return read;
+                }
+
+                @Override
+                public synchronized int read() throws IOException {
+                    if (remaining <= 0) {
+                        return -1;
+                    }
+                    int read = super.read();
+                    remaining -= read >= 0 ? 1 : 0;
+                    return read;
+                }
+            };
+            GetObjectResponse response = GetObjectResponse.builder().contentLength(length).build();
+            return new software.amazon.awssdk.core.ResponseInputStream<>(response, new TimedInputStream(body));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Time spent answering listObjectsV2 calls
+     */
+    public long getListNanos() {
+        return listNanos.get();
+    }
+
+    /**
+     * Time callers spent reading object bodies, and how many bytes they read
+     */
+    public long getDownloadNanos() {
+        return downloadNanos.get();
+    }
+
+    public long getDownloadedBytes() {
+        return downloadedBytes.get();
+    }
+
+    private class TimedInputStream extends FilterInputStream {
+
+        TimedInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            long started = System.nanoTime();
+            int read = super.read();
+            downloadNanos.addAndGet(System.nanoTime() - started);
+            downloadedBytes.addAndGet(read >= 0 ? 1 : 0);
+            return read;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            long started = System.nanoTime();
+            int read = super.read(b, off, len);
+            downloadNanos.addAndGet(System.nanoTime() - started);
+            downloadedBytes.addAndGet(Math.max(read, 0));
+            return read;
+        }
+    }
+
+    // Contents are keyed by "bucket/key", fall back to the bare key
+    private byte[] objectBytes(String bucket, String key) {
+        byte[] bytes = binaryContents.get(bucket + "/" + key);
+        if (bytes != null) {
+            return bytes;
+        }
+        String content = objectContents.getOrDefault(bucket + "/" + key, objectContents.getOrDefault(key, ""));
+        return content.getBytes(StandardCharsets.UTF_8);
+    }
+
+    // Supports the "bytes=start-" and "bytes=start-end" forms used by the ingester
+    private byte[] applyRange(byte[] bytes, String range) {
+        if (range == null) {
+            return bytes;
+        }
+        String[] bounds = range.replace("bytes=", "").split("-", -1);
+        int start = Integer.parseInt(bounds[0]);
+        int end = bounds[1].isEmpty() ? bytes.length - 1 : Math.min(Integer.parseInt(bounds[1]), bytes.length - 1);
+        if (start >= bytes.length) {
+            throw (S3Exception) S3Exception.builder()
+                .statusCode(416)
+                .message("The requested range is not satisfiable")
+                .build();
+        }
+        return java.util.Arrays.copyOfRange(bytes, start, end + 1);
+    }
+
+    public int getGetObjectCallCount() {
+        return getObjectCallCount.get();
     }
 
     public PutObjectResponse putObject(PutObjectRequest request) {
@@ -203,9 +439,17 @@ public class MockS3Client implements S3Client {
                 .build();
         }
 
-        boolean exists = objectContents.containsKey(request.key());
+        Path file = fileContents.get(request.bucket() + "/" + request.key());
+        if (file != null) {
+            try {
+                return HeadObjectResponse.builder().contentLength(Files.size(file)).build();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
         return HeadObjectResponse.builder()
-            .contentLength(exists ? 100L : 0L)
+            .contentLength((long) objectBytes(request.bucket(), request.key()).length)
+            .contentType(contentTypes.get(request.bucket() + "/" + request.key()))
             .build();
     }
 
@@ -0,0 +1,219 @@
+package org.soumitra.reviewsystem.util;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Reproducible JSONL review lines shaped like the provider feed (see HotelReviewJsonParserExample),
+ * for benchmarks and load tests. Line i depends only on the seed, the shape settings and i,
+ * so any slice of a large corpus can be regenerated without producing the lines before it.
+ *
+ * The shape settings are the ones that drive parsing cost: how many providers each line
+ * summarises, how many grade categories each provider has and how long the review text is.
+ * Hotels and reviewers repeat across lines the way they do in a real feed.
+ */
+public class SyntheticReviewGenerator {
+
+    private static final String[][] PROVIDERS = {
+        {"332", "Agoda"}, {"334", "Booking.com"}, {"3038", "Expedia"}, {"3330", "Hotels.com"},
+        {"3340", "Trip.com"}, {"3350", "Traveloka"}, {"3360", "Priceline"}, {"3370", "Hostelworld"}
+    };
+
+    private static final String[] GRADE_CATEGORIES = {
+        "Cleanliness", "Facilities", "Location", "Service", "Value for money", "Room comfort and quality",
+        "Food", "Staff performance", "Free Wifi", "Breakfast", "Swimming pool", "Check-in speed"
+    };
+
+    private static final String[] COUNTRIES = {
+        "Philippines|ph|70", "India|in|35", "Singapore|sg|117", "Japan|jp|3", "Australia|au|25",
+        "United Kingdom|gb|107", "France|fr|153", "Brazil|br|240", "Deutschland|de|96", "Việt Nam|vn|38"
+    };
+
+    private static final String[] GROUPS = {"Solo traveler", "Couple", "Family with young children", "Group", "Business traveler"};
+
+    private static final String[] ROOMS = {"Deluxe Room", "Standard Double", "Premium Deluxe", "Family Suite", "Dormitory Bed"};
+
+    private static final String[] RATING_TEXTS = {"Poor", "Fair", "Good", "Very good", "Excellent", "Exceptional"};
+
+    private static final String[] WORDS = {
+        "the", "room", "was", "clean", "and", "staff", "very", "friendly", "breakfast", "location", "great",
+        "beach", "view", "noisy", "at", "night", "would", "stay", "again", "pool", "small", "but", "comfortable",
+        "bed", "wifi", "slow", "check-in", "quick", "value", "for", "money", "\"perfect\"", "spot", "café", "😊"
+    };
+
+    private static final String[] MONTHS = {
+        "January", "February", "March", "April", "May", "June",
+        "July", "August", "September", "October", "November", "December"
+    };
+
+    private final long seed;
+    private final int providers;
+    private final int gradeCategories;
+    private final int commentLength;
+    private final int hotels;
+    private final int reviewers;
+
+    public SyntheticReviewGenerator(long seed) {
+        this(seed, 1, 5, 200, 1_000, 20_000);
+    }
+
+    private SyntheticReviewGenerator(long seed, int providers, int gradeCategories, int commentLength,
+                                     int hotels, int reviewers) {
+        this.seed = seed;
+        this.providers = clamp(providers, 1, PROVIDERS.length);
+        this.gradeCategories = clamp(gradeCategories, 0, GRADE_CATEGORIES.length);
+        this.commentLength = Math.max(commentLength, 0);
+        this.hotels = Math.max(hotels, 1);
+        this.reviewers = Math.max(reviewers, 1);
+    }
+
+    /**
+     * Entries in overallByProviders, 1 to 8
+     */
+    public SyntheticReviewGenerator withProviders(int providers) {
+        return new SyntheticReviewGenerator(seed, providers, gradeCategories, commentLength, hotels, reviewers);
+    }
+
+    /**
+     * Grades per provider, 0 to 12
+     */
+    public SyntheticReviewGenerator withGradeCategories(int gradeCategories) {
+        return new SyntheticReviewGenerator(seed, providers, gradeCategories, commentLength, hotels, reviewers);
+    }
+
+    /**
+     * Approximate length of reviewComments in characters
+     */
+    public SyntheticReviewGenerator withCommentLength(int commentLength) {
+        return new SyntheticReviewGenerator(seed, providers, gradeCategories, commentLength, hotels, reviewers);
+    }
+
+    /**
+     * Distinct hotels and reviewers the lines are spread over
+     */
+    public SyntheticReviewGenerator withDistinct(int hotels, int reviewers) {
+        return new SyntheticReviewGenerator(seed, providers, gradeCategories, commentLength, hotels, reviewers);
+    }
+
+    public List<String> lines(int count) {
+        return lines(0, count);
+    }
+
+    public List<String> lines(long from, int count) {
+        List<String> lines = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            lines.add(line(from + i));
+        }
+        return lines;
+    }
+
+    /**
+     * Write lines [0, count) as JSONL, one line at a time, so very large corpora need no memory
+     */
+    public void writeJsonl(Writer out, long count) {
+        try {
+            for (long i = 0; i < count; i++) {
+                out.write(line(i));
+                out.write('\n');
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public String line(long index) {
+        SplittableRandom random = new SplittableRandom(seed * 0x9E3779B97F4A7C15L + index);
+        int hotel = random.nextInt(hotels);
+        int reviewer = random.nextInt(reviewers);
+        String[] provider = PROVIDERS[hotel % providers];
+        String[] country = COUNTRIES[reviewer % COUNTRIES.length].split("\\|");
+        int ratingTenths = 20 + random.nextInt(81);
+        String rating = (ratingTenths / 10) + "." + (ratingTenths % 10);
+        String hotelName = "Hotel " + hotel + " Seaside";
+        String month = MONTHS[random.nextInt(MONTHS.length)];
+        int year = 2019 + random.nextInt(7);
+        int day = 1 + random.nextInt(28);
+
+        StringBuilder json = new StringBuilder(1024 + commentLength + providers * (120 + gradeCategories * 24));
+        json.append("{\"hotelId\":").append(16_000_000 + hotel)
+            .append(",\"platform\":\"").append(provider[1])
+            .append("\",\"hotelName\":\"").append(hotelName)
+            .append("\",\"comment\":{\"isShowReviewResponse\":").append(random.nextInt(4) == 0)
+            .append(",\"hotelReviewId\":").append(900_000_000L + index)
+            .append(",\"providerId\":").append(provider[0])
+            .append(",\"rating\":").append(rating)
+            .append(",\"checkInDateMonthAndYear\":\"").append(month).append(' ').append(year)
+            .append("\",\"encryptedReviewData\":\"").append(Long.toHexString(random.nextLong()))
+            .append("==\",\"formattedRating\":\"").append(rating)
+            .append("\",\"formattedReviewDate\":\"").append(month).append(' ').append(day).append(", ").append(year)
+            .append("\",\"ratingText\":\"").append(RATING_TEXTS[Math.min(ratingTenths / 17, RATING_TEXTS.length - 1)])
+            .append("\",\"responderName\":\"").append(hotelName)
+            .append("\",\"responseDateText\":\"\",\"responseTranslateSource\":\"en\",\"reviewComments\":\"");
+        appendText(json, random, commentLength);
+        json.append("\",\"reviewNegatives\":\"\",\"reviewPositives\":\"\",\"reviewProviderLogo\":\"\"")
+            .append(",\"reviewProviderText\":\"").append(provider[1])
+            .append("\",\"reviewTitle\":\"");
+        appendText(json, random, 12 + random.nextInt(30));
+        json.append("\",\"translateSource\":\"en\",\"translateTarget\":\"en\",\"reviewDate\":\"")
+            .append(year).append('-').append(pad(1 + random.nextInt(12))).append('-').append(pad(day))
+            .append("T0").append(random.nextInt(10)).append(":10:00+07:00\"")
+            .append(",\"reviewerInfo\":{\"countryName\":\"").append(country[0])
+            .append("\",\"displayMemberName\":\"Guest ").append(reviewer)
+            .append("\",\"flagName\":\"").append(country[1])
+            .append("\",\"reviewGroupName\":\"").append(GROUPS[reviewer % GROUPS.length])
+            .append("\",\"roomTypeName\":\"").append(ROOMS[random.nextInt(ROOMS.length)])
+            .append("\",\"countryId\":").append(country[2])
+            .append(",\"lengthOfStay\":").append(1 + random.nextInt(14))
+            .append(",\"reviewGroupId\":").append(1 + reviewer % GROUPS.length)
+            .append(",\"roomTypeId\":0,\"reviewerReviewedCount\":").append(random.nextInt(40))
+            .append(",\"isExpertReviewer\":").append(random.nextInt(20) == 0)
+            .append(",\"isShowGlobalIcon\":false,\"isShowReviewedCount\":false}")
+            .append(",\"originalTitle\":\"\",\"originalComment\":\"\",\"formattedResponseDate\":\"\"}")
+            .append(",\"overallByProviders\":[");
+        for (int p = 0; p < providers; p++) {
+            String[] summarised = PROVIDERS[(hotel + p) % providers];
+            json.append(p > 0 ? ",{" : "{")
+                .append("\"providerId\":").append(summarised[0])
+                .append(",\"provider\":\"").append(summarised[1])
+                .append("\",\"overallScore\":").append(score(random))
+                .append(",\"reviewCount\":").append(random.nextInt(5_000))
+                .append(",\"grades\":{");
+            for (int g = 0; g < gradeCategories; g++) {
+                json.append(g > 0 ? ",\"" : "\"").append(GRADE_CATEGORIES[g]).append("\":").append(score(random));
+            }
+            json.append("}}");
+        }
+        return json.append("]}").toString();
+    }
+
+    private static void appendText(StringBuilder json, SplittableRandom random, int length) {
+        int written = 0;
+        while (written < length) {
+            String word = WORDS[random.nextInt(WORDS.length)];
+            if (written > 0) {
+                json.append(' ');
+                written++;
+            }
+            // Quotes are the one thing in the word list JSON needs escaped
+            json.append(word.replace("\"", "\\\""));
+            written += word.length();
+        }
+    }
+
+    private static String score(SplittableRandom random) {
+        int tenths = 40 + random.nextInt(61);
+        return (tenths / 10) + "." + (tenths % 10);
+    }
+
+    private static String pad(int value) {
+        return value < 10 ? "0" + value : Integer.toString(value);
+    }
+
+    private static int clamp(int value, int min, int max) {
+        return Math.max(min, Math.min(max, value));
+    }
+}
@@ -0,0 +1,46 @@
+package org.soumitra.reviewsystem.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.StringWriter;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SyntheticReviewGeneratorTest {
+
+    private final HotelReviewJsonParser parser = new HotelReviewJsonParser();
+
+    @Test
+    void testLinesAreReproducibleAndIndependentOfWhereGenerationStarts() {
+        SyntheticReviewGenerator generator = new SyntheticReviewGenerator(7);
+
+        List<String> lines = generator.lines(10);
+
+        assertEquals(lines, new SyntheticReviewGenerator(7).lines(10));
+        assertEquals(lines.subList(4, 10), generator.lines(4, 6));
+        assertNotEquals(lines, new SyntheticReviewGenerator(8).lines(10));
+
+        StringWriter jsonl = new StringWriter();
+        generator.writeJsonl(jsonl, 10);
+        assertEquals(String.join("\n", lines) + "\n", jsonl.toString());
+    }
+
+    @Test
+    void testLinesParseWithTheRequestedShape() throws Exception {
+        SyntheticReviewGenerator generator = new SyntheticReviewGenerator(7)
+            .withProviders(3)
+            .withGradeCategories(12)
+            .withCommentLength(2000);
+
+        List<String> lines = generator.lines(50);
+        for (int i = 0; i < lines.size(); i++) {
+            HotelReviewJsonParser.HotelReviewParseResult result = parser.parseHotelReview(lines.get(i));
+            assertEquals(3, result.getProviderHotelSummaries().size());
+            assertEquals(36, result.getProviderHotelGrades().size());
+            assertTrue(result.getReview().getReviewComment().length() >= 2000);
+            assertNotNull(result.getReviewer().getDisplayName());
+            assertEquals(900_000_000L + i, result.getReview().getReviewExternalId());
+        }
+    }
+}